@@ -0,0 +1,215 @@
+package com.aelchemy.bencode.flow;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.aelchemy.bencode.ChunkDecoder;
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+
+/**
+ * {@link BencodeProcessor} is a {@link Flow.Processor} decoding chunks of Bencoded data into the successive values
+ * they contain, with a {@link ChunkDecoder}.
+ * <p>
+ * Chunks are requested from upstream one at a time, and only while the subscriber has unmet demand and no complete
+ * value is buffered. A slow subscriber therefore holds back the upstream rather than making the processor buffer its
+ * data: at most one chunk, and one incomplete value no longer than the maximum length, are buffered. Invalid data
+ * cancels the upstream and is signalled to the subscriber as an {@link InvalidFormatException}.
+ * <p>
+ * The processor accepts a single subscriber.
+ * <p>
+ * As {@link Flow} was added in Java 9, the processor is built on Java 17 and later into its own artifact, with the
+ * classifier "flow", which depends on the main artifact.
+ *
+ * @author Aelexe
+ *
+ */
+public class BencodeProcessor implements Flow.Processor<ByteBuffer, BData> {
+
+	private final ChunkDecoder decoder;
+	private final Queue<ByteBuffer> chunks = new ConcurrentLinkedQueue<ByteBuffer>();
+	private final AtomicReference<Flow.Subscriber<? super BData>> subscriber = new AtomicReference<Flow.Subscriber<? super BData>>();
+	private final AtomicLong demand = new AtomicLong();
+	private final AtomicInteger work = new AtomicInteger();
+	private volatile Flow.Subscription upstream;
+	private volatile boolean requested;
+	private volatile boolean done;
+	private volatile Throwable error;
+	private volatile boolean cancelled;
+	/** The next value, decoded ahead of demand from data already buffered. Only used while draining. */
+	private BData ready;
+	/** Whether the subscriber has been sent a terminal signal. Only used while draining. */
+	private boolean terminated;
+
+	/**
+	 * Creates a processor for values up to 64 MiB long.
+	 */
+	public BencodeProcessor() {
+		this.decoder = new ChunkDecoder();
+	}
+
+	/**
+	 * Creates a processor.
+	 *
+	 * @param maxLength The maximum length of a value, beyond which it is treated as invalid.
+	 * @throws IllegalArgumentException Thrown if the maximum length isn't positive.
+	 */
+	public BencodeProcessor(final int maxLength) {
+		this.decoder = new ChunkDecoder(maxLength);
+	}
+
+	@Override
+	public void subscribe(final Flow.Subscriber<? super BData> subscriber) {
+		Objects.requireNonNull(subscriber);
+		if (this.subscriber.compareAndSet(null, subscriber)) {
+			subscriber.onSubscribe(new Subscription());
+			drain();
+			return;
+		}
+		subscriber.onSubscribe(new Flow.Subscription() {
+
+			@Override
+			public void request(final long n) {
+			}
+
+			@Override
+			public void cancel() {
+			}
+
+		});
+		subscriber.onError(new IllegalStateException("Processor already has a subscriber"));
+	}
+
+	@Override
+	public void onSubscribe(final Flow.Subscription subscription) {
+		if (upstream != null || cancelled) {
+			subscription.cancel();
+			return;
+		}
+		upstream = subscription;
+		drain();
+	}
+
+	/**
+	 * Receives a chunk of Bencoded data, which mustn't be modified after it is passed to the processor.
+	 */
+	@Override
+	public void onNext(final ByteBuffer chunk) {
+		chunks.add(chunk);
+		requested = false;
+		drain();
+	}
+
+	@Override
+	public void onError(final Throwable throwable) {
+		error = throwable;
+		done = true;
+		drain();
+	}
+
+	@Override
+	public void onComplete() {
+		done = true;
+		drain();
+	}
+
+	/**
+	 * Emits decoded values while there is demand, then requests another chunk if the demand isn't met. <br>
+	 * Only one thread drains at a time; signals arriving while another thread drains make it drain again.
+	 */
+	private void drain() {
+		if (work.getAndIncrement() != 0) {
+			return;
+		}
+		do {
+			Flow.Subscriber<? super BData> subscriber = this.subscriber.get();
+			if (subscriber != null && !terminated) {
+				try {
+					emit(subscriber);
+				} catch (InvalidFormatException | RuntimeException e) {
+					terminated = true;
+					cancelUpstream();
+					subscriber.onError(e);
+				}
+			}
+			if (cancelled || terminated) {
+				chunks.clear();
+				ready = null;
+			}
+		} while (work.decrementAndGet() != 0);
+	}
+
+	private void emit(final Flow.Subscriber<? super BData> subscriber) throws InvalidFormatException {
+		while (!cancelled && error == null) {
+			if (ready == null) {
+				ready = decoder.next();
+				ByteBuffer chunk;
+				if (ready == null && (chunk = chunks.poll()) != null) {
+					decoder.offer(chunk);
+					continue;
+				}
+			}
+			if (ready == null || demand.get() == 0) {
+				break;
+			}
+			BData data = ready;
+			ready = null;
+			demand.decrementAndGet();
+			subscriber.onNext(data);
+		}
+
+		if (cancelled) {
+			// Nothing more is signalled after the subscriber cancels.
+		} else if (error != null) {
+			terminated = true;
+			subscriber.onError(error);
+		} else if (ready == null && chunks.isEmpty()) {
+			if (done) {
+				terminated = true;
+				decoder.end();
+				subscriber.onComplete();
+			} else if (demand.get() > 0 && !requested && upstream != null) {
+				requested = true;
+				upstream.request(1);
+			}
+		}
+	}
+
+	private void cancelUpstream() {
+		Flow.Subscription upstream = this.upstream;
+		if (upstream != null) {
+			upstream.cancel();
+		}
+	}
+
+	/**
+	 * The subscription of the processor's subscriber.
+	 */
+	private final class Subscription implements Flow.Subscription {
+
+		@Override
+		public void request(final long n) {
+			if (n <= 0) {
+				cancelUpstream();
+				onError(new IllegalArgumentException("Non-positive request: " + n));
+				return;
+			}
+			demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			cancelUpstream();
+		}
+
+	}
+
+}
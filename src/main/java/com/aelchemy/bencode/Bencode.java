@@ -1,8 +1,20 @@
 package com.aelchemy.bencode;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.aelchemy.bencode.data.BData;
 import com.aelchemy.bencode.data.BDictionary;
 import com.aelchemy.bencode.data.BList;
+import com.aelchemy.bencode.data.BNumber;
+import com.aelchemy.bencode.data.ValueType;
 import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
 
 /**
  * Contains methods for encoding and decoding of Bencoded data.
@@ -14,6 +26,10 @@ import com.aelchemy.bencode.exception.InvalidFormatException;
  */
 public class Bencode {
 
+	private static final int STREAM_BUFFER_SIZE = 8 * 1024;
+
+	private static volatile BencodeListener listener;
+
 	/**
 	 * Decodes the Bencoded data argument as a string.
 	 * 
@@ -22,7 +38,7 @@ public class Bencode {
 	 * @throws InvalidFormatException Thrown if the Bencoded data argument is an invalid format.
 	 */
 	public static String decodeString(final String bData) throws InvalidFormatException {
-		return Decode.decodeString(bData);
+		return decode(ValueType.STRING, bData, Decode::decodeString);
 	}
 
 	/**
@@ -33,7 +49,7 @@ public class Bencode {
 	 * @return The Bencoded string.
 	 */
 	public static String encodeString(final String string) {
-		return Encode.encodeString(string);
+		return encode(ValueType.STRING, string, Encode::encodeString);
 	}
 
 	/**
@@ -44,7 +60,22 @@ public class Bencode {
 	 * @throws InvalidFormatException Thrown if the Bencoded data argument is an invalid format.
 	 */
 	public static long decodeNumber(final String bData) throws InvalidFormatException {
-		return Decode.decodeNumber(bData);
+		// Only box the number when there is a listener to notify.
+		if (listener == null) {
+			return Decode.decodeNumber(bData);
+		}
+		return decode(ValueType.NUMBER, bData, Decode::decodeNumber);
+	}
+
+	/**
+	 * Decodes the Bencoded data argument as a number of any size, such as a 128 bit ID.
+	 * 
+	 * @param bData The Bencoded data containing the number.
+	 * @return The number contained in the Bencoded data argument.
+	 * @throws InvalidFormatException Thrown if the Bencoded data argument is an invalid format.
+	 */
+	public static BigInteger decodeBigNumber(final String bData) throws InvalidFormatException {
+		return decode(ValueType.NUMBER, bData, Decode::decodeBigNumber);
 	}
 
 	/**
@@ -54,7 +85,21 @@ public class Bencode {
 	 * @return The Bencoded number.
 	 */
 	public static String encodeNumber(final long number) {
-		return Encode.encodeNumber(number);
+		// Only box the number when there is a listener to notify.
+		if (listener == null) {
+			return Encode.encodeNumber(number);
+		}
+		return encode(ValueType.NUMBER, number, Encode::encodeNumber);
+	}
+
+	/**
+	 * Encodes the number argument of any size into a Bencoded number.
+	 * 
+	 * @param number The number to encode.
+	 * @return The Bencoded number.
+	 */
+	public static String encodeNumber(final BigInteger number) {
+		return encode(ValueType.NUMBER, number, Encode::encodeNumber);
 	}
 
 	/**
@@ -65,7 +110,7 @@ public class Bencode {
 	 * @throws InvalidFormatException Thrown if the Bencoded data argument is an invalid format.
 	 */
 	public static BList decodeList(final String bData) throws InvalidFormatException {
-		return Decode.decodeList(bData);
+		return decode(ValueType.LIST, bData, Decode::decodeList);
 	}
 
 	/**
@@ -75,7 +120,7 @@ public class Bencode {
 	 * @return The Bencoded list.
 	 */
 	public static String encodeList(BList list) {
-		return Encode.encodeList(list);
+		return encode(ValueType.LIST, list, Encode::encodeList);
 	}
 
 	/**
@@ -86,7 +131,7 @@ public class Bencode {
 	 * @throws InvalidFormatException Thrown if the Bencoded data argument is an invalid format.
 	 */
 	public static BDictionary decodeDictionary(String bData) throws InvalidFormatException {
-		return Decode.decodeDictionary(bData);
+		return decode(ValueType.DICTIONARY, bData, Decode::decodeDictionary);
 	}
 
 	/**
@@ -96,7 +141,383 @@ public class Bencode {
 	 * @return The Bencoded dictionary.
 	 */
 	public static String encodeDictionary(BDictionary dictionary) {
-		return Encode.encodeDictionary(dictionary);
+		return encode(ValueType.DICTIONARY, dictionary, Encode::encodeDictionary);
+	}
+
+	/**
+	 * Compiles the {@link BDictionary} argument into a {@link Template} for repeatedly encoding dictionaries of the
+	 * same shape. <br>
+	 * Entries other than the slot keys are encoded once, now.
+	 * 
+	 * @param dictionary The {@link BDictionary} describing the shape of the encoded dictionary.
+	 * @param slotKeys The keys whose values are provided each time the template is encoded.
+	 * @return The compiled {@link Template}.
+	 * @throws IllegalArgumentException Thrown if a slot key is not contained in the dictionary or is repeated.
+	 */
+	public static Template compileTemplate(BDictionary dictionary, String... slotKeys) {
+		return Template.compile(dictionary, slotKeys);
+	}
+
+	/**
+	 * Validates the Bencoded value at the start of the data argument, without decoding it. <br>
+	 * Any data after the value is ignored, so the data is only entirely valid if the returned offset is its length.
+	 * 
+	 * @param bData The Bencoded data.
+	 * @return The offset of the end of the value if it is valid, or (-(offset of the first invalid byte) - 1).
+	 * @see #validate(ByteBuffer, boolean)
+	 */
+	public static int validate(final byte[] bData) {
+		return Validate.validate(ByteBuffer.wrap(bData), false);
+	}
+
+	/**
+	 * Validates the Bencoded value at the buffer argument's position, without decoding it or changing the buffer's
+	 * position.
+	 * 
+	 * @param bData The buffer containing the Bencoded data, from its position to its limit.
+	 * @return The offset from the buffer's position of the end of the value if it is valid, or (-(offset of the first
+	 *         invalid byte) - 1).
+	 * @see #validate(ByteBuffer, boolean)
+	 */
+	public static int validate(final ByteBuffer bData) {
+		return Validate.validate(bData, false);
+	}
+
+	/**
+	 * Validates the Bencoded value at the buffer argument's position, without decoding it or changing the buffer's
+	 * position. <br>
+	 * Validation checks the complete grammar, including that numbers and string lengths have no leading zeros and
+	 * numbers aren't negative zero, in a single pass that allocates nothing. Lists and dictionaries may be nested up
+	 * to 512 deep. Numbers of any length are valid.
+	 * 
+	 * @param bData The buffer containing the Bencoded data, from its position to its limit.
+	 * @param sortedKeys Whether dictionary keys must be unique and in ascending order, as the Bencode specification
+	 *            requires.
+	 * @return The offset from the buffer's position of the end of the value if it is valid, or (-(offset of the first
+	 *         invalid byte) - 1).
+	 */
+	public static int validate(final ByteBuffer bData, final boolean sortedKeys) {
+		return Validate.validate(bData, sortedKeys);
+	}
+
+	/**
+	 * Indexes the Bencoded value at the start of the data argument, giving random access to its nested values without
+	 * decoding them. <br>
+	 * Any data after the value is ignored.
+	 *
+	 * @param bData The Bencoded data.
+	 * @return The index of the Bencoded value.
+	 * @throws InvalidFormatException Thrown if the Bencoded value is an invalid format.
+	 * @see StructuralIndex
+	 */
+	public static StructuralIndex index(final byte[] bData) throws InvalidFormatException {
+		return StructuralIndex.of(ByteBuffer.wrap(bData));
+	}
+
+	/**
+	 * Indexes the Bencoded value at the buffer argument's position, giving random access to its nested values without
+	 * decoding them or changing the buffer's position. <br>
+	 * The index reads the buffer as it is used, so the buffer must not be modified while the index is in use.
+	 *
+	 * @param bData The buffer containing the Bencoded data, from its position to its limit.
+	 * @return The index of the Bencoded value.
+	 * @throws InvalidFormatException Thrown if the Bencoded value is an invalid format.
+	 * @see StructuralIndex
+	 */
+	public static StructuralIndex index(final ByteBuffer bData) throws InvalidFormatException {
+		return StructuralIndex.of(bData);
+	}
+
+	/**
+	 * Returns whether the Bencoded values are structurally equal, without decoding them. <br>
+	 * Strings and numbers are equal if their bytes are, lists if their values are equal in order, and dictionaries if
+	 * they map the same keys to equal values, in any order.
+	 *
+	 * @param a The first Bencoded value.
+	 * @param b The second Bencoded value.
+	 * @return True if the values are equal.
+	 * @throws InvalidFormatException Thrown if either Bencoded value is an invalid format.
+	 */
+	public static boolean equal(final byte[] a, final byte[] b) throws InvalidFormatException {
+		return equal(ByteBuffer.wrap(a), ByteBuffer.wrap(b));
+	}
+
+	/**
+	 * Returns whether the Bencoded values at the buffer arguments' positions are structurally equal, without decoding
+	 * them or changing the buffers' positions.
+	 *
+	 * @param a The buffer containing the first Bencoded value.
+	 * @param b The buffer containing the second Bencoded value.
+	 * @return True if the values are equal.
+	 * @throws InvalidFormatException Thrown if either Bencoded value is an invalid format.
+	 * @see #equal(byte[], byte[])
+	 */
+	public static boolean equal(final ByteBuffer a, final ByteBuffer b) throws InvalidFormatException {
+		return Compare.equal(StructuralIndex.of(a), StructuralIndex.of(b));
+	}
+
+	/**
+	 * Returns a stable 64 bit hash of the Bencoded value, without decoding it. <br>
+	 * Structurally {@link #equal(byte[], byte[]) equal} values have equal hashes, whatever the order of their
+	 * dictionaries' keys, and the hash of a value never changes between runs or versions.
+	 *
+	 * @param bData The Bencoded value.
+	 * @return The hash.
+	 * @throws InvalidFormatException Thrown if the Bencoded value is an invalid format.
+	 */
+	public static long hash(final byte[] bData) throws InvalidFormatException {
+		return hash(ByteBuffer.wrap(bData));
+	}
+
+	/**
+	 * Returns a stable 64 bit hash of the Bencoded value at the buffer argument's position, without decoding it or
+	 * changing the buffer's position.
+	 *
+	 * @param bData The buffer containing the Bencoded value.
+	 * @return The hash.
+	 * @throws InvalidFormatException Thrown if the Bencoded value is an invalid format.
+	 * @see #hash(byte[])
+	 */
+	public static long hash(final ByteBuffer bData) throws InvalidFormatException {
+		return Compare.hash(StructuralIndex.of(bData));
+	}
+
+	/**
+	 * Returns the paths of the values that differ between the Bencoded values, without decoding them. <br>
+	 * A path is the keys and list positions leading from the top level value to a differing value. The paths don't
+	 * descend into values that differ in type, or into keys and list positions found in only one of the values.
+	 *
+	 * @param a The first Bencoded value.
+	 * @param b The second Bencoded value.
+	 * @return The paths of the differing values, which is empty if the values are equal.
+	 * @throws InvalidFormatException Thrown if either Bencoded value is an invalid format.
+	 */
+	public static List<List<String>> diff(final byte[] a, final byte[] b) throws InvalidFormatException {
+		return diff(ByteBuffer.wrap(a), ByteBuffer.wrap(b));
+	}
+
+	/**
+	 * Returns the paths of the values that differ between the Bencoded values at the buffer arguments' positions,
+	 * without decoding them or changing the buffers' positions.
+	 *
+	 * @param a The buffer containing the first Bencoded value.
+	 * @param b The buffer containing the second Bencoded value.
+	 * @return The paths of the differing values, which is empty if the values are equal.
+	 * @throws InvalidFormatException Thrown if either Bencoded value is an invalid format.
+	 * @see #diff(byte[], byte[])
+	 */
+	public static List<List<String>> diff(final ByteBuffer a, final ByteBuffer b) throws InvalidFormatException {
+		return Compare.diff(StructuralIndex.of(a), StructuralIndex.of(b));
+	}
+
+	/**
+	 * Decodes the Bencoded value at the buffer argument's position, without changing the buffer's position. <br>
+	 * The buffer may be a heap, direct or memory mapped buffer, and is read in place without first being copied onto
+	 * the heap. Any data after the value is ignored.
+	 *
+	 * @param bData The buffer containing the Bencoded data, from its position to its limit.
+	 * @return {@link BData} containing the Bencoded value.
+	 * @throws InvalidFormatException Thrown if the Bencoded value is an invalid format.
+	 * @see Cursor
+	 */
+	public static BData decode(final ByteBuffer bData) throws InvalidFormatException {
+		Cursor cursor = new Cursor(bData);
+		BencodeListener listener = Bencode.listener;
+		if (listener == null) {
+			return cursor.readValue();
+		}
+
+		// Data that doesn't start with a value fails to decode as a string.
+		ValueType type = bData.hasRemaining() ? ValueType.of(bData.get(bData.position())) : null;
+		type = type == null ? ValueType.STRING : type;
+		listener.onStart(type);
+		long start = System.nanoTime();
+		BData data;
+		try {
+			data = cursor.readValue();
+		} catch (InvalidFormatException e) {
+			listener.onDecodeFailure(type, bData.remaining(), System.nanoTime() - start, e);
+			throw e;
+		}
+		listener.onDecode(type, cursor.getPosition(), System.nanoTime() - start, value(data));
+		return data;
+	}
+
+	/**
+	 * Reads and decodes the Bencoded value at the start of the stream argument. <br>
+	 * The stream is read in bulk, so data after the value may be read from the stream and discarded. Successive values
+	 * are read with a {@link BencodeReader}.
+	 * <p>
+	 * The value is read from the stream before it is decoded as {@link #decode(ByteBuffer)} would, so the registered
+	 * listener isn't notified of the time spent reading, or of data found to be invalid while it is read.
+	 *
+	 * @param in The stream to read from.
+	 * @return {@link BData} containing the Bencoded value.
+	 * @throws InvalidFormatException Thrown if the stream is empty, or its Bencoded value is an invalid format or longer
+	 *             than 64 MiB.
+	 * @throws IOException Thrown if the stream throws.
+	 */
+	public static BData decode(final InputStream in) throws InvalidFormatException, IOException {
+		ByteBuffer record = new BencodeReader(in, STREAM_BUFFER_SIZE, BencodeReader.DEFAULT_MAX_LENGTH).nextRecord();
+		if (record == null) {
+			throw new InvalidFormatException(Reason.EMPTY, "Data is empty", 0);
+		}
+		return decode(record);
+	}
+
+	/**
+	 * Encodes the {@link BData} argument to the stream argument, one byte per character, in a single write. <br>
+	 * Successive values are written with a {@link BencodeWriter}, which buffers them.
+	 *
+	 * @param data The {@link BData} to encode.
+	 * @param out The stream to write to.
+	 * @throws IOException Thrown if the stream throws.
+	 * @throws IllegalArgumentException Thrown if a string or key has a character greater than 0xFF, which can't be
+	 *             encoded in one byte, in which case nothing is written.
+	 */
+	public static void encode(final BData data, final OutputStream out) throws IOException {
+		byte[] encoded = new byte[Encode.length(data)];
+		encode(data, ByteBuffer.wrap(encoded));
+		out.write(encoded);
+	}
+
+	/**
+	 * Encodes the {@link BData} argument into the buffer argument at its position, one byte per character, advancing
+	 * the buffer's position past the encoded value. <br>
+	 * The value is written straight into the buffer, so encoding into a direct or memory mapped buffer builds no
+	 * intermediate string.
+	 *
+	 * @param data The {@link BData} to encode.
+	 * @param buffer The buffer to encode into.
+	 * @return The buffer argument.
+	 * @throws BufferOverflowException Thrown if the buffer doesn't have room for the encoded value, see
+	 *             {@link #getEncodedLength(BData)}. The buffer's position is left unchanged.
+	 * @throws IllegalArgumentException Thrown if a string or key has a character greater than 0xFF, which can't be
+	 *             encoded in one byte. The buffer's position is left unchanged.
+	 */
+	public static ByteBuffer encode(final BData data, final ByteBuffer buffer) {
+		BencodeListener listener = Bencode.listener;
+		if (listener == null) {
+			return Encode.put(buffer, data);
+		}
+
+		ValueType type = type(data);
+		int position = buffer.position();
+		listener.onStart(type);
+		long start = System.nanoTime();
+		Encode.put(buffer, data);
+		listener.onEncode(type, buffer.position() - position, System.nanoTime() - start);
+		return buffer;
+	}
+
+	/**
+	 * Returns the length of the Bencoded {@link BData} argument, without encoding it.
+	 *
+	 * @param data The {@link BData} to measure.
+	 * @return The encoded length.
+	 */
+	public static int getEncodedLength(final BData data) {
+		return Encode.length(data);
+	}
+
+	/**
+	 * Registers the listener argument to be notified of every decode and encode made through {@link Bencode},
+	 * replacing any previously registered listener. <br>
+	 * Null unregisters the listener, after which decoding and encoding carry no instrumentation cost.
+	 * 
+	 * @param listener The listener to register, or null.
+	 */
+	public static void setListener(final BencodeListener listener) {
+		Bencode.listener = listener;
+	}
+
+	/**
+	 * Returns the registered listener.
+	 * 
+	 * @return The registered listener, or null if there isn't one.
+	 */
+	public static BencodeListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Decodes the Bencoded data argument with the decoder argument, notifying the registered listener if there is one.
+	 * 
+	 * @param type The type of value being decoded.
+	 * @param bData The Bencoded data.
+	 * @param decoder The decoder.
+	 * @return The decoded value.
+	 * @throws InvalidFormatException Thrown if the Bencoded data argument is an invalid format.
+	 */
+	private static <T> T decode(final ValueType type, final String bData, final Decoder<T> decoder) throws InvalidFormatException {
+		BencodeListener listener = Bencode.listener;
+		if (listener == null) {
+			return decoder.decode(bData);
+		}
+
+		int length = bData == null ? 0 : bData.length();
+		listener.onStart(type);
+		long start = System.nanoTime();
+		T value;
+		try {
+			value = decoder.decode(bData);
+		} catch (InvalidFormatException e) {
+			listener.onDecodeFailure(type, length, System.nanoTime() - start, e);
+			throw e;
+		}
+		listener.onDecode(type, length, System.nanoTime() - start, value);
+		return value;
+	}
+
+	/**
+	 * Encodes the value argument with the encoder argument, notifying the registered listener if there is one.
+	 * 
+	 * @param type The type of value being encoded.
+	 * @param value The value.
+	 * @param encoder The encoder.
+	 * @return The Bencoded value.
+	 */
+	private static <T> String encode(final ValueType type, final T value, final Encoder<T> encoder) {
+		BencodeListener listener = Bencode.listener;
+		if (listener == null) {
+			return encoder.encode(value);
+		}
+
+		listener.onStart(type);
+		long start = System.nanoTime();
+		String bData = encoder.encode(value);
+		listener.onEncode(type, bData.length(), System.nanoTime() - start);
+		return bData;
+	}
+
+	private static ValueType type(final BData data) {
+		if (data.isString()) {
+			return ValueType.STRING;
+		} else if (data.isNumber()) {
+			return ValueType.NUMBER;
+		}
+		return data.isList() ? ValueType.LIST : ValueType.DICTIONARY;
+	}
+
+	/**
+	 * Returns the value of the {@link BData} argument, as the listener is passed it.
+	 */
+	private static Object value(final BData data) {
+		if (data.isString()) {
+			return data.asString().getValue();
+		} else if (data.isNumber()) {
+			BNumber number = data.asNumber();
+			return number.isLong() ? (Object) number.getValue() : number.getBigValue();
+		}
+		return data.isList() ? data.asList() : data.asDictionary();
+	}
+
+	private interface Decoder<T> {
+		T decode(String bData) throws InvalidFormatException;
+	}
+
+	private interface Encoder<T> {
+		String encode(T value);
 	}
 
 }
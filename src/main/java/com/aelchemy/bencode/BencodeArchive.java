@@ -0,0 +1,374 @@
+package com.aelchemy.bencode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+
+/**
+ * {@link BencodeArchive} reads Bencoded documents from an archive written by {@link BencodeArchiveWriter}, by their
+ * ordinal or their info hash.
+ * <p>
+ * The data and index files are memory mapped when the archive is opened, and nothing else is read until a document is
+ * asked for. Fetching a document decompresses only the block containing it, and info hashes are found by a binary
+ * search of the index. {@link #stream() Streaming} the documents decompresses each block once, and a parallel stream
+ * splits the blocks between threads.
+ * <p>
+ * An archive is thread safe. The files must not be modified while it is open.
+ *
+ * @author Aelexe
+ *
+ */
+public class BencodeArchive {
+
+	static final int MAGIC = 0x42454E41;
+	static final int VERSION = 1;
+	static final int HASH_LENGTH = 20;
+	private static final int HEADER_LENGTH = 20;
+	private static final int BLOCK_LENGTH = 16;
+	private static final int DOCUMENT_LENGTH = 12;
+	private static final int HASH_ENTRY_LENGTH = HASH_LENGTH + 4;
+	/** The most a byte of Deflate data can inflate to, above which a block's length must be corrupt. */
+	private static final int MAX_INFLATION = 1032;
+
+	private final MappedFile data;
+	private final MappedFile index;
+	private final int blockCount;
+	private final int documentCount;
+	private final int hashCount;
+	private final long documentsStart;
+	private final long hashesStart;
+
+	private BencodeArchive(final MappedFile data, final MappedFile index) throws IOException {
+		this.data = data;
+		this.index = index;
+		if (index.length() < HEADER_LENGTH || index.getInt(0) != MAGIC) {
+			throw new IOException("Index isn't a Bencode archive index");
+		} else if (index.getInt(4) != VERSION) {
+			throw new IOException("Unsupported archive version: " + index.getInt(4));
+		}
+		blockCount = index.getInt(8);
+		documentCount = index.getInt(12);
+		hashCount = index.getInt(16);
+		documentsStart = HEADER_LENGTH + (long) blockCount * BLOCK_LENGTH;
+		hashesStart = documentsStart + (long) documentCount * DOCUMENT_LENGTH;
+		if (blockCount < 0 || documentCount < 0 || hashCount < 0 || index.length() != hashesStart + (long) hashCount * HASH_ENTRY_LENGTH) {
+			throw new IOException("Index is truncated or corrupt");
+		}
+	}
+
+	/**
+	 * Opens an archive, mapping its data and index files.
+	 *
+	 * @param data The data file.
+	 * @param index The index file.
+	 * @return The archive.
+	 * @throws IOException Thrown if a file can't be mapped, or the index isn't an archive index.
+	 */
+	public static BencodeArchive open(final Path data, final Path index) throws IOException {
+		return new BencodeArchive(MappedFile.map(data), MappedFile.map(index));
+	}
+
+	/**
+	 * Returns the number of documents.
+	 *
+	 * @return The number of documents.
+	 */
+	public int size() {
+		return documentCount;
+	}
+
+	/**
+	 * Decompresses the block containing the document argument, and returns the document's Bencoded data.
+	 *
+	 * @param ordinal The ordinal of the document.
+	 * @return A read only buffer containing the document.
+	 * @throws IOException Thrown if the block is corrupt, or the document's index entry is out of range.
+	 * @throws IndexOutOfBoundsException Thrown if the archive doesn't have the document.
+	 */
+	public ByteBuffer getRecord(final int ordinal) throws IOException {
+		long document = document(ordinal);
+		int block = index.getInt(document);
+		if (block < 0 || block >= blockCount) {
+			throw new ZipException("Document " + ordinal + " is in block " + block + " of " + blockCount);
+		}
+		return record(block(block), document).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Decompresses the block containing the document argument, and decodes the document.
+	 *
+	 * @param ordinal The ordinal of the document.
+	 * @return {@link BData} containing the document.
+	 * @throws IOException Thrown if the block is corrupt, or the document's index entry is out of range.
+	 * @throws InvalidFormatException Thrown if the document is an invalid format.
+	 * @throws IndexOutOfBoundsException Thrown if the archive doesn't have the document.
+	 */
+	public BData get(final int ordinal) throws IOException, InvalidFormatException {
+		return new Cursor(getRecord(ordinal)).readValue();
+	}
+
+	/**
+	 * Decodes the document with the info hash argument.
+	 *
+	 * @param infoHash The 20 byte info hash.
+	 * @return {@link BData} containing the document, or null if the archive doesn't have it.
+	 * @throws IOException Thrown if the block is corrupt, or the document's index entries are out of range.
+	 * @throws InvalidFormatException Thrown if the document is an invalid format.
+	 */
+	public BData get(final byte[] infoHash) throws IOException, InvalidFormatException {
+		int ordinal = indexOf(infoHash);
+		if (ordinal >= documentCount) {
+			throw new ZipException("Info hash is of document " + ordinal + " of " + documentCount);
+		}
+		return ordinal < 0 ? null : get(ordinal);
+	}
+
+	/**
+	 * Returns the ordinal of the document with the info hash argument, from the index, without decompressing anything.
+	 * If several documents have the info hash, the first is returned.
+	 *
+	 * @param infoHash The 20 byte info hash.
+	 * @return The ordinal of the document, or -1 if the archive doesn't have it.
+	 */
+	public int indexOf(final byte[] infoHash) {
+		if (infoHash.length != HASH_LENGTH) {
+			return -1;
+		}
+		int prefix = ByteBuffer.wrap(infoHash).getInt();
+
+		// Find the first entry with the hash's first four bytes, then check the entries sharing them.
+		int low = 0;
+		int high = hashCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (index.getInt(hashEntry(middle)) < prefix) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		for (int entry = low; entry < hashCount && index.getInt(hashEntry(entry)) == prefix; entry++) {
+			if (index.equals(hashEntry(entry), infoHash)) {
+				return index.getInt(hashEntry(entry) + HASH_LENGTH);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns a stream of the documents, in order, decompressing each block once. A parallel stream decompresses and
+	 * decodes the blocks on several threads. <br>
+	 * Invalid documents throw {@link IllegalStateException}, and corrupt blocks or index entries
+	 * {@link UncheckedIOException}, from the stream's terminal operation.
+	 *
+	 * @return The stream of documents.
+	 */
+	public Stream<BData> stream() {
+		return IntStream.range(0, blockCount).boxed().flatMap(block -> {
+			ByteBuffer bData;
+			try {
+				bData = block(block);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			int first = firstDocument(block);
+			int last = first;
+			while (last < documentCount && index.getInt(document(last)) == block) {
+				last++;
+			}
+			return IntStream.range(first, last).mapToObj(ordinal -> {
+				try {
+					return new Cursor(record(bData, document(ordinal))).readValue();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				} catch (InvalidFormatException e) {
+					throw new IllegalStateException("Document " + ordinal + " is invalid", e);
+				}
+			});
+		});
+	}
+
+	/**
+	 * Returns the index of the index entry of the document argument.
+	 */
+	private long document(final int ordinal) {
+		if (ordinal < 0 || ordinal >= documentCount) {
+			throw new IndexOutOfBoundsException("Document " + ordinal + " of " + documentCount);
+		}
+		return documentsStart + (long) ordinal * DOCUMENT_LENGTH;
+	}
+
+	private long hashEntry(final int entry) {
+		return hashesStart + (long) entry * HASH_ENTRY_LENGTH;
+	}
+
+	/**
+	 * Returns the ordinal of the first document in the block argument, which blocks are never without.
+	 */
+	private int firstDocument(final int block) {
+		int low = 0;
+		int high = documentCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (index.getInt(document(middle)) < block) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the document at the index entry argument, as a slice of its decompressed block.
+	 */
+	private ByteBuffer record(final ByteBuffer block, final long document) throws ZipException {
+		int offset = index.getInt(document + 4);
+		int length = index.getInt(document + 8);
+		if (offset < 0 || length < 0 || offset + (long) length > block.capacity()) {
+			throw new ZipException("Document at " + offset + " of length " + length + " is outside its block of " + block.capacity() + " bytes");
+		}
+		ByteBuffer record = block.duplicate();
+		// Cast to Buffer so the Java 8 signatures of limit and position are linked.
+		((Buffer) record).limit(offset + length).position(offset);
+		return record.slice();
+	}
+
+	/**
+	 * Decompresses the block argument.
+	 */
+	private ByteBuffer block(final int block) throws IOException {
+		long entry = HEADER_LENGTH + (long) block * BLOCK_LENGTH;
+		long offset = index.getLong(entry);
+		int compressedLength = index.getInt(entry + 8);
+		int length = index.getInt(entry + 12);
+		if (offset < 0 || compressedLength < 0 || offset > data.length() - compressedLength) {
+			throw new ZipException("Block " + block + " at " + offset + " of length " + compressedLength + " is outside the data file");
+		} else if (length < 0 || length > (long) compressedLength * MAX_INFLATION) {
+			throw new ZipException("Block " + block + " has an invalid length: " + length);
+		}
+
+		byte[] compressed = new byte[compressedLength];
+		data.get(offset, compressed);
+		byte[] bData = new byte[length];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			int inflated = 0;
+			// Inflate until the end of the stream, so its checksum is checked, into a spare byte once the block is full.
+			byte[] spare = new byte[1];
+			while (!inflater.finished()) {
+				int read = inflated < length ? inflater.inflate(bData, inflated, length - inflated) : inflater.inflate(spare);
+				if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				} else if (inflated + read > length) {
+					throw new ZipException("Block " + block + " is longer than " + length + " bytes");
+				}
+				inflated += read;
+			}
+			if (inflated != length) {
+				throw new ZipException("Block " + block + " is truncated");
+			}
+		} catch (DataFormatException e) {
+			throw new ZipException("Block " + block + " is corrupt: " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+		return ByteBuffer.wrap(bData);
+	}
+
+	/**
+	 * A file memory mapped in segments, so it may be longer than a single buffer can map. Values are read by absolute
+	 * index, so the file can be read by several threads at once.
+	 */
+	private static final class MappedFile {
+
+		private static final int SEGMENT_SHIFT = 30;
+		private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+		private final MappedByteBuffer[] segments;
+		private final long length;
+
+		private MappedFile(final MappedByteBuffer[] segments, final long length) {
+			this.segments = segments;
+			this.length = length;
+		}
+
+		private static MappedFile map(final Path path) throws IOException {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				long length = channel.size();
+				MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+				for (int i = 0; i < segments.length; i++) {
+					long position = (long) i << SEGMENT_SHIFT;
+					segments[i] = channel.map(MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, length - position));
+				}
+				return new MappedFile(segments, length);
+			}
+		}
+
+		private long length() {
+			return length;
+		}
+
+		private byte get(final long position) {
+			return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & (SEGMENT_SIZE - 1)));
+		}
+
+		private int getInt(final long position) {
+			int offset = (int) (position & (SEGMENT_SIZE - 1));
+			if (offset <= SEGMENT_SIZE - 4) {
+				return segments[(int) (position >>> SEGMENT_SHIFT)].getInt(offset);
+			}
+			int value = 0;
+			for (int i = 0; i < 4; i++) {
+				value = value << 8 | (get(position + i) & 0xFF);
+			}
+			return value;
+		}
+
+		private long getLong(final long position) {
+			return (long) getInt(position) << 32 | (getInt(position + 4) & 0xFFFFFFFFL);
+		}
+
+		/**
+		 * Reads the bytes at the position argument into the array argument, across segments if need be.
+		 */
+		private void get(final long position, final byte[] bytes) {
+			int copied = 0;
+			while (copied < bytes.length) {
+				long at = position + copied;
+				ByteBuffer segment = segments[(int) (at >>> SEGMENT_SHIFT)].duplicate();
+				// Cast to Buffer so the Java 8 signature of position is linked.
+				((Buffer) segment).position((int) (at & (SEGMENT_SIZE - 1)));
+				int length = Math.min(segment.remaining(), bytes.length - copied);
+				segment.get(bytes, copied, length);
+				copied += length;
+			}
+		}
+
+		private boolean equals(final long position, final byte[] bytes) {
+			for (int i = 0; i < bytes.length; i++) {
+				if (get(position + i) != bytes[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+}
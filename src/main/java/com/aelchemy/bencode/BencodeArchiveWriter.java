@@ -0,0 +1,336 @@
+package com.aelchemy.bencode;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.data.ValueType;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * {@link BencodeArchiveWriter} writes Bencoded documents to a {@link BencodeArchive}: a data file of compressed blocks,
+ * and a sidecar index file.
+ * <p>
+ * Documents are appended to a block until it reaches the block size, and each full block is compressed with a
+ * {@link Deflater} and written to the data file. The index, which is written when the writer is closed, records where
+ * each block and document is, and the info hash of each document that has an info dictionary. Until then the writer
+ * keeps 12 bytes per document and 24 bytes per info hash in memory.
+ * <p>
+ * A writer isn't thread safe.
+ *
+ * @author Aelexe
+ *
+ */
+public class BencodeArchiveWriter implements Closeable {
+
+	private static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	private final OutputStream data;
+	private final Path index;
+	private final int blockSize;
+	private final Deflater deflater;
+	private final MessageDigest sha1;
+	private ByteBuffer block;
+	private byte[] compressed = new byte[1024];
+	private long dataLength;
+	private boolean closed;
+
+	/** The offset, compressed length and length of each block. */
+	private long[] blocks = new long[3 * 16];
+	private int blockCount;
+	/** The block, offset in the block and length of each document. */
+	private int[] documents = new int[3 * 1024];
+	private int documentCount;
+	private byte[] hashes = new byte[BencodeArchive.HASH_LENGTH * 64];
+	private int[] hashOrdinals = new int[64];
+	private int hashCount;
+
+	/**
+	 * Creates a writer of 64 KiB blocks, creating or replacing the data and index files.
+	 *
+	 * @param data The data file.
+	 * @param index The index file.
+	 * @throws IOException Thrown if a file can't be created.
+	 */
+	public BencodeArchiveWriter(final Path data, final Path index) throws IOException {
+		this(data, index, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Creates a writer, creating or replacing the data and index files. <br>
+	 * Larger blocks compress better, but a document can only be read by decompressing its whole block.
+	 *
+	 * @param data The data file.
+	 * @param index The index file.
+	 * @param blockSize The length of documents, before compression, after which a block is written.
+	 * @param level The compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}.
+	 * @throws IOException Thrown if a file can't be created.
+	 * @throws IllegalArgumentException Thrown if the block size isn't positive, or the level is invalid.
+	 */
+	public BencodeArchiveWriter(final Path data, final Path index, final int blockSize, final int level) throws IOException {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Invalid block size: " + blockSize);
+		}
+		this.deflater = new Deflater(level);
+		try {
+			this.sha1 = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-1.
+			throw new IllegalStateException(e);
+		}
+		this.index = index;
+		this.blockSize = blockSize;
+		this.block = ByteBuffer.allocate(blockSize);
+		this.data = new BufferedOutputStream(Files.newOutputStream(data));
+	}
+
+	/**
+	 * Encodes and appends the {@link BData} argument.
+	 *
+	 * @param document The document.
+	 * @return The ordinal of the document in the archive.
+	 * @throws IOException Thrown if a block can't be written.
+	 * @throws IllegalArgumentException Thrown if the document's lists and dictionaries are nested deeper than 512, so
+	 *             it couldn't be read back, or a string or key has a character greater than 0xFF, which can't be
+	 *             encoded in one byte.
+	 */
+	public int write(final BData document) throws IOException {
+		int length = Encode.length(document);
+		int offset = startDocument(length);
+		Encode.put(block, document);
+
+		// Encoded data is valid unless it is nested too deeply, in which case it is removed from the block again.
+		ByteBuffer encoded = block.duplicate();
+		// Cast to Buffer so the Java 8 signatures of limit and position are linked.
+		((Buffer) encoded).limit(block.position()).position(offset);
+		if (Validate.validate(encoded.slice(), false) != length) {
+			((Buffer) block).position(offset);
+			throw new IllegalArgumentException("Document is nested deeper than " + Validate.MAX_DEPTH);
+		}
+		try {
+			return endDocument(offset);
+		} catch (InvalidFormatException e) {
+			// The document was validated, so it can always be indexed.
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Appends the Bencoded document argument, which must be a single value.
+	 *
+	 * @param document The Bencoded document.
+	 * @return The ordinal of the document in the archive.
+	 * @throws InvalidFormatException Thrown if the document is an invalid format.
+	 * @throws IOException Thrown if a block can't be written.
+	 */
+	public int write(final byte[] document) throws InvalidFormatException, IOException {
+		int end = Validate.validate(ByteBuffer.wrap(document), false);
+		if (end != document.length) {
+			int error = end < 0 ? ~end : end;
+			throw new InvalidFormatException(Reason.MALFORMED, "Document is not a single valid value at offset " + error, error);
+		}
+		int offset = startDocument(document.length);
+		block.put(document);
+		return endDocument(offset);
+	}
+
+	/**
+	 * Returns the number of documents written.
+	 *
+	 * @return The number of documents.
+	 */
+	public int size() {
+		return documentCount;
+	}
+
+	/**
+	 * Writes the last block and the index, and closes the data file.
+	 *
+	 * @throws IOException Thrown if the block or the index can't be written.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			writeBlock();
+		} finally {
+			deflater.end();
+			data.close();
+		}
+		writeIndex();
+	}
+
+	/**
+	 * Makes room in the block for a document of the length argument, writing the block first if the document would
+	 * take it past the block size.
+	 *
+	 * @return The offset of the document in the block.
+	 */
+	private int startDocument(final int length) throws IOException {
+		if (closed) {
+			throw new IllegalStateException("Writer is closed");
+		} else if (block.position() > 0 && length > blockSize - block.position()) {
+			writeBlock();
+		}
+		if (length > block.remaining()) {
+			ByteBuffer grown = ByteBuffer.allocate(block.position() + length);
+			((Buffer) block).flip();
+			block = grown.put(block);
+		}
+		return block.position();
+	}
+
+	/**
+	 * Records the valid document written to the block from the offset argument, and writes the block if it is full.
+	 * Nothing is recorded if it throws.
+	 *
+	 * @return The ordinal of the document.
+	 */
+	private int endDocument(final int offset) throws InvalidFormatException, IOException {
+		int ordinal = documentCount;
+		if (ordinal == Integer.MAX_VALUE) {
+			((Buffer) block).position(offset);
+			throw new IllegalStateException("Archive contains " + Integer.MAX_VALUE + " documents");
+		}
+
+		// Hash the document first, as it is the only step that can fail.
+		ByteBuffer document = block.duplicate();
+		// Cast to Buffer so the Java 8 signatures of limit and position are linked.
+		((Buffer) document).limit(block.position()).position(offset);
+		try {
+			hash(document.slice(), ordinal);
+		} catch (InvalidFormatException e) {
+			((Buffer) block).position(offset);
+			throw e;
+		}
+
+		if (documents.length < 3 * (ordinal + 1)) {
+			documents = Arrays.copyOf(documents, documents.length * 2);
+		}
+		documents[3 * ordinal] = blockCount;
+		documents[3 * ordinal + 1] = offset;
+		documents[3 * ordinal + 2] = block.position() - offset;
+		documentCount++;
+
+		if (block.position() >= blockSize) {
+			writeBlock();
+		}
+		return ordinal;
+	}
+
+	/**
+	 * Records the info hash of the document argument, if it is a dictionary with an info dictionary.
+	 */
+	private void hash(final ByteBuffer document, final int ordinal) throws InvalidFormatException {
+		if (document.get(0) != 'd') {
+			return;
+		}
+		StructuralIndex structure = StructuralIndex.of(document);
+		int info = structure.get(0, "info");
+		if (info < 0 || structure.getType(info) != ValueType.DICTIONARY) {
+			return;
+		}
+
+		if (hashOrdinals.length == hashCount) {
+			hashOrdinals = Arrays.copyOf(hashOrdinals, hashCount * 2);
+			hashes = Arrays.copyOf(hashes, hashes.length * 2);
+		}
+		// Cast to Buffer so the Java 8 signatures of limit and position are linked.
+		((Buffer) document).limit(structure.getEnd(info)).position(structure.getStart(info));
+		sha1.update(document);
+		try {
+			sha1.digest(hashes, hashCount * BencodeArchive.HASH_LENGTH, BencodeArchive.HASH_LENGTH);
+		} catch (DigestException e) {
+			// The buffer always has room for the digest.
+			throw new AssertionError(e);
+		}
+		hashOrdinals[hashCount++] = ordinal;
+	}
+
+	/**
+	 * Compresses the block and writes it to the data file.
+	 */
+	private void writeBlock() throws IOException {
+		int length = block.position();
+		if (length == 0) {
+			return;
+		}
+
+		deflater.reset();
+		deflater.setInput(block.array(), 0, length);
+		deflater.finish();
+		int compressedLength = 0;
+		while (!deflater.finished()) {
+			if (compressedLength == compressed.length) {
+				compressed = Arrays.copyOf(compressed, compressed.length * 2);
+			}
+			compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+		}
+		data.write(compressed, 0, compressedLength);
+
+		if (blocks.length < 3 * (blockCount + 1)) {
+			blocks = Arrays.copyOf(blocks, blocks.length * 2);
+		}
+		blocks[3 * blockCount] = dataLength;
+		blocks[3 * blockCount + 1] = compressedLength;
+		blocks[3 * blockCount + 2] = length;
+		blockCount++;
+		dataLength += compressedLength;
+
+		((Buffer) block).clear();
+		if (block.capacity() > blockSize) {
+			block = ByteBuffer.allocate(blockSize);
+		}
+	}
+
+	/**
+	 * Writes the index, with the info hashes sorted by their first four bytes so they can be binary searched.
+	 */
+	private void writeIndex() throws IOException {
+		// Sort the hashes by their first four bytes, as a signed int, carrying their position in the low bits.
+		long[] order = new long[hashCount];
+		ByteBuffer hashBuffer = ByteBuffer.wrap(hashes);
+		for (int i = 0; i < hashCount; i++) {
+			order[i] = (long) hashBuffer.getInt(i * BencodeArchive.HASH_LENGTH) << 32 | i;
+		}
+		Arrays.sort(order);
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(index)))) {
+			out.writeInt(BencodeArchive.MAGIC);
+			out.writeInt(BencodeArchive.VERSION);
+			out.writeInt(blockCount);
+			out.writeInt(documentCount);
+			out.writeInt(hashCount);
+			for (int i = 0; i < blockCount; i++) {
+				out.writeLong(blocks[3 * i]);
+				out.writeInt((int) blocks[3 * i + 1]);
+				out.writeInt((int) blocks[3 * i + 2]);
+			}
+			for (int i = 0; i < 3 * documentCount; i++) {
+				out.writeInt(documents[i]);
+			}
+			for (long entry : order) {
+				int i = (int) entry;
+				out.write(hashes, i * BencodeArchive.HASH_LENGTH, BencodeArchive.HASH_LENGTH);
+				out.writeInt(hashOrdinals[i]);
+			}
+		}
+	}
+
+}
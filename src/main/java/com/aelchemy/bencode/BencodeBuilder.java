@@ -0,0 +1,369 @@
+package com.aelchemy.bencode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.aelchemy.bencode.data.BData;
+
+/**
+ * {@link BencodeBuilder} builds Bencoded data by writing each value straight into a buffer as it is added, without
+ * building {@link BData} first.
+ * <p>
+ * Lists and dictionaries are started, filled and {@link #end() ended} in order, and every dictionary value follows its
+ * {@link #key key}:
+ *
+ * <pre>
+ * byte[] response = new BencodeBuilder()
+ * 		.startDictionary()
+ * 		.key("interval").value(1800)
+ * 		.key("peers").startList().value(peer).end()
+ * 		.end()
+ * 		.toByteArray();
+ * </pre>
+ *
+ * Keys are written as they are added, so they must be added in sorted order, as the Bencode specification requires:
+ * each key must be greater than the one before it, comparing one byte per character as unsigned bytes. The previous
+ * key is compared where it was written in the buffer, so building allocates nothing once the buffer is large enough,
+ * and a builder can be {@link #reset() reset} and reused for the next document.
+ * <p>
+ * A builder isn't thread safe.
+ *
+ * @author Aelexe
+ *
+ */
+public class BencodeBuilder {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final int INITIAL_DEPTH = 16;
+
+	private ByteBuffer buffer;
+	/** The type of each list or dictionary being built, l or d, from the outermost. */
+	private byte[] types = new byte[INITIAL_DEPTH];
+	/** The index in the buffer of the last key of each dictionary being built, or -1 if it has no keys yet. */
+	private int[] keyStarts = new int[INITIAL_DEPTH];
+	private int[] keyEnds = new int[INITIAL_DEPTH];
+	private int depth;
+	/** Whether the dictionary being built has a key without a value. */
+	private boolean keyed;
+	private boolean complete;
+
+	/**
+	 * Creates a builder with a 1 KiB buffer, which grows as needed.
+	 */
+	public BencodeBuilder() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a builder.
+	 *
+	 * @param capacity The initial size of the buffer, which grows as needed.
+	 * @throws IllegalArgumentException Thrown if the capacity is negative.
+	 */
+	public BencodeBuilder(final int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		this.buffer = ByteBuffer.allocate(capacity);
+	}
+
+	/**
+	 * Starts a list, to which values are added until it is {@link #end() ended}.
+	 *
+	 * @return This builder.
+	 * @throws IllegalStateException Thrown if a value can't be added here.
+	 */
+	public BencodeBuilder startList() {
+		return start('l');
+	}
+
+	/**
+	 * Starts a dictionary, to which keys and their values are added until it is {@link #end() ended}.
+	 *
+	 * @return This builder.
+	 * @throws IllegalStateException Thrown if a value can't be added here.
+	 */
+	public BencodeBuilder startDictionary() {
+		return start('d');
+	}
+
+	/**
+	 * Ends the list or dictionary being built.
+	 *
+	 * @return This builder.
+	 * @throws IllegalStateException Thrown if no list or dictionary is being built, or the last key has no value.
+	 */
+	public BencodeBuilder end() {
+		if (depth == 0) {
+			throw new IllegalStateException("Builder is not in a list or dictionary");
+		} else if (keyed) {
+			throw new IllegalStateException("Dictionary key has no value");
+		}
+		ensure(1).put((byte) 'e');
+		depth--;
+		complete = depth == 0;
+		return this;
+	}
+
+	/**
+	 * Adds a key to the dictionary being built, one byte per character. Its value must be added next.
+	 *
+	 * @param key The key.
+	 * @return This builder.
+	 * @throws IllegalArgumentException Thrown if the key isn't greater than the dictionary's previous key, or has a
+	 *             character greater than 0xFF, which can't be encoded in one byte.
+	 * @throws IllegalStateException Thrown if no dictionary is being built, or the last key has no value.
+	 */
+	public BencodeBuilder key(final String key) {
+		int start = beforeKey();
+		Encode.putString(ensure(Encode.digitLength(key.length()) + 1 + key.length()), key);
+		return afterKey(start, key.length());
+	}
+
+	/**
+	 * Adds a key to the dictionary being built. Its value must be added next.
+	 *
+	 * @param key The key.
+	 * @return This builder.
+	 * @throws IllegalArgumentException Thrown if the key isn't greater than the dictionary's previous key.
+	 * @throws IllegalStateException Thrown if no dictionary is being built, or the last key has no value.
+	 */
+	public BencodeBuilder key(final byte[] key) {
+		int start = beforeKey();
+		putBytes(key);
+		return afterKey(start, key.length);
+	}
+
+	/**
+	 * Adds a string, one byte per character.
+	 *
+	 * @param string The string.
+	 * @return This builder.
+	 * @throws IllegalArgumentException Thrown if the string has a character greater than 0xFF, which can't be encoded in
+	 *             one byte.
+	 * @throws IllegalStateException Thrown if a value can't be added here.
+	 */
+	public BencodeBuilder value(final String string) {
+		beforeValue();
+		Encode.putString(ensure(Encode.digitLength(string.length()) + 1 + string.length()), string);
+		return afterValue();
+	}
+
+	/**
+	 * Adds a string of raw bytes.
+	 *
+	 * @param string The string's bytes.
+	 * @return This builder.
+	 * @throws IllegalStateException Thrown if a value can't be added here.
+	 */
+	public BencodeBuilder value(final byte[] string) {
+		beforeValue();
+		putBytes(string);
+		return afterValue();
+	}
+
+	/**
+	 * Adds a number.
+	 *
+	 * @param number The number.
+	 * @return This builder.
+	 * @throws IllegalStateException Thrown if a value can't be added here.
+	 */
+	public BencodeBuilder value(final long number) {
+		beforeValue();
+		Encode.putNumber(ensure(Encode.digitLength(number) + 2), number);
+		return afterValue();
+	}
+
+	/**
+	 * Adds a number of any size.
+	 *
+	 * @param number The number.
+	 * @return This builder.
+	 * @throws IllegalStateException Thrown if a value can't be added here.
+	 */
+	public BencodeBuilder value(final BigInteger number) {
+		beforeValue();
+		// A number has fewer decimal digits than a third of its bits, plus one.
+		Encode.putBigNumber(ensure(number.bitLength() / 3 + 4), number);
+		return afterValue();
+	}
+
+	/**
+	 * Adds the {@link BData} argument, encoded as it is: the keys of its dictionaries are only sorted if they were put
+	 * in sorted order.
+	 *
+	 * @param data The {@link BData} to add.
+	 * @return This builder.
+	 * @throws IllegalArgumentException Thrown if a string or key has a character greater than 0xFF, which can't be
+	 *             encoded in one byte.
+	 * @throws IllegalStateException Thrown if a value can't be added here.
+	 */
+	public BencodeBuilder value(final BData data) {
+		beforeValue();
+		Encode.put(ensure(Encode.length(data)), data);
+		return afterValue();
+	}
+
+	/**
+	 * Returns whether the builder contains a complete value, with every list and dictionary ended.
+	 *
+	 * @return True if the value is complete.
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Returns the length of the data built so far.
+	 *
+	 * @return The length.
+	 */
+	public int getLength() {
+		return buffer.position();
+	}
+
+	/**
+	 * Returns the built data.
+	 *
+	 * @return The Bencoded data.
+	 * @throws IllegalStateException Thrown if the value isn't complete.
+	 */
+	public byte[] toByteArray() {
+		checkComplete();
+		return Arrays.copyOf(buffer.array(), buffer.position());
+	}
+
+	/**
+	 * Puts the built data into the buffer argument at its position, advancing its position past it.
+	 *
+	 * @param buffer The buffer to put the data into.
+	 * @return The buffer argument.
+	 * @throws BufferOverflowException Thrown if the buffer doesn't have room for the data.
+	 * @throws IllegalStateException Thrown if the value isn't complete.
+	 */
+	public ByteBuffer writeTo(final ByteBuffer buffer) {
+		checkComplete();
+		return buffer.put(this.buffer.array(), 0, this.buffer.position());
+	}
+
+	/**
+	 * Writes the built data to the stream argument.
+	 *
+	 * @param out The stream to write the data to.
+	 * @throws IOException Thrown if the stream throws.
+	 * @throws IllegalStateException Thrown if the value isn't complete.
+	 */
+	public void writeTo(final OutputStream out) throws IOException {
+		checkComplete();
+		out.write(buffer.array(), 0, buffer.position());
+	}
+
+	/**
+	 * Discards the data built so far, keeping the buffer to build the next value into.
+	 *
+	 * @return This builder.
+	 */
+	public BencodeBuilder reset() {
+		((Buffer) buffer).clear();
+		depth = 0;
+		keyed = false;
+		complete = false;
+		return this;
+	}
+
+	private BencodeBuilder start(final char type) {
+		beforeValue();
+		if (depth >= Validate.MAX_DEPTH) {
+			throw new IllegalStateException("Lists and dictionaries are nested deeper than " + Validate.MAX_DEPTH);
+		}
+		ensure(1).put((byte) type);
+		if (depth == types.length) {
+			types = Arrays.copyOf(types, depth * 2);
+			keyStarts = Arrays.copyOf(keyStarts, depth * 2);
+			keyEnds = Arrays.copyOf(keyEnds, depth * 2);
+		}
+		types[depth] = (byte) type;
+		keyStarts[depth] = -1;
+		depth++;
+		keyed = false;
+		return this;
+	}
+
+	private int beforeKey() {
+		if (depth == 0 || types[depth - 1] != 'd') {
+			throw new IllegalStateException("Builder is not in a dictionary");
+		} else if (keyed) {
+			throw new IllegalStateException("Dictionary key has no value");
+		}
+		return buffer.position();
+	}
+
+	/**
+	 * Checks the key just written from the index argument is greater than the dictionary's previous key, removing it
+	 * if it isn't.
+	 */
+	private BencodeBuilder afterKey(final int start, final int length) {
+		int dictionary = depth - 1;
+		int keyEnd = buffer.position();
+		int keyStart = keyEnd - length;
+
+		int previous = keyStarts[dictionary];
+		if (previous >= 0 && Bytes.compare(buffer, previous, keyEnds[dictionary] - previous, buffer, keyStart, keyEnd - keyStart) >= 0) {
+			String key = Bytes.string(buffer, keyStart, keyEnd - keyStart);
+			// Cast to Buffer so the Java 8 signature of position is linked.
+			((Buffer) buffer).position(start);
+			throw new IllegalArgumentException("Key \"" + key + "\" isn't greater than the previous key");
+		}
+		keyStarts[dictionary] = keyStart;
+		keyEnds[dictionary] = keyEnd;
+		keyed = true;
+		return this;
+	}
+
+	private void beforeValue() {
+		if (complete) {
+			throw new IllegalStateException("Builder already contains a complete value");
+		} else if (depth > 0 && types[depth - 1] == 'd' && !keyed) {
+			throw new IllegalStateException("Dictionary value has no key");
+		}
+	}
+
+	private BencodeBuilder afterValue() {
+		keyed = false;
+		complete = depth == 0;
+		return this;
+	}
+
+	private void checkComplete() {
+		if (!complete) {
+			throw new IllegalStateException("Builder doesn't contain a complete value");
+		}
+	}
+
+	private void putBytes(final byte[] bytes) {
+		Encode.putDigits(ensure(Encode.digitLength(bytes.length) + 1 + bytes.length), bytes.length).put((byte) ':').put(bytes);
+	}
+
+	/**
+	 * Returns the buffer, grown if it doesn't have room for the length argument.
+	 */
+	private ByteBuffer ensure(final int length) {
+		if (buffer.remaining() < length) {
+			long capacity = Math.max((long) buffer.position() + length, buffer.capacity() * 2L);
+			if (capacity > Integer.MAX_VALUE) {
+				throw new IllegalStateException("Built data is longer than " + Integer.MAX_VALUE + " bytes");
+			}
+			ByteBuffer grown = ByteBuffer.allocate((int) capacity);
+			((Buffer) buffer).flip();
+			buffer = grown.put(buffer);
+		}
+		return buffer;
+	}
+
+}
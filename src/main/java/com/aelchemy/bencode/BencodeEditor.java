@@ -0,0 +1,368 @@
+package com.aelchemy.bencode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.data.BNumber;
+import com.aelchemy.bencode.data.BString;
+import com.aelchemy.bencode.data.ValueType;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+
+/**
+ * {@link BencodeEditor} edits the values of dictionary keys in Bencoded data without decoding and re-encoding the
+ * rest of it.
+ * <p>
+ * The data is {@link StructuralIndex indexed} once, and each edit records the span of the data it replaces. Writing
+ * the edited data copies the unchanged spans verbatim and encodes only the new values, so values that aren't edited,
+ * such as the info dictionary of a torrent, are byte for byte identical and keep their hash.
+ * <p>
+ * Keys are found by a path of keys from the top level dictionary, and compared one character per byte. New keys are
+ * inserted in sorted order, so data with sorted keys stays sorted. The data must not be modified while it is edited.
+ *
+ * @author Aelexe
+ *
+ */
+public class BencodeEditor {
+
+	private final StructuralIndex index;
+	private final ByteBuffer bData;
+	private final Map<Target, byte[]> edits = new LinkedHashMap<Target, byte[]>();
+
+	/**
+	 * Creates an editor for the Bencoded data argument.
+	 *
+	 * @param bData The Bencoded data.
+	 * @throws InvalidFormatException Thrown if the Bencoded data argument is an invalid format.
+	 */
+	public BencodeEditor(final byte[] bData) throws InvalidFormatException {
+		this(ByteBuffer.wrap(bData));
+	}
+
+	/**
+	 * Creates an editor for the Bencoded value at the position of the buffer argument. Any data after the value isn't
+	 * part of the edited data.
+	 *
+	 * @param bData The buffer containing the Bencoded data.
+	 * @throws InvalidFormatException Thrown if the Bencoded value is an invalid format.
+	 */
+	public BencodeEditor(final ByteBuffer bData) throws InvalidFormatException {
+		this.index = StructuralIndex.of(bData);
+		this.bData = bData;
+	}
+
+	/**
+	 * Sets the value of the key at the end of the path argument, replacing its value or inserting the key.
+	 *
+	 * @param value The value.
+	 * @param path The keys leading to the key to set, the last being the key to set.
+	 * @return This editor.
+	 * @throws IllegalArgumentException Thrown if the path is empty or doesn't lead to a dictionary in the data, or the
+	 *             key to insert or a string or key of the value has a character greater than 0xFF, which can't be
+	 *             encoded in one byte.
+	 */
+	public BencodeEditor put(final BData value, final String... path) {
+		Target target = target(path);
+		if (target.value < 0) {
+			Encode.checkString(target.key);
+		}
+		byte[] encoded = new byte[Encode.length(value)];
+		Encode.put(ByteBuffer.wrap(encoded), value);
+		edits.put(target, encoded);
+		return this;
+	}
+
+	/**
+	 * Sets the value of the key at the end of the path argument to the string argument.
+	 *
+	 * @param value The string.
+	 * @param path The keys leading to the key to set, the last being the key to set.
+	 * @return This editor.
+	 * @throws IllegalArgumentException Thrown if the path is empty or doesn't lead to a dictionary in the data, or the
+	 *             key to insert or the string has a character greater than 0xFF, which can't be encoded in one byte.
+	 * @see #put(BData, String...)
+	 */
+	public BencodeEditor put(final String value, final String... path) {
+		return put(new BData(new BString(value)), path);
+	}
+
+	/**
+	 * Sets the value of the key at the end of the path argument to the number argument.
+	 *
+	 * @param value The number.
+	 * @param path The keys leading to the key to set, the last being the key to set.
+	 * @return This editor.
+	 * @throws IllegalArgumentException Thrown if the path is empty or doesn't lead to a dictionary in the data, or the
+	 *             key to insert has a character greater than 0xFF, which can't be encoded in one byte.
+	 * @see #put(BData, String...)
+	 */
+	public BencodeEditor put(final long value, final String... path) {
+		return put(new BData(new BNumber(value)), path);
+	}
+
+	/**
+	 * Removes the key at the end of the path argument and its value, if the dictionary contains it.
+	 *
+	 * @param path The keys leading to the key to remove, the last being the key to remove.
+	 * @return This editor.
+	 * @throws IllegalArgumentException Thrown if the path is empty or doesn't lead to a dictionary in the data.
+	 */
+	public BencodeEditor remove(final String... path) {
+		Target target = target(path);
+		if (target.value < 0) {
+			// The key isn't in the data, so removing it only undoes any edit inserting it.
+			edits.remove(target);
+		} else {
+			edits.put(target, null);
+		}
+		return this;
+	}
+
+	/**
+	 * Returns the length of the edited data.
+	 *
+	 * @return The length.
+	 * @throws IllegalStateException Thrown if an edit is inside a value replaced or removed by another edit.
+	 */
+	public int getLength() {
+		return length(splices());
+	}
+
+	/**
+	 * Returns the edited data.
+	 *
+	 * @return The edited Bencoded data.
+	 * @throws IllegalStateException Thrown if an edit is inside a value replaced or removed by another edit.
+	 */
+	public byte[] toByteArray() {
+		byte[] edited = new byte[getLength()];
+		writeTo(ByteBuffer.wrap(edited));
+		return edited;
+	}
+
+	/**
+	 * Puts the edited data into the buffer argument at its position, advancing its position past it. <br>
+	 * If an exception is thrown nothing is put into the buffer, and its position is unchanged.
+	 *
+	 * @param buffer The buffer to put the edited data into.
+	 * @return The buffer argument.
+	 * @throws BufferOverflowException Thrown if the buffer doesn't have room for the edited data.
+	 * @throws IllegalStateException Thrown if an edit is inside a value replaced or removed by another edit.
+	 */
+	public ByteBuffer writeTo(final ByteBuffer buffer) {
+		List<Splice> splices = splices();
+		if (buffer.remaining() < length(splices)) {
+			throw new BufferOverflowException();
+		}
+		int copied = 0;
+		for (Splice splice : splices) {
+			buffer.put(span(copied, splice.start)).put(splice.replacement);
+			copied = splice.end;
+		}
+		return buffer.put(span(copied, index.getEnd(0)));
+	}
+
+	/**
+	 * Writes the edited data to the stream argument.
+	 *
+	 * @param out The stream to write the edited data to.
+	 * @throws IOException Thrown if the stream throws.
+	 * @throws IllegalStateException Thrown if an edit is inside a value replaced or removed by another edit.
+	 */
+	public void writeTo(final OutputStream out) throws IOException {
+		List<Splice> splices = splices();
+		int copied = 0;
+		for (Splice splice : splices) {
+			write(out, span(copied, splice.start));
+			out.write(splice.replacement);
+			copied = splice.end;
+		}
+		write(out, span(copied, index.getEnd(0)));
+	}
+
+	/**
+	 * Returns the length of the data edited by the splices argument.
+	 */
+	private int length(final List<Splice> splices) {
+		int length = index.getEnd(0);
+		for (Splice splice : splices) {
+			length += splice.replacement.length - (splice.end - splice.start);
+		}
+		return length;
+	}
+
+	/**
+	 * Returns the edits as splices of the data, in order.
+	 */
+	private List<Splice> splices() {
+		List<Splice> splices = new ArrayList<Splice>(edits.size());
+		for (Map.Entry<Target, byte[]> edit : edits.entrySet()) {
+			Target target = edit.getKey();
+			if (target.value >= 0) {
+				// Replace the value, or remove the key and value.
+				if (edit.getValue() == null) {
+					splices.add(new Splice(index.getStart(target.value - 1), index.getEnd(target.value), null, new byte[0]));
+				} else {
+					splices.add(new Splice(index.getStart(target.value), index.getEnd(target.value), null, edit.getValue()));
+				}
+			} else {
+				// Insert the key and value, encoding the key one byte per character.
+				byte[] key = new byte[Encode.length(new BData(new BString(target.key)))];
+				Encode.put(ByteBuffer.wrap(key), new BData(new BString(target.key)));
+				byte[] replacement = Arrays.copyOf(key, key.length + edit.getValue().length);
+				System.arraycopy(edit.getValue(), 0, replacement, key.length, edit.getValue().length);
+				int start = insertionPoint(target);
+				splices.add(new Splice(start, start, target.key, replacement));
+			}
+		}
+
+		// Order insertions before any removal starting at the same offset, and insertions at the same offset by key.
+		splices.sort((a, b) -> {
+			if (a.start != b.start) {
+				return Integer.compare(a.start, b.start);
+			} else if (a.key == null || b.key == null) {
+				return a.key == null ? (b.key == null ? 0 : 1) : -1;
+			}
+			return a.key.compareTo(b.key);
+		});
+		for (int i = 1; i < splices.size(); i++) {
+			if (splices.get(i).start < splices.get(i - 1).end) {
+				throw new IllegalStateException("Edit is inside a value replaced or removed by another edit");
+			}
+		}
+		return splices;
+	}
+
+	/**
+	 * Returns the offset to insert the key of the target argument at: before the first key greater than it, or before
+	 * the end of the dictionary.
+	 */
+	private int insertionPoint(final Target target) {
+		int dictionary = target.dictionary;
+		for (int key = dictionary + 1; key < index.getNext(dictionary); key = index.getNext(key + 1)) {
+			if (compare(key, target.key) > 0) {
+				return index.getStart(key);
+			}
+		}
+		return index.getEnd(dictionary) - 1;
+	}
+
+	/**
+	 * Compares the key at the index argument with the key argument, one character per byte.
+	 */
+	private int compare(final int key, final String other) {
+		int start = bData.position() + index.getStringStart(key);
+		int length = index.getStringLength(key);
+		for (int i = 0; i < Math.min(length, other.length()); i++) {
+			int difference = (bData.get(start + i) & 0xFF) - other.charAt(i);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return length - other.length();
+	}
+
+	/**
+	 * Finds the dictionary containing the key at the end of the path argument.
+	 */
+	private Target target(final String... path) {
+		if (path.length == 0) {
+			throw new IllegalArgumentException("Path is empty");
+		}
+		int dictionary = 0;
+		for (int i = 0; i < path.length; i++) {
+			if (index.getType(dictionary) != ValueType.DICTIONARY) {
+				throw new IllegalArgumentException("Path doesn't lead to a dictionary: " + String.join("/", path));
+			}
+			int value = index.get(dictionary, path[i]);
+			if (i == path.length - 1) {
+				return new Target(dictionary, path[i], value);
+			} else if (value < 0) {
+				throw new IllegalArgumentException("Path doesn't lead to a dictionary: " + String.join("/", path));
+			}
+			dictionary = value;
+		}
+		throw new AssertionError();
+	}
+
+	/**
+	 * Returns the span of the data between the offsets argument, without copying it.
+	 */
+	private ByteBuffer span(final int start, final int end) {
+		ByteBuffer span = bData.duplicate();
+		((Buffer) span).limit(bData.position() + end).position(bData.position() + start);
+		return span;
+	}
+
+	private static void write(final OutputStream out, final ByteBuffer span) throws IOException {
+		if (span.hasArray()) {
+			out.write(span.array(), span.arrayOffset() + span.position(), span.remaining());
+			return;
+		}
+		byte[] chunk = new byte[Math.min(span.remaining(), 8192)];
+		while (span.hasRemaining()) {
+			int length = Math.min(chunk.length, span.remaining());
+			span.get(chunk, 0, length);
+			out.write(chunk, 0, length);
+		}
+	}
+
+	/**
+	 * A key of a dictionary in the data, and the index of its value if the dictionary contains it.
+	 */
+	private static final class Target {
+
+		private final int dictionary;
+		private final String key;
+		private final int value;
+
+		private Target(final int dictionary, final String key, final int value) {
+			this.dictionary = dictionary;
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public int hashCode() {
+			return dictionary * 31 + key.hashCode();
+		}
+
+		@Override
+		public boolean equals(final Object object) {
+			if (!(object instanceof Target)) {
+				return false;
+			}
+			Target target = (Target) object;
+			return dictionary == target.dictionary && key.equals(target.key);
+		}
+
+	}
+
+	/**
+	 * A span of the data replaced by encoded bytes, and the key inserted if it is an insertion.
+	 */
+	private static final class Splice {
+
+		private final int start;
+		private final int end;
+		private final String key;
+		private final byte[] replacement;
+
+		private Splice(final int start, final int end, final String key, final byte[] replacement) {
+			this.start = start;
+			this.end = end;
+			this.key = key;
+			this.replacement = replacement;
+		}
+
+	}
+
+}
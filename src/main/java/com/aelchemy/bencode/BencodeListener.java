@@ -0,0 +1,107 @@
+package com.aelchemy.bencode;
+
+import java.math.BigInteger;
+
+import com.aelchemy.bencode.data.BDictionary;
+import com.aelchemy.bencode.data.BList;
+import com.aelchemy.bencode.data.ValueType;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+
+/**
+ * {@link BencodeListener} is notified of every decode and encode made through {@link Bencode}, once registered with
+ * {@link Bencode#setListener}. It can be used to bridge Bencode metrics into a metrics library or event recorder;
+ * {@link BencodeMetrics} is a ready made implementation.
+ * <p>
+ * Listeners are called on the decoding or encoding thread, so must be thread-safe and should return quickly.
+ * 
+ * @author Aelexe
+ *
+ */
+public interface BencodeListener {
+
+	/**
+	 * Called before Bencoded data is decoded or a value is encoded. The same thread then calls {@link #onDecode},
+	 * {@link #onDecodeFailure} or {@link #onEncode} once the operation ends, unless it throws anything other than
+	 * {@link InvalidFormatException}, such as for a value that can't be encoded.
+	 * 
+	 * @param type The type of value being decoded or encoded.
+	 */
+	default void onStart(ValueType type) {
+	}
+
+	/**
+	 * Called after Bencoded data is decoded.
+	 * 
+	 * @param type The type of the decoded value.
+	 * @param length The length of the Bencoded data.
+	 * @param durationNanos The time taken to decode the data, in nanoseconds.
+	 * @param value The decoded value: a {@link String}, a {@link Long} or {@link BigInteger} number, a {@link BList} or
+	 *            a {@link BDictionary}. Numbers decoded by {@link Bencode#decodeBigNumber}, or too large for a long, are
+	 *            {@link BigInteger}s.
+	 */
+	default void onDecode(ValueType type, int length, long durationNanos, Object value) {
+	}
+
+	/**
+	 * Called after Bencoded data fails to decode.
+	 * 
+	 * @param type The type of value the data was decoded as.
+	 * @param length The length of the Bencoded data, or 0 if it was null.
+	 * @param durationNanos The time taken until the decode failed, in nanoseconds.
+	 * @param exception The exception the decode failed with.
+	 */
+	default void onDecodeFailure(ValueType type, int length, long durationNanos, InvalidFormatException exception) {
+	}
+
+	/**
+	 * Called after a value is encoded.
+	 * 
+	 * @param type The type of the encoded value.
+	 * @param length The length of the Bencoded data.
+	 * @param durationNanos The time taken to encode the value, in nanoseconds.
+	 */
+	default void onEncode(ValueType type, int length, long durationNanos) {
+	}
+
+	/**
+	 * Returns a listener that notifies every listener argument, in order.
+	 * 
+	 * @param listeners The listeners to notify.
+	 * @return The composed listener.
+	 */
+	static BencodeListener compose(final BencodeListener... listeners) {
+		final BencodeListener[] copy = listeners.clone();
+		return new BencodeListener() {
+
+			@Override
+			public void onStart(ValueType type) {
+				for (BencodeListener listener : copy) {
+					listener.onStart(type);
+				}
+			}
+
+			@Override
+			public void onDecode(ValueType type, int length, long durationNanos, Object value) {
+				for (BencodeListener listener : copy) {
+					listener.onDecode(type, length, durationNanos, value);
+				}
+			}
+
+			@Override
+			public void onDecodeFailure(ValueType type, int length, long durationNanos, InvalidFormatException exception) {
+				for (BencodeListener listener : copy) {
+					listener.onDecodeFailure(type, length, durationNanos, exception);
+				}
+			}
+
+			@Override
+			public void onEncode(ValueType type, int length, long durationNanos) {
+				for (BencodeListener listener : copy) {
+					listener.onEncode(type, length, durationNanos);
+				}
+			}
+
+		};
+	}
+
+}
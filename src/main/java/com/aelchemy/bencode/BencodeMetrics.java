@@ -0,0 +1,230 @@
+package com.aelchemy.bencode;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.data.BDictionary;
+import com.aelchemy.bencode.data.BList;
+import com.aelchemy.bencode.data.ValueType;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * {@link BencodeMetrics} is a {@link BencodeListener} that counts the data decoded and encoded through {@link Bencode}:
+ * the length of the data, the number of values decoded by type, the maximum depth of the decoded values, histograms of
+ * the decode and encode latencies and the number of failed decodes by reason.
+ * <p>
+ * Counting values by type and depth walks every decoded value, so is the most costly part of the metrics.
+ *
+ * @author Aelexe
+ *
+ */
+public class BencodeMetrics implements BencodeListener {
+
+	private final LongAdder decodedLength = new LongAdder();
+	private final LongAdder encodedLength = new LongAdder();
+	private final LongAdder[] valueCounts = newAdders(ValueType.values().length);
+	private final LongAdder[] failureCounts = newAdders(Reason.values().length);
+	private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+	private final Histogram decodeLatency = new Histogram();
+	private final Histogram encodeLatency = new Histogram();
+
+	@Override
+	public void onDecode(final ValueType type, final int length, final long durationNanos, final Object value) {
+		decodedLength.add(length);
+		decodeLatency.record(durationNanos);
+		maxDepth.accumulate(count(type, value, 1));
+	}
+
+	@Override
+	public void onDecodeFailure(final ValueType type, final int length, final long durationNanos, final InvalidFormatException exception) {
+		decodedLength.add(length);
+		decodeLatency.record(durationNanos);
+		failureCounts[exception.getReason().ordinal()].increment();
+	}
+
+	@Override
+	public void onEncode(final ValueType type, final int length, final long durationNanos) {
+		encodedLength.add(length);
+		encodeLatency.record(durationNanos);
+	}
+
+	/**
+	 * Returns the combined length of all decoded data, including data that failed to decode.
+	 *
+	 * @return The decoded length.
+	 */
+	public long getDecodedLength() {
+		return decodedLength.sum();
+	}
+
+	/**
+	 * Returns the combined length of all encoded data.
+	 *
+	 * @return The encoded length.
+	 */
+	public long getEncodedLength() {
+		return encodedLength.sum();
+	}
+
+	/**
+	 * Returns the number of values of the type argument decoded, including values nested in lists and dictionaries.
+	 *
+	 * @param type The type of value.
+	 * @return The number of values decoded.
+	 */
+	public long getValueCount(final ValueType type) {
+		return valueCounts[type.ordinal()].sum();
+	}
+
+	/**
+	 * Returns the number of decodes that failed for the reason argument.
+	 *
+	 * @param reason The reason the decodes failed.
+	 * @return The number of failed decodes.
+	 */
+	public long getFailureCount(final Reason reason) {
+		return failureCounts[reason.ordinal()].sum();
+	}
+
+	/**
+	 * Returns the maximum depth of any decoded value, where a value not nested in a list or dictionary has a depth of
+	 * 1.
+	 *
+	 * @return The maximum depth.
+	 */
+	public long getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	/**
+	 * Returns the histogram of decode latencies, including failed decodes.
+	 *
+	 * @return The decode latency histogram.
+	 */
+	public Histogram getDecodeLatency() {
+		return decodeLatency;
+	}
+
+	/**
+	 * Returns the histogram of encode latencies.
+	 *
+	 * @return The encode latency histogram.
+	 */
+	public Histogram getEncodeLatency() {
+		return encodeLatency;
+	}
+
+	/**
+	 * Counts the value argument and every value nested in it.
+	 *
+	 * @param type The type of the value.
+	 * @param value The value.
+	 * @param depth The depth of the value.
+	 * @return The maximum depth of the value and the values nested in it.
+	 */
+	private int count(final ValueType type, final Object value, final int depth) {
+		valueCounts[type.ordinal()].increment();
+
+		int max = depth;
+		if (type == ValueType.LIST) {
+			for (BData data : (BList) value) {
+				max = Math.max(max, count(data, depth + 1));
+			}
+		} else if (type == ValueType.DICTIONARY) {
+			BDictionary dictionary = (BDictionary) value;
+			for (String key : dictionary.keySet()) {
+				valueCounts[ValueType.STRING.ordinal()].increment();
+				max = Math.max(max, count(dictionary.get(key), depth + 1));
+			}
+		}
+		return max;
+	}
+
+	private int count(final BData data, final int depth) {
+		if (data.isList()) {
+			return count(ValueType.LIST, data.asList(), depth);
+		} else if (data.isDictionary()) {
+			return count(ValueType.DICTIONARY, data.asDictionary(), depth);
+		}
+		return count(data.isString() ? ValueType.STRING : ValueType.NUMBER, null, depth);
+	}
+
+	private static LongAdder[] newAdders(final int count) {
+		LongAdder[] adders = new LongAdder[count];
+		for (int i = 0; i < count; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	/**
+	 * {@link Histogram} counts durations in buckets of powers of two nanoseconds. <br>
+	 * Bucket 0 counts durations of 0, and bucket n counts durations from 2<sup>n-1</sup> to 2<sup>n</sup> - 1.
+	 *
+	 * @author Aelexe
+	 *
+	 */
+	public static class Histogram {
+
+		/** The number of buckets. */
+		public static final int BUCKETS = 64;
+
+		private final LongAdder[] buckets = newAdders(BUCKETS);
+
+		void record(final long durationNanos) {
+			buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, durationNanos)))].increment();
+		}
+
+		/**
+		 * Returns the number of durations counted in the bucket argument.
+		 *
+		 * @param bucket The bucket.
+		 * @return The number of durations.
+		 */
+		public long getBucketCount(final int bucket) {
+			return buckets[bucket].sum();
+		}
+
+		/**
+		 * Returns the number of durations counted.
+		 *
+		 * @return The number of durations.
+		 */
+		public long getCount() {
+			long count = 0;
+			for (LongAdder bucket : buckets) {
+				count += bucket.sum();
+			}
+			return count;
+		}
+
+		/**
+		 * Returns an upper bound of the percentile argument of the durations counted.
+		 *
+		 * @param percentile The percentile, from 0 to 100.
+		 * @return The upper bound of the percentile in nanoseconds, or 0 if no durations have been counted.
+		 */
+		public long getPercentile(final double percentile) {
+			long[] counts = new long[BUCKETS];
+			long total = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				counts[i] = buckets[i].sum();
+				total += counts[i];
+			}
+
+			long threshold = (long) Math.ceil(total * percentile / 100);
+			long count = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				count += counts[i];
+				if (count >= threshold && count > 0) {
+					return i == 0 ? 0 : (1L << i) - 1;
+				}
+			}
+			return 0;
+		}
+
+	}
+
+}
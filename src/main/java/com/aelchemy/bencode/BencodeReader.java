@@ -0,0 +1,403 @@
+package com.aelchemy.bencode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * {@link BencodeReader} reads successive Bencoded values from a channel, such as a file of back to back Bencoded
+ * messages.
+ * <p>
+ * Values are read into a single buffer that is reused for every value, growing only to fit a value longer than it.
+ * Each value is {@link Bencode#validate validated} to find where it ends, so the reader never reads past the end of a
+ * value it can't decode. The channel must block until it reads data, so a {@link SelectableChannel} must stay in
+ * blocking mode: data arriving from a non-blocking channel can be decoded with {@link ChunkDecoder} instead. An
+ * {@link InputStream} is read straight into the buffer's array, without the monitor that
+ * {@link java.nio.channels.Channels#newChannel(InputStream)} holds during each read, so a virtual thread blocked reading
+ * it doesn't pin its carrier thread.
+ * <p>
+ * A reader isn't thread safe, but its {@link #stream()} can be processed in parallel: values are split off the
+ * channel in batches of raw bytes, and each batch is decoded by the thread that processes it.
+ *
+ * @author Aelexe
+ *
+ */
+public class BencodeReader implements Closeable {
+
+	private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+	static final int DEFAULT_MAX_LENGTH = 64 * 1024 * 1024;
+
+	private final ReadableByteChannel channel;
+	private final int maxLength;
+	private ByteBuffer buffer;
+	private boolean endOfStream;
+	/** The offset in the channel of the buffer's position. */
+	private long offset;
+
+	/**
+	 * Creates a reader for the channel argument, reading values up to 64 MiB long.
+	 *
+	 * @param channel The channel to read from, which must be in blocking mode.
+	 * @throws IllegalArgumentException Thrown if the channel is a non-blocking {@link SelectableChannel}.
+	 */
+	public BencodeReader(final ReadableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * Creates a reader for the channel argument.
+	 *
+	 * @param channel The channel to read from, which must be in blocking mode.
+	 * @param bufferSize The initial size of the buffer.
+	 * @param maxLength The maximum length of a value, beyond which it is treated as invalid.
+	 * @throws IllegalArgumentException Thrown if the buffer size or maximum length isn't positive, or the channel is a
+	 *             non-blocking {@link SelectableChannel}.
+	 */
+	public BencodeReader(final ReadableByteChannel channel, final int bufferSize, final int maxLength) {
+		if (bufferSize <= 0 || maxLength <= 0) {
+			throw new IllegalArgumentException("Invalid buffer size or maximum length: " + bufferSize + ", " + maxLength);
+		} else if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+			throw new IllegalArgumentException("Channel is in non-blocking mode");
+		}
+		this.channel = channel;
+		this.maxLength = maxLength;
+		this.buffer = ByteBuffer.allocate(Math.min(bufferSize, maxLength));
+		((Buffer) buffer).flip();
+	}
+
+	/**
+	 * Creates a reader for the stream argument, reading values up to 64 MiB long.
+	 *
+	 * @param in The stream to read from.
+	 */
+	public BencodeReader(final InputStream in) {
+		this(new StreamChannel(in));
+	}
+
+	/**
+	 * Creates a reader for the stream argument.
+	 *
+	 * @param in The stream to read from.
+	 * @param bufferSize The initial size of the buffer.
+	 * @param maxLength The maximum length of a value, beyond which it is treated as invalid.
+	 * @throws IllegalArgumentException Thrown if the buffer size or maximum length isn't positive.
+	 */
+	public BencodeReader(final InputStream in, final int bufferSize, final int maxLength) {
+		this(new StreamChannel(in), bufferSize, maxLength);
+	}
+
+	/**
+	 * Returns the offset in the channel of the next value.
+	 *
+	 * @return The offset.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Reads the next value as a slice of the reader's buffer, without decoding or copying it. <br>
+	 * The slice is only valid until the reader is next used, after which its bytes may be overwritten.
+	 *
+	 * @return A read only buffer containing the Bencoded value, or null if there are no more values.
+	 * @throws InvalidFormatException Thrown if the next value is an invalid format or longer than the maximum length,
+	 *             with its offset in the channel.
+	 * @throws IOException Thrown if the channel throws.
+	 */
+	public ByteBuffer nextRecord() throws InvalidFormatException, IOException {
+		ByteBuffer record = read();
+		return record == null ? null : record.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Reads and decodes the next value.
+	 *
+	 * @return {@link BData} containing the value, or null if there are no more values.
+	 * @throws InvalidFormatException Thrown if the next value is an invalid format or longer than the maximum length,
+	 *             with its offset in the channel.
+	 * @throws IOException Thrown if the channel throws.
+	 */
+	public BData next() throws InvalidFormatException, IOException {
+		long recordOffset = offset;
+		ByteBuffer record = read();
+		return record == null ? null : decode(record, recordOffset);
+	}
+
+	/**
+	 * Reads the next value as a slice of the buffer.
+	 *
+	 * @return A buffer containing the Bencoded value, or null if there are no more values.
+	 */
+	private ByteBuffer read() throws InvalidFormatException, IOException {
+		while (true) {
+			if (!buffer.hasRemaining()) {
+				if (endOfStream || !fill()) {
+					return null;
+				}
+			}
+
+			int end = Validate.validate(buffer, false);
+			if (end >= 0) {
+				ByteBuffer record = buffer.duplicate();
+				((Buffer) record).limit(buffer.position() + end);
+				((Buffer) buffer).position(buffer.position() + end);
+				offset += end;
+				return record.slice();
+			}
+
+			// Read more data if the value may have been cut off by the end of the buffer.
+			int error = ~end;
+			if (endOfStream || !Validate.isTruncated(buffer, error) || !fill()) {
+				throw invalid(Reason.MALFORMED, "Data is invalid", offset + error);
+			}
+		}
+	}
+
+	/**
+	 * Returns a stream of the remaining values. <br>
+	 * Invalid values throw {@link IllegalStateException} and channel failures {@link UncheckedIOException} from the
+	 * stream's terminal operation. Closing the stream closes the reader.
+	 *
+	 * @return The stream of values.
+	 */
+	public Stream<BData> stream() {
+		return StreamSupport.stream(new RecordSpliterator(), false).onClose(() -> {
+			try {
+				close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * Closes the channel or stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Reads more data into the buffer, moving the unread data to its start and growing it if it is full.
+	 *
+	 * @return True if data was read, or false at the end of the stream.
+	 */
+	private boolean fill() throws InvalidFormatException, IOException {
+		if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+			if (buffer.capacity() >= maxLength) {
+				throw invalid(Reason.INVALID_LENGTH, "Value is longer than the maximum length of " + maxLength, offset);
+			}
+			ByteBuffer grown = ByteBuffer.allocate((int) Math.min(maxLength, buffer.capacity() * 2L));
+			grown.put(buffer);
+			buffer = grown;
+		} else {
+			buffer.compact();
+		}
+
+		int read;
+		try {
+			while ((read = channel.read(buffer)) == 0 && buffer.hasRemaining()) {
+				// Blocking channels only read nothing if the buffer is full.
+			}
+		} finally {
+			((Buffer) buffer).flip();
+		}
+		if (read < 0) {
+			endOfStream = true;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes the record argument, reporting errors at their offset in the stream of records.
+	 */
+	static BData decode(final ByteBuffer record, final long offset) throws InvalidFormatException {
+		try {
+			return new Cursor(record).readValue();
+		} catch (InvalidFormatException e) {
+			throw invalid(e.getReason(), e.getMessage(), offset + Math.max(0, e.getOffset()));
+		}
+	}
+
+	static InvalidFormatException invalid(final Reason reason, final String message, final long offset) {
+		return new InvalidFormatException(reason, message + " at offset " + offset, (int) Math.min(offset, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Reads a stream into the reader's buffer, which always has an array.
+	 */
+	private static final class StreamChannel implements ReadableByteChannel {
+
+		private final InputStream in;
+		private boolean open = true;
+
+		private StreamChannel(final InputStream in) {
+			this.in = in;
+		}
+
+		@Override
+		public int read(final ByteBuffer buffer) throws IOException {
+			int read = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			if (read > 0) {
+				// Cast to Buffer so the Java 8 signature of position is linked.
+				((Buffer) buffer).position(buffer.position() + read);
+			}
+			return read;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() throws IOException {
+			open = false;
+			in.close();
+		}
+
+	}
+
+	/**
+	 * Splits values off the reader in batches of raw bytes, so the batches can be decoded in parallel.
+	 */
+	private final class RecordSpliterator implements Spliterator<BData> {
+
+		private static final int BATCH_UNIT = 64;
+		private static final int MAX_BATCH = 64 * 1024;
+
+		private int batchSize = BATCH_UNIT;
+
+		@Override
+		public boolean tryAdvance(final Consumer<? super BData> action) {
+			try {
+				BData data = next();
+				if (data == null) {
+					return false;
+				}
+				action.accept(data);
+				return true;
+			} catch (InvalidFormatException e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public Spliterator<BData> trySplit() {
+			byte[] bytes = new byte[1024];
+			int[] starts = new int[batchSize + 1];
+			long[] offsets = new long[batchSize];
+			int count = 0;
+			try {
+				while (count < batchSize) {
+					long recordOffset = offset;
+					ByteBuffer record = read();
+					if (record == null) {
+						break;
+					}
+					offsets[count] = recordOffset;
+					int start = starts[count];
+					int end = start + record.remaining();
+					if (end > bytes.length) {
+						bytes = Arrays.copyOf(bytes, Math.max(end, bytes.length * 2));
+					}
+					record.get(bytes, start, record.remaining());
+					starts[++count] = end;
+				}
+			} catch (InvalidFormatException e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			batchSize = Math.min(MAX_BATCH, batchSize + BATCH_UNIT);
+			return count == 0 ? null : new BatchSpliterator(bytes, starts, offsets, 0, count);
+		}
+
+		@Override
+		public long estimateSize() {
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL;
+		}
+
+	}
+
+	/**
+	 * Decodes a batch of values split off the reader.
+	 */
+	private static final class BatchSpliterator implements Spliterator<BData> {
+
+		private final byte[] bytes;
+		private final int[] starts;
+		private final long[] offsets;
+		private int index;
+		private final int end;
+
+		private BatchSpliterator(final byte[] bytes, final int[] starts, final long[] offsets, final int index, final int end) {
+			this.bytes = bytes;
+			this.starts = starts;
+			this.offsets = offsets;
+			this.index = index;
+			this.end = end;
+		}
+
+		@Override
+		public boolean tryAdvance(final Consumer<? super BData> action) {
+			if (index >= end) {
+				return false;
+			}
+			ByteBuffer record = ByteBuffer.wrap(bytes, starts[index], starts[index + 1] - starts[index]);
+			try {
+				action.accept(decode(record, offsets[index++]));
+			} catch (InvalidFormatException e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+			return true;
+		}
+
+		@Override
+		public Spliterator<BData> trySplit() {
+			int middle = (index + end) >>> 1;
+			if (middle <= index) {
+				return null;
+			}
+			Spliterator<BData> prefix = new BatchSpliterator(bytes, starts, offsets, index, middle);
+			index = middle;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return end - index;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL | SIZED | SUBSIZED | IMMUTABLE;
+		}
+
+	}
+
+}
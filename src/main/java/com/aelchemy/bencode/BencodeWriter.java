@@ -0,0 +1,129 @@
+package com.aelchemy.bencode;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.aelchemy.bencode.data.BData;
+
+/**
+ * {@link BencodeWriter} writes successive Bencoded values to a stream, such as the messages sent over a connection.
+ * <p>
+ * Values are encoded straight into a buffer, which is written to the stream when it is full or
+ * {@link #flush() flushed}. Values longer than the buffer are written on their own, without growing it.
+ * <p>
+ * A writer is thread safe, and each value is written whole, without being interleaved with values written by other
+ * threads. The buffer is guarded by a {@link ReentrantLock} rather than a monitor, so a virtual thread blocked writing
+ * to the stream doesn't pin its carrier thread.
+ *
+ * @author Aelexe
+ *
+ */
+public class BencodeWriter implements Closeable, Flushable {
+
+	private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final OutputStream out;
+	private final byte[] buffer;
+	private int count;
+
+	/**
+	 * Creates a writer for the stream argument, with an 8 KiB buffer.
+	 *
+	 * @param out The stream to write to.
+	 */
+	public BencodeWriter(final OutputStream out) {
+		this(out, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a writer for the stream argument.
+	 *
+	 * @param out The stream to write to.
+	 * @param bufferSize The size of the buffer.
+	 * @throws IllegalArgumentException Thrown if the buffer size isn't positive.
+	 */
+	public BencodeWriter(final OutputStream out, final int bufferSize) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+		}
+		this.out = out;
+		this.buffer = new byte[bufferSize];
+	}
+
+	/**
+	 * Encodes the {@link BData} argument into the writer's buffer, one byte per character, writing the buffer to the
+	 * stream first if it doesn't have room for the value.
+	 *
+	 * @param data The {@link BData} to write.
+	 * @throws IOException Thrown if the stream throws.
+	 * @throws IllegalArgumentException Thrown if a string or key has a character greater than 0xFF, which can't be
+	 *             encoded in one byte, in which case the value isn't written.
+	 */
+	public void write(final BData data) throws IOException {
+		int length = Encode.length(data);
+		lock.lock();
+		try {
+			if (length > buffer.length - count) {
+				flushBuffer();
+			}
+			if (length > buffer.length) {
+				byte[] encoded = new byte[length];
+				Encode.put(ByteBuffer.wrap(encoded), data);
+				out.write(encoded);
+			} else {
+				Encode.put(ByteBuffer.wrap(buffer, count, length), data);
+				count += length;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes the buffer to the stream and flushes the stream.
+	 *
+	 * @throws IOException Thrown if the stream throws.
+	 */
+	@Override
+	public void flush() throws IOException {
+		lock.lock();
+		try {
+			flushBuffer();
+			out.flush();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes the buffer to the stream and closes the stream.
+	 *
+	 * @throws IOException Thrown if the stream throws.
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			flushBuffer();
+		} finally {
+			try {
+				out.close();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		if (count > 0) {
+			out.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.aelchemy.bencode;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Contains methods for comparing and reading ranges of bytes in {@link ByteBuffer}s by absolute index, without
+ * changing the buffers' positions.
+ * <p>
+ * The multi-release jar replaces this class on Java 17 and later with one using the bulk methods added to
+ * {@link ByteBuffer} and {@link java.util.Arrays} after Java 8. Both versions must behave the same.
+ * 
+ * @author Aelexe
+ * 
+ */
+final class Bytes {
+
+	private Bytes() {
+	}
+
+	/**
+	 * Compares two ranges of bytes lexicographically, treating the bytes as unsigned.
+	 * 
+	 * @param a The buffer containing the first range.
+	 * @param aIndex The index of the first range.
+	 * @param aLength The length of the first range.
+	 * @param b The buffer containing the second range.
+	 * @param bIndex The index of the second range.
+	 * @param bLength The length of the second range.
+	 * @return A negative number, zero, or a positive number if the first range is less than, equal to, or greater than
+	 *         the second range.
+	 */
+	static int compare(final ByteBuffer a, final int aIndex, final int aLength, final ByteBuffer b, final int bIndex, final int bLength) {
+		int length = Math.min(aLength, bLength);
+		for (int i = 0; i < length; i++) {
+			int difference = (a.get(aIndex + i) & 0xFF) - (b.get(bIndex + i) & 0xFF);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return aLength - bLength;
+	}
+
+	/**
+	 * Returns the range of bytes as a string, one character per byte.
+	 * 
+	 * @param bData The buffer containing the range.
+	 * @param index The index of the range.
+	 * @param length The length of the range.
+	 * @return The string.
+	 */
+	static String string(final ByteBuffer bData, final int index, final int length) {
+		if (bData.hasArray()) {
+			return new String(bData.array(), bData.arrayOffset() + index, length, StandardCharsets.ISO_8859_1);
+		}
+
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = bData.get(index + i);
+		}
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+}
@@ -0,0 +1,185 @@
+package com.aelchemy.bencode;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * {@link ChunkDecoder} decodes successive Bencoded values from chunks of data pushed to it, such as the buffers
+ * received from a non-blocking channel or a reactive stream.
+ * <p>
+ * Chunks are copied into a single buffer, from which complete values are {@link #next() taken} one at a time. The
+ * decoder never asks for data itself: a caller applying backpressure only {@link #offer offers} another chunk once
+ * {@link #next()} returns null, so the buffer holds at most one incomplete value, which can't be longer than the
+ * maximum length, and the last chunk offered.
+ * <p>
+ * {@code com.aelchemy.bencode.flow.BencodeProcessor}, in the artifact with the classifier "flow", adapts the decoder
+ * to a {@code java.util.concurrent.Flow.Processor}. A decoder isn't thread safe, and can't be used after it throws.
+ *
+ * @author Aelexe
+ *
+ */
+public class ChunkDecoder {
+
+	private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+	private final int maxLength;
+	private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+	/** How far the unfinished value at the buffer's position has been validated. */
+	private final Validate.Progress progress = new Validate.Progress();
+	/** The offset in the data of the buffer's position. */
+	private long offset;
+
+	/**
+	 * Creates a decoder for values up to 64 MiB long.
+	 */
+	public ChunkDecoder() {
+		this(BencodeReader.DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * Creates a decoder.
+	 *
+	 * @param maxLength The maximum length of a value, beyond which it is treated as invalid.
+	 * @throws IllegalArgumentException Thrown if the maximum length isn't positive.
+	 */
+	public ChunkDecoder(final int maxLength) {
+		if (maxLength <= 0) {
+			throw new IllegalArgumentException("Invalid maximum length: " + maxLength);
+		}
+		this.maxLength = maxLength;
+		((Buffer) buffer).flip();
+	}
+
+	/**
+	 * Copies the remaining data of the chunk argument into the decoder, advancing the chunk's position to its limit.
+	 *
+	 * @param chunk The chunk of Bencoded data.
+	 */
+	public void offer(final ByteBuffer chunk) {
+		if (!chunk.hasRemaining()) {
+			return;
+		}
+
+		if (buffer.position() > 0) {
+			buffer.compact();
+		} else {
+			// Append to an unfinished value where it is, rather than copying it on every chunk.
+			((Buffer) buffer).position(buffer.limit()).limit(buffer.capacity());
+		}
+		if (buffer.remaining() < chunk.remaining()) {
+			long length = (long) buffer.position() + chunk.remaining();
+			if (length > Integer.MAX_VALUE) {
+				throw new IllegalStateException("Buffered data is longer than " + Integer.MAX_VALUE + " bytes");
+			}
+			ByteBuffer grown = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE, Math.max(length, buffer.capacity() * 2L)));
+			((Buffer) buffer).flip();
+			grown.put(buffer);
+			buffer = grown;
+		}
+		buffer.put(chunk);
+		((Buffer) buffer).flip();
+	}
+
+	/**
+	 * Takes the next complete value as a slice of the decoder's buffer, without decoding or copying it. <br>
+	 * The slice is only valid until the next chunk is offered, after which its bytes may be overwritten.
+	 *
+	 * @return A read only buffer containing the Bencoded value, or null if more data is needed to complete it.
+	 * @throws InvalidFormatException Thrown if the next value is an invalid format or longer than the maximum length,
+	 *             with its offset in the data.
+	 */
+	public ByteBuffer nextRecord() throws InvalidFormatException {
+		ByteBuffer record = read();
+		return record == null ? null : record.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Takes and decodes the next complete value.
+	 *
+	 * @return {@link BData} containing the value, or null if more data is needed to complete it.
+	 * @throws InvalidFormatException Thrown if the next value is an invalid format or longer than the maximum length,
+	 *             with its offset in the data.
+	 */
+	public BData next() throws InvalidFormatException {
+		long recordOffset = offset;
+		ByteBuffer record = read();
+		return record == null ? null : BencodeReader.decode(record, recordOffset);
+	}
+
+	/**
+	 * Checks the data ended between values, once every complete value has been taken.
+	 *
+	 * @throws InvalidFormatException Thrown if the data ended inside a value, with the offset of the error.
+	 * @throws IllegalStateException Thrown if a complete value hasn't been taken.
+	 */
+	public void end() throws InvalidFormatException {
+		if (read() != null) {
+			throw new IllegalStateException("A complete value hasn't been taken");
+		} else if (buffer.hasRemaining()) {
+			throw BencodeReader.invalid(Reason.MALFORMED, "Data ends inside a value", offset + ~Validate.validate(buffer, false));
+		}
+	}
+
+	/**
+	 * Returns the offset in the data of the next value.
+	 *
+	 * @return The offset.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Returns the number of bytes offered but not yet taken.
+	 *
+	 * @return The number of bytes.
+	 */
+	public int getBufferedLength() {
+		return buffer.remaining();
+	}
+
+	/**
+	 * Takes the next complete value as a slice of the buffer. <br>
+	 * An unfinished value is only validated from where the last call stopped, so a value offered in many chunks is
+	 * scanned about once rather than once per chunk.
+	 *
+	 * @return A buffer containing the Bencoded value, or null if more data is needed to complete it.
+	 */
+	private ByteBuffer read() throws InvalidFormatException {
+		if (!buffer.hasRemaining()) {
+			return null;
+		}
+
+		if (progress.isTruncated(buffer)) {
+			if (buffer.remaining() >= maxLength) {
+				throw BencodeReader.invalid(Reason.INVALID_LENGTH, "Value is longer than the maximum length of " + maxLength, offset);
+			}
+			return null;
+		}
+
+		int end = Validate.validate(buffer, false);
+		if (end >= 0) {
+			if (end > maxLength) {
+				throw BencodeReader.invalid(Reason.INVALID_LENGTH, "Value is longer than the maximum length of " + maxLength, offset);
+			}
+			ByteBuffer record = buffer.duplicate();
+			((Buffer) record).limit(buffer.position() + end);
+			((Buffer) buffer).position(buffer.position() + end);
+			offset += end;
+			return record.slice();
+		}
+
+		int error = ~end;
+		if (!Validate.isTruncated(buffer, error)) {
+			throw BencodeReader.invalid(Reason.MALFORMED, "Data is invalid", offset + error);
+		} else if (buffer.remaining() >= maxLength) {
+			throw BencodeReader.invalid(Reason.INVALID_LENGTH, "Value is longer than the maximum length of " + maxLength, offset);
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,286 @@
+package com.aelchemy.bencode;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.aelchemy.bencode.data.ValueType;
+
+/**
+ * Contains methods for comparing and hashing Bencoded values without decoding them.
+ * <p>
+ * Two {@link StructuralIndex}es are walked together, value by value. Before a value is walked, its bytes are compared
+ * in bulk with the other value's, so identical values, including identical documents, are settled by a single
+ * comparison. Values are structurally equal if they are equal strings or numbers, lists of equal values in the same
+ * order, or dictionaries with the same keys mapped to equal values in any order. Numbers can be compared by their
+ * bytes, as valid numbers have no leading zeros.
+ * <p>
+ * Keys are matched in order while both dictionaries have them in the same order. The first key that isn't where it
+ * was expected sorts the other dictionary's keys once, and the remaining keys are found by binary search, so comparing
+ * dictionaries whose keys are in different orders costs O(n log n) rather than O(n<sup>2</sup>).
+ * <p>
+ * Dictionaries with repeated keys, which aren't valid Bencode, compare the first value of each key, so they may be
+ * equal to a dictionary with a different hash.
+ *
+ * @author Aelexe
+ *
+ */
+final class Compare {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private Compare() {
+	}
+
+	/**
+	 * Returns whether the top level values of the indexes are structurally equal.
+	 *
+	 * @param a The index of the first value.
+	 * @param b The index of the second value.
+	 * @return True if the values are equal.
+	 */
+	static boolean equal(final StructuralIndex a, final StructuralIndex b) {
+		return equal(a, 0, b, 0);
+	}
+
+	/**
+	 * Returns a hash of the top level value of the index, equal for structurally equal values.
+	 * <p>
+	 * The hash is stable across runs and versions: strings and numbers are hashed by the 64 bit FNV-1a hash of their
+	 * Bencoded bytes, lists combine the hashes of their values in order, and dictionaries sum the combined hashes of
+	 * their keys and values, so the order of the keys doesn't change the hash.
+	 *
+	 * @param index The index of the value.
+	 * @return The hash.
+	 */
+	static long hash(final StructuralIndex index) {
+		return hash(index, 0);
+	}
+
+	/**
+	 * Returns the paths to the values that differ between the top level values of the indexes. <br>
+	 * A path is the keys and list positions leading to a value. Values that differ in type, strings and numbers that
+	 * differ, and keys or list positions found in only one of the values are returned as a whole, without descending
+	 * into them. The paths of the first value's keys are returned in its order, followed by keys found only in the
+	 * second value.
+	 *
+	 * @param a The index of the first value.
+	 * @param b The index of the second value.
+	 * @return The paths of the differing values, which is empty if the values are equal, or contains only the empty
+	 *         path if the top level values differ as a whole.
+	 */
+	static List<List<String>> diff(final StructuralIndex a, final StructuralIndex b) {
+		List<List<String>> differences = new ArrayList<List<String>>();
+		diff(a, 0, b, 0, new ArrayList<String>(), differences);
+		return differences;
+	}
+
+	private static boolean equal(final StructuralIndex a, final int aValue, final StructuralIndex b, final int bValue) {
+		if (bytesEqual(a, aValue, b, bValue)) {
+			return true;
+		}
+
+		ValueType type = a.getType(aValue);
+		if (type != b.getType(bValue) || a.getChildCount(aValue) != b.getChildCount(bValue)) {
+			return false;
+		}
+		if (type == ValueType.LIST) {
+			for (int aChild = aValue + 1, bChild = bValue + 1; aChild < a.getNext(aValue); aChild = a.getNext(aChild), bChild = b.getNext(bChild)) {
+				if (!equal(a, aChild, b, bChild)) {
+					return false;
+				}
+			}
+			return true;
+		} else if (type == ValueType.DICTIONARY) {
+			int bKey = bValue + 1;
+			int[] bKeys = null;
+			for (int aKey = aValue + 1; aKey < a.getNext(aValue); aKey = a.getNext(aKey + 1)) {
+				if (bKey >= b.getNext(bValue) || !bytesEqual(a, aKey, b, bKey)) {
+					bKeys = bKeys == null ? sortKeys(b, bValue) : bKeys;
+					bKey = find(a, aKey, b, bKeys);
+				}
+				if (bKey < 0 || !equal(a, aKey + 1, b, bKey + 1)) {
+					return false;
+				}
+				bKey = b.getNext(bKey + 1);
+			}
+			return true;
+		}
+		// Strings and numbers are only equal if their bytes are.
+		return false;
+	}
+
+	private static long hash(final StructuralIndex index, final int value) {
+		ValueType type = index.getType(value);
+		if (type == ValueType.LIST) {
+			long hash = 'l';
+			for (int child = value + 1; child < index.getNext(value); child = index.getNext(child)) {
+				hash = mix(hash * FNV_PRIME + hash(index, child));
+			}
+			return mix(hash);
+		} else if (type == ValueType.DICTIONARY) {
+			long hash = 'd';
+			for (int key = value + 1; key < index.getNext(value); key = index.getNext(key + 1)) {
+				hash += mix(hash(index, key) * FNV_PRIME + hash(index, key + 1));
+			}
+			return mix(hash);
+		}
+
+		// Hash the Bencoded bytes of strings and numbers, which include their type.
+		ByteBuffer bData = index.getBuffer();
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = bData.position() + index.getStart(value), end = bData.position() + index.getEnd(value); i < end; i++) {
+			hash = (hash ^ (bData.get(i) & 0xFF)) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	private static void diff(final StructuralIndex a, final int aValue, final StructuralIndex b, final int bValue, final List<String> path,
+			final List<List<String>> differences) {
+		if (bytesEqual(a, aValue, b, bValue)) {
+			return;
+		}
+
+		ValueType type = a.getType(aValue);
+		if (type != b.getType(bValue) || (type != ValueType.LIST && type != ValueType.DICTIONARY)) {
+			differences.add(Collections.unmodifiableList(new ArrayList<String>(path)));
+		} else if (type == ValueType.LIST) {
+			int aChild = aValue + 1;
+			int bChild = bValue + 1;
+			for (int position = 0; aChild < a.getNext(aValue) || bChild < b.getNext(bValue); position++) {
+				path.add(Integer.toString(position));
+				if (aChild < a.getNext(aValue) && bChild < b.getNext(bValue)) {
+					diff(a, aChild, b, bChild, path, differences);
+				} else {
+					differences.add(Collections.unmodifiableList(new ArrayList<String>(path)));
+				}
+				path.remove(path.size() - 1);
+				aChild = aChild < a.getNext(aValue) ? a.getNext(aChild) : aChild;
+				bChild = bChild < b.getNext(bValue) ? b.getNext(bChild) : bChild;
+			}
+		} else {
+			int bKey = bValue + 1;
+			int[] bKeys = null;
+			for (int aKey = aValue + 1; aKey < a.getNext(aValue); aKey = a.getNext(aKey + 1)) {
+				int match = bKey;
+				if (bKey >= b.getNext(bValue) || !bytesEqual(a, aKey, b, bKey)) {
+					bKeys = bKeys == null ? sortKeys(b, bValue) : bKeys;
+					match = find(a, aKey, b, bKeys);
+				}
+				path.add(a.getString(aKey));
+				if (match < 0) {
+					differences.add(Collections.unmodifiableList(new ArrayList<String>(path)));
+				} else {
+					diff(a, aKey + 1, b, match + 1, path, differences);
+					bKey = b.getNext(match + 1);
+				}
+				path.remove(path.size() - 1);
+			}
+			// If every key was matched in order, only the second dictionary's keys after them are left to find.
+			int[] aKeys = null;
+			for (bKey = bKeys == null ? bKey : bValue + 1; bKey < b.getNext(bValue); bKey = b.getNext(bKey + 1)) {
+				aKeys = aKeys == null ? sortKeys(a, aValue) : aKeys;
+				if (find(b, bKey, a, aKeys) < 0) {
+					path.add(b.getString(bKey));
+					differences.add(Collections.unmodifiableList(new ArrayList<String>(path)));
+					path.remove(path.size() - 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the first key equal to the key argument in the sorted keys argument, by binary search.
+	 *
+	 * @return The number of the key, or -1 if the keys don't contain the key.
+	 */
+	private static int find(final StructuralIndex a, final int aKey, final StructuralIndex b, final int[] bKeys) {
+		int low = 0;
+		int high = bKeys.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (compareBytes(b, bKeys[middle], a, aKey) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low < bKeys.length && bytesEqual(a, aKey, b, bKeys[low]) ? bKeys[low] : -1;
+	}
+
+	/**
+	 * Returns the numbers of the keys of the dictionary argument, sorted by their Bencoded bytes. Repeated keys keep
+	 * their order, so the first of them is found first.
+	 */
+	private static int[] sortKeys(final StructuralIndex index, final int dictionary) {
+		int[] keys = new int[index.getChildCount(dictionary) / 2];
+		int count = 0;
+		boolean sorted = true;
+		for (int key = dictionary + 1; key < index.getNext(dictionary); key = index.getNext(key + 1)) {
+			sorted &= count == 0 || compareBytes(index, keys[count - 1], index, key) <= 0;
+			keys[count++] = key;
+		}
+		if (!sorted) {
+			mergeSort(index, keys, new int[keys.length], 0, keys.length);
+		}
+		return keys;
+	}
+
+	/**
+	 * Sorts the range of keys argument by their Bencoded bytes, using the scratch argument to merge them.
+	 */
+	private static void mergeSort(final StructuralIndex index, final int[] keys, final int[] scratch, final int from, final int to) {
+		if (to - from < 2) {
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		mergeSort(index, keys, scratch, from, middle);
+		mergeSort(index, keys, scratch, middle, to);
+		if (compareBytes(index, keys[middle - 1], index, keys[middle]) <= 0) {
+			return;
+		}
+		System.arraycopy(keys, from, scratch, from, to - from);
+		for (int i = from, left = from, right = middle; i < to; i++) {
+			if (right >= to || (left < middle && compareBytes(index, scratch[left], index, scratch[right]) <= 0)) {
+				keys[i] = scratch[left++];
+			} else {
+				keys[i] = scratch[right++];
+			}
+		}
+	}
+
+	/**
+	 * Compares the Bencoded bytes of the values, treating the bytes as unsigned.
+	 */
+	private static int compareBytes(final StructuralIndex a, final int aValue, final StructuralIndex b, final int bValue) {
+		ByteBuffer aData = a.getBuffer();
+		ByteBuffer bData = b.getBuffer();
+		return Bytes.compare(aData, aData.position() + a.getStart(aValue), a.getEnd(aValue) - a.getStart(aValue), bData,
+				bData.position() + b.getStart(bValue), b.getEnd(bValue) - b.getStart(bValue));
+	}
+
+	/**
+	 * Returns whether the Bencoded bytes of the values are equal, comparing them in bulk.
+	 */
+	private static boolean bytesEqual(final StructuralIndex a, final int aValue, final StructuralIndex b, final int bValue) {
+		int length = a.getEnd(aValue) - a.getStart(aValue);
+		if (length != b.getEnd(bValue) - b.getStart(bValue)) {
+			return false;
+		}
+		ByteBuffer aData = a.getBuffer();
+		ByteBuffer bData = b.getBuffer();
+		return Bytes.compare(aData, aData.position() + a.getStart(aValue), length, bData, bData.position() + b.getStart(bValue), length) == 0;
+	}
+
+	/**
+	 * Mixes the bits of the hash argument, with the finalizer of the SplitMix64 generator.
+	 */
+	private static long mix(long hash) {
+		hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+		return hash ^ (hash >>> 31);
+	}
+
+}
@@ -0,0 +1,484 @@
+package com.aelchemy.bencode;
+
+import java.math.BigInteger;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.data.BDictionary;
+import com.aelchemy.bencode.data.BList;
+import com.aelchemy.bencode.data.BNumber;
+import com.aelchemy.bencode.data.BString;
+import com.aelchemy.bencode.data.ValueType;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * {@link Cursor} moves over Bencoded data value by value, reading only the values asked for and skipping the rest
+ * without decoding them.
+ * <p>
+ * Skipping a string jumps straight past its data, and skipping a list or dictionary counts its depth in a loop that
+ * allocates nothing. Skipping doesn't validate the values skipped; use {@link Bencode#validate} for that.
+ * <p>
+ * As with {@link BString}, strings are read one character per byte.
+ *
+ * @author Aelexe
+ *
+ */
+public class Cursor {
+
+	private final ByteBuffer bData;
+	private final int start;
+	private final int limit;
+	private int index;
+	private int depth;
+
+	/**
+	 * Creates a cursor at the start of the Bencoded data argument.
+	 *
+	 * @param bData The Bencoded data.
+	 */
+	public Cursor(final byte[] bData) {
+		this(ByteBuffer.wrap(bData));
+	}
+
+	/**
+	 * Creates a cursor at the position of the buffer argument. <br>
+	 * The cursor reads the buffer from its position to its limit by absolute index, so never changes them.
+	 *
+	 * @param bData The buffer containing the Bencoded data.
+	 */
+	public Cursor(final ByteBuffer bData) {
+		this.bData = bData;
+		this.start = bData.position();
+		this.limit = bData.limit();
+		this.index = start;
+	}
+
+	/**
+	 * Returns the offset of the cursor from the start of the data.
+	 *
+	 * @return The offset.
+	 */
+	public int getPosition() {
+		return index - start;
+	}
+
+	/**
+	 * Moves the cursor to the offset argument, which should be the start of a value at the cursor's current depth.
+	 *
+	 * @param position The offset from the start of the data.
+	 */
+	public void setPosition(final int position) {
+		if (position < 0 || position > limit - start) {
+			throw new IndexOutOfBoundsException("Position out of range: " + position);
+		}
+		this.index = start + position;
+	}
+
+	/**
+	 * Returns the number of lists and dictionaries the cursor has entered and not exited.
+	 *
+	 * @return The depth.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Returns whether there is another value at the cursor's depth. <br>
+	 * Inside a list or dictionary this is false at the end of it, and outside of one it is false at the end of the
+	 * data.
+	 *
+	 * @return True if there is another value.
+	 */
+	public boolean hasNext() {
+		return index < limit && (depth == 0 || bData.get(index) != 'e');
+	}
+
+	/**
+	 * Returns the type of the value at the cursor, without moving it.
+	 *
+	 * @return The type of the value.
+	 * @throws InvalidFormatException Thrown if there is no value at the cursor.
+	 */
+	public ValueType peekType() throws InvalidFormatException {
+		ValueType type = index < limit ? ValueType.of(bData.get(index)) : null;
+		if (type == null) {
+			throw invalid(Reason.MALFORMED, "Data does not contain a valid Bencoded value", index);
+		}
+		return type;
+	}
+
+	/**
+	 * Moves the cursor past the value at the cursor.
+	 *
+	 * @return This cursor.
+	 * @throws InvalidFormatException Thrown if the value is an invalid format.
+	 */
+	public Cursor skipValue() throws InvalidFormatException {
+		index = skip(index);
+		return this;
+	}
+
+	/**
+	 * Moves the cursor into the list at the cursor, to its first value.
+	 *
+	 * @throws InvalidFormatException Thrown if there is no list at the cursor, or the cursor is already 512 deep.
+	 */
+	public void enterList() throws InvalidFormatException {
+		enter('l', "list");
+	}
+
+	/**
+	 * Moves the cursor into the dictionary at the cursor, to its first key.
+	 *
+	 * @throws InvalidFormatException Thrown if there is no dictionary at the cursor, or the cursor is already 512 deep.
+	 */
+	public void enterDictionary() throws InvalidFormatException {
+		enter('d', "dictionary");
+	}
+
+	/**
+	 * Moves the cursor past the end of the list or dictionary it is in, skipping any remaining values.
+	 *
+	 * @throws InvalidFormatException Thrown if the remaining values are an invalid format, or the cursor isn't in a
+	 *             list or dictionary.
+	 */
+	public void exit() throws InvalidFormatException {
+		if (depth == 0) {
+			throw new IllegalStateException("Cursor is not in a list or dictionary.");
+		}
+		while (hasNext()) {
+			index = skip(index);
+		}
+		if (index >= limit) {
+			throw invalid(Reason.MALFORMED, "Data does not end with e", index);
+		}
+		index++;
+		depth--;
+	}
+
+	/**
+	 * Moves the cursor from a key in the dictionary it is in to the value of the key argument, skipping the values of
+	 * any other keys. <br>
+	 * If the key isn't found the cursor is left at the end of the dictionary.
+	 *
+	 * @param key The key to seek.
+	 * @return True if the key was found, or false if it wasn't.
+	 * @throws InvalidFormatException Thrown if the dictionary is an invalid format.
+	 */
+	public boolean seekKey(final String key) throws InvalidFormatException {
+		while (hasNext()) {
+			int keyStart = stringStart(index);
+			int keyEnd = keyStart + stringLength(index, keyStart);
+			boolean matches = keyEnd - keyStart == key.length();
+			for (int i = 0; matches && i < key.length(); i++) {
+				matches = (bData.get(keyStart + i) & 0xFF) == key.charAt(i);
+			}
+			index = keyEnd;
+			if (matches) {
+				return true;
+			}
+			index = skip(index);
+		}
+		return false;
+	}
+
+	/**
+	 * Moves the cursor from a key in the dictionary it is in to the value of the key argument, skipping the values of
+	 * any other keys. <br>
+	 * If the key isn't found the cursor is left at the end of the dictionary.
+	 *
+	 * @param key The key to seek.
+	 * @return True if the key was found, or false if it wasn't.
+	 * @throws InvalidFormatException Thrown if the dictionary is an invalid format.
+	 */
+	public boolean seekKey(final byte[] key) throws InvalidFormatException {
+		while (hasNext()) {
+			int keyStart = stringStart(index);
+			int keyEnd = keyStart + stringLength(index, keyStart);
+			boolean matches = keyEnd - keyStart == key.length;
+			for (int i = 0; matches && i < key.length; i++) {
+				matches = bData.get(keyStart + i) == key[i];
+			}
+			index = keyEnd;
+			if (matches) {
+				return true;
+			}
+			index = skip(index);
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the string at the cursor and moves past it.
+	 *
+	 * @return The string.
+	 * @throws InvalidFormatException Thrown if there is no string at the cursor.
+	 */
+	public String readString() throws InvalidFormatException {
+		int stringStart = stringStart(index);
+		int length = stringLength(index, stringStart);
+		index = stringStart + length;
+		return string(stringStart, length);
+	}
+
+	/**
+	 * Reads the string at the cursor as a slice of the underlying buffer, without copying it, and moves past it.
+	 *
+	 * @return A buffer sharing the string's bytes, positioned at its start and limited to its end.
+	 * @throws InvalidFormatException Thrown if there is no string at the cursor.
+	 */
+	public ByteBuffer readStringSlice() throws InvalidFormatException {
+		int stringStart = stringStart(index);
+		int length = stringLength(index, stringStart);
+		index = stringStart + length;
+
+		ByteBuffer slice = bData.duplicate();
+		// Cast to Buffer so the Java 8 signatures of limit and position are linked.
+		((Buffer) slice).limit(stringStart + length).position(stringStart);
+		return slice.slice();
+	}
+
+	/**
+	 * Reads the number at the cursor and moves past it.
+	 *
+	 * @return The number.
+	 * @throws InvalidFormatException Thrown if there is no number at the cursor, or it doesn't fit in a long.
+	 */
+	public long readNumber() throws InvalidFormatException {
+		int end = numberEnd();
+		if (!Numbers.fitsLong(bData, index + 1, end)) {
+			throw invalid(Reason.INVALID_NUMBER, "Data could not be parsed to a long", index);
+		}
+		long number = Numbers.parseLong(bData, index + 1, end);
+		index = end + 1;
+		return number;
+	}
+
+	/**
+	 * Reads the number of any size at the cursor and moves past it.
+	 *
+	 * @return The number.
+	 * @throws InvalidFormatException Thrown if there is no number at the cursor.
+	 */
+	public BigInteger readBigNumber() throws InvalidFormatException {
+		int end = numberEnd();
+		BigInteger number = Numbers.parseBigInteger(bData, index + 1, end);
+		index = end + 1;
+		return number;
+	}
+
+	/**
+	 * Decodes the value at the cursor and moves past it.
+	 *
+	 * @return {@link BData} containing the value.
+	 * @throws InvalidFormatException Thrown if the value is an invalid format.
+	 */
+	public BData readValue() throws InvalidFormatException {
+		// Lists and dictionaries are read recursively, which entering them limits to 512 deep.
+		switch (peekType()) {
+		case STRING:
+			return new BData(new BString(readString()));
+		case NUMBER:
+			return new BData(readBNumber());
+		case LIST:
+			return new BData(readList());
+		default:
+			return new BData(readDictionary());
+		}
+	}
+
+	/**
+	 * Decodes the list at the cursor and moves past it.
+	 *
+	 * @return The list.
+	 * @throws InvalidFormatException Thrown if there is no list at the cursor, or it is an invalid format.
+	 */
+	public BList readList() throws InvalidFormatException {
+		enterList();
+		BList list = new BList();
+		while (hasNext()) {
+			list.add(readValue());
+		}
+		exit();
+		return list;
+	}
+
+	/**
+	 * Decodes the dictionary at the cursor and moves past it.
+	 *
+	 * @return The dictionary.
+	 * @throws InvalidFormatException Thrown if there is no dictionary at the cursor, or it is an invalid format.
+	 */
+	public BDictionary readDictionary() throws InvalidFormatException {
+		enterDictionary();
+		BDictionary dictionary = new BDictionary();
+		while (hasNext()) {
+			String key = readString();
+			if (!hasNext()) {
+				throw invalid(Reason.MISSING_VALUE, "Data does not contain a value for key: \"" + key + "\"", index);
+			}
+			dictionary.put(key, readValue());
+		}
+		exit();
+		return dictionary;
+	}
+
+	/**
+	 * Returns the index after the value at the index argument.
+	 *
+	 * @param index The index of the value.
+	 * @return The index after the value.
+	 * @throws InvalidFormatException Thrown if the value is an invalid format.
+	 */
+	private int skip(final int index) throws InvalidFormatException {
+		int i = index;
+		int depth = 0;
+		do {
+			if (i >= limit) {
+				throw invalid(Reason.MALFORMED, "Data does not end with e", i);
+			}
+			byte c = bData.get(i);
+			if (c >= '0' && c <= '9') {
+				int stringStart = stringStart(i);
+				i = stringStart + stringLength(i, stringStart);
+			} else if (c == 'i') {
+				do {
+					i++;
+				} while (i < limit && bData.get(i) != 'e');
+				i++;
+			} else if (c == 'l' || c == 'd') {
+				depth++;
+				i++;
+			} else if (c == 'e' && depth > 0) {
+				depth--;
+				i++;
+			} else {
+				throw invalid(Reason.MALFORMED, "Data does not contain a valid Bencoded value", i);
+			}
+		} while (depth > 0);
+
+		if (i > limit) {
+			throw invalid(Reason.MALFORMED, "Data does not end with e", limit);
+		}
+		return i;
+	}
+
+	/**
+	 * Reads the number at the cursor and moves past it, only parsing it into a {@link BigInteger} if it doesn't fit
+	 * in a long.
+	 *
+	 * @return {@link BNumber} containing the number.
+	 * @throws InvalidFormatException Thrown if there is no number at the cursor.
+	 */
+	private BNumber readBNumber() throws InvalidFormatException {
+		int end = numberEnd();
+		BNumber number;
+		if (Numbers.fitsLong(bData, index + 1, end)) {
+			number = new BNumber(Numbers.parseLong(bData, index + 1, end));
+		} else {
+			number = new BNumber(Numbers.parseBigInteger(bData, index + 1, end));
+		}
+		index = end + 1;
+		return number;
+	}
+
+	/**
+	 * Returns the index of the e ending the number at the cursor, validating the number.
+	 *
+	 * @return The index of the number's e.
+	 * @throws InvalidFormatException Thrown if there is no number at the cursor.
+	 */
+	private int numberEnd() throws InvalidFormatException {
+		if (index >= limit || bData.get(index) != 'i') {
+			throw invalid(Reason.MALFORMED, "Data does not start with i", index);
+		}
+
+		int i = index + 1;
+		boolean negative = i < limit && bData.get(i) == '-';
+		if (negative) {
+			i++;
+		}
+		int digits = i;
+		byte c;
+		while (i < limit && (c = bData.get(i)) >= '0' && c <= '9') {
+			i++;
+		}
+
+		if (i == digits || i >= limit || bData.get(i) != 'e') {
+			throw invalid(Reason.INVALID_NUMBER, "Data could not be parsed to a number", i);
+		}
+		if (bData.get(digits) == '0' && (i - digits > 1 || negative)) {
+			throw invalid(Reason.LEADING_ZERO, "Data contains leading zeros", digits);
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the index of the data of the string at the index argument, after its colon.
+	 *
+	 * @param index The index of the string.
+	 * @return The index of the string's data.
+	 * @throws InvalidFormatException Thrown if there is no string at the index.
+	 */
+	private int stringStart(final int index) throws InvalidFormatException {
+		int i = index;
+		byte c;
+		while (i < limit && (c = bData.get(i)) >= '0' && c <= '9') {
+			i++;
+		}
+		if (i == index || i >= limit || bData.get(i) != ':') {
+			throw invalid(Reason.MALFORMED, "Data is missing the length, data or colon", i);
+		} else if (i - index > 1 && bData.get(index) == '0') {
+			throw invalid(Reason.LEADING_ZERO, "Data contains leading zeros", index);
+		}
+		return i + 1;
+	}
+
+	/**
+	 * Returns the length of the string at the index argument.
+	 *
+	 * @param index The index of the string.
+	 * @param stringStart The index of the string's data.
+	 * @return The length of the string.
+	 * @throws InvalidFormatException Thrown if the length doesn't fit in the data.
+	 */
+	private int stringLength(final int index, final int stringStart) throws InvalidFormatException {
+		long length = 0;
+		for (int i = index; i < stringStart - 1 && length <= limit; i++) {
+			length = length * 10 + (bData.get(i) - '0');
+		}
+		if (length > limit - stringStart) {
+			throw invalid(Reason.INVALID_LENGTH, "Data length and declared length do not match", stringStart);
+		}
+		return (int) length;
+	}
+
+	/**
+	 * Returns the string of the length argument at the index argument, one character per byte.
+	 *
+	 * @param index The index of the string's data.
+	 * @param length The length of the string.
+	 * @return The string.
+	 */
+	private String string(final int index, final int length) {
+		return Bytes.string(bData, index, length);
+	}
+
+	private void enter(final char c, final String name) throws InvalidFormatException {
+		if (index >= limit || bData.get(index) != c) {
+			throw invalid(Reason.MALFORMED, "Data does not contain a " + name, index);
+		} else if (depth >= Validate.MAX_DEPTH) {
+			throw invalid(Reason.MALFORMED, "Data is nested deeper than " + Validate.MAX_DEPTH, index);
+		}
+		index++;
+		depth++;
+	}
+
+	private InvalidFormatException invalid(final Reason reason, final String message, final int index) {
+		return new InvalidFormatException(reason, message + " at offset " + (index - start), index - start);
+	}
+
+}
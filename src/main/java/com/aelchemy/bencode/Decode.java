@@ -1,5 +1,6 @@
 package com.aelchemy.bencode;
 
+import java.math.BigInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -11,6 +12,7 @@ import com.aelchemy.bencode.data.BList;
 import com.aelchemy.bencode.data.BNumber;
 import com.aelchemy.bencode.data.BString;
 import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
 
 /**
  * Contains methods for the decoding of Bencoded data.
@@ -32,7 +34,7 @@ class Decode {
 	public static String decodeString(final String bData) throws InvalidFormatException {
 		// Validate the data isn't empty.
 		if (StringUtils.isBlank(bData)) {
-			throw new InvalidFormatException("Data is null or empty: \"" + bData + "\"");
+			throw new InvalidFormatException(Reason.EMPTY, "Data is null or empty: \"" + bData + "\"", 0);
 		}
 
 		// Split the data into the length and data parts.
@@ -40,21 +42,29 @@ class Decode {
 
 		// Validate there are two parts and the length isn't empty.
 		if (bStringSplit.length != 2 || StringUtils.isBlank(bStringSplit[0])) {
-			throw new InvalidFormatException("Data is missing the length, data or colon: \"" + bData + "\"");
+			throw new InvalidFormatException(Reason.MALFORMED, "Data is missing the length, data or colon: \"" + bData + "\"", 0);
 		}
 		int length = 0;
 		String data = bStringSplit[1];
 
+		// Validate the length is only digits, which Integer.parseInt doesn't check, and has no leading zeros.
+		if (!StringUtils.isNumeric(bStringSplit[0])) {
+			throw new InvalidFormatException(Reason.INVALID_LENGTH, "Data length could not be parsed to an integer: \"" + bData + "\"", 0);
+		} else if (bStringSplit[0].length() > 1 && bStringSplit[0].startsWith("0")) {
+			throw new InvalidFormatException(Reason.LEADING_ZERO, "Data length contains leading zeros: \"" + bData + "\"", 0);
+		}
+
 		// Parse the length.
 		try {
 			length = Integer.parseInt(bStringSplit[0]);
 		} catch (NumberFormatException e) {
-			throw new InvalidFormatException("Data length could not be parsed to an integer: \"" + bData + "\"");
+			throw new InvalidFormatException(Reason.INVALID_LENGTH, "Data length could not be parsed to an integer: \"" + bData + "\"", 0);
 		}
 
 		// Validate the length is a positive integer and the data's length matches it.
 		if (length < 0 || data.length() != length) {
-			throw new InvalidFormatException("Data length and declared length do not match: \"" + bData + "\"");
+			throw new InvalidFormatException(Reason.INVALID_LENGTH, "Data length and declared length do not match: \"" + bData + "\"",
+					bStringSplit[0].length() + 1);
 		}
 
 		return data;
@@ -79,41 +89,78 @@ class Decode {
 	 * @throws InvalidFormatException Thrown if the Bencoded data argument is an invalid format.
 	 */
 	public static long decodeNumber(final String bData) throws InvalidFormatException {
-		// Validate the data isn't empty.
-		if (bData == null || bData.length() < 3) {
-			throw new InvalidFormatException("Data is null or doesn't contain a number: \"" + bData + "\"");
-		}
-
-		// Validate the data starts with i and ends with e.
-		if (!bData.startsWith("i") || !bData.endsWith("e")) {
-			throw new InvalidFormatException("Data does not start with i and end with e: \"" + bData + "\"");
-		}
-
-		// Validate the data doesn't have leading zeros, unless it is zero.
-		if ((bData.startsWith("i0") && !bData.equals("i0e")) || bData.startsWith("i-0")) {
-			throw new InvalidFormatException("Data contains leading zeros: \"" + bData + "\"");
-		}
+		String digits = decodeDigits(bData);
 
 		// Parse the number.
 		long number;
 		try {
-			number = Long.parseLong(bData.substring(1, bData.length() - 1));
+			number = Long.parseLong(digits);
 		} catch (NumberFormatException e) {
-			throw new InvalidFormatException("Data could not be parsed to a long: \"" + bData + "\"");
+			throw new InvalidFormatException(Reason.INVALID_NUMBER, "Data could not be parsed to a long: \"" + bData + "\"", 1);
 		}
 
 		return number;
 	}
 
 	/**
-	 * Decodes the Bencoded data argument as a number.
+	 * Decodes the Bencoded data argument as a number of any size.
+	 * 
+	 * @param bData The Bencoded data containing the number.
+	 * @return The number contained in the Bencoded data argument.
+	 * @throws InvalidFormatException Thrown if the Bencoded data argument is an invalid format.
+	 */
+	public static BigInteger decodeBigNumber(final String bData) throws InvalidFormatException {
+		return new BigInteger(decodeDigits(bData));
+	}
+
+	/**
+	 * Decodes the Bencoded data argument as a number, which is only held as a {@link BigInteger} if it doesn't fit in
+	 * a long.
 	 * 
 	 * @param bData The Bencoded data containing the number.
 	 * @return {@link BNumber} representing the number contained in the Bencoded data argument.
 	 * @throws InvalidFormatException Thrown if the Bencoded data argument is an invalid format.
 	 */
 	public static BNumber decodeBNumber(final String bData) throws InvalidFormatException {
-		return new BNumber(decodeNumber(bData));
+		String digits = decodeDigits(bData);
+
+		// Only numbers too long to always fit in a long are parsed into a BigInteger, which narrows it if it fits.
+		if (digits.length() - (digits.startsWith("-") ? 1 : 0) <= Numbers.LONG_SAFE_DIGITS) {
+			return new BNumber(Long.parseLong(digits));
+		}
+		return new BNumber(new BigInteger(digits));
+	}
+
+	/**
+	 * Validates the Bencoded data argument is a number, returning its digits and optional minus sign.
+	 * 
+	 * @param bData The Bencoded data containing the number.
+	 * @return The digits of the number, preceded by a minus sign if it is negative.
+	 * @throws InvalidFormatException Thrown if the Bencoded data argument is an invalid format.
+	 */
+	private static String decodeDigits(final String bData) throws InvalidFormatException {
+		// Validate the data isn't empty.
+		if (bData == null || bData.length() < 3) {
+			throw new InvalidFormatException(Reason.EMPTY, "Data is null or doesn't contain a number: \"" + bData + "\"", 0);
+		}
+
+		// Validate the data starts with i and ends with e.
+		if (!bData.startsWith("i") || !bData.endsWith("e")) {
+			throw new InvalidFormatException(Reason.MALFORMED, "Data does not start with i and end with e: \"" + bData + "\"",
+					bData.startsWith("i") ? bData.length() - 1 : 0);
+		}
+
+		// Validate the data doesn't have leading zeros, unless it is zero.
+		if ((bData.startsWith("i0") && !bData.equals("i0e")) || bData.startsWith("i-0")) {
+			throw new InvalidFormatException(Reason.LEADING_ZERO, "Data contains leading zeros: \"" + bData + "\"", 1);
+		}
+
+		// Validate the number is only digits and an optional minus sign, which Long.parseLong doesn't check.
+		if (!StringUtils.isNumeric(bData.substring(bData.startsWith("i-") ? 2 : 1, bData.length() - 1))) {
+			throw new InvalidFormatException(Reason.INVALID_NUMBER, "Data could not be parsed to a number: \"" + bData + "\"", 1);
+		}
+
+		return bData.substring(1, bData.length() - 1);
 	}
 
 	/**
@@ -126,15 +173,17 @@ class Decode {
 	public static BList decodeList(String bData) throws InvalidFormatException {
 		// Validate the data isn't empty.
 		if (bData == null || bData.length() < 2) {
-			throw new InvalidFormatException("Data is null or doesn't contain a list: \"" + bData + "\"");
+			throw new InvalidFormatException(Reason.EMPTY, "Data is null or doesn't contain a list: \"" + bData + "\"", 0);
 		}
 
 		// Validate the data starts with l and ends with e.
 		if (!bData.startsWith("l") || !bData.endsWith("e")) {
-			throw new InvalidFormatException("Data does not start with l and end with e: \"" + bData + "\"");
+			throw new InvalidFormatException(Reason.MALFORMED, "Data does not start with l and end with e: \"" + bData + "\"",
+					bData.startsWith("l") ? bData.length() - 1 : 0);
 		}
 
-		// Drop the leading l.
+		// Drop the leading l, remembering the length to work out the offset of the remaining data.
+		final int length = bData.length();
 		bData = bData.substring(1);
 
 		// Initialise the list.
@@ -143,13 +192,17 @@ class Decode {
 		// Repeatedly extract and decode each Bencoded value until none are left, signaling the completion of the list parsing.
 		String extract;
 		while ((extract = extractNextBDataString(bData)) != null) {
-			list.add(decode(extract));
+			try {
+				list.add(decode(extract));
+			} catch (InvalidFormatException e) {
+				throw offset(e, length - bData.length());
+			}
 			bData = trimBData(extract, bData);
 		}
 
 		// Validate the last remaining character is the end of the list.
 		if (!bData.equals("e")) {
-			throw new InvalidFormatException("Data does not end with e: \"" + bData + "\"");
+			throw new InvalidFormatException(Reason.MALFORMED, "Data does not end with e: \"" + bData + "\"", length - bData.length());
 		}
 
 		return list;
@@ -165,15 +218,17 @@ class Decode {
 	public static BDictionary decodeDictionary(String bData) throws InvalidFormatException {
 		// Validate the data isn't empty.
 		if (bData == null || bData.length() < 2) {
-			throw new InvalidFormatException("Data is null or doesn't contain a dictionary: \"" + bData + "\"");
+			throw new InvalidFormatException(Reason.EMPTY, "Data is null or doesn't contain a dictionary: \"" + bData + "\"", 0);
 		}
 
 		// Validate the data starts with d and ends with e.
 		if (!bData.startsWith("d") || !bData.endsWith("e")) {
-			throw new InvalidFormatException("Data does not start with d and end with e: \"" + bData + "\"");
+			throw new InvalidFormatException(Reason.MALFORMED, "Data does not start with d and end with e: \"" + bData + "\"",
+					bData.startsWith("d") ? bData.length() - 1 : 0);
 		}
 
-		// Drop the leading d.
+		// Drop the leading d, remembering the length to work out the offset of the remaining data.
+		final int length = bData.length();
 		bData = bData.substring(1);
 
 		// Initialise the dictionary.
@@ -182,19 +237,29 @@ class Decode {
 		// Repeatedly extract and decode each Bencoded value until none are left, signaling the completion of the list parsing.
 		String keyExtract;
 		while ((keyExtract = extractNextBDataString(bData)) != null) {
-			String key = decodeString(keyExtract);
+			String key;
+			try {
+				key = decodeString(keyExtract);
+			} catch (InvalidFormatException e) {
+				throw offset(e, length - bData.length());
+			}
 			bData = trimBData(keyExtract, bData);
 			String valueExtract = extractNextBDataString(bData);
 			if (valueExtract == null) {
-				throw new InvalidFormatException("Data does not contain a value for key: \"" + key + "\"");
+				throw new InvalidFormatException(Reason.MISSING_VALUE, "Data does not contain a value for key: \"" + key + "\"",
+						length - bData.length());
+			}
+			try {
+				dictionary.put(key, decode(valueExtract));
+			} catch (InvalidFormatException e) {
+				throw offset(e, length - bData.length());
 			}
-			dictionary.put(key, decode(valueExtract));
 			bData = trimBData(valueExtract, bData);
 		}
 
 		// Validate the last remaining character is the end of the dictionary.
 		if (!bData.equals("e")) {
-			throw new InvalidFormatException("Data does not end with e: \"" + bData + "\"");
+			throw new InvalidFormatException(Reason.MALFORMED, "Data does not end with e: \"" + bData + "\"", length - bData.length());
 		}
 
 		return dictionary;
@@ -214,9 +279,23 @@ class Decode {
 			return new BData(decodeBNumber(bData));
 		} else if (bData.startsWith("l")) {
 			return new BData(decodeList(bData));
+		} else if (bData.startsWith("d")) {
+			return new BData(decodeDictionary(bData));
 		}
 
-		throw new InvalidFormatException("Data does contain a valid Bencoded value: \"" + bData + "\"");
+		throw new InvalidFormatException(Reason.MALFORMED, "Data does contain a valid Bencoded value: \"" + bData + "\"", 0);
+	}
+
+	/**
+	 * Returns a copy of the exception argument with its offset moved by the base argument, for exceptions thrown while
+	 * decoding a value nested at the base offset.
+	 * 
+	 * @param e The exception thrown while decoding the nested value.
+	 * @param base The offset of the nested value.
+	 * @return The exception to throw.
+	 */
+	private static InvalidFormatException offset(final InvalidFormatException e, final int base) {
+		return new InvalidFormatException(e.getReason(), e.getMessage(), base + Math.max(0, e.getOffset()));
 	}
 
 	/**
@@ -234,24 +313,34 @@ class Decode {
 				leadingNumberMatcher.find();
 				String stringLength = leadingNumberMatcher.group(0);
 				// And then use that length to determine how long the string is in the Bencoded data.
-				int totalLength = stringLength.length() + 1 + Integer.valueOf(stringLength);
-				if (bData.length() >= totalLength) {
-					return bData.substring(0, stringLength.length() + 1 + Integer.valueOf(stringLength));
+				// Lengths too long to parse are longer than any data.
+				long length = stringLength.length() <= 10 ? Long.parseLong(stringLength) : Long.MAX_VALUE;
+				if (bData.length() - stringLength.length() - 1 >= length) {
+					return bData.substring(0, stringLength.length() + 1 + (int) length);
 				} else {
 					return null;
 				}
 			} else if (bData.startsWith("i")) {
 				// If the value starts with i, it's a number.
-				return bData.substring(0, bData.indexOf('e') + 1);
-			} else if (bData.startsWith("l")) {
-				// If the value starts with l, it's a list.
-				// Recursively extract every sub-value in the list
+				int end = bData.indexOf('e');
+				if (end >= 0) {
+					return bData.substring(0, end + 1);
+				} else {
+					return null;
+				}
+			} else if (bData.startsWith("l") || bData.startsWith("d")) {
+				// If the value starts with l or d, it's a list or dictionary.
+				// Recursively extract every sub-value in the list or dictionary.
 				int index = 1;
 				String extract;
 				while ((extract = extractNextBDataString(bData.substring(index))) != null) {
-					index = bData.indexOf(extract) + extract.length();
+					index += extract.length();
+				}
+				if (index < bData.length()) {
+					return bData.substring(0, index + 1);
+				} else {
+					return null;
 				}
-				return bData.substring(0, index + 1);
 			}
 		}
 
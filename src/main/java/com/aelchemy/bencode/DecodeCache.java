@@ -0,0 +1,395 @@
+package com.aelchemy.bencode;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.aelchemy.bencode.data.BDictionary;
+import com.aelchemy.bencode.data.BList;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+
+/**
+ * {@link DecodeCache} caches decoded Bencoded data, so repeatedly decoding the same data costs a hash and a lookup.
+ * <p>
+ * Entries are keyed by a 64 bit hash of the Bencoded data and weighed by its length. The cache is split into segments,
+ * each guarded by its own lock and evicting its least recently used entries once it exceeds its share of the maximum
+ * weight. The Bencoded data is decoded outside of the lock, through {@link Bencode}, so a registered
+ * {@link BencodeListener} is notified of every miss. Hits aren't decodes and aren't notified.
+ * <p>
+ * Decoded values are frozen before being cached and are shared between every caller that decodes the same data, so
+ * they can't be modified. Use {@link BDictionary#copy()} or {@link BList#copy()} to get a modifiable copy.
+ *
+ * @author Aelexe
+ *
+ */
+public class DecodeCache {
+
+	private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+	private final Segment[] segments;
+	private final int segmentMask;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Creates a cache holding up to the maximum weight of Bencoded data.
+	 *
+	 * @param maximumWeight The maximum combined length of the cached Bencoded data.
+	 */
+	public DecodeCache(final long maximumWeight) {
+		this(maximumWeight, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	/**
+	 * Creates a cache holding up to the maximum weight of Bencoded data, split into enough segments for the
+	 * concurrency level argument.
+	 *
+	 * @param maximumWeight The maximum combined length of the cached Bencoded data.
+	 * @param concurrencyLevel The expected number of threads using the cache at once.
+	 * @throws IllegalArgumentException Thrown if the maximum weight is negative or the concurrency level isn't positive.
+	 */
+	public DecodeCache(final long maximumWeight, final int concurrencyLevel) {
+		if (maximumWeight < 0 || concurrencyLevel <= 0) {
+			throw new IllegalArgumentException("Invalid maximum weight or concurrency level: " + maximumWeight + ", " + concurrencyLevel);
+		}
+
+		int segmentCount = Integer.highestOneBit(Math.min(concurrencyLevel, 1 << 16) * 2 - 1);
+		segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment(maximumWeight / segmentCount);
+		}
+		segmentMask = segmentCount - 1;
+	}
+
+	/**
+	 * Decodes the Bencoded data argument as a dictionary, returning the cached dictionary if the same data has been
+	 * decoded before.
+	 *
+	 * @param bData The Bencoded data containing the dictionary.
+	 * @return The frozen dictionary contained in the Bencoded data argument.
+	 * @throws InvalidFormatException Thrown if the Bencoded data argument is an invalid format.
+	 */
+	public BDictionary decodeDictionary(final String bData) throws InvalidFormatException {
+		long hash = bData == null ? 0 : hash(bData);
+		BDictionary cached = get(bData, hash, BDictionary.class);
+		if (cached != null) {
+			return cached;
+		}
+
+		BDictionary dictionary = Bencode.decodeDictionary(bData).freeze();
+		put(bData, hash, dictionary);
+		return dictionary;
+	}
+
+	/**
+	 * Decodes the Bencoded data argument as a list, returning the cached list if the same data has been decoded
+	 * before.
+	 *
+	 * @param bData The Bencoded data containing the list.
+	 * @return The frozen list contained in the Bencoded data argument.
+	 * @throws InvalidFormatException Thrown if the Bencoded data argument is an invalid format.
+	 */
+	public BList decodeList(final String bData) throws InvalidFormatException {
+		long hash = bData == null ? 0 : hash(bData);
+		BList cached = get(bData, hash, BList.class);
+		if (cached != null) {
+			return cached;
+		}
+
+		BList list = Bencode.decodeList(bData).freeze();
+		put(bData, hash, list);
+		return list;
+	}
+
+	/**
+	 * Returns the number of decodes answered from the cache.
+	 *
+	 * @return The hit count.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of decodes not answered from the cache.
+	 *
+	 * @return The miss count.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of entries evicted to keep the cache within its maximum weight.
+	 *
+	 * @return The eviction count.
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the number of entries in the cache.
+	 *
+	 * @return The number of entries.
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			segment.lock.lock();
+			try {
+				size += segment.size;
+			} finally {
+				segment.lock.unlock();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the combined length of the Bencoded data in the cache.
+	 *
+	 * @return The weight of the cache.
+	 */
+	public long getWeight() {
+		long weight = 0;
+		for (Segment segment : segments) {
+			segment.lock.lock();
+			try {
+				weight += segment.weight;
+			} finally {
+				segment.lock.unlock();
+			}
+		}
+		return weight;
+	}
+
+	/**
+	 * Removes every entry from the cache.
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			segment.lock.lock();
+			try {
+				segment.clear();
+			} finally {
+				segment.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Returns the cached value for the Bencoded data argument, recording a hit or miss.
+	 *
+	 * @param bData The Bencoded data.
+	 * @param hash The hash of the Bencoded data.
+	 * @param type The type of the decoded value.
+	 * @return The cached value, or null if there isn't one of the type.
+	 */
+	private <T> T get(final String bData, final long hash, final Class<T> type) {
+		if (bData != null) {
+			Segment segment = segments[(int) (hash >>> 32) & segmentMask];
+			Entry entry;
+			segment.lock.lock();
+			try {
+				entry = segment.get(hash);
+			} finally {
+				segment.lock.unlock();
+			}
+			// Hash collisions are treated as misses, and replaced by the put that follows.
+			if (entry != null && type.isInstance(entry.value) && entry.bData.equals(bData)) {
+				hits.increment();
+				return type.cast(entry.value);
+			}
+		}
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * Caches the value for the Bencoded data argument, evicting the least recently used entries of its segment if it
+	 * exceeds its maximum weight.
+	 *
+	 * @param bData The Bencoded data.
+	 * @param hash The hash of the Bencoded data.
+	 * @param value The frozen decoded value.
+	 */
+	private void put(final String bData, final long hash, final Object value) {
+		Segment segment = segments[(int) (hash >>> 32) & segmentMask];
+		if (bData.length() > segment.maximumWeight) {
+			return;
+		}
+
+		segment.lock.lock();
+		try {
+			segment.put(new Entry(hash, bData, value));
+			while (segment.weight > segment.maximumWeight) {
+				segment.remove(segment.head.after);
+				evictions.increment();
+			}
+		} finally {
+			segment.lock.unlock();
+		}
+	}
+
+	/**
+	 * Computes a 64 bit FNV-1a hash of the Bencoded data argument, with a final mix so the high bits used to select
+	 * the segment are well distributed.
+	 *
+	 * @param bData The Bencoded data.
+	 * @return The hash.
+	 */
+	static long hash(final String bData) {
+		long hash = 0xCBF29CE484222325L;
+		for (int i = 0; i < bData.length(); i++) {
+			hash = (hash ^ bData.charAt(i)) * 0x100000001B3L;
+		}
+		hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+		hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return hash ^ (hash >>> 33);
+	}
+
+	/**
+	 * A cached Bencoded data and its decoded value, linked to the entries used before and after it.
+	 */
+	private static final class Entry {
+
+		private final long hash;
+		private final String bData;
+		private final Object value;
+		private Entry before;
+		private Entry after;
+
+		private Entry(final long hash, final String bData, final Object value) {
+			this.hash = hash;
+			this.bData = bData;
+			this.value = value;
+		}
+
+	}
+
+	/**
+	 * A segment of the cache, holding its entries in least recently used order.
+	 * <p>
+	 * Entries are found by their hash in an open addressing table probed linearly, so looking one up doesn't box its
+	 * hash or allocate anything. They are also linked in a list from the least to the most recently used, after the
+	 * head.
+	 */
+	private static final class Segment {
+
+		private static final int INITIAL_CAPACITY = 16;
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final long maximumWeight;
+		private long weight;
+		private Entry[] table = new Entry[INITIAL_CAPACITY];
+		private int size;
+		private final Entry head = new Entry(0, null, null);
+
+		private Segment(final long maximumWeight) {
+			this.maximumWeight = maximumWeight;
+			head.before = head;
+			head.after = head;
+		}
+
+		/**
+		 * Returns the entry with the hash argument, marking it the most recently used.
+		 */
+		private Entry get(final long hash) {
+			int mask = table.length - 1;
+			for (int i = (int) hash & mask; table[i] != null; i = (i + 1) & mask) {
+				if (table[i].hash == hash) {
+					Entry entry = table[i];
+					unlink(entry);
+					link(entry);
+					return entry;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Adds the entry argument as the most recently used, replacing any entry with the same hash.
+		 */
+		private void put(final Entry entry) {
+			int mask = table.length - 1;
+			int i = (int) entry.hash & mask;
+			for (; table[i] != null; i = (i + 1) & mask) {
+				if (table[i].hash == entry.hash) {
+					weight -= table[i].bData.length();
+					unlink(table[i]);
+					size--;
+					break;
+				}
+			}
+			table[i] = entry;
+			link(entry);
+			weight += entry.bData.length();
+			if (++size > table.length / 2) {
+				resize();
+			}
+		}
+
+		/**
+		 * Removes the entry argument, moving back the entries after it that were probed past it.
+		 */
+		private void remove(final Entry entry) {
+			int mask = table.length - 1;
+			int i = (int) entry.hash & mask;
+			while (table[i] != entry) {
+				i = (i + 1) & mask;
+			}
+			for (int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+				int home = (int) table[j].hash & mask;
+				// The entry at j can fill the gap at i unless its home is after i.
+				if (((j - home) & mask) >= ((j - i) & mask)) {
+					table[i] = table[j];
+					i = j;
+				}
+			}
+			table[i] = null;
+			size--;
+			weight -= entry.bData.length();
+			unlink(entry);
+		}
+
+		private void clear() {
+			Arrays.fill(table, null);
+			size = 0;
+			weight = 0;
+			head.before = head;
+			head.after = head;
+		}
+
+		private void resize() {
+			Entry[] entries = table;
+			table = new Entry[entries.length * 2];
+			int mask = table.length - 1;
+			for (Entry entry : entries) {
+				if (entry != null) {
+					int i = (int) entry.hash & mask;
+					while (table[i] != null) {
+						i = (i + 1) & mask;
+					}
+					table[i] = entry;
+				}
+			}
+		}
+
+		private void link(final Entry entry) {
+			entry.before = head.before;
+			entry.after = head;
+			head.before.after = entry;
+			head.before = entry;
+		}
+
+		private void unlink(final Entry entry) {
+			entry.before.after = entry.after;
+			entry.after.before = entry.before;
+		}
+
+	}
+
+}
@@ -1,8 +1,14 @@
 package com.aelchemy.bencode;
 
+import java.math.BigInteger;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
 import com.aelchemy.bencode.data.BData;
 import com.aelchemy.bencode.data.BDictionary;
 import com.aelchemy.bencode.data.BList;
+import com.aelchemy.bencode.data.BNumber;
 
 /**
  * Contains methods for the encoding of data into Bencoded data.
@@ -37,6 +43,16 @@ class Encode {
 		return "i" + number + "e";
 	}
 
+	/**
+	 * Encodes the number argument of any size into a Bencoded number.
+	 * 
+	 * @param number The number to encode.
+	 * @return The Bencoded number.
+	 */
+	public static String encodeNumber(final BigInteger number) {
+		return "i" + number + "e";
+	}
+
 	/**
 	 * Encodes the {@link BList} argument into a Bencoded list.
 	 * 
@@ -44,14 +60,7 @@ class Encode {
 	 * @return The Bencoded list.
 	 */
 	public static String encodeList(final BList list) {
-		StringBuilder bencodedList = new StringBuilder();
-		bencodedList.append("l");
-		for (BData data : list) {
-			bencodedList.append(data.encode());
-		}
-		bencodedList.append("e");
-
-		return bencodedList.toString();
+		return appendList(new StringBuilder(), list).toString();
 	}
 
 	/**
@@ -61,14 +70,290 @@ class Encode {
 	 * @return The Bencoded dictionary.
 	 */
 	public static String encodeDictionary(final BDictionary dictionary) {
-		StringBuilder bencodedDictionary = new StringBuilder();
-		bencodedDictionary.append("d");
+		return appendDictionary(new StringBuilder(), dictionary).toString();
+	}
+
+	/**
+	 * Appends the Bencoded string argument to the builder argument. <br>
+	 * Null will be treated as an empty string.
+	 * 
+	 * @param builder The builder to append to.
+	 * @param string The string to encode.
+	 * @return The builder argument.
+	 */
+	static StringBuilder appendString(final StringBuilder builder, final String string) {
+		if (string == null) {
+			return builder.append("0:");
+		}
+		return builder.append(string.length()).append(':').append(string);
+	}
+
+	/**
+	 * Appends the Bencoded number argument to the builder argument.
+	 * 
+	 * @param builder The builder to append to.
+	 * @param number The number to encode.
+	 * @return The builder argument.
+	 */
+	static StringBuilder appendNumber(final StringBuilder builder, final long number) {
+		return builder.append('i').append(number).append('e');
+	}
+
+	/**
+	 * Appends the Bencoded {@link BList} argument to the builder argument, encoding every value in it into the same
+	 * builder.
+	 * 
+	 * @param builder The builder to append to.
+	 * @param list The {@link BList} to encode.
+	 * @return The builder argument.
+	 */
+	static StringBuilder appendList(final StringBuilder builder, final BList list) {
+		builder.append('l');
+		for (BData data : list) {
+			append(builder, data);
+		}
+		return builder.append('e');
+	}
+
+	/**
+	 * Appends the Bencoded {@link BDictionary} argument to the builder argument, encoding every key and value in it
+	 * into the same builder.
+	 * 
+	 * @param builder The builder to append to.
+	 * @param dictionary The {@link BDictionary} to encode.
+	 * @return The builder argument.
+	 */
+	static StringBuilder appendDictionary(final StringBuilder builder, final BDictionary dictionary) {
+		builder.append('d');
 		for (String key : dictionary.keySet()) {
-			bencodedDictionary.append(encodeString(key));
-			bencodedDictionary.append(dictionary.get(key).encode());
+			appendString(builder, key);
+			append(builder, dictionary.get(key));
+		}
+		return builder.append('e');
+	}
+
+	/**
+	 * Appends the Bencoded {@link BData} argument to the builder argument.
+	 * 
+	 * @param builder The builder to append to.
+	 * @param data The {@link BData} to encode.
+	 * @return The builder argument.
+	 */
+	static StringBuilder append(final StringBuilder builder, final BData data) {
+		if (data.isString()) {
+			return appendString(builder, data.asString().getValue());
+		} else if (data.isNumber()) {
+			BNumber number = data.asNumber();
+			return number.isLong() ? appendNumber(builder, number.getValue()) : builder.append(encodeNumber(number.getBigValue()));
+		} else if (data.isList()) {
+			return appendList(builder, data.asList());
+		}
+		return appendDictionary(builder, data.asDictionary());
+	}
+
+	/**
+	 * Returns the length of the Bencoded {@link BData} argument, without encoding it.
+	 * 
+	 * @param data The {@link BData} to measure.
+	 * @return The encoded length.
+	 */
+	static int length(final BData data) {
+		if (data.isString()) {
+			return stringLength(data.asString().getValue());
+		} else if (data.isNumber()) {
+			BNumber number = data.asNumber();
+			return number.isLong() ? numberLength(number.getValue()) : number.getBigValue().toString().length() + 2;
+		}
+
+		int length = 2;
+		if (data.isList()) {
+			for (BData element : data.asList()) {
+				length += length(element);
+			}
+		} else {
+			BDictionary dictionary = data.asDictionary();
+			for (String key : dictionary.keySet()) {
+				length += stringLength(key) + length(dictionary.get(key));
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Puts the Bencoded {@link BData} argument into the buffer argument at its position, one byte per character,
+	 * without encoding it into a string first. If it throws, the buffer's position is left unchanged.
+	 * 
+	 * @param buffer The buffer to put into.
+	 * @param data The {@link BData} to encode.
+	 * @return The buffer argument.
+	 * @throws BufferOverflowException Thrown if the buffer doesn't have room for the encoded value.
+	 * @throws IllegalArgumentException Thrown if a string or key has a character greater than 0xFF, which can't be
+	 *             encoded in one byte.
+	 */
+	static ByteBuffer put(final ByteBuffer buffer, final BData data) {
+		int position = buffer.position();
+		try {
+			return putData(buffer, data);
+		} catch (BufferOverflowException | IllegalArgumentException e) {
+			// Cast to Buffer so the Java 8 signature of position is linked.
+			((Buffer) buffer).position(position);
+			throw e;
+		}
+	}
+
+	private static ByteBuffer putData(final ByteBuffer buffer, final BData data) {
+		if (data.isString()) {
+			return putString(buffer, data.asString().getValue());
+		} else if (data.isNumber()) {
+			BNumber number = data.asNumber();
+			return number.isLong() ? putNumber(buffer, number.getValue()) : putBigNumber(buffer, number.getBigValue());
+		} else if (data.isList()) {
+			buffer.put((byte) 'l');
+			for (BData element : data.asList()) {
+				putData(buffer, element);
+			}
+		} else {
+			BDictionary dictionary = data.asDictionary();
+			buffer.put((byte) 'd');
+			for (String key : dictionary.keySet()) {
+				putString(buffer, key);
+				putData(buffer, dictionary.get(key));
+			}
+		}
+		return buffer.put((byte) 'e');
+	}
+
+	/**
+	 * Puts the Bencoded string argument into the buffer argument at its position, one byte per character. <br>
+	 * Null will be treated as an empty string.
+	 * 
+	 * @param buffer The buffer to put into.
+	 * @param string The string.
+	 * @return The buffer argument.
+	 * @throws BufferOverflowException Thrown if the buffer doesn't have room for the encoded string.
+	 * @throws IllegalArgumentException Thrown if the string has a character greater than 0xFF, which can't be encoded
+	 *             in one byte. The buffer's position is left unchanged.
+	 */
+	static ByteBuffer putString(final ByteBuffer buffer, final String string) {
+		int position = buffer.position();
+		int length = string == null ? 0 : string.length();
+		putDigits(buffer, length).put((byte) ':');
+		for (int i = 0; i < length; i++) {
+			char c = string.charAt(i);
+			if (c > 0xFF) {
+				// Cast to Buffer so the Java 8 signature of position is linked.
+				((Buffer) buffer).position(position);
+				throw unencodable(string, i);
+			}
+			buffer.put((byte) c);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Checks every character of the string argument can be encoded in one byte. <br>
+	 * Null will be treated as an empty string.
+	 * 
+	 * @param string The string.
+	 * @throws IllegalArgumentException Thrown if the string has a character greater than 0xFF.
+	 */
+	static void checkString(final String string) {
+		for (int i = 0, length = string == null ? 0 : string.length(); i < length; i++) {
+			if (string.charAt(i) > 0xFF) {
+				throw unencodable(string, i);
+			}
 		}
-		bencodedDictionary.append("e");
+	}
+
+	private static IllegalArgumentException unencodable(final String string, final int index) {
+		return new IllegalArgumentException(
+				String.format("Character U+%04X at index %d of a string can't be encoded in one byte", (int) string.charAt(index), index));
+	}
 
-		return bencodedDictionary.toString();
+	/**
+	 * Puts the Bencoded number argument into the buffer argument at its position.
+	 * 
+	 * @param buffer The buffer to put into.
+	 * @param number The number.
+	 * @return The buffer argument.
+	 * @throws BufferOverflowException Thrown if the buffer doesn't have room for the encoded number.
+	 */
+	static ByteBuffer putNumber(final ByteBuffer buffer, final long number) {
+		buffer.put((byte) 'i');
+		return putDigits(buffer, number).put((byte) 'e');
 	}
+
+	/**
+	 * Puts the Bencoded number argument of any size into the buffer argument at its position.
+	 * 
+	 * @param buffer The buffer to put into.
+	 * @param number The number.
+	 * @return The buffer argument.
+	 * @throws BufferOverflowException Thrown if the buffer doesn't have room for the encoded number.
+	 */
+	static ByteBuffer putBigNumber(final ByteBuffer buffer, final BigInteger number) {
+		String digits = number.toString();
+		if (buffer.remaining() < digits.length() + 2) {
+			throw new BufferOverflowException();
+		}
+		buffer.put((byte) 'i');
+		for (int i = 0; i < digits.length(); i++) {
+			buffer.put((byte) digits.charAt(i));
+		}
+		return buffer.put((byte) 'e');
+	}
+
+	/**
+	 * Puts the decimal digits of the number argument into the buffer argument, preceded by a minus sign if it is
+	 * negative.
+	 * 
+	 * @param buffer The buffer to put into.
+	 * @param number The number.
+	 * @return The buffer argument.
+	 */
+	static ByteBuffer putDigits(final ByteBuffer buffer, final long number) {
+		int length = digitLength(number);
+		if (buffer.remaining() < length) {
+			throw new BufferOverflowException();
+		}
+
+		// Fill the digits from the last, working with the negative number so Long.MIN_VALUE doesn't overflow.
+		int position = buffer.position();
+		int first = position;
+		if (number < 0) {
+			buffer.put(first++, (byte) '-');
+		}
+		long remaining = number < 0 ? number : -number;
+		for (int i = position + length - 1; i >= first; i--) {
+			buffer.put(i, (byte) ('0' - remaining % 10));
+			remaining /= 10;
+		}
+		// Cast to Buffer so the Java 8 signature of position is linked.
+		((Buffer) buffer).position(position + length);
+		return buffer;
+	}
+
+	private static int stringLength(final String string) {
+		int length = string == null ? 0 : string.length();
+		return digitLength(length) + 1 + length;
+	}
+
+	private static int numberLength(final long number) {
+		return digitLength(number) + 2;
+	}
+
+	/**
+	 * Returns the number of characters in the decimal form of the number argument, including any minus sign.
+	 * 
+	 * @param number The number.
+	 * @return The number of characters.
+	 */
+	static int digitLength(final long number) {
+		int length = number < 0 ? 2 : 1;
+		for (long remaining = number / 10; remaining != 0; remaining /= 10) {
+			length++;
+		}
+		return length;
+	}
+
 }
@@ -0,0 +1,51 @@
+package com.aelchemy.bencode;
+
+import java.util.concurrent.TimeUnit;
+
+import com.aelchemy.bencode.data.ValueType;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+
+/**
+ * {@link FlightRecorderListener} is a {@link BencodeListener} that commits a JDK Flight Recorder event, named
+ * "com.aelchemy.bencode.Bencode", for every decode or encode that is slower or larger than its thresholds, and for every
+ * failed decode.
+ * <p>
+ * Events record the operation, top level value type, data length and duration, the depth and element count of decoded
+ * values, and the reason and offset of failures. Nothing is recorded unless a recording has the event enabled.
+ * <p>
+ * The Flight Recorder API can't be linked on Java 8, so this version of the class records nothing. The multi-release
+ * jar replaces it on Java 17 and later with the version that commits the events.
+ *
+ * @author Aelexe
+ *
+ */
+public class FlightRecorderListener implements BencodeListener {
+
+	/**
+	 * Creates a listener recording operations that take at least the duration threshold or process at least the length
+	 * threshold.
+	 *
+	 * @param durationThreshold The duration threshold.
+	 * @param unit The unit of the duration threshold.
+	 * @param lengthThreshold The length threshold.
+	 */
+	public FlightRecorderListener(final long durationThreshold, final TimeUnit unit, final long lengthThreshold) {
+	}
+
+	@Override
+	public void onStart(final ValueType type) {
+	}
+
+	@Override
+	public void onDecode(final ValueType type, final int length, final long durationNanos, final Object value) {
+	}
+
+	@Override
+	public void onDecodeFailure(final ValueType type, final int length, final long durationNanos, final InvalidFormatException exception) {
+	}
+
+	@Override
+	public void onEncode(final ValueType type, final int length, final long durationNanos) {
+	}
+
+}
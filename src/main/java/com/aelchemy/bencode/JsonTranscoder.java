@@ -0,0 +1,983 @@
+package com.aelchemy.bencode;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * {@link JsonTranscoder} transcodes Bencoded data to JSON and JSON to Bencoded data, streaming from an
+ * {@link InputStream} to an {@link OutputStream} without building {@link com.aelchemy.bencode.data.BData}.
+ * <p>
+ * Lists become arrays, dictionaries become objects with their keys in the same order, and numbers are copied digit
+ * for digit, so numbers of any length are transcoded exactly. Bencoded strings are bytes, so string values are
+ * written in the {@link StringFormat} of the transcoder. Dictionary keys are always written as text: as UTF-8 if they
+ * are valid UTF-8, otherwise one character per byte.
+ * <p>
+ * Memory use doesn't depend on the length of the data. Only dictionary keys, and string values in the UTF-8 formats,
+ * are held in memory while they are transcoded. Transcoding JSON holds each string in memory, as Bencoded strings
+ * are prefixed with their length, and each object until its end, as Bencoded dictionaries have sorted keys. Strings held in memory may be no longer than the {@link #getMaxStringLength()
+ * maximum string length}, and grow as their bytes are read rather than by their declared length. Lists and
+ * dictionaries may be nested up to 512 deep.
+ * <p>
+ * Transcoding reads a single value. The input stream is read ahead in blocks, so any data after the value is consumed
+ * but not transcoded. Neither stream is closed.
+ *
+ * @author Aelexe
+ *
+ */
+public final class JsonTranscoder {
+
+	/**
+	 * The formats for writing Bencoded string values as JSON strings.
+	 */
+	public enum StringFormat {
+		/** Lower case hexadecimal, two characters per byte. */
+		HEX,
+		/** Base64 with padding, as {@link java.util.Base64#getEncoder()}. */
+		BASE64,
+		/**
+		 * UTF-8 text if the string is valid UTF-8, otherwise hexadecimal. JSON strings are transcoded back as UTF-8
+		 * text, so only strings that were valid UTF-8 are transcoded back to the same bytes.
+		 */
+		UTF8_OR_HEX,
+		/**
+		 * UTF-8 text if the string is valid UTF-8, otherwise Base64. JSON strings are transcoded back as UTF-8 text,
+		 * so only strings that were valid UTF-8 are transcoded back to the same bytes.
+		 */
+		UTF8_OR_BASE64
+	}
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final int DEFAULT_MAX_STRING_LENGTH = 16 * 1024 * 1024;
+	/** The character after a value when it hasn't been read yet. */
+	private static final int UNREAD = -2;
+	/** The length of string chunks streamed as Base64, a multiple of 3 so no chunk but the last is padded. */
+	private static final int BASE64_CHUNK = 3 * 1024;
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] BASE64_DIGITS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+	private final StringFormat format;
+	private final int maxStringLength;
+
+	/**
+	 * Creates a transcoder writing string values in the format argument, holding strings of up to 16 MiB in memory.
+	 *
+	 * @param format The format of string values in JSON.
+	 */
+	public JsonTranscoder(final StringFormat format) {
+		this(format, DEFAULT_MAX_STRING_LENGTH);
+	}
+
+	/**
+	 * Creates a transcoder writing string values in the format argument.
+	 *
+	 * @param format The format of string values in JSON.
+	 * @param maxStringLength The maximum length in bytes of a string held in memory: a dictionary key, a string value
+	 *            in the UTF-8 formats, or a JSON string.
+	 * @throws IllegalArgumentException Thrown if the format is null or the maximum is negative.
+	 */
+	public JsonTranscoder(final StringFormat format, final int maxStringLength) {
+		if (format == null) {
+			throw new IllegalArgumentException("Format is null");
+		} else if (maxStringLength < 0) {
+			throw new IllegalArgumentException("Invalid maximum string length: " + maxStringLength);
+		}
+		this.format = format;
+		this.maxStringLength = maxStringLength;
+	}
+
+	/**
+	 * Returns the format of string values in JSON.
+	 *
+	 * @return The string format.
+	 */
+	public StringFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * Returns the maximum length in bytes of a string held in memory.
+	 *
+	 * @return The maximum string length.
+	 */
+	public int getMaxStringLength() {
+		return maxStringLength;
+	}
+
+	/**
+	 * Transcodes the Bencoded value read from the input argument to JSON written to the output argument as UTF-8.
+	 *
+	 * @param in The stream to read the Bencoded value from.
+	 * @param out The stream to write the JSON to.
+	 * @throws InvalidFormatException Thrown if the Bencoded value is an invalid format, with the offset of the error
+	 *             in the input.
+	 * @throws IOException Thrown if either stream throws.
+	 */
+	public void toJson(final InputStream in, final OutputStream out) throws InvalidFormatException, IOException {
+		Input input = new Input(in, maxStringLength);
+		OutputStream output = new BufferedOutputStream(out, BUFFER_SIZE);
+		Scratch scratch = new Scratch();
+		byte[] containers = new byte[Validate.MAX_DEPTH];
+		int[] counts = new int[Validate.MAX_DEPTH];
+		int depth = 0;
+
+		do {
+			int c = input.read();
+			if (depth > 0) {
+				int count = counts[depth - 1]++;
+				if (c == 'e') {
+					if (containers[depth - 1] == 'd' && count % 2 != 0) {
+						throw input.invalid(Reason.MISSING_VALUE, "Dictionary key has no value");
+					}
+					output.write(containers[--depth] == 'l' ? ']' : '}');
+					continue;
+				} else if (count > 0 && (containers[depth - 1] == 'l' || count % 2 == 0)) {
+					output.write(',');
+				}
+				if (containers[depth - 1] == 'd' && count % 2 == 0) {
+					if (c < '0' || c > '9') {
+						throw input.invalid(Reason.MALFORMED, "Dictionary key is not a string");
+					}
+					input.readString(c, scratch);
+					writeText(output, scratch.bytes, scratch.length);
+					output.write(':');
+					continue;
+				}
+			}
+
+			if (c >= '0' && c <= '9') {
+				writeString(input, output, c, scratch);
+			} else if (c == 'i') {
+				copyNumber(input, output);
+			} else if (c == 'l' || c == 'd') {
+				if (depth == containers.length) {
+					throw input.invalid(Reason.MALFORMED, "Data is nested too deeply");
+				}
+				containers[depth] = (byte) c;
+				counts[depth++] = 0;
+				output.write(c == 'l' ? '[' : '{');
+			} else {
+				throw input.invalid(c < 0 && depth == 0 ? Reason.EMPTY : Reason.MALFORMED, "Data does not contain a valid Bencoded value");
+			}
+		} while (depth > 0);
+
+		output.flush();
+	}
+
+	/**
+	 * Transcodes the JSON value read as UTF-8 from the input argument to Bencoded data written to the output argument.
+	 * <br>
+	 * Objects become dictionaries with their keys sorted by their UTF-8 bytes, as Bencode requires, arrays become
+	 * lists, strings are read in the format of the transcoder and true and false become 1 and 0. Null, numbers with
+	 * fractions or exponents, and objects with duplicate keys, can't be Bencoded and are invalid.
+	 *
+	 * @param in The stream to read the JSON value from.
+	 * @param out The stream to write the Bencoded value to.
+	 * @throws InvalidFormatException Thrown if the JSON value is invalid or can't be Bencoded, with the offset of the
+	 *             error in the input.
+	 * @throws IOException Thrown if either stream throws.
+	 */
+	public void toBencode(final InputStream in, final OutputStream out) throws InvalidFormatException, IOException {
+		Input input = new Input(in, maxStringLength);
+		OutputStream output = new BufferedOutputStream(out, BUFFER_SIZE);
+		Scratch scratch = new Scratch();
+		Pending pending = new Pending();
+		byte[] containers = new byte[Validate.MAX_DEPTH];
+		int depth = 0;
+		// Objects are written to the pending data, and only written to the output once the outermost has ended.
+		OutputStream target = output;
+
+		int c = input.readJson();
+		while (true) {
+			// Transcode the value starting with c, leaving c as the first character after it if it had to be read.
+			if (c == '{' || c == '[') {
+				if (depth == containers.length) {
+					throw input.invalid(Reason.MALFORMED, "JSON is nested too deeply");
+				}
+				if (c == '{') {
+					pending.open();
+					target = pending;
+				}
+				containers[depth++] = (byte) (c == '{' ? '}' : ']');
+				target.write(c == '{' ? 'd' : 'l');
+				c = input.readJson();
+				if (c != containers[depth - 1]) {
+					if (containers[depth - 1] == '}') {
+						c = readKey(input, pending, c, scratch);
+					}
+					continue;
+				}
+				target = end(input, output, pending, target, containers[--depth]);
+				c = UNREAD;
+			} else if (c == '"') {
+				input.readJsonString(scratch);
+				writeBencodedString(input, target, scratch);
+				c = UNREAD;
+			} else if (c == '-' || (c >= '0' && c <= '9')) {
+				c = copyJsonNumber(input, target, c);
+			} else if (c == 't' || c == 'f') {
+				input.expect(c == 't' ? "rue" : "alse");
+				target.write('i');
+				target.write(c == 't' ? '1' : '0');
+				target.write('e');
+				c = UNREAD;
+			} else {
+				throw input.invalid(c < 0 && depth == 0 ? Reason.EMPTY : Reason.MALFORMED,
+						c == 'n' ? "JSON null can't be Bencoded" : "JSON does not contain a valid value");
+			}
+
+			// Close finished containers, then move to the next value. Nothing is read after the top level value.
+			while (depth > 0) {
+				if (c == UNREAD) {
+					c = input.readJson();
+				}
+				if (c != containers[depth - 1]) {
+					break;
+				}
+				target = end(input, output, pending, target, containers[--depth]);
+				c = UNREAD;
+			}
+			if (depth == 0) {
+				break;
+			} else if (c != ',') {
+				throw input.invalid(Reason.MALFORMED, "JSON is missing a comma or closing bracket");
+			}
+			c = input.readJson();
+			if (containers[depth - 1] == '}') {
+				c = readKey(input, pending, c, scratch);
+			}
+		}
+
+		output.flush();
+	}
+
+	/**
+	 * Ends the list or dictionary whose closing bracket is the container argument, sorting the keys of a dictionary,
+	 * and returns the stream to write to after it: the output once no object is open.
+	 */
+	private static OutputStream end(final Input input, final OutputStream output, final Pending pending, final OutputStream target,
+			final byte container) throws InvalidFormatException, IOException {
+		if (container == ']') {
+			target.write('e');
+			return target;
+		}
+		pending.close(input);
+		if (pending.isOpen()) {
+			return pending;
+		}
+		output.write(pending.bytes, 0, pending.length);
+		pending.length = 0;
+		return output;
+	}
+
+	/**
+	 * Transcodes the JSON object key starting with the character argument and its colon, returning the first character
+	 * of the value.
+	 */
+	private static int readKey(final Input input, final Pending pending, final int c, final Scratch scratch)
+			throws InvalidFormatException, IOException {
+		if (c != '"') {
+			throw input.invalid(Reason.MALFORMED, "JSON object key is not a string");
+		}
+		input.readJsonString(scratch);
+		pending.addMember(scratch.length);
+		writeLength(pending, scratch.length);
+		pending.write(scratch.bytes, 0, scratch.length);
+		if (input.readJson() != ':') {
+			throw input.invalid(Reason.MALFORMED, "JSON object key is missing a colon");
+		}
+		return input.readJson();
+	}
+
+	/**
+	 * Writes the Bencoded string of the JSON string in the scratch argument, decoding it from the format of the
+	 * transcoder.
+	 */
+	private void writeBencodedString(final Input input, final OutputStream output, final Scratch scratch)
+			throws InvalidFormatException, IOException {
+		byte[] bytes = scratch.bytes;
+		int length = scratch.length;
+		if (format == StringFormat.HEX) {
+			if (length % 2 != 0) {
+				throw input.invalid(Reason.INVALID_LENGTH, "Hexadecimal string has an odd length");
+			}
+			for (int i = 0; i < length; i += 2) {
+				bytes[i / 2] = (byte) (hexValue(input, bytes[i]) << 4 | hexValue(input, bytes[i + 1]));
+			}
+			length /= 2;
+		} else if (format == StringFormat.BASE64) {
+			length = decodeBase64(input, bytes, length);
+		}
+		writeLength(output, length);
+		output.write(bytes, 0, length);
+	}
+
+	/**
+	 * Writes the Bencoded string whose length starts with the digit argument as a JSON string value in the format of
+	 * the transcoder.
+	 */
+	private void writeString(final Input input, final OutputStream output, final int digit, final Scratch scratch)
+			throws InvalidFormatException, IOException {
+		if (format == StringFormat.UTF8_OR_HEX || format == StringFormat.UTF8_OR_BASE64) {
+			input.readString(digit, scratch);
+			if (isUtf8(scratch.bytes, scratch.length)) {
+				writeText(output, scratch.bytes, scratch.length);
+			} else {
+				output.write('"');
+				if (format == StringFormat.UTF8_OR_HEX) {
+					writeHex(output, scratch.bytes, scratch.length);
+				} else {
+					writeBase64(output, scratch.bytes, scratch.length);
+				}
+				output.write('"');
+			}
+			return;
+		}
+
+		// Stream hexadecimal and Base64 strings in chunks, so long strings aren't held in memory.
+		int remaining = input.readLength(digit);
+		scratch.ensureCapacity(BASE64_CHUNK);
+		output.write('"');
+		while (remaining > 0) {
+			int chunk = Math.min(remaining, BASE64_CHUNK);
+			input.readFully(scratch.bytes, 0, chunk);
+			if (format == StringFormat.HEX) {
+				writeHex(output, scratch.bytes, chunk);
+			} else {
+				writeBase64(output, scratch.bytes, chunk);
+			}
+			remaining -= chunk;
+		}
+		output.write('"');
+	}
+
+	/**
+	 * Copies the Bencoded number after its leading i to the output argument, validating it as it is copied.
+	 */
+	private static void copyNumber(final Input input, final OutputStream output) throws InvalidFormatException, IOException {
+		int c = input.read();
+		if (c == '-') {
+			output.write(c);
+			c = input.read();
+			if (c == '0') {
+				throw input.invalid(Reason.LEADING_ZERO, "Number is negative zero");
+			}
+		}
+		if (c < '0' || c > '9') {
+			throw input.invalid(Reason.INVALID_NUMBER, "Number has no digits");
+		}
+		int first = c;
+		output.write(c);
+		while ((c = input.read()) >= '0' && c <= '9') {
+			if (first == '0') {
+				throw input.invalid(Reason.LEADING_ZERO, "Number has leading zeros");
+			}
+			output.write(c);
+		}
+		if (c != 'e') {
+			throw input.invalid(Reason.MALFORMED, "Number does not end with e");
+		}
+	}
+
+	/**
+	 * Copies the JSON number starting with the character argument to the output argument as a Bencoded number,
+	 * returning the first character after it. Negative zero is written as zero.
+	 */
+	private static int copyJsonNumber(final Input input, final OutputStream output, int c) throws InvalidFormatException, IOException {
+		output.write('i');
+		boolean negative = c == '-';
+		if (negative) {
+			c = input.read();
+		}
+		if (c < '0' || c > '9') {
+			throw input.invalid(Reason.INVALID_NUMBER, "JSON number has no digits");
+		}
+		if (c == '0') {
+			output.write('0');
+			c = input.read();
+		} else {
+			if (negative) {
+				output.write('-');
+			}
+			do {
+				output.write(c);
+			} while ((c = input.read()) >= '0' && c <= '9');
+		}
+		if (c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9')) {
+			throw input.invalid(Reason.INVALID_NUMBER, "JSON number is not an integer without leading zeros");
+		}
+		output.write('e');
+		return input.skipWhitespace(c);
+	}
+
+	/**
+	 * Writes the bytes argument as a JSON string of UTF-8 text if they are valid UTF-8, otherwise one character per
+	 * byte.
+	 */
+	private static void writeText(final OutputStream output, final byte[] bytes, final int length) throws IOException {
+		boolean utf8 = isUtf8(bytes, length);
+		output.write('"');
+		for (int i = 0; i < length; i++) {
+			int b = bytes[i] & 0xFF;
+			if (b == '"' || b == '\\') {
+				output.write('\\');
+				output.write(b);
+			} else if (b < 0x20) {
+				output.write('\\');
+				output.write('u');
+				output.write('0');
+				output.write('0');
+				output.write(HEX_DIGITS[b >> 4]);
+				output.write(HEX_DIGITS[b & 0xF]);
+			} else if (b < 0x80 || utf8) {
+				output.write(b);
+			} else {
+				output.write(0xC0 | b >> 6);
+				output.write(0x80 | b & 0x3F);
+			}
+		}
+		output.write('"');
+	}
+
+	private static void writeHex(final OutputStream output, final byte[] bytes, final int length) throws IOException {
+		for (int i = 0; i < length; i++) {
+			output.write(HEX_DIGITS[(bytes[i] >> 4) & 0xF]);
+			output.write(HEX_DIGITS[bytes[i] & 0xF]);
+		}
+	}
+
+	private static void writeBase64(final OutputStream output, final byte[] bytes, final int length) throws IOException {
+		for (int i = 0; i < length; i += 3) {
+			int group = (bytes[i] & 0xFF) << 16;
+			if (i + 1 < length) {
+				group |= (bytes[i + 1] & 0xFF) << 8;
+			}
+			if (i + 2 < length) {
+				group |= bytes[i + 2] & 0xFF;
+			}
+			output.write(BASE64_DIGITS[group >> 18]);
+			output.write(BASE64_DIGITS[(group >> 12) & 0x3F]);
+			output.write(i + 1 < length ? BASE64_DIGITS[(group >> 6) & 0x3F] : '=');
+			output.write(i + 2 < length ? BASE64_DIGITS[group & 0x3F] : '=');
+		}
+	}
+
+	/**
+	 * Decodes the Base64 in the bytes argument in place, returning the decoded length.
+	 */
+	private static int decodeBase64(final Input input, final byte[] bytes, final int length) throws InvalidFormatException {
+		if (length % 4 != 0) {
+			throw input.invalid(Reason.INVALID_LENGTH, "Base64 string has a length that isn't a multiple of 4");
+		}
+		int decoded = 0;
+		for (int i = 0; i < length; i += 4) {
+			int padding = 0;
+			int group = 0;
+			for (int j = 0; j < 4; j++) {
+				int b = bytes[i + j];
+				int value;
+				if (b == '=' && i + 4 == length && j >= 2 && (j == 3 || bytes[i + 3] == '=')) {
+					padding++;
+					value = 0;
+				} else if ((value = base64Value(b)) < 0) {
+					throw input.invalid(Reason.MALFORMED, "Base64 string contains an invalid character");
+				}
+				group = group << 6 | value;
+			}
+			bytes[decoded++] = (byte) (group >> 16);
+			if (padding < 2) {
+				bytes[decoded++] = (byte) (group >> 8);
+			}
+			if (padding < 1) {
+				bytes[decoded++] = (byte) group;
+			}
+		}
+		return decoded;
+	}
+
+	private static int base64Value(final int b) {
+		if (b >= 'A' && b <= 'Z') {
+			return b - 'A';
+		} else if (b >= 'a' && b <= 'z') {
+			return b - 'a' + 26;
+		} else if (b >= '0' && b <= '9') {
+			return b - '0' + 52;
+		} else if (b == '+') {
+			return 62;
+		} else if (b == '/') {
+			return 63;
+		}
+		return -1;
+	}
+
+	private static int hexValue(final Input input, final int b) throws InvalidFormatException {
+		if (b >= '0' && b <= '9') {
+			return b - '0';
+		} else if (b >= 'a' && b <= 'f') {
+			return b - 'a' + 10;
+		} else if (b >= 'A' && b <= 'F') {
+			return b - 'A' + 10;
+		}
+		throw input.invalid(Reason.MALFORMED, "Hexadecimal string contains an invalid character");
+	}
+
+	/**
+	 * Writes the length of a Bencoded string and its colon.
+	 */
+	private static void writeLength(final OutputStream output, final int length) throws IOException {
+		writeDigits(output, length);
+		output.write(':');
+	}
+
+	private static void writeDigits(final OutputStream output, final int number) throws IOException {
+		if (number >= 10) {
+			writeDigits(output, number / 10);
+		}
+		output.write('0' + number % 10);
+	}
+
+	/**
+	 * Returns whether the bytes argument are valid UTF-8, rejecting overlong forms, surrogates and code points above
+	 * U+10FFFF.
+	 *
+	 * @param bytes The bytes.
+	 * @param length The number of bytes.
+	 * @return True if the bytes are valid UTF-8.
+	 */
+	static boolean isUtf8(final byte[] bytes, final int length) {
+		int i = 0;
+		while (i < length) {
+			int b = bytes[i++] & 0xFF;
+			if (b < 0x80) {
+				continue;
+			}
+
+			int continuations;
+			int min;
+			if (b >= 0xC2 && b <= 0xDF) {
+				continuations = 1;
+				min = 0x80;
+			} else if (b >= 0xE0 && b <= 0xEF) {
+				continuations = 2;
+				min = 0x800;
+			} else if (b >= 0xF0 && b <= 0xF4) {
+				continuations = 3;
+				min = 0x10000;
+			} else {
+				return false;
+			}
+			if (i + continuations > length) {
+				return false;
+			}
+
+			int codePoint = b & (0x3F >> continuations);
+			for (int j = 0; j < continuations; j++) {
+				int continuation = bytes[i++] & 0xFF;
+				if ((continuation & 0xC0) != 0x80) {
+					return false;
+				}
+				codePoint = codePoint << 6 | continuation & 0x3F;
+			}
+			if (codePoint < min || codePoint > 0x10FFFF || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A reusable growable buffer of bytes.
+	 */
+	private static final class Scratch {
+
+		private byte[] bytes = new byte[64];
+		private int length;
+
+		private void ensureCapacity(final int capacity) {
+			if (bytes.length < capacity) {
+				bytes = Arrays.copyOf(bytes, (int) Math.max(capacity, Math.min(Integer.MAX_VALUE - 8, bytes.length * 2L)));
+			}
+		}
+
+		private void add(final int b) {
+			ensureCapacity(length + 1);
+			bytes[length++] = (byte) b;
+		}
+
+	}
+
+	/**
+	 * The Bencoded data of the open JSON objects, held until each ends so that its members can be sorted by key. Each
+	 * member is recorded as the offset of its key's length, from which it runs to the next member or the end of its
+	 * object.
+	 */
+	private static final class Pending extends OutputStream {
+
+		private byte[] bytes = new byte[BUFFER_SIZE];
+		private int length;
+		/** The offset of each member of the open objects, and the length of its key, in pairs. */
+		private int[] members = new int[64];
+		private int memberCount;
+		/** The offset of each open object, and its first member. */
+		private final int[] objects = new int[Validate.MAX_DEPTH];
+		private final int[] firstMembers = new int[Validate.MAX_DEPTH];
+		private int open;
+		private int[] order = new int[0];
+		private int[] merge = new int[0];
+		private byte[] copy = new byte[0];
+
+		@Override
+		public void write(final int b) {
+			ensureCapacity(length + 1);
+			bytes[length++] = (byte) b;
+		}
+
+		@Override
+		public void write(final byte[] b, final int offset, final int count) {
+			ensureCapacity(length + count);
+			System.arraycopy(b, offset, bytes, length, count);
+			length += count;
+		}
+
+		private void ensureCapacity(final int capacity) {
+			if (bytes.length < capacity) {
+				bytes = Arrays.copyOf(bytes, (int) Math.max(capacity, Math.min(Integer.MAX_VALUE - 8, bytes.length * 2L)));
+			}
+		}
+
+		private boolean isOpen() {
+			return open > 0;
+		}
+
+		/**
+		 * Opens an object whose d is written next.
+		 */
+		private void open() {
+			objects[open] = length;
+			firstMembers[open++] = memberCount;
+		}
+
+		/**
+		 * Records a member whose key, of the length argument, is written next.
+		 */
+		private void addMember(final int keyLength) {
+			if (members.length < (memberCount + 1) * 2) {
+				members = Arrays.copyOf(members, members.length * 2);
+			}
+			members[memberCount * 2] = length;
+			members[memberCount * 2 + 1] = keyLength;
+			memberCount++;
+		}
+
+		/**
+		 * Ends the innermost open object, sorting its members by key.
+		 *
+		 * @throws InvalidFormatException Thrown if the object has duplicate keys.
+		 */
+		private void close(final Input input) throws InvalidFormatException {
+			int start = objects[--open] + 1;
+			int first = firstMembers[open];
+			int count = memberCount - first;
+			boolean sorted = true;
+			for (int i = first + 1; i < memberCount && sorted; i++) {
+				sorted = compareKeys(i - 1, i) < 0;
+			}
+
+			if (!sorted) {
+				if (order.length < count) {
+					order = new int[count];
+					merge = new int[count];
+				}
+				for (int i = 0; i < count; i++) {
+					order[i] = first + i;
+				}
+				mergeSort(0, count);
+				for (int i = 1; i < count; i++) {
+					if (compareKeys(order[i - 1], order[i]) == 0) {
+						throw input.invalid(Reason.MALFORMED, "JSON object has a duplicate key");
+					}
+				}
+
+				// Copy the members out, then back in the order of their keys.
+				if (copy.length < length - start) {
+					copy = new byte[length - start];
+				}
+				System.arraycopy(bytes, start, copy, 0, length - start);
+				int position = start;
+				for (int i = 0; i < count; i++) {
+					int member = order[i];
+					int memberStart = members[member * 2];
+					int memberEnd = member + 1 < memberCount ? members[(member + 1) * 2] : length;
+					System.arraycopy(copy, memberStart - start, bytes, position, memberEnd - memberStart);
+					position += memberEnd - memberStart;
+				}
+			}
+			memberCount = first;
+			write('e');
+		}
+
+		/**
+		 * Sorts the range of the member order by key, using the merge array to merge them.
+		 */
+		private void mergeSort(final int from, final int to) {
+			if (to - from < 2) {
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			mergeSort(from, middle);
+			mergeSort(middle, to);
+			if (compareKeys(order[middle - 1], order[middle]) <= 0) {
+				return;
+			}
+			System.arraycopy(order, from, merge, from, to - from);
+			for (int i = from, left = from, right = middle; i < to; i++) {
+				if (right >= to || (left < middle && compareKeys(merge[left], merge[right]) <= 0)) {
+					order[i] = merge[left++];
+				} else {
+					order[i] = merge[right++];
+				}
+			}
+		}
+
+		/**
+		 * Compares the keys of the members, treating their bytes as unsigned.
+		 */
+		private int compareKeys(final int a, final int b) {
+			int aKey = key(a);
+			int bKey = key(b);
+			int aLength = members[a * 2 + 1];
+			int bLength = members[b * 2 + 1];
+			for (int i = 0; i < Math.min(aLength, bLength); i++) {
+				int difference = (bytes[aKey + i] & 0xFF) - (bytes[bKey + i] & 0xFF);
+				if (difference != 0) {
+					return difference;
+				}
+			}
+			return aLength - bLength;
+		}
+
+		/**
+		 * Returns the offset of the member's key, after its length and colon.
+		 */
+		private int key(final int member) {
+			int i = members[member * 2];
+			while (bytes[i++] != ':') {
+			}
+			return i;
+		}
+
+	}
+
+	/**
+	 * A buffered input stream that tracks its offset, for reporting errors.
+	 */
+	private static final class Input {
+
+		private final InputStream in;
+		private final int maxStringLength;
+		private final byte[] buffer = new byte[BUFFER_SIZE];
+		private int position;
+		private int limit;
+		/** The offset in the stream of the start of the buffer. */
+		private long base;
+
+		private Input(final InputStream in, final int maxStringLength) {
+			this.in = in;
+			this.maxStringLength = maxStringLength;
+		}
+
+		/**
+		 * Returns the next byte, or -1 at the end of the stream.
+		 */
+		private int read() throws IOException {
+			if (position == limit) {
+				base += limit;
+				position = 0;
+				limit = Math.max(0, in.read(buffer));
+				if (limit == 0) {
+					return -1;
+				}
+			}
+			return buffer[position++] & 0xFF;
+		}
+
+		private void readFully(final byte[] bytes, final int offset, final int length) throws InvalidFormatException, IOException {
+			int read = 0;
+			while (read < length) {
+				if (position == limit && read() >= 0) {
+					position--;
+				}
+				int count = Math.min(length - read, limit - position);
+				if (count <= 0) {
+					throw invalid(Reason.INVALID_LENGTH, "String is shorter than its length");
+				}
+				System.arraycopy(buffer, position, bytes, offset + read, count);
+				position += count;
+				read += count;
+			}
+		}
+
+		/**
+		 * Reads the length of a Bencoded string starting with the digit argument, and its colon.
+		 */
+		private int readLength(final int digit) throws InvalidFormatException, IOException {
+			long length = digit - '0';
+			int c;
+			while ((c = read()) != ':') {
+				if (c < '0' || c > '9') {
+					throw invalid(Reason.MALFORMED, "String length is missing a colon");
+				} else if (length == 0) {
+					throw invalid(Reason.LEADING_ZERO, "String length has leading zeros");
+				}
+				length = length * 10 + (c - '0');
+				if (length > Integer.MAX_VALUE) {
+					throw invalid(Reason.INVALID_LENGTH, "String length is too long");
+				}
+			}
+			return (int) length;
+		}
+
+		/**
+		 * Reads the Bencoded string whose length starts with the digit argument into the scratch argument.
+		 */
+		private void readString(final int digit, final Scratch scratch) throws InvalidFormatException, IOException {
+			int length = readLength(digit);
+			if (length > maxStringLength) {
+				throw invalid(Reason.INVALID_LENGTH, "String is longer than the maximum of " + maxStringLength + " bytes");
+			}
+
+			// Grow the scratch as the string is read, so a length longer than the data doesn't allocate it up front.
+			scratch.length = 0;
+			while (scratch.length < length) {
+				int chunk = Math.min(length - scratch.length, BUFFER_SIZE);
+				scratch.ensureCapacity(scratch.length + chunk);
+				readFully(scratch.bytes, scratch.length, chunk);
+				scratch.length += chunk;
+			}
+		}
+
+		/**
+		 * Returns the next JSON character that isn't whitespace, or -1 at the end of the stream.
+		 */
+		private int readJson() throws IOException {
+			return skipWhitespace(read());
+		}
+
+		private int skipWhitespace(int c) throws IOException {
+			while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+				c = read();
+			}
+			return c;
+		}
+
+		private void expect(final String rest) throws InvalidFormatException, IOException {
+			for (int i = 0; i < rest.length(); i++) {
+				if (read() != rest.charAt(i)) {
+					throw invalid(Reason.MALFORMED, "JSON contains an invalid literal");
+				}
+			}
+		}
+
+		/**
+		 * Reads the JSON string after its opening quote into the scratch argument as UTF-8, resolving escapes.
+		 */
+		private void readJsonString(final Scratch scratch) throws InvalidFormatException, IOException {
+			scratch.length = 0;
+			int c;
+			while ((c = read()) != '"') {
+				if (c < 0x20) {
+					throw invalid(Reason.MALFORMED, c < 0 ? "JSON string is missing its closing quote" : "JSON string contains a control character");
+				} else if (scratch.length >= maxStringLength) {
+					throw invalid(Reason.INVALID_LENGTH, "JSON string is longer than the maximum of " + maxStringLength + " bytes");
+				} else if (c != '\\') {
+					scratch.add(c);
+					continue;
+				}
+
+				c = read();
+				switch (c) {
+				case '"':
+				case '\\':
+				case '/':
+					scratch.add(c);
+					break;
+				case 'b':
+					scratch.add('\b');
+					break;
+				case 'f':
+					scratch.add('\f');
+					break;
+				case 'n':
+					scratch.add('\n');
+					break;
+				case 'r':
+					scratch.add('\r');
+					break;
+				case 't':
+					scratch.add('\t');
+					break;
+				case 'u':
+					int codePoint = readHex4();
+					if (codePoint >= 0xDC00 && codePoint <= 0xDFFF) {
+						throw invalid(Reason.MALFORMED, "JSON string contains an unpaired surrogate");
+					} else if (codePoint >= 0xD800 && codePoint <= 0xDBFF) {
+						if (read() != '\\' || read() != 'u') {
+							throw invalid(Reason.MALFORMED, "JSON string contains an unpaired surrogate");
+						}
+						int low = readHex4();
+						if (low < 0xDC00 || low > 0xDFFF) {
+							throw invalid(Reason.MALFORMED, "JSON string contains an unpaired surrogate");
+						}
+						codePoint = Character.toCodePoint((char) codePoint, (char) low);
+					}
+					addUtf8(scratch, codePoint);
+					break;
+				default:
+					throw invalid(Reason.MALFORMED, "JSON string contains an invalid escape");
+				}
+			}
+		}
+
+		private int readHex4() throws InvalidFormatException, IOException {
+			int value = 0;
+			for (int i = 0; i < 4; i++) {
+				value = value << 4 | hexValue(this, read());
+			}
+			return value;
+		}
+
+		private static void addUtf8(final Scratch scratch, final int codePoint) {
+			if (codePoint < 0x80) {
+				scratch.add(codePoint);
+			} else if (codePoint < 0x800) {
+				scratch.add(0xC0 | codePoint >> 6);
+				scratch.add(0x80 | codePoint & 0x3F);
+			} else if (codePoint < 0x10000) {
+				scratch.add(0xE0 | codePoint >> 12);
+				scratch.add(0x80 | (codePoint >> 6) & 0x3F);
+				scratch.add(0x80 | codePoint & 0x3F);
+			} else {
+				scratch.add(0xF0 | codePoint >> 18);
+				scratch.add(0x80 | (codePoint >> 12) & 0x3F);
+				scratch.add(0x80 | (codePoint >> 6) & 0x3F);
+				scratch.add(0x80 | codePoint & 0x3F);
+			}
+		}
+
+		/**
+		 * Returns an exception for an error at the last byte read.
+		 */
+		private InvalidFormatException invalid(final Reason reason, final String message) {
+			long offset = Math.max(0, base + position - 1);
+			return new InvalidFormatException(reason, message + " at offset " + offset, (int) Math.min(offset, Integer.MAX_VALUE));
+		}
+
+	}
+
+}
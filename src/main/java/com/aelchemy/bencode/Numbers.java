@@ -0,0 +1,91 @@
+package com.aelchemy.bencode;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Contains methods for parsing the digits of Bencoded numbers in {@link ByteBuffer}s by absolute index, without
+ * changing the buffers' positions. The digits must already be validated.
+ * <p>
+ * Numbers of up to 18 digits always fit in a long, so they are parsed without checking for overflow. Longer numbers
+ * are compared against the limits of a long, and only parsed into a {@link BigInteger} when they don't fit.
+ *
+ * @author Aelexe
+ *
+ */
+final class Numbers {
+
+	/** The most digits a number can have and always fit in a long. */
+	static final int LONG_SAFE_DIGITS = 18;
+
+	private static final byte[] LONG_MAX_DIGITS = "9223372036854775807".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] LONG_MIN_DIGITS = "9223372036854775808".getBytes(StandardCharsets.US_ASCII);
+
+	private Numbers() {
+	}
+
+	/**
+	 * Returns whether the number from the index argument to the end argument fits in a long.
+	 *
+	 * @param bData The buffer containing the number.
+	 * @param index The index of the number's minus sign or first digit.
+	 * @param end The index after the number's last digit.
+	 * @return True if the number fits in a long.
+	 */
+	static boolean fitsLong(final ByteBuffer bData, final int index, final int end) {
+		boolean negative = bData.get(index) == '-';
+		int first = negative ? index + 1 : index;
+		int digits = end - first;
+		if (digits <= LONG_SAFE_DIGITS) {
+			return true;
+		} else if (digits > LONG_MAX_DIGITS.length) {
+			return false;
+		}
+
+		// Compare the digits of a 19 digit number against the limit, which has as many digits.
+		byte[] limit = negative ? LONG_MIN_DIGITS : LONG_MAX_DIGITS;
+		for (int i = 0; i < digits; i++) {
+			int difference = bData.get(first + i) - limit[i];
+			if (difference != 0) {
+				return difference < 0;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses the number from the index argument to the end argument, which must {@link #fitsLong fit in a long}.
+	 *
+	 * @param bData The buffer containing the number.
+	 * @param index The index of the number's minus sign or first digit.
+	 * @param end The index after the number's last digit.
+	 * @return The number.
+	 */
+	static long parseLong(final ByteBuffer bData, final int index, final int end) {
+		boolean negative = bData.get(index) == '-';
+
+		// Accumulate negatively, so Long.MIN_VALUE can be parsed without overflowing.
+		long number = 0;
+		for (int i = negative ? index + 1 : index; i < end; i++) {
+			number = number * 10 - (bData.get(i) - '0');
+		}
+		return negative ? number : -number;
+	}
+
+	/**
+	 * Parses the number of any size from the index argument to the end argument.
+	 *
+	 * @param bData The buffer containing the number.
+	 * @param index The index of the number's minus sign or first digit.
+	 * @param end The index after the number's last digit.
+	 * @return The number.
+	 */
+	static BigInteger parseBigInteger(final ByteBuffer bData, final int index, final int end) {
+		if (fitsLong(bData, index, end)) {
+			return BigInteger.valueOf(parseLong(bData, index, end));
+		}
+		return new BigInteger(Bytes.string(bData, index, end - index));
+	}
+
+}
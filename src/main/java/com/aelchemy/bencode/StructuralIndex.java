@@ -0,0 +1,345 @@
+package com.aelchemy.bencode;
+
+import java.math.BigInteger;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.aelchemy.bencode.data.ValueType;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * {@link StructuralIndex} is an index of the values in Bencoded data, giving random access to any value without
+ * decoding the values around it.
+ * <p>
+ * Values are numbered in the order they appear in the data, including dictionary keys, with the top level value being
+ * value 0. For each value the index holds its type, its start and end offsets, and the number of the next value at
+ * the same depth, so a list or dictionary's values can be walked without visiting the values nested in them.
+ * <p>
+ * The index is built in two passes over the data: the allocation free {@link Bencode#validate validation} pass, then a
+ * pass recording every value into primitive arrays. Strings are jumped over by their length, so the cost of the index
+ * depends on the number of values rather than the length of the data.
+ *
+ * @author Aelexe
+ *
+ */
+public final class StructuralIndex {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final ByteBuffer bData;
+	private final int base;
+	private int size;
+	private byte[] types = new byte[INITIAL_CAPACITY];
+	private int[] starts = new int[INITIAL_CAPACITY];
+	private int[] ends = new int[INITIAL_CAPACITY];
+	private int[] nexts = new int[INITIAL_CAPACITY];
+
+	private StructuralIndex(final ByteBuffer bData) {
+		this.bData = bData;
+		this.base = bData.position();
+	}
+
+	/**
+	 * Indexes the Bencoded value at the position of the buffer argument. <br>
+	 * The buffer is read by absolute index and must not be modified while the index is used.
+	 *
+	 * @param bData The buffer containing the Bencoded data.
+	 * @return The index.
+	 * @throws InvalidFormatException Thrown if the Bencoded value is an invalid format.
+	 */
+	static StructuralIndex of(final ByteBuffer bData) throws InvalidFormatException {
+		int end = Validate.validate(bData, false);
+		if (end < 0) {
+			if (!bData.hasRemaining()) {
+				throw new InvalidFormatException(Reason.EMPTY, "Data is empty", 0);
+			}
+			throw new InvalidFormatException(Reason.MALFORMED, "Data is invalid at offset " + ~end, ~end);
+		}
+
+		StructuralIndex index = new StructuralIndex(bData);
+		index.build(bData.position() + end);
+		return index;
+	}
+
+	/**
+	 * Returns the buffer containing the indexed data.
+	 *
+	 * @return The buffer.
+	 */
+	public ByteBuffer getBuffer() {
+		return bData;
+	}
+
+	/**
+	 * Returns the number of values in the index, including dictionary keys.
+	 *
+	 * @return The number of values.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the type of the value argument.
+	 *
+	 * @param value The number of the value.
+	 * @return The type of the value.
+	 */
+	public ValueType getType(final int value) {
+		return ValueType.of(types[check(value)]);
+	}
+
+	/**
+	 * Returns the offset of the start of the value argument, from the position of the buffer.
+	 *
+	 * @param value The number of the value.
+	 * @return The start offset.
+	 */
+	public int getStart(final int value) {
+		return starts[check(value)] - base;
+	}
+
+	/**
+	 * Returns the offset after the end of the value argument, from the position of the buffer.
+	 *
+	 * @param value The number of the value.
+	 * @return The end offset.
+	 */
+	public int getEnd(final int value) {
+		return ends[check(value)] - base;
+	}
+
+	/**
+	 * Returns the number of the value following the value argument at the same depth, skipping any values nested in
+	 * it.
+	 *
+	 * @param value The number of the value.
+	 * @return The number of the next value, or {@link #size()} if the value is the last.
+	 */
+	public int getNext(final int value) {
+		return nexts[check(value)];
+	}
+
+	/**
+	 * Returns the number of values directly in the list or dictionary argument. Dictionaries count their keys and
+	 * values.
+	 *
+	 * @param container The number of the list or dictionary.
+	 * @return The number of values.
+	 */
+	public int getChildCount(final int container) {
+		int count = 0;
+		for (int child = container + 1; child < nexts[check(container)]; child = nexts[child]) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the value at the position argument in the list argument.
+	 *
+	 * @param list The number of the list.
+	 * @param position The position in the list.
+	 * @return The number of the value, or -1 if the list doesn't have the position.
+	 */
+	public int get(final int list, final int position) {
+		checkType(list, 'l');
+		int child = list + 1;
+		for (int i = 0; i < position && child < nexts[list]; i++) {
+			child = nexts[child];
+		}
+		return position >= 0 && child < nexts[list] ? child : -1;
+	}
+
+	/**
+	 * Returns the value of the key argument in the dictionary argument.
+	 *
+	 * @param dictionary The number of the dictionary.
+	 * @param key The key.
+	 * @return The number of the value, or -1 if the dictionary doesn't contain the key.
+	 */
+	public int get(final int dictionary, final String key) {
+		checkType(dictionary, 'd');
+		for (int child = dictionary + 1; child < nexts[dictionary]; child = nexts[child + 1]) {
+			if (keyEquals(child, key)) {
+				return child + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the offset of the data of the string argument, after its colon.
+	 *
+	 * @param string The number of the string.
+	 * @return The offset of the string's data, from the position of the buffer.
+	 */
+	public int getStringStart(final int string) {
+		checkType(string, '0');
+		return stringStart(string) - base;
+	}
+
+	/**
+	 * Returns the length of the string argument.
+	 *
+	 * @param string The number of the string.
+	 * @return The length of the string.
+	 */
+	public int getStringLength(final int string) {
+		checkType(string, '0');
+		return ends[string] - stringStart(string);
+	}
+
+	/**
+	 * Returns the string argument, one character per byte.
+	 *
+	 * @param string The number of the string.
+	 * @return The string.
+	 */
+	public String getString(final int string) {
+		checkType(string, '0');
+		int start = stringStart(string);
+		return Bytes.string(bData, start, ends[string] - start);
+	}
+
+	/**
+	 * Returns the data of the string argument as a slice of the buffer, without copying it.
+	 *
+	 * @param string The number of the string.
+	 * @return A buffer sharing the string's bytes.
+	 */
+	public ByteBuffer getStringSlice(final int string) {
+		checkType(string, '0');
+		ByteBuffer slice = bData.duplicate();
+		// Cast to Buffer so the Java 8 signatures of limit and position are linked.
+		((Buffer) slice).limit(ends[string]).position(stringStart(string));
+		return slice.slice();
+	}
+
+	/**
+	 * Returns the number argument.
+	 *
+	 * @param number The number of the number.
+	 * @return The number.
+	 * @throws InvalidFormatException Thrown if the number doesn't fit in a long.
+	 */
+	public long getNumber(final int number) throws InvalidFormatException {
+		checkType(number, 'i');
+		if (!Numbers.fitsLong(bData, starts[number] + 1, ends[number] - 1)) {
+			throw new InvalidFormatException(Reason.INVALID_NUMBER, "Data could not be parsed to a long", starts[number] - base);
+		}
+		return Numbers.parseLong(bData, starts[number] + 1, ends[number] - 1);
+	}
+
+	/**
+	 * Returns the number argument, of any size.
+	 *
+	 * @param number The number of the number.
+	 * @return The number.
+	 */
+	public BigInteger getBigNumber(final int number) {
+		checkType(number, 'i');
+		return Numbers.parseBigInteger(bData, starts[number] + 1, ends[number] - 1);
+	}
+
+	/**
+	 * Returns whether the key argument equals the string argument, comparing one character per byte.
+	 *
+	 * @param string The number of the string.
+	 * @param key The key.
+	 * @return True if they are equal.
+	 */
+	public boolean keyEquals(final int string, final String key) {
+		int start = stringStart(string);
+		if (ends[string] - start != key.length()) {
+			return false;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			if ((bData.get(start + i) & 0xFF) != key.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records every value between the buffer's position and the end index argument. The data must be valid.
+	 *
+	 * @param end The index after the end of the top level value.
+	 */
+	private void build(final int end) {
+		int[] open = new int[INITIAL_CAPACITY];
+		int depth = 0;
+
+		int i = base;
+		while (i < end) {
+			byte c = bData.get(i);
+			if (c == 'e') {
+				// Close the innermost list or dictionary.
+				int container = open[--depth];
+				ends[container] = ++i;
+				nexts[container] = size;
+				continue;
+			}
+
+			int value = add(i);
+			if (c == 'i') {
+				while (bData.get(++i) != 'e') {
+				}
+				i++;
+			} else if (c == 'l' || c == 'd') {
+				if (depth == open.length) {
+					open = Arrays.copyOf(open, depth * 2);
+				}
+				open[depth++] = value;
+				i++;
+				continue;
+			} else {
+				int length = 0;
+				while ((c = bData.get(i++)) != ':') {
+					length = length * 10 + (c - '0');
+				}
+				i += length;
+				types[value] = '0';
+			}
+			ends[value] = i;
+			nexts[value] = size;
+		}
+	}
+
+	private int add(final int start) {
+		if (size == starts.length) {
+			int capacity = size * 2;
+			types = Arrays.copyOf(types, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			nexts = Arrays.copyOf(nexts, capacity);
+		}
+		types[size] = bData.get(start);
+		starts[size] = start;
+		return size++;
+	}
+
+	private int stringStart(final int string) {
+		int i = starts[string];
+		while (bData.get(i++) != ':') {
+		}
+		return i;
+	}
+
+	private int check(final int value) {
+		if (value < 0 || value >= size) {
+			throw new IndexOutOfBoundsException("Value out of range: " + value);
+		}
+		return value;
+	}
+
+	private void checkType(final int value, final char type) {
+		if (types[check(value)] != type) {
+			throw new IllegalArgumentException("Value " + value + " is a " + getType(value) + ".");
+		}
+	}
+
+}
@@ -0,0 +1,206 @@
+package com.aelchemy.bencode;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.data.BDictionary;
+import com.aelchemy.bencode.data.BList;
+
+/**
+ * {@link Template} is a pre-encoded Bencoded dictionary with slots for values that change between encodes.
+ * <p>
+ * The constant entries and the keys of the slots are encoded once when the template is compiled, so encoding a
+ * dictionary from the template only appends the pre-encoded fragments and the encoded slot values to a buffer.
+ * <p>
+ * Templates are immutable and may be shared between threads.
+ *
+ * @author Aelexe
+ *
+ */
+public class Template {
+
+	/** The pre-encoded fragments. A slot value is encoded between each consecutive pair of fragments. */
+	private final String[] fragments;
+	/** The index of the value argument encoded after each fragment, in the order the slots appear in the dictionary. */
+	private final int[] slotArguments;
+	/** The combined length of all fragments. */
+	private final int fragmentsLength;
+
+	private Template(final String[] fragments, final int[] slotArguments) {
+		this.fragments = fragments;
+		this.slotArguments = slotArguments;
+
+		int length = 0;
+		for (String fragment : fragments) {
+			length += fragment.length();
+		}
+		this.fragmentsLength = length;
+	}
+
+	/**
+	 * Compiles the {@link BDictionary} argument into a template. <br>
+	 * The values of the slot keys in the dictionary are ignored, only their position is kept.
+	 *
+	 * @param dictionary The {@link BDictionary} describing the shape of the encoded dictionary.
+	 * @param slotKeys The keys whose values are provided each time the template is encoded, in the order they are provided.
+	 * @return The compiled template.
+	 * @throws IllegalArgumentException Thrown if a slot key is not contained in the dictionary or is repeated.
+	 */
+	static Template compile(final BDictionary dictionary, final String... slotKeys) {
+		// Validate every slot key is in the dictionary, once.
+		for (int i = 0; i < slotKeys.length; i++) {
+			if (!dictionary.contains(slotKeys[i])) {
+				throw new IllegalArgumentException("Slot key is not contained in the dictionary: \"" + slotKeys[i] + "\"");
+			}
+			for (int j = 0; j < i; j++) {
+				if (slotKeys[i].equals(slotKeys[j])) {
+					throw new IllegalArgumentException("Slot key is repeated: \"" + slotKeys[i] + "\"");
+				}
+			}
+		}
+
+		String[] fragments = new String[slotKeys.length + 1];
+		int[] slotArguments = new int[slotKeys.length];
+		int slot = 0;
+
+		// Encode the entries in dictionary order, closing the current fragment after each slot key.
+		StringBuilder fragment = new StringBuilder();
+		fragment.append("d");
+		for (String key : dictionary.keySet()) {
+			Encode.appendString(fragment, key);
+
+			int argument = indexOf(slotKeys, key);
+			if (argument < 0) {
+				Encode.append(fragment, dictionary.get(key));
+			} else {
+				fragments[slot] = fragment.toString();
+				slotArguments[slot] = argument;
+				slot++;
+				fragment.setLength(0);
+			}
+		}
+		fragment.append("e");
+		fragments[slot] = fragment.toString();
+
+		return new Template(fragments, slotArguments);
+	}
+
+	/**
+	 * Encodes the template with the value arguments in its slots. <br>
+	 * A value may be a {@link String}, a {@link Long}, {@link Integer}, {@link Short}, {@link Byte}, {@link BigInteger},
+	 * {@link AtomicLong} or {@link AtomicInteger}, a {@link BData}, {@link BList} or {@link BDictionary}. Null will be
+	 * treated as an empty string.
+	 *
+	 * @param values The slot values, in the order the slot keys were provided when compiling the template.
+	 * @return The Bencoded dictionary.
+	 * @throws IllegalArgumentException Thrown if the number of values doesn't match the number of slots, or a value is
+	 *             of an unsupported type.
+	 */
+	public String encode(final Object... values) {
+		return appendTo(new StringBuilder(estimateLength(values)), values).toString();
+	}
+
+	/**
+	 * Encodes the template with the value arguments in its slots, appending it to the builder argument. <br>
+	 * If an exception is thrown the builder is left as it was.
+	 *
+	 * @param builder The builder to append the Bencoded dictionary to.
+	 * @param values The slot values, in the order the slot keys were provided when compiling the template.
+	 * @return The builder argument.
+	 * @throws IllegalArgumentException Thrown if the number of values doesn't match the number of slots, or a value is
+	 *             of an unsupported type.
+	 * @see #encode(Object...)
+	 */
+	public StringBuilder appendTo(final StringBuilder builder, final Object... values) {
+		if (values.length != slotArguments.length) {
+			throw new IllegalArgumentException("Expected " + slotArguments.length + " values but received " + values.length + ".");
+		}
+
+		int length = builder.length();
+		try {
+			builder.append(fragments[0]);
+			for (int i = 0; i < slotArguments.length; i++) {
+				appendValue(builder, values[slotArguments[i]]);
+				builder.append(fragments[i + 1]);
+			}
+		} catch (RuntimeException e) {
+			// Drop the part of the dictionary appended before the unsupported value.
+			builder.setLength(length);
+			throw e;
+		}
+
+		return builder;
+	}
+
+	/**
+	 * Returns the number of slots in the template.
+	 *
+	 * @return The number of slots.
+	 */
+	public int getSlotCount() {
+		return slotArguments.length;
+	}
+
+	@Override
+	public String toString() {
+		return "Template" + Arrays.toString(fragments);
+	}
+
+	/**
+	 * Appends the Bencoded value argument to the builder argument.
+	 *
+	 * @param builder The builder to append to.
+	 * @param value The value to encode.
+	 */
+	private static void appendValue(final StringBuilder builder, final Object value) {
+		if (value == null || value instanceof String) {
+			Encode.appendString(builder, (String) value);
+		} else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte
+				|| value instanceof AtomicLong || value instanceof AtomicInteger) {
+			Encode.appendNumber(builder, ((Number) value).longValue());
+		} else if (value instanceof BigInteger) {
+			builder.append(Encode.encodeNumber((BigInteger) value));
+		} else if (value instanceof BData) {
+			Encode.append(builder, (BData) value);
+		} else if (value instanceof BList) {
+			Encode.appendList(builder, (BList) value);
+		} else if (value instanceof BDictionary) {
+			Encode.appendDictionary(builder, (BDictionary) value);
+		} else {
+			throw new IllegalArgumentException("Value can not be Bencoded: " + value.getClass().getName());
+		}
+	}
+
+	/**
+	 * Estimates the length of the template encoded with the value arguments, so the builder doesn't need to grow.
+	 *
+	 * @param values The slot values.
+	 * @return The estimated length.
+	 */
+	private int estimateLength(final Object[] values) {
+		int length = fragmentsLength;
+		for (Object value : values) {
+			if (value instanceof String) {
+				// Length, colon and the string itself.
+				length += 11 + ((String) value).length();
+			} else {
+				// Enough for a number.
+				length += 21;
+			}
+		}
+		return length;
+	}
+
+	private static int indexOf(final String[] keys, final String key) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i].equals(key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,355 @@
+package com.aelchemy.bencode;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.aelchemy.bencode.data.ValueType;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * {@link TorrentMeta} is a read only view of BitTorrent metainfo, as found in a .torrent file, over its Bencoded bytes.
+ * <p>
+ * The metainfo is {@link StructuralIndex indexed} and its structure checked once, when it is opened. Nothing is
+ * decoded until it is asked for: numbers are parsed and strings built by their accessors, and the piece hashes are
+ * returned as slices of the data. The info hash is the SHA-1 hash of the raw bytes of the info dictionary, so it is
+ * correct even if the dictionary's keys aren't sorted.
+ * <p>
+ * Single file torrents are treated as having one file, whose path is the torrent's name. The data must not be
+ * modified while the view is used.
+ *
+ * @author Aelexe
+ *
+ */
+public final class TorrentMeta {
+
+	/** The length of a SHA-1 piece hash. */
+	public static final int PIECE_HASH_LENGTH = 20;
+
+	private final StructuralIndex index;
+	private final int info;
+	private final int name;
+	private final int pieces;
+	private final long pieceLength;
+	/** The length of a single file torrent, or the list of files of a multiple file torrent. */
+	private final int files;
+	private volatile int[] fileEntries;
+	private volatile byte[] infoHash;
+
+	private TorrentMeta(final StructuralIndex index) throws InvalidFormatException {
+		this.index = index;
+		if (index.getType(0) != ValueType.DICTIONARY) {
+			throw invalid("Metainfo isn't a dictionary", 0);
+		}
+		info = require(0, "info", ValueType.DICTIONARY);
+		name = require(info, "name", ValueType.STRING);
+		pieceLength = index.getNumber(require(info, "piece length", ValueType.NUMBER));
+		pieces = require(info, "pieces", ValueType.STRING);
+		if (index.getStringLength(pieces) % PIECE_HASH_LENGTH != 0) {
+			throw invalid("Pieces isn't a multiple of " + PIECE_HASH_LENGTH + " bytes", index.getStart(pieces));
+		}
+
+		if (index.get(info, "length") >= 0) {
+			files = require(info, "length", ValueType.NUMBER);
+			index.getNumber(files);
+		} else {
+			files = require(info, "files", ValueType.LIST);
+			for (int file = files + 1; file < index.getNext(files); file = index.getNext(file)) {
+				if (index.getType(file) != ValueType.DICTIONARY) {
+					throw invalid("File isn't a dictionary", index.getStart(file));
+				}
+				index.getNumber(require(file, "length", ValueType.NUMBER));
+				int path = require(file, "path", ValueType.LIST);
+				for (int element = path + 1; element < index.getNext(path); element = index.getNext(element)) {
+					if (index.getType(element) != ValueType.STRING) {
+						throw invalid("Path element isn't a string", index.getStart(element));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Opens a view of the Bencoded metainfo argument.
+	 *
+	 * @param bData The Bencoded metainfo.
+	 * @return The view.
+	 * @throws InvalidFormatException Thrown if the data is an invalid format, or isn't metainfo with the required keys.
+	 */
+	public static TorrentMeta of(final byte[] bData) throws InvalidFormatException {
+		return of(ByteBuffer.wrap(bData));
+	}
+
+	/**
+	 * Opens a view of the Bencoded metainfo at the buffer argument's position, without changing the buffer's position.
+	 *
+	 * @param bData The buffer containing the Bencoded metainfo.
+	 * @return The view.
+	 * @throws InvalidFormatException Thrown if the data is an invalid format, or isn't metainfo with the required keys.
+	 */
+	public static TorrentMeta of(final ByteBuffer bData) throws InvalidFormatException {
+		return new TorrentMeta(StructuralIndex.of(bData));
+	}
+
+	/**
+	 * Returns the index of the metainfo, for reading keys the view has no accessor for.
+	 *
+	 * @return The index.
+	 */
+	public StructuralIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Returns the announce URL of the tracker.
+	 *
+	 * @return The announce URL, or null if the metainfo doesn't have one.
+	 */
+	public String getAnnounce() {
+		int announce = optional(0, "announce", ValueType.STRING);
+		return announce < 0 ? null : index.getString(announce);
+	}
+
+	/**
+	 * Returns the tiers of announce URLs of the trackers, from the announce list. Elements that aren't strings are
+	 * skipped.
+	 *
+	 * @return The tiers of announce URLs, which are empty if the metainfo doesn't have an announce list.
+	 */
+	public List<List<String>> getAnnounceList() {
+		int announceList = optional(0, "announce-list", ValueType.LIST);
+		if (announceList < 0) {
+			return Collections.emptyList();
+		}
+		List<List<String>> tiers = new ArrayList<List<String>>();
+		for (int tier = announceList + 1; tier < index.getNext(announceList); tier = index.getNext(tier)) {
+			if (index.getType(tier) == ValueType.LIST) {
+				List<String> urls = new ArrayList<String>();
+				for (int url = tier + 1; url < index.getNext(tier); url = index.getNext(url)) {
+					if (index.getType(url) == ValueType.STRING) {
+						urls.add(index.getString(url));
+					}
+				}
+				tiers.add(Collections.unmodifiableList(urls));
+			}
+		}
+		return Collections.unmodifiableList(tiers);
+	}
+
+	/**
+	 * Returns the name of the torrent: the file name of a single file torrent, or the directory name of a multiple
+	 * file torrent.
+	 *
+	 * @return The name, one character per byte.
+	 */
+	public String getName() {
+		return index.getString(name);
+	}
+
+	/**
+	 * Returns the length of each piece, except the last.
+	 *
+	 * @return The piece length.
+	 */
+	public long getPieceLength() {
+		return pieceLength;
+	}
+
+	/**
+	 * Returns the number of pieces.
+	 *
+	 * @return The number of pieces.
+	 */
+	public int getPieceCount() {
+		return index.getStringLength(pieces) / PIECE_HASH_LENGTH;
+	}
+
+	/**
+	 * Returns the SHA-1 hash of the piece argument, as a slice of the data.
+	 *
+	 * @param piece The position of the piece.
+	 * @return A read only buffer sharing the piece's 20 byte hash.
+	 * @throws IndexOutOfBoundsException Thrown if the torrent doesn't have the piece.
+	 */
+	public ByteBuffer getPieceHash(final int piece) {
+		if (piece < 0 || piece >= getPieceCount()) {
+			throw new IndexOutOfBoundsException("Piece " + piece + " of " + getPieceCount());
+		}
+		return slice(index.getStringStart(pieces) + piece * PIECE_HASH_LENGTH, PIECE_HASH_LENGTH);
+	}
+
+	/**
+	 * Returns whether the torrent has a list of files, rather than a single file.
+	 *
+	 * @return True if the torrent has a list of files.
+	 */
+	public boolean isMultiFile() {
+		return index.getType(files) == ValueType.LIST;
+	}
+
+	/**
+	 * Returns the number of files, which is 1 for a single file torrent.
+	 *
+	 * @return The number of files.
+	 */
+	public int getFileCount() {
+		return isMultiFile() ? fileEntries().length : 1;
+	}
+
+	/**
+	 * Returns the length of the file argument.
+	 *
+	 * @param file The position of the file.
+	 * @return The length of the file.
+	 * @throws IndexOutOfBoundsException Thrown if the torrent doesn't have the file.
+	 */
+	public long getFileLength(final int file) {
+		return number(isMultiFile() ? index.get(fileEntry(file), "length") : singleFile(file));
+	}
+
+	/**
+	 * Returns the path of the file argument, relative to the torrent's name for a multiple file torrent.
+	 *
+	 * @param file The position of the file.
+	 * @return The elements of the path, one character per byte.
+	 * @throws IndexOutOfBoundsException Thrown if the torrent doesn't have the file.
+	 */
+	public List<String> getFilePath(final int file) {
+		if (!isMultiFile()) {
+			singleFile(file);
+			return Collections.singletonList(getName());
+		}
+		int path = index.get(fileEntry(file), "path");
+		List<String> elements = new ArrayList<String>();
+		for (int element = path + 1; element < index.getNext(path); element = index.getNext(element)) {
+			elements.add(index.getString(element));
+		}
+		return Collections.unmodifiableList(elements);
+	}
+
+	/**
+	 * Returns the total length of the files.
+	 *
+	 * @return The total length.
+	 */
+	public long getTotalLength() {
+		if (!isMultiFile()) {
+			return number(files);
+		}
+		long length = 0;
+		for (int file = files + 1; file < index.getNext(files); file = index.getNext(file)) {
+			length += number(index.get(file, "length"));
+		}
+		return length;
+	}
+
+	/**
+	 * Returns the raw bytes of the info dictionary, as a slice of the data.
+	 *
+	 * @return A read only buffer sharing the info dictionary's bytes.
+	 */
+	public ByteBuffer getInfo() {
+		return slice(index.getStart(info), index.getEnd(info) - index.getStart(info));
+	}
+
+	/**
+	 * Returns the info hash identifying the torrent: the SHA-1 hash of the raw bytes of the info dictionary. <br>
+	 * The hash is computed once, when first asked for.
+	 *
+	 * @return The 20 byte info hash.
+	 */
+	public byte[] getInfoHash() {
+		byte[] hash = infoHash;
+		if (hash == null) {
+			try {
+				MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+				sha1.update(getInfo());
+				infoHash = hash = sha1.digest();
+			} catch (NoSuchAlgorithmException e) {
+				// Every Java platform is required to support SHA-1.
+				throw new IllegalStateException(e);
+			}
+		}
+		return hash.clone();
+	}
+
+	/**
+	 * Returns the entries of the list of files, which are numbered once, when first asked for.
+	 */
+	private int[] fileEntries() {
+		int[] entries = fileEntries;
+		if (entries == null) {
+			entries = new int[index.getChildCount(files)];
+			int i = 0;
+			for (int file = files + 1; file < index.getNext(files); file = index.getNext(file)) {
+				entries[i++] = file;
+			}
+			fileEntries = entries;
+		}
+		return entries;
+	}
+
+	private int fileEntry(final int file) {
+		int[] entries = fileEntries();
+		if (file < 0 || file >= entries.length) {
+			throw new IndexOutOfBoundsException("File " + file + " of " + entries.length);
+		}
+		return entries[file];
+	}
+
+	private int singleFile(final int file) {
+		if (file != 0) {
+			throw new IndexOutOfBoundsException("File " + file + " of 1");
+		}
+		return files;
+	}
+
+	/**
+	 * Returns the number argument, which was checked to fit in a long when the view was opened.
+	 */
+	private long number(final int number) {
+		try {
+			return index.getNumber(number);
+		} catch (InvalidFormatException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Returns the value of the key argument in the dictionary argument, if it is of the type argument.
+	 *
+	 * @return The number of the value, or -1 if the dictionary doesn't contain the key or its value isn't of the type.
+	 */
+	private int optional(final int dictionary, final String key, final ValueType type) {
+		int value = index.get(dictionary, key);
+		return value >= 0 && index.getType(value) == type ? value : -1;
+	}
+
+	private int require(final int dictionary, final String key, final ValueType type) throws InvalidFormatException {
+		int value = index.get(dictionary, key);
+		if (value < 0) {
+			throw invalid("Metainfo is missing " + key, index.getStart(dictionary));
+		} else if (index.getType(value) != type) {
+			throw invalid("Metainfo " + key + " isn't a " + type.name().toLowerCase(), index.getStart(value));
+		}
+		return value;
+	}
+
+	private ByteBuffer slice(final int start, final int length) {
+		ByteBuffer bData = index.getBuffer();
+		ByteBuffer slice = bData.asReadOnlyBuffer();
+		// Cast to Buffer so the Java 8 signatures of limit and position are linked.
+		((Buffer) slice).limit(bData.position() + start + length).position(bData.position() + start);
+		return slice.slice();
+	}
+
+	private static InvalidFormatException invalid(final String message, final int offset) {
+		return new InvalidFormatException(Reason.MALFORMED, message + " at offset " + offset, offset);
+	}
+
+}
@@ -0,0 +1,341 @@
+package com.aelchemy.bencode;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Contains methods for validating Bencoded data without decoding it.
+ * <p>
+ * Validation is a single pass over the data that allocates nothing. Offsets are encoded as in
+ * {@link java.util.Arrays#binarySearch(int[], int)}: an end offset when valid, or (-(error offset) - 1) when invalid.
+ * 
+ * @author Aelexe
+ * 
+ */
+final class Validate {
+
+	/** The maximum depth of nested lists and dictionaries, beyond which data is treated as invalid. */
+	static final int MAX_DEPTH = 512;
+
+	private Validate() {
+	}
+
+	/**
+	 * Validates the Bencoded value starting at the buffer argument's position.
+	 * 
+	 * @param bData The buffer containing the Bencoded data, from its position to its limit.
+	 * @param sortedKeys Whether dictionary keys must be unique and in ascending order.
+	 * @return The offset from the buffer's position of the end of the value, or (-(offset of the error) - 1).
+	 */
+	static int validate(final ByteBuffer bData, final boolean sortedKeys) {
+		int position = bData.position();
+		int end = value(bData, position, bData.limit(), sortedKeys, 0);
+		return end >= 0 ? end - position : ~(~end - position);
+	}
+
+	/**
+	 * Returns whether the error at the offset argument may be the end of the data cutting off a valid value, rather than
+	 * invalid data. That is the case if the error is at the end of the data, at the start of a string's data, which is
+	 * the error for a string longer than the data after it, or in a string's length, which is rejected as soon as it is
+	 * longer than the data.
+	 * 
+	 * @param bData The buffer containing the Bencoded data, from its position to its limit.
+	 * @param error The offset of the error from the buffer's position, as returned by {@link #validate}.
+	 * @return True if more data may complete the value.
+	 */
+	static boolean isTruncated(final ByteBuffer bData, final int error) {
+		int index = bData.position() + error;
+		int limit = bData.limit();
+		if (index >= limit - 1 || (error > 0 && bData.get(index - 1) == ':')) {
+			return true;
+		} else if (error == 0 || !isDigit(bData.get(index)) || !isDigit(bData.get(index - 1))) {
+			// A digit after anything but another digit is the leading zero of a number.
+			return false;
+		}
+
+		// The length is rejected at a digit after its first, so must only be followed by digits and a colon.
+		int end = index;
+		while (end < limit && isDigit(bData.get(end))) {
+			end++;
+		}
+		return end == limit || bData.get(end) == ':';
+	}
+
+	private static boolean isDigit(final byte c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Validates the Bencoded value at the index argument.
+	 * 
+	 * @param bData The buffer containing the Bencoded data.
+	 * @param index The index of the value.
+	 * @param limit The index after the last byte of data.
+	 * @param sortedKeys Whether dictionary keys must be unique and in ascending order.
+	 * @param depth The depth of the value.
+	 * @return The index of the end of the value, or (-(index of the error) - 1).
+	 */
+	private static int value(final ByteBuffer bData, final int index, final int limit, final boolean sortedKeys, final int depth) {
+		if (index >= limit) {
+			return ~index;
+		}
+
+		byte c = bData.get(index);
+		if (c >= '0' && c <= '9') {
+			return string(bData, index, limit);
+		} else if (c == 'i') {
+			return number(bData, index, limit);
+		} else if (c == 'l') {
+			return depth < MAX_DEPTH ? list(bData, index, limit, sortedKeys, depth) : ~index;
+		} else if (c == 'd') {
+			return depth < MAX_DEPTH ? dictionary(bData, index, limit, sortedKeys, depth) : ~index;
+		}
+		return ~index;
+	}
+
+	/**
+	 * Validates the Bencoded string at the index argument. Lengths with leading zeros are invalid.
+	 * 
+	 * @param bData The buffer containing the Bencoded data.
+	 * @param index The index of the value.
+	 * @param limit The index after the last byte of data.
+	 * @return The index of the end of the string, or (-(index of the error) - 1).
+	 */
+	static int string(final ByteBuffer bData, final int index, final int limit) {
+		long length = bData.get(index) - '0';
+		int i = index + 1;
+		if (length != 0) {
+			byte c;
+			while (i < limit && (c = bData.get(i)) != ':') {
+				if (c < '0' || c > '9' || length > limit) {
+					return ~i;
+				}
+				length = length * 10 + (c - '0');
+				i++;
+			}
+		}
+
+		if (i >= limit || bData.get(i) != ':') {
+			return ~i;
+		}
+		i++;
+		if (length > limit - i) {
+			return ~i;
+		}
+		return i + (int) length;
+	}
+
+	/**
+	 * Validates the Bencoded number at the index argument. Numbers with leading zeros and negative zero are invalid.
+	 * 
+	 * @param bData The buffer containing the Bencoded data.
+	 * @param index The index of the value.
+	 * @param limit The index after the last byte of data.
+	 * @return The index of the end of the number, or (-(index of the error) - 1).
+	 */
+	private static int number(final ByteBuffer bData, final int index, final int limit) {
+		int i = index + 1;
+		if (i < limit && bData.get(i) == '-') {
+			i++;
+		}
+
+		// The first digit may only be zero if it is the only digit and isn't negative.
+		if (i >= limit) {
+			return ~i;
+		}
+		byte c = bData.get(i);
+		if (c == '0') {
+			return i + 1 < limit && bData.get(i + 1) == 'e' && i == index + 1 ? i + 2 : ~i;
+		} else if (c < '1' || c > '9') {
+			return ~i;
+		}
+
+		i++;
+		while (i < limit && (c = bData.get(i)) >= '0' && c <= '9') {
+			i++;
+		}
+		return i < limit && bData.get(i) == 'e' ? i + 1 : ~i;
+	}
+
+	/**
+	 * Validates the Bencoded list at the index argument.
+	 * 
+	 * @param bData The buffer containing the Bencoded data.
+	 * @param index The index of the value.
+	 * @param limit The index after the last byte of data.
+	 * @param sortedKeys Whether dictionary keys must be unique and in ascending order.
+	 * @param depth The depth of the value.
+	 * @return The index of the end of the list, or (-(index of the error) - 1).
+	 */
+	private static int list(final ByteBuffer bData, final int index, final int limit, final boolean sortedKeys, final int depth) {
+		int i = index + 1;
+		while (i < limit && bData.get(i) != 'e') {
+			i = value(bData, i, limit, sortedKeys, depth + 1);
+			if (i < 0) {
+				return i;
+			}
+		}
+		return i < limit ? i + 1 : ~i;
+	}
+
+	/**
+	 * Validates the Bencoded dictionary at the index argument.
+	 * 
+	 * @param bData The buffer containing the Bencoded data.
+	 * @param index The index of the value.
+	 * @param limit The index after the last byte of data.
+	 * @param sortedKeys Whether dictionary keys must be unique and in ascending order.
+	 * @param depth The depth of the value.
+	 * @return The index of the end of the dictionary, or (-(index of the error) - 1).
+	 */
+	private static int dictionary(final ByteBuffer bData, final int index, final int limit, final boolean sortedKeys, final int depth) {
+		int i = index + 1;
+		int previousKey = -1;
+		int previousKeyLength = 0;
+		while (i < limit && bData.get(i) != 'e') {
+			// Validate the key is a string.
+			byte c = bData.get(i);
+			if (c < '0' || c > '9') {
+				return ~i;
+			}
+			int keyEnd = string(bData, i, limit);
+			if (keyEnd < 0) {
+				return keyEnd;
+			}
+
+			if (sortedKeys) {
+				int key = i;
+				while (bData.get(key++) != ':') {
+				}
+				if (previousKey >= 0 && Bytes.compare(bData, previousKey, previousKeyLength, bData, key, keyEnd - key) >= 0) {
+					return ~i;
+				}
+				previousKey = key;
+				previousKeyLength = keyEnd - key;
+			}
+
+			i = value(bData, keyEnd, limit, sortedKeys, depth + 1);
+			if (i < 0) {
+				return i;
+			}
+		}
+		return i < limit ? i + 1 : ~i;
+	}
+
+	/**
+	 * {@link Progress} remembers how far a value cut off by the end of the data has been validated, so that once more
+	 * data is appended only the new data, and the token it cut off, are scanned again. A string's data is never scanned,
+	 * so a long string costs the same to check however many times it is cut off.
+	 * <p>
+	 * Progress only answers whether the value is still cut off. Once it may be complete or invalid it is {@link #reset}
+	 * and the value must be validated in full, which gives its end or the offset of its error.
+	 */
+	static final class Progress {
+
+		private static final byte LIST = 'l';
+		private static final byte KEY = 'k';
+		private static final byte DICTIONARY_VALUE = 'v';
+
+		/** What each open list or dictionary expects next, from the outermost. */
+		private final byte[] containers = new byte[MAX_DEPTH];
+		private int depth;
+		/** The offset from the buffer's position of the first token not yet validated. */
+		private int scanned;
+		/** The least length the value can have, below which it needn't be scanned again. */
+		private long minLength;
+
+		/**
+		 * Returns whether the value starting at the buffer argument's position is valid so far but cut off by the end of
+		 * the data, continuing from where the last call stopped. The buffer's data up to the last call's limit must be
+		 * unchanged, relative to its position, since that call.
+		 *
+		 * @param bData The buffer containing the Bencoded data, from its position to its limit.
+		 * @return True if more data is needed, or false if the value may be complete or invalid, in which case the
+		 *         progress is reset.
+		 */
+		boolean isTruncated(final ByteBuffer bData) {
+			int position = bData.position();
+			int limit = bData.limit();
+			if (limit - position < minLength) {
+				return true;
+			}
+
+			int i = position + scanned;
+			while (i < limit) {
+				byte c = bData.get(i);
+				byte expected = depth > 0 ? containers[depth - 1] : 0;
+				int end;
+				if (c == 'e' && (expected == LIST || expected == KEY)) {
+					depth--;
+					end = i + 1;
+				} else if (c >= '0' && c <= '9') {
+					// Only the string's length is scanned, the data is skipped once it has all arrived.
+					long length = c - '0';
+					int j = i + 1;
+					if (length != 0) {
+						while (j < limit && (c = bData.get(j)) >= '0' && c <= '9') {
+							length = Math.min(length * 10 + (c - '0'), Long.MAX_VALUE / 10);
+							j++;
+						}
+					}
+					if (j >= limit) {
+						return truncated(position, i, limit + 1L - position);
+					} else if (bData.get(j) != ':') {
+						break;
+					} else if (length > limit - (j + 1)) {
+						return truncated(position, i, j + 1L - position + length);
+					}
+					end = j + 1 + (int) length;
+				} else if (expected == KEY) {
+					break;
+				} else if (c == 'i') {
+					// An error at the last byte may be cut off, as in isTruncated.
+					end = number(bData, i, limit);
+					if (end == ~limit || end == ~(limit - 1)) {
+						return truncated(position, i, limit + 1L - position);
+					} else if (end < 0) {
+						break;
+					}
+				} else if ((c == 'l' || c == 'd') && depth < MAX_DEPTH) {
+					containers[depth++] = c == 'l' ? LIST : KEY;
+					i++;
+					continue;
+				} else {
+					break;
+				}
+
+				// A value, or a list or dictionary's end, was completed.
+				if (depth == 0) {
+					break;
+				} else if (containers[depth - 1] == KEY) {
+					containers[depth - 1] = DICTIONARY_VALUE;
+				} else if (containers[depth - 1] == DICTIONARY_VALUE) {
+					containers[depth - 1] = KEY;
+				}
+				i = end;
+			}
+
+			if (i >= limit && depth > 0) {
+				return truncated(position, limit, limit + 1L - position);
+			}
+			reset();
+			return false;
+		}
+
+		/**
+		 * Resets the progress, to validate a value from its start.
+		 */
+		void reset() {
+			depth = 0;
+			scanned = 0;
+			minLength = 0;
+		}
+
+		private boolean truncated(final int position, final int token, final long minLength) {
+			this.scanned = token - position;
+			this.minLength = minLength;
+			return true;
+		}
+
+	}
+
+}
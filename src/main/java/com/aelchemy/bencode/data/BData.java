@@ -8,7 +8,7 @@ package com.aelchemy.bencode.data;
  */
 public class BData {
 
-	private BType data;
+	private final BType data;
 
 	public BData(BType data) {
 		this.data = data;
@@ -50,4 +50,33 @@ public class BData {
 		return data.encode();
 	}
 
+	/**
+	 * Returns whether the wrapped type has been frozen and can no longer be modified.
+	 * 
+	 * @return True if the wrapped type is frozen.
+	 */
+	public boolean isFrozen() {
+		return data.isFrozen();
+	}
+
+	/**
+	 * Freezes the wrapped type, preventing further modification.
+	 * 
+	 * @return This data.
+	 */
+	public BData freeze() {
+		data.freeze();
+		return this;
+	}
+
+	@Override
+	public int hashCode() {
+		return data.hashCode();
+	}
+
+	@Override
+	public boolean equals(final Object object) {
+		return this == object || (object instanceof BData && data.equals(((BData) object).data));
+	}
+
 }
@@ -1,35 +1,142 @@
 package com.aelchemy.bencode.data;
 
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import com.aelchemy.bencode.Bencode;
 
 /**
  * {@link BDictionary} represents a Bencoded dictionary.
+ * <p>
+ * While keys are put in sorted order, as decoded and specification compliant dictionaries have them, the entries are
+ * kept in a pair of arrays and looked up by binary search, which costs two references per entry and lets keys be looked
+ * up {@link #get(byte[]) by their bytes} without allocating. Putting a new key out of order moves the entries into a
+ * {@link LinkedHashMap}. Either way, keys are iterated in the order they were first put.
  * 
  * @author Aelexe
  * 
  */
 public class BDictionary extends BType {
 
-	private Map<String, BData> data = new LinkedHashMap<String, BData>();
+	private static final String[] NO_KEYS = new String[0];
+	private static final BData[] NO_VALUES = new BData[0];
+	private static final int INITIAL_CAPACITY = 4;
+
+	/** The keys, in ascending order, while they have been put in order, else null. */
+	private String[] keys;
+	private BData[] values;
+	private int size;
+	/** The number of times keys have been added to or removed from the arrays, or the arrays given up. */
+	private int modCount;
+	/** The entries, once a key has been put out of order, else null. */
+	private Map<String, BData> data;
+
+	public BDictionary() {
+		this.keys = NO_KEYS;
+		this.values = NO_VALUES;
+	}
+
+	/**
+	 * Creates a dictionary with room for the number of entries argument, so putting them in order doesn't grow it.
+	 * 
+	 * @param capacity The number of entries.
+	 * @throws IllegalArgumentException Thrown if the capacity is negative.
+	 */
+	public BDictionary(final int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		this.keys = capacity == 0 ? NO_KEYS : new String[capacity];
+		this.values = capacity == 0 ? NO_VALUES : new BData[capacity];
+	}
 
 	public boolean contains(String key) {
-		return data.containsKey(key);
+		return data == null ? indexOf(key) >= 0 : data.containsKey(key);
 	}
 
 	public BData get(String key) {
-		return data.get(key);
+		if (data != null) {
+			return data.get(key);
+		}
+		int index = indexOf(key);
+		return index < 0 ? null : values[index];
+	}
+
+	/**
+	 * Returns the value of the key argument, compared one byte per character. <br>
+	 * Unless a key has been put out of order, the lookup allocates nothing.
+	 * 
+	 * @param key The key's bytes.
+	 * @return The value, or null if the dictionary doesn't contain the key.
+	 */
+	public BData get(final byte[] key) {
+		if (data != null) {
+			return data.get(string(key, null, 0, key.length));
+		}
+		int index = indexOf(key, null, 0, key.length);
+		return index < 0 ? null : values[index];
 	}
 
+	/**
+	 * Returns the value of the key argument, compared one byte per character. The key is read from the buffer's
+	 * position to its limit, without moving its position. <br>
+	 * Unless a key has been put out of order, the lookup allocates nothing.
+	 * 
+	 * @param key The buffer containing the key's bytes.
+	 * @return The value, or null if the dictionary doesn't contain the key.
+	 */
+	public BData get(final ByteBuffer key) {
+		if (data != null) {
+			return data.get(string(null, key, key.position(), key.remaining()));
+		}
+		int index = indexOf(null, key, key.position(), key.remaining());
+		return index < 0 ? null : values[index];
+	}
+
+	/**
+	 * Returns the keys, in the order they were first put. Removing a key removes its entry.
+	 * 
+	 * @return The keys.
+	 */
 	public Set<String> keySet() {
-		return data.keySet();
+		return data == null ? new KeySet() : data.keySet();
 	}
 
 	public void put(String key, final BData data) {
-		this.data.put(key, data);
+		checkMutable();
+		if (this.data != null) {
+			this.data.put(key, data);
+			return;
+		}
+
+		// Append keys greater than the last, replace the values of existing keys, and give up the arrays otherwise.
+		if (key != null && (size == 0 || key.compareTo(keys[size - 1]) > 0)) {
+			if (size == keys.length) {
+				int capacity = Math.max(INITIAL_CAPACITY, size + (size >> 1));
+				keys = Arrays.copyOf(keys, capacity);
+				values = Arrays.copyOf(values, capacity);
+			}
+			keys[size] = key;
+			values[size] = data;
+			size++;
+			modCount++;
+			return;
+		}
+		int index = indexOf(key);
+		if (index >= 0) {
+			values[index] = data;
+		} else {
+			toMap(size + 1).put(key, data);
+		}
 	}
 
 	public void put(String key, String string) {
@@ -40,21 +147,284 @@ public class BDictionary extends BType {
 		put(key, new BData(new BNumber(number)));
 	}
 
+	public void put(String key, BigInteger number) {
+		put(key, new BData(new BNumber(number)));
+	}
+
 	public void put(String key, BList list) {
 		put(key, new BData(list));
 	}
 
 	public int size() {
-		return data.size();
+		return data == null ? size : data.size();
 	}
 
 	public boolean isEmpty() {
-		return data.isEmpty();
+		return size() == 0;
 	}
 
+	/**
+	 * Freezes the dictionary and every value in it, preventing further modification.
+	 * 
+	 * @return This dictionary.
+	 */
 	@Override
-	public String encode() {
+	public BDictionary freeze() {
+		if (!isFrozen()) {
+			if (data == null) {
+				for (int i = 0; i < size; i++) {
+					values[i].freeze();
+				}
+			} else {
+				for (BData value : data.values()) {
+					value.freeze();
+				}
+				data = Collections.unmodifiableMap(data);
+			}
+			markFrozen();
+		}
+		return this;
+	}
+
+	/**
+	 * Returns a new, unfrozen dictionary containing the same entries as this dictionary. <br>
+	 * The values are not copied, so frozen values are shared between the dictionaries.
+	 * 
+	 * @return The copied dictionary.
+	 */
+	public BDictionary copy() {
+		BDictionary copy = new BDictionary(data == null ? size : 0);
+		if (data == null) {
+			System.arraycopy(keys, 0, copy.keys, 0, size);
+			System.arraycopy(values, 0, copy.values, 0, size);
+			copy.size = size;
+		} else {
+			copy.toMap(data.size()).putAll(data);
+		}
+		return copy;
+	}
+
+	@Override
+	String encodeValue() {
 		return Bencode.encodeDictionary(this);
 	}
 
+	@Override
+	int hashValue() {
+		if (data != null) {
+			return data.hashCode();
+		}
+		// Hash the entries the same as a map would, so the layouts hash alike.
+		int hash = 0;
+		for (int i = 0; i < size; i++) {
+			hash += keys[i].hashCode() ^ (values[i] == null ? 0 : values[i].hashCode());
+		}
+		return hash;
+	}
+
+	@Override
+	public boolean equals(final Object object) {
+		if (this == object) {
+			return true;
+		} else if (!(object instanceof BDictionary) || ((BDictionary) object).size() != size()) {
+			return false;
+		}
+		BDictionary dictionary = (BDictionary) object;
+		for (String key : keySet()) {
+			BData value = get(key);
+			if (value == null ? dictionary.get(key) != null || !dictionary.contains(key) : !value.equals(dictionary.get(key))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Moves the entries from the arrays into a map with room for the number of entries argument.
+	 * 
+	 * @return The map.
+	 */
+	private Map<String, BData> toMap(final int capacity) {
+		// Size the map so the entries stay under its default load factor of 0.75.
+		data = new LinkedHashMap<String, BData>((int) Math.min(Integer.MAX_VALUE, capacity * 4L / 3 + 1));
+		for (int i = 0; i < size; i++) {
+			data.put(keys[i], values[i]);
+		}
+		keys = null;
+		values = null;
+		size = 0;
+		modCount++;
+		return data;
+	}
+
+	/**
+	 * Returns the index of the key argument in the arrays, or -1 if they don't contain it.
+	 */
+	private int indexOf(final String key) {
+		if (key == null) {
+			return -1;
+		}
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = keys[middle].compareTo(key);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the key in the array or buffer argument in the arrays, or -1 if they don't contain it.
+	 */
+	private int indexOf(final byte[] array, final ByteBuffer buffer, final int offset, final int length) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = compare(keys[middle], array, buffer, offset, length);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Compares the key argument to the key in the array or buffer argument, one byte per character, the same as
+	 * {@link String#compareTo(String)} would compare the key to the bytes as a string.
+	 */
+	private static int compare(final String key, final byte[] array, final ByteBuffer buffer, final int offset, final int length) {
+		int common = Math.min(key.length(), length);
+		for (int i = 0; i < common; i++) {
+			int b = (array == null ? buffer.get(offset + i) : array[offset + i]) & 0xFF;
+			if (key.charAt(i) != b) {
+				return key.charAt(i) - b;
+			}
+		}
+		return key.length() - length;
+	}
+
+	private static String string(final byte[] array, final ByteBuffer buffer, final int offset, final int length) {
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) ((array == null ? buffer.get(offset + i) : array[offset + i]) & 0xFF);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * A view of the keys in the arrays, which removes entries from the arrays. If the entries are moved into a map,
+	 * the view reads the map's keys instead. <br>
+	 * As with a map's key set, its iterators throw {@link ConcurrentModificationException} once keys are added or
+	 * removed other than by the iterator itself.
+	 */
+	private final class KeySet extends AbstractSet<String> {
+
+		@Override
+		public Iterator<String> iterator() {
+			if (data != null) {
+				return data.keySet().iterator();
+			}
+			return new Iterator<String>() {
+
+				private int next;
+				private boolean removable;
+				private int expectedModCount = modCount;
+
+				@Override
+				public boolean hasNext() {
+					checkForComodification();
+					return next < size;
+				}
+
+				@Override
+				public String next() {
+					checkForComodification();
+					if (next >= size) {
+						throw new NoSuchElementException();
+					}
+					removable = true;
+					return keys[next++];
+				}
+
+				@Override
+				public void remove() {
+					checkMutable();
+					checkForComodification();
+					if (!removable) {
+						throw new IllegalStateException();
+					}
+					removable = false;
+					removeAt(--next);
+					expectedModCount = modCount;
+				}
+
+				private void checkForComodification() {
+					if (modCount != expectedModCount) {
+						throw new ConcurrentModificationException();
+					}
+				}
+
+			};
+		}
+
+		@Override
+		public int size() {
+			return BDictionary.this.size();
+		}
+
+		@Override
+		public boolean contains(final Object key) {
+			return data == null ? key instanceof String && indexOf((String) key) >= 0 : data.containsKey(key);
+		}
+
+		@Override
+		public boolean remove(final Object key) {
+			checkMutable();
+			if (data != null) {
+				return data.keySet().remove(key);
+			}
+			int index = key instanceof String ? indexOf((String) key) : -1;
+			if (index < 0) {
+				return false;
+			}
+			removeAt(index);
+			return true;
+		}
+
+		@Override
+		public void clear() {
+			checkMutable();
+			if (data != null) {
+				data.clear();
+				return;
+			}
+			Arrays.fill(keys, 0, size, null);
+			Arrays.fill(values, 0, size, null);
+			size = 0;
+			modCount++;
+		}
+
+		private void removeAt(final int index) {
+			System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+			System.arraycopy(values, index + 1, values, index, size - index - 1);
+			size--;
+			keys[size] = null;
+			values[size] = null;
+			modCount++;
+		}
+
+	}
+
 }
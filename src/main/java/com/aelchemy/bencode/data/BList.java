@@ -1,6 +1,8 @@
 package com.aelchemy.bencode.data;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -14,30 +16,54 @@ import com.aelchemy.bencode.Bencode;
  */
 public class BList extends BType implements Iterable<BData> {
 
-	private final List<BData> data = new ArrayList<BData>();
+	private List<BData> data;
+
+	public BList() {
+		this.data = new ArrayList<BData>();
+	}
+
+	/**
+	 * Creates a list with room for the number of elements argument, so adding them doesn't grow it.
+	 * 
+	 * @param capacity The number of elements.
+	 * @throws IllegalArgumentException Thrown if the capacity is negative.
+	 */
+	public BList(final int capacity) {
+		this.data = new ArrayList<BData>(capacity);
+	}
 
 	public BData get(int index) {
 		return data.get(index);
 	}
 
+	/**
+	 * Returns the backing list of the {@link BList}, or an unmodifiable view of it once frozen.
+	 * 
+	 * @return The list data.
+	 */
 	public List<BData> getData() {
 		return data;
 	}
 
 	public void add(final BData data) {
+		checkMutable();
 		this.data.add(data);
 	}
 
 	public void add(String string) {
-		this.data.add(new BData(new BString(string)));
+		add(new BData(new BString(string)));
 	}
 
 	public void add(long number) {
-		this.data.add(new BData(new BNumber(number)));
+		add(new BData(new BNumber(number)));
+	}
+
+	public void add(BigInteger number) {
+		add(new BData(new BNumber(number)));
 	}
 
 	public void add(BList list) {
-		this.data.add(new BData(list));
+		add(new BData(list));
 	}
 
 	public int size() {
@@ -48,11 +74,50 @@ public class BList extends BType implements Iterable<BData> {
 		return data.isEmpty();
 	}
 
+	/**
+	 * Freezes the list and every value in it, preventing further modification.
+	 * 
+	 * @return This list.
+	 */
 	@Override
-	public String encode() {
+	public BList freeze() {
+		if (!isFrozen()) {
+			for (BData value : data) {
+				value.freeze();
+			}
+			data = Collections.unmodifiableList(data);
+			markFrozen();
+		}
+		return this;
+	}
+
+	/**
+	 * Returns a new, unfrozen list containing the same values as this list. <br>
+	 * The values are not copied, so frozen values are shared between the lists.
+	 * 
+	 * @return The copied list.
+	 */
+	public BList copy() {
+		BList copy = new BList(data.size());
+		copy.data.addAll(data);
+		return copy;
+	}
+
+	@Override
+	String encodeValue() {
 		return Bencode.encodeList(this);
 	}
 
+	@Override
+	int hashValue() {
+		return data.hashCode();
+	}
+
+	@Override
+	public boolean equals(final Object object) {
+		return this == object || (object instanceof BList && data.equals(((BList) object).data));
+	}
+
 	@Override
 	public Iterator<BData> iterator() {
 		return data.iterator();
@@ -1,32 +1,130 @@
 package com.aelchemy.bencode.data;
 
+import java.math.BigInteger;
+
 import com.aelchemy.bencode.Bencode;
 
 /**
  * {@link BNumber} represents a Bencoded number.
- * 
+ * <p>
+ * Numbers are held as a long, and only held as a {@link BigInteger} when they don't fit in one, so the common case
+ * doesn't allocate.
+ *
  * @author Aelexe
- * 
+ *
  */
 public class BNumber extends BType {
 
+	private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+	private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
 	private long value;
+	/** The value if it doesn't fit in a long, otherwise null. */
+	private BigInteger bigValue;
 
 	public BNumber(final long value) {
 		this.value = value;
 	}
 
+	/**
+	 * Creates a number of any size.
+	 *
+	 * @param value The value.
+	 * @throws NullPointerException Thrown if the value is null.
+	 */
+	public BNumber(final BigInteger value) {
+		set(value);
+	}
+
+	/**
+	 * Returns the value as a long.
+	 *
+	 * @return The value.
+	 * @throws ArithmeticException Thrown if the value doesn't fit in a long, see {@link #isLong()}.
+	 */
 	public long getValue() {
+		if (bigValue != null) {
+			throw new ArithmeticException("Number doesn't fit in a long: " + bigValue);
+		}
 		return value;
 	}
 
+	/**
+	 * Returns the value as a {@link BigInteger}, which is allocated if the value fits in a long.
+	 *
+	 * @return The value.
+	 */
+	public BigInteger getBigValue() {
+		return bigValue != null ? bigValue : BigInteger.valueOf(value);
+	}
+
+	/**
+	 * Returns whether the value fits in a long, and can be read with {@link #getValue()}.
+	 *
+	 * @return True if the value fits in a long.
+	 */
+	public boolean isLong() {
+		return bigValue == null;
+	}
+
 	public void setValue(final long value) {
+		checkMutable();
 		this.value = value;
+		this.bigValue = null;
 	}
 
+	/**
+	 * Sets the value to a number of any size.
+	 *
+	 * @param value The value.
+	 * @throws NullPointerException Thrown if the value is null.
+	 */
+	public void setValue(final BigInteger value) {
+		checkMutable();
+		set(value);
+	}
+
+	/**
+	 * Freezes the number, preventing further modification.
+	 *
+	 * @return This number.
+	 */
 	@Override
-	public String encode() {
-		return Bencode.encodeNumber(value);
+	public BNumber freeze() {
+		markFrozen();
+		return this;
+	}
+
+	@Override
+	String encodeValue() {
+		return bigValue != null ? Bencode.encodeNumber(bigValue) : Bencode.encodeNumber(value);
+	}
+
+	@Override
+	int hashValue() {
+		return bigValue != null ? bigValue.hashCode() : (int) (value ^ (value >>> 32));
+	}
+
+	@Override
+	public boolean equals(final Object object) {
+		if (this == object) {
+			return true;
+		} else if (!(object instanceof BNumber)) {
+			return false;
+		}
+		BNumber number = (BNumber) object;
+		// Values that fit in a long are never held as a BigInteger, so equal numbers are held the same way.
+		return bigValue != null ? bigValue.equals(number.bigValue) : number.bigValue == null && number.value == value;
+	}
+
+	private void set(final BigInteger value) {
+		if (value.compareTo(LONG_MIN) >= 0 && value.compareTo(LONG_MAX) <= 0) {
+			this.value = value.longValue();
+			this.bigValue = null;
+		} else {
+			this.value = 0;
+			this.bigValue = value;
+		}
 	}
 
 }
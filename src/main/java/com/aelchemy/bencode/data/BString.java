@@ -21,12 +21,41 @@ public class BString extends BType {
 	}
 
 	public void setValue(final String value) {
+		checkMutable();
 		this.value = value;
 	}
 
+	/**
+	 * Freezes the string, preventing further modification.
+	 * 
+	 * @return This string.
+	 */
 	@Override
-	public String encode() {
+	public BString freeze() {
+		markFrozen();
+		return this;
+	}
+
+	@Override
+	String encodeValue() {
 		return Bencode.encodeString(value);
 	}
 
+	@Override
+	int hashValue() {
+		return value == null ? 0 : value.hashCode();
+	}
+
+	@Override
+	public boolean equals(final Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (!(object instanceof BString)) {
+			return false;
+		}
+		String otherValue = ((BString) object).value;
+		return value == null ? otherValue == null : value.equals(otherValue);
+	}
+
 }
@@ -2,12 +2,101 @@ package com.aelchemy.bencode.data;
 
 /**
  * Abstract {@link BType} represents a Bencode data type.
+ * <p>
+ * A type can be frozen, after which it can no longer be modified and its encoded form and hash code are memoised. A
+ * frozen type may be read by any number of threads without locking once it has been safely published, such as through
+ * a final or volatile field or a concurrent collection.
  * 
  * @author Aelexe
  * 
  */
 abstract class BType {
 
-	public abstract String encode();
+	private volatile boolean frozen;
+	/** The memoised encoded form, only set once frozen. */
+	private String encoded;
+	/** The memoised hash code, only set once frozen. */
+	private int hash;
+
+	/**
+	 * Returns whether the type has been frozen and can no longer be modified.
+	 * 
+	 * @return True if the type is frozen.
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	public String encode() {
+		String encoded = this.encoded;
+		if (encoded == null) {
+			encoded = encodeValue();
+			if (frozen) {
+				this.encoded = encoded;
+			}
+		}
+		return encoded;
+	}
+
+	/**
+	 * Returns the length of the encoded form of the type.
+	 * 
+	 * @return The encoded length.
+	 */
+	public int getEncodedLength() {
+		return encode().length();
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = this.hash;
+		if (hash == 0) {
+			hash = hashValue();
+			if (frozen) {
+				this.hash = hash;
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Freezes the type and any types it contains, preventing further modification.
+	 * 
+	 * @return This type.
+	 */
+	abstract BType freeze();
+
+	/**
+	 * Encodes the type, without memoisation.
+	 * 
+	 * @return The Bencoded type.
+	 */
+	abstract String encodeValue();
+
+	/**
+	 * Computes the hash code of the type, without memoisation.
+	 * 
+	 * @return The hash code.
+	 */
+	abstract int hashValue();
+
+	/**
+	 * Marks the type as frozen. Must be called after the type's own state has been made immutable, so that the state
+	 * is visible to any thread that sees the type as frozen.
+	 */
+	void markFrozen() {
+		frozen = true;
+	}
+
+	/**
+	 * Validates the type hasn't been frozen.
+	 * 
+	 * @throws UnsupportedOperationException Thrown if the type is frozen.
+	 */
+	void checkMutable() {
+		if (frozen) {
+			throw new UnsupportedOperationException(getClass().getSimpleName() + " is frozen and can not be modified.");
+		}
+	}
 
 }
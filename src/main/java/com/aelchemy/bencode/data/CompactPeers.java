@@ -0,0 +1,355 @@
+package com.aelchemy.bencode.data;
+
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * {@link CompactPeers} packs and unpacks compact peer and node strings, as used by the "peers" and "peers6" values of
+ * tracker responses (BEP 23) and the "nodes" and "nodes6" values of DHT messages (BEP 5, BEP 32).
+ * <p>
+ * As with {@link BString}, every byte of a compact string is held as one character in the range 0 to 255. Addresses
+ * are held as primitives in network byte order: an IPv4 address as an int, an IPv6 address as a pair of longs (the
+ * high then the low 64 bits).
+ *
+ * @author Aelexe
+ *
+ */
+public final class CompactPeers {
+
+	/** The length of a node ID in a compact node string. */
+	public static final int NODE_ID_LENGTH = 20;
+
+	private CompactPeers() {
+	}
+
+	/**
+	 * Packs the IPv4 address and port arguments into a compact peer string.
+	 *
+	 * @param addresses The IPv4 addresses.
+	 * @param ports The ports, one per address.
+	 * @return The compact peer string.
+	 * @throws IllegalArgumentException Thrown if the number of ports doesn't match the number of addresses, or a port
+	 *             is outside 0 to 65535.
+	 */
+	public static String packIPv4(final int[] addresses, final int[] ports) {
+		checkLengths(addresses.length, ports.length);
+		StringBuilder builder = new StringBuilder(addresses.length * 6);
+		appendIPv4(builder, addresses, ports, 0, addresses.length);
+		return builder.toString();
+	}
+
+	/**
+	 * Packs the IPv6 address and port arguments into a compact peer string.
+	 *
+	 * @param addresses The IPv6 addresses, two longs per address.
+	 * @param ports The ports, one per address.
+	 * @return The compact peer string.
+	 * @throws IllegalArgumentException Thrown if the number of ports doesn't match the number of addresses, or a port
+	 *             is outside 0 to 65535.
+	 */
+	public static String packIPv6(final long[] addresses, final int[] ports) {
+		checkLengths(addresses.length, ports.length * 2);
+		StringBuilder builder = new StringBuilder(ports.length * 18);
+		appendIPv6(builder, addresses, ports, 0, ports.length);
+		return builder.toString();
+	}
+
+	/**
+	 * Encodes the IPv4 address and port arguments into a Bencoded compact peer string, without packing them into an
+	 * intermediate string first.
+	 *
+	 * @param addresses The IPv4 addresses.
+	 * @param ports The ports, one per address.
+	 * @return The Bencoded compact peer string.
+	 * @throws IllegalArgumentException Thrown if the number of ports doesn't match the number of addresses, or a port
+	 *             is outside 0 to 65535.
+	 */
+	public static String encodeIPv4(final int[] addresses, final int[] ports) {
+		checkLengths(addresses.length, ports.length);
+		StringBuilder builder = new StringBuilder(addresses.length * 6 + 11);
+		builder.append(addresses.length * 6).append(':');
+		appendIPv4(builder, addresses, ports, 0, addresses.length);
+		return builder.toString();
+	}
+
+	/**
+	 * Encodes the IPv6 address and port arguments into a Bencoded compact peer string, without packing them into an
+	 * intermediate string first.
+	 *
+	 * @param addresses The IPv6 addresses, two longs per address.
+	 * @param ports The ports, one per address.
+	 * @return The Bencoded compact peer string.
+	 * @throws IllegalArgumentException Thrown if the number of ports doesn't match the number of addresses, or a port
+	 *             is outside 0 to 65535.
+	 */
+	public static String encodeIPv6(final long[] addresses, final int[] ports) {
+		checkLengths(addresses.length, ports.length * 2);
+		StringBuilder builder = new StringBuilder(ports.length * 18 + 11);
+		builder.append(ports.length * 18).append(':');
+		appendIPv6(builder, addresses, ports, 0, ports.length);
+		return builder.toString();
+	}
+
+	/**
+	 * Appends count packed IPv4 peers, starting from the offset argument, to the builder argument.
+	 *
+	 * @param builder The builder to append to.
+	 * @param addresses The IPv4 addresses.
+	 * @param ports The ports, one per address.
+	 * @param offset The index of the first peer to append.
+	 * @param count The number of peers to append.
+	 * @return The builder argument.
+	 * @throws IllegalArgumentException Thrown if a port is outside 0 to 65535, in which case nothing is appended.
+	 */
+	public static StringBuilder appendIPv4(final StringBuilder builder, final int[] addresses, final int[] ports, final int offset,
+			final int count) {
+		checkPorts(ports, offset, count);
+		for (int i = offset; i < offset + count; i++) {
+			int address = addresses[i];
+			builder.append((char) (address >>> 24)).append((char) ((address >>> 16) & 0xFF));
+			builder.append((char) ((address >>> 8) & 0xFF)).append((char) (address & 0xFF));
+			appendPort(builder, ports[i]);
+		}
+		return builder;
+	}
+
+	/**
+	 * Appends count packed IPv6 peers, starting from the offset argument, to the builder argument.
+	 *
+	 * @param builder The builder to append to.
+	 * @param addresses The IPv6 addresses, two longs per address.
+	 * @param ports The ports, one per address.
+	 * @param offset The index of the first peer to append.
+	 * @param count The number of peers to append.
+	 * @return The builder argument.
+	 * @throws IllegalArgumentException Thrown if a port is outside 0 to 65535, in which case nothing is appended.
+	 */
+	public static StringBuilder appendIPv6(final StringBuilder builder, final long[] addresses, final int[] ports, final int offset,
+			final int count) {
+		checkPorts(ports, offset, count);
+		for (int i = offset; i < offset + count; i++) {
+			appendLong(builder, addresses[i * 2]);
+			appendLong(builder, addresses[i * 2 + 1]);
+			appendPort(builder, ports[i]);
+		}
+		return builder;
+	}
+
+	/**
+	 * Returns a {@link Cursor} over the compact IPv4 peer string argument.
+	 *
+	 * @param peers The compact peer string.
+	 * @return A {@link Cursor} positioned before the first peer.
+	 * @throws InvalidFormatException Thrown if the length of the string isn't a multiple of 6.
+	 */
+	public static Cursor ipv4Peers(final String peers) throws InvalidFormatException {
+		return new Cursor(4, 0).reset(peers);
+	}
+
+	/**
+	 * Returns a {@link Cursor} over the compact IPv6 peer string argument.
+	 *
+	 * @param peers The compact peer string.
+	 * @return A {@link Cursor} positioned before the first peer.
+	 * @throws InvalidFormatException Thrown if the length of the string isn't a multiple of 18.
+	 */
+	public static Cursor ipv6Peers(final String peers) throws InvalidFormatException {
+		return new Cursor(16, 0).reset(peers);
+	}
+
+	/**
+	 * Returns a {@link Cursor} over the compact IPv4 node string argument.
+	 *
+	 * @param nodes The compact node string.
+	 * @return A {@link Cursor} positioned before the first node.
+	 * @throws InvalidFormatException Thrown if the length of the string isn't a multiple of 26.
+	 */
+	public static Cursor ipv4Nodes(final String nodes) throws InvalidFormatException {
+		return new Cursor(4, NODE_ID_LENGTH).reset(nodes);
+	}
+
+	/**
+	 * Returns a {@link Cursor} over the compact IPv6 node string argument.
+	 *
+	 * @param nodes The compact node string.
+	 * @return A {@link Cursor} positioned before the first node.
+	 * @throws InvalidFormatException Thrown if the length of the string isn't a multiple of 38.
+	 */
+	public static Cursor ipv6Nodes(final String nodes) throws InvalidFormatException {
+		return new Cursor(16, NODE_ID_LENGTH).reset(nodes);
+	}
+
+	private static void appendPort(final StringBuilder builder, final int port) {
+		builder.append((char) ((port >>> 8) & 0xFF)).append((char) (port & 0xFF));
+	}
+
+	private static void appendLong(final StringBuilder builder, final long value) {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			builder.append((char) ((value >>> shift) & 0xFF));
+		}
+	}
+
+	private static void checkPorts(final int[] ports, final int offset, final int count) {
+		for (int i = offset; i < offset + count; i++) {
+			if (ports[i] < 0 || ports[i] > 0xFFFF) {
+				throw new IllegalArgumentException("Port is outside 0 to 65535: " + ports[i]);
+			}
+		}
+	}
+
+	private static void checkLengths(final int addresses, final int expectedAddresses) {
+		if (addresses != expectedAddresses) {
+			throw new IllegalArgumentException("Expected " + expectedAddresses + " address values but received " + addresses + ".");
+		}
+	}
+
+	/**
+	 * {@link Cursor} iterates over the entries of a compact peer or node string without allocating per entry. <br>
+	 * A cursor can be {@link #reset(String) reset} to iterate over another string of the same layout.
+	 *
+	 * @author Aelexe
+	 *
+	 */
+	public static final class Cursor {
+
+		private final int addressLength;
+		private final int idLength;
+		private final int entryLength;
+		private String data = "";
+		/** The index of the current entry's first character, or -entryLength before the first entry. */
+		private int position;
+
+		private Cursor(final int addressLength, final int idLength) {
+			this.addressLength = addressLength;
+			this.idLength = idLength;
+			this.entryLength = idLength + addressLength + 2;
+		}
+
+		/**
+		 * Positions the cursor before the first entry of the compact string argument.
+		 *
+		 * @param data The compact string.
+		 * @return This cursor.
+		 * @throws InvalidFormatException Thrown if the length of the string isn't a multiple of the entry length.
+		 */
+		public Cursor reset(final String data) throws InvalidFormatException {
+			if (data == null || data.length() % entryLength != 0) {
+				throw new InvalidFormatException(Reason.INVALID_LENGTH, "Data length is not a multiple of " + entryLength + ": \"" + data + "\"");
+			}
+			this.data = data;
+			this.position = -entryLength;
+			return this;
+		}
+
+		/**
+		 * Moves the cursor to the next entry.
+		 *
+		 * @return True if the cursor moved to an entry, or false if there are no entries left.
+		 */
+		public boolean next() {
+			if (position + entryLength >= data.length()) {
+				return false;
+			}
+			position += entryLength;
+			return true;
+		}
+
+		/**
+		 * Returns the number of entries in the compact string.
+		 *
+		 * @return The number of entries.
+		 */
+		public int size() {
+			return data.length() / entryLength;
+		}
+
+		/**
+		 * Returns the IPv4 address of the current entry.
+		 *
+		 * @return The IPv4 address.
+		 * @throws IllegalStateException Thrown if the cursor isn't over IPv4 entries, or isn't at an entry.
+		 */
+		public int getAddress() {
+			if (addressLength != 4) {
+				throw new IllegalStateException("Cursor is not over IPv4 entries.");
+			}
+			checkEntry();
+			return (int) read(position + idLength, 4);
+		}
+
+		/**
+		 * Returns the high 64 bits of the IPv6 address of the current entry.
+		 *
+		 * @return The high 64 bits of the IPv6 address.
+		 * @throws IllegalStateException Thrown if the cursor isn't over IPv6 entries, or isn't at an entry.
+		 */
+		public long getAddressHigh() {
+			if (addressLength != 16) {
+				throw new IllegalStateException("Cursor is not over IPv6 entries.");
+			}
+			checkEntry();
+			return read(position + idLength, 8);
+		}
+
+		/**
+		 * Returns the low 64 bits of the IPv6 address of the current entry.
+		 *
+		 * @return The low 64 bits of the IPv6 address.
+		 * @throws IllegalStateException Thrown if the cursor isn't over IPv6 entries, or isn't at an entry.
+		 */
+		public long getAddressLow() {
+			if (addressLength != 16) {
+				throw new IllegalStateException("Cursor is not over IPv6 entries.");
+			}
+			checkEntry();
+			return read(position + idLength + 8, 8);
+		}
+
+		/**
+		 * Returns the port of the current entry.
+		 *
+		 * @return The port.
+		 * @throws IllegalStateException Thrown if the cursor isn't at an entry.
+		 */
+		public int getPort() {
+			checkEntry();
+			return (int) read(position + idLength + addressLength, 2);
+		}
+
+		/**
+		 * Copies the node ID of the current entry into the array argument.
+		 *
+		 * @param destination The array to copy the node ID into.
+		 * @param offset The index in the array to copy the node ID to.
+		 * @throws IllegalStateException Thrown if the cursor isn't over node entries, or isn't at an entry.
+		 */
+		public void getNodeId(final byte[] destination, final int offset) {
+			if (idLength == 0) {
+				throw new IllegalStateException("Cursor is not over node entries.");
+			}
+			checkEntry();
+			for (int i = 0; i < idLength; i++) {
+				destination[offset + i] = (byte) data.charAt(position + i);
+			}
+		}
+
+		/**
+		 * Checks the cursor has moved to an entry, rather than being before the first.
+		 */
+		private void checkEntry() {
+			if (position < 0) {
+				throw new IllegalStateException("No current entry");
+			}
+		}
+
+		private long read(final int index, final int length) {
+			long value = 0;
+			for (int i = index; i < index + length; i++) {
+				value = (value << 8) | (data.charAt(i) & 0xFF);
+			}
+			return value;
+		}
+
+	}
+
+}
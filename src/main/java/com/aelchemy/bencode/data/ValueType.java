@@ -0,0 +1,32 @@
+package com.aelchemy.bencode.data;
+
+/**
+ * The types of Bencoded values.
+ * 
+ * @author Aelexe
+ *
+ */
+public enum ValueType {
+
+	STRING, NUMBER, LIST, DICTIONARY;
+
+	/**
+	 * Returns the type of the Bencoded value starting with the character argument.
+	 * 
+	 * @param c The first character of the Bencoded value.
+	 * @return The type of the value, or null if no value starts with the character.
+	 */
+	public static ValueType of(final int c) {
+		if (c >= '0' && c <= '9') {
+			return STRING;
+		} else if (c == 'i') {
+			return NUMBER;
+		} else if (c == 'l') {
+			return LIST;
+		} else if (c == 'd') {
+			return DICTIONARY;
+		}
+		return null;
+	}
+
+}
@@ -10,16 +10,69 @@ public class InvalidFormatException extends Exception {
 
 	private static final long serialVersionUID = -7158918635090896196L;
 
+	/**
+	 * The reasons Bencoded data can be in an invalid format.
+	 */
+	public enum Reason {
+		/** The data is null, empty or too short to contain the value. */
+		EMPTY,
+		/** The data doesn't follow the Bencode grammar. */
+		MALFORMED,
+		/** A string's length is invalid or doesn't match its data. */
+		INVALID_LENGTH,
+		/** A number has leading zeros or is negative zero. */
+		LEADING_ZERO,
+		/** A number couldn't be parsed. */
+		INVALID_NUMBER,
+		/** A dictionary key has no value. */
+		MISSING_VALUE
+	}
+
+	private final Reason reason;
+	private final int offset;
+
 	public InvalidFormatException() {
 		super();
+		this.reason = Reason.MALFORMED;
+		this.offset = -1;
 	}
 
 	public InvalidFormatException(final String message) {
-		super(message);
+		this(Reason.MALFORMED, message);
 	}
 
 	public InvalidFormatException(final String message, final Throwable cause) {
 		super(message, cause);
+		this.reason = Reason.MALFORMED;
+		this.offset = -1;
+	}
+
+	public InvalidFormatException(final Reason reason, final String message) {
+		this(reason, message, -1);
+	}
+
+	public InvalidFormatException(final Reason reason, final String message, final int offset) {
+		super(message);
+		this.reason = reason;
+		this.offset = offset;
+	}
+
+	/**
+	 * Returns the reason the data is in an invalid format.
+	 * 
+	 * @return The reason.
+	 */
+	public Reason getReason() {
+		return reason;
+	}
+
+	/**
+	 * Returns the offset in the Bencoded data at which it was found to be invalid.
+	 * 
+	 * @return The offset, or -1 if it isn't known.
+	 */
+	public int getOffset() {
+		return offset;
 	}
 
 }
@@ -0,0 +1,52 @@
+package com.aelchemy.bencode;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * {@link BencodeEvent} is the Flight Recorder event committed by {@link FlightRecorderListener} for slow, large or
+ * failed decodes and encodes. The event's duration is the operation's, from {@link #begin()} to {@link #end()}.
+ *
+ * @author Aelexe
+ *
+ */
+@Name("com.aelchemy.bencode.Bencode")
+@Label("Bencode Operation")
+@Category("Bencode")
+@Description("A slow, large or failed Bencode decode or encode")
+@StackTrace(true)
+class BencodeEvent extends Event {
+
+	@Label("Operation")
+	@Description("Decode or encode")
+	String operation;
+
+	@Label("Value Type")
+	@Description("The type of the top level value")
+	String valueType;
+
+	@Label("Length")
+	@DataAmount
+	long length;
+
+	@Label("Depth")
+	@Description("The maximum depth of the decoded value, or -1 if it isn't known")
+	int depth;
+
+	@Label("Element Count")
+	@Description("The number of values in the decoded value, or -1 if it isn't known")
+	int elementCount;
+
+	@Label("Failure Reason")
+	String failureReason;
+
+	@Label("Failure Offset")
+	@Description("The offset at which the data was found to be invalid, or -1 if it isn't known or didn't fail")
+	int failureOffset;
+
+}
@@ -0,0 +1,90 @@
+package com.aelchemy.bencode;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Contains methods for comparing and reading ranges of bytes in {@link ByteBuffer}s by absolute index, without
+ * changing the buffers' positions.
+ * <p>
+ * The Java 17 version of the class. Ranges of heap buffers are compared by the vectorised
+ * {@link Arrays#compareUnsigned(byte[], int, int, byte[], int, int)}, ranges of direct and mapped buffers eight bytes
+ * at a time by the absolute {@link ByteBuffer#getLong(int)}, without slicing the buffers, and direct buffers are read
+ * with the absolute bulk {@link ByteBuffer#get(int, byte[])}.
+ *
+ * @author Aelexe
+ *
+ */
+final class Bytes {
+
+	private Bytes() {
+	}
+
+	/**
+	 * Compares two ranges of bytes lexicographically, treating the bytes as unsigned.
+	 *
+	 * @param a The buffer containing the first range.
+	 * @param aIndex The index of the first range.
+	 * @param aLength The length of the first range.
+	 * @param b The buffer containing the second range.
+	 * @param bIndex The index of the second range.
+	 * @param bLength The length of the second range.
+	 * @return A negative number, zero, or a positive number if the first range is less than, equal to, or greater than
+	 *         the second range.
+	 */
+	static int compare(final ByteBuffer a, final int aIndex, final int aLength, final ByteBuffer b, final int bIndex, final int bLength) {
+		if (a.hasArray() && b.hasArray()) {
+			int aFrom = a.arrayOffset() + aIndex;
+			int bFrom = b.arrayOffset() + bIndex;
+			return Arrays.compareUnsigned(a.array(), aFrom, aFrom + aLength, b.array(), bFrom, bFrom + bLength);
+		}
+
+		int length = Math.min(aLength, bLength);
+		int i = 0;
+		for (; i <= length - Long.BYTES; i += Long.BYTES) {
+			long aWord = bigEndian(a, a.getLong(aIndex + i));
+			long bWord = bigEndian(b, b.getLong(bIndex + i));
+			if (aWord != bWord) {
+				// The first byte that differs is the most significant byte that differs.
+				i += Long.numberOfLeadingZeros(aWord ^ bWord) >>> 3;
+				return (a.get(aIndex + i) & 0xFF) - (b.get(bIndex + i) & 0xFF);
+			}
+		}
+		for (; i < length; i++) {
+			int difference = (a.get(aIndex + i) & 0xFF) - (b.get(bIndex + i) & 0xFF);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return aLength - bLength;
+	}
+
+	/**
+	 * Returns the word argument, read from the buffer argument in its byte order, in big endian order, so its first
+	 * byte is its most significant.
+	 */
+	private static long bigEndian(final ByteBuffer bData, final long word) {
+		return bData.order() == ByteOrder.BIG_ENDIAN ? word : Long.reverseBytes(word);
+	}
+
+	/**
+	 * Returns the range of bytes as a string, one character per byte.
+	 *
+	 * @param bData The buffer containing the range.
+	 * @param index The index of the range.
+	 * @param length The length of the range.
+	 * @return The string.
+	 */
+	static String string(final ByteBuffer bData, final int index, final int length) {
+		if (bData.hasArray()) {
+			return new String(bData.array(), bData.arrayOffset() + index, length, StandardCharsets.ISO_8859_1);
+		}
+
+		byte[] bytes = new byte[length];
+		bData.get(index, bytes);
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+}
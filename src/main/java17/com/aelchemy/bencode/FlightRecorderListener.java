@@ -0,0 +1,145 @@
+package com.aelchemy.bencode;
+
+import java.util.concurrent.TimeUnit;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.data.BDictionary;
+import com.aelchemy.bencode.data.BList;
+import com.aelchemy.bencode.data.ValueType;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+
+/**
+ * {@link FlightRecorderListener} is a {@link BencodeListener} that commits a JDK Flight Recorder event, named
+ * "com.aelchemy.bencode.Bencode", for every decode or encode that is slower or larger than its thresholds, and for every
+ * failed decode.
+ * <p>
+ * Events record the operation, top level value type, data length and duration, the depth and element count of decoded
+ * values, and the reason and offset of failures. Nothing is recorded unless a recording has the event enabled.
+ * <p>
+ * The Java 17 version of the class. Each event begins when the operation starts and ends when it does, so the event's
+ * own duration is the operation's, and the thresholds of a recording's settings apply as well as the listener's.
+ * Requires the jdk.jfr module.
+ *
+ * @author Aelexe
+ *
+ */
+public class FlightRecorderListener implements BencodeListener {
+
+	private final long durationThresholdNanos;
+	private final long lengthThreshold;
+	/**
+	 * The event of the operation in progress on each thread. An operation that throws without ending its event leaves
+	 * it for the next operation to replace.
+	 */
+	private final ThreadLocal<BencodeEvent> events = new ThreadLocal<BencodeEvent>();
+
+	/**
+	 * Creates a listener recording operations that take at least the duration threshold or process at least the length
+	 * threshold.
+	 *
+	 * @param durationThreshold The duration threshold.
+	 * @param unit The unit of the duration threshold.
+	 * @param lengthThreshold The length threshold.
+	 */
+	public FlightRecorderListener(final long durationThreshold, final TimeUnit unit, final long lengthThreshold) {
+		this.durationThresholdNanos = unit.toNanos(durationThreshold);
+		this.lengthThreshold = lengthThreshold;
+	}
+
+	@Override
+	public void onStart(final ValueType type) {
+		BencodeEvent event = new BencodeEvent();
+		event.begin();
+		events.set(event);
+	}
+
+	@Override
+	public void onDecode(final ValueType type, final int length, final long durationNanos, final Object value) {
+		BencodeEvent event = end();
+		if (event != null && exceedsThresholds(length, durationNanos) && event.shouldCommit()) {
+			int[] stats = new int[2];
+			count(type, value, 1, stats);
+			commit(event, "decode", type, length, stats[1], stats[0], null);
+		}
+	}
+
+	@Override
+	public void onDecodeFailure(final ValueType type, final int length, final long durationNanos, final InvalidFormatException exception) {
+		BencodeEvent event = end();
+		if (event != null && event.shouldCommit()) {
+			commit(event, "decode", type, length, -1, -1, exception);
+		}
+	}
+
+	@Override
+	public void onEncode(final ValueType type, final int length, final long durationNanos) {
+		BencodeEvent event = end();
+		if (event != null && exceedsThresholds(length, durationNanos) && event.shouldCommit()) {
+			commit(event, "encode", type, length, -1, -1, null);
+		}
+	}
+
+	private boolean exceedsThresholds(final int length, final long durationNanos) {
+		return durationNanos >= durationThresholdNanos || length >= lengthThreshold;
+	}
+
+	/**
+	 * Ends the event of the operation in progress on the thread.
+	 *
+	 * @return The event, or null if the operation started before the listener was registered.
+	 */
+	private BencodeEvent end() {
+		BencodeEvent event = events.get();
+		if (event != null) {
+			events.set(null);
+			event.end();
+		}
+		return event;
+	}
+
+	private static void commit(final BencodeEvent event, final String operation, final ValueType type, final int length, final int depth,
+			final int elementCount, final InvalidFormatException exception) {
+		event.operation = operation;
+		event.valueType = type.name();
+		event.length = length;
+		event.depth = depth;
+		event.elementCount = elementCount;
+		event.failureReason = exception == null ? null : exception.getReason().name();
+		event.failureOffset = exception == null ? -1 : exception.getOffset();
+		event.commit();
+	}
+
+	/**
+	 * Counts the value argument and every value nested in it, excluding dictionary keys, and their maximum depth.
+	 *
+	 * @param type The type of the value.
+	 * @param value The value.
+	 * @param depth The depth of the value.
+	 * @param stats The element count and maximum depth, updated in place.
+	 */
+	private static void count(final ValueType type, final Object value, final int depth, final int[] stats) {
+		stats[0]++;
+		stats[1] = Math.max(stats[1], depth);
+		if (type == ValueType.LIST) {
+			for (BData data : (BList) value) {
+				count(data, depth + 1, stats);
+			}
+		} else if (type == ValueType.DICTIONARY) {
+			BDictionary dictionary = (BDictionary) value;
+			for (String key : dictionary.keySet()) {
+				count(dictionary.get(key), depth + 1, stats);
+			}
+		}
+	}
+
+	private static void count(final BData data, final int depth, final int[] stats) {
+		if (data.isList()) {
+			count(ValueType.LIST, data.asList(), depth, stats);
+		} else if (data.isDictionary()) {
+			count(ValueType.DICTIONARY, data.asDictionary(), depth, stats);
+		} else {
+			count(ValueType.STRING, null, depth, stats);
+		}
+	}
+
+}
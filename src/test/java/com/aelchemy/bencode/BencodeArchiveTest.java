@@ -0,0 +1,294 @@
+package com.aelchemy.bencode;
+
+import static com.aelchemy.bencode.TestBytes.bytes;
+import static com.aelchemy.bencode.TestBytes.latin1;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.data.BDictionary;
+import com.aelchemy.bencode.data.BList;
+import com.aelchemy.bencode.data.BString;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * Contains tests for {@link BencodeArchive} and {@link BencodeArchiveWriter}.
+ *
+ * @author Aelexe
+ *
+ */
+public class BencodeArchiveTest {
+
+	private static final int DOCUMENTS = 3000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path data;
+	private Path index;
+
+	@Before
+	public void setUp() throws IOException {
+		data = folder.getRoot().toPath().resolve("archive.dat");
+		index = folder.getRoot().toPath().resolve("archive.idx");
+	}
+
+	/**
+	 * Tests documents are read back by ordinal and by info hash, from small blocks and from a block holding a single
+	 * document longer than the block size.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testGet() throws Exception {
+		List<BData> documents = documents();
+		char[] name = new char[5000];
+		Arrays.fill(name, 'n');
+		documents.get(1000).asDictionary().get("info").asDictionary().put("name", new String(name));
+		try (BencodeArchiveWriter writer = new BencodeArchiveWriter(data, index, 1024, 6)) {
+			for (int i = 0; i < documents.size(); i++) {
+				BData document = documents.get(i);
+				int ordinal = i % 2 == 0 ? writer.write(document) : writer.write(bytes(document.encode()));
+				assertEquals(i, ordinal);
+			}
+			assertEquals(DOCUMENTS, writer.size());
+		}
+		assertTrue(Files.size(data) < DOCUMENTS * 60);
+
+		BencodeArchive archive = BencodeArchive.open(data, index);
+		assertEquals(DOCUMENTS, archive.size());
+		for (int i : new int[] { 0, 1, 2, 999, 1000, 1001, 1500, DOCUMENTS - 1 }) {
+			assertEquals(documents.get(i), archive.get(i));
+			assertEquals(documents.get(i).encode(), latin1(archive.getRecord(i)));
+		}
+
+		for (int i = 0; i < DOCUMENTS; i += 7) {
+			byte[] infoHash = TorrentMeta.of(bytes(documents.get(i).encode())).getInfoHash();
+			assertEquals(i, archive.indexOf(infoHash));
+			assertEquals(documents.get(i), archive.get(infoHash));
+		}
+		assertEquals(-1, archive.indexOf(new byte[20]));
+		assertNull(archive.get(new byte[20]));
+		assertEquals(-1, archive.indexOf(new byte[4]));
+
+		try {
+			archive.get(DOCUMENTS);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// Expected.
+		}
+	}
+
+	/**
+	 * Tests sequential and parallel streams decode every document, and documents without an info hash are only found
+	 * by ordinal.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testStream() throws Exception {
+		List<BData> documents = documents();
+		documents.add(1234, new BData(new BString("not a torrent")));
+		try (BencodeArchiveWriter writer = new BencodeArchiveWriter(data, index, 4096, 1)) {
+			for (BData document : documents) {
+				writer.write(document);
+			}
+		}
+
+		BencodeArchive archive = BencodeArchive.open(data, index);
+		assertEquals(documents, archive.stream().collect(Collectors.toList()));
+		assertEquals(documents, archive.stream().parallel().collect(Collectors.toList()));
+		assertEquals(documents.size(), archive.stream().parallel().count());
+		assertEquals(new BData(new BString("not a torrent")), archive.get(1234));
+		assertEquals(1235, archive.indexOf(TorrentMeta.of(bytes(documents.get(1235).encode())).getInfoHash()));
+	}
+
+	/**
+	 * Tests an empty archive, invalid documents, a corrupt index and corrupt blocks.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testInvalid() throws Exception {
+		new BencodeArchiveWriter(data, index).close();
+		BencodeArchive archive = BencodeArchive.open(data, index);
+		assertEquals(0, archive.size());
+		assertEquals(0, archive.stream().count());
+		assertEquals(-1, archive.indexOf(new byte[20]));
+
+		try (BencodeArchiveWriter writer = new BencodeArchiveWriter(data, index)) {
+			for (String document : new String[] { "i1ei2e", "li1e", "" }) {
+				try {
+					writer.write(bytes(document));
+					fail("Expected InvalidFormatException for test data: \"" + document + "\"");
+				} catch (InvalidFormatException e) {
+					assertEquals(Reason.MALFORMED, e.getReason());
+				}
+			}
+			// Documents nested too deeply to read back are rejected without being counted.
+			BList deep = new BList();
+			for (int i = 0; i < Validate.MAX_DEPTH; i++) {
+				BList parent = new BList();
+				parent.add(deep);
+				deep = parent;
+			}
+			BDictionary torrent = new BDictionary();
+			torrent.put("deep", deep);
+			torrent.put("info", new BData(new BDictionary()));
+			try {
+				writer.write(new BData(torrent));
+				fail();
+			} catch (IllegalArgumentException e) {
+				assertEquals(0, writer.size());
+			}
+			writer.write(bytes("d4:infod4:name1:aee"));
+			assertEquals(1, writer.size());
+		}
+		byte[] bData = Files.readAllBytes(data);
+		bData[bData.length / 2] ^= 0x55;
+		bData[bData.length - 1] ^= 0x55;
+		Files.write(data, bData);
+		archive = BencodeArchive.open(data, index);
+		try {
+			archive.get(0);
+			fail();
+		} catch (IOException e) {
+			// Expected.
+		}
+		try {
+			archive.stream().count();
+			fail();
+		} catch (UncheckedIOException e) {
+			// Expected.
+		}
+
+		Files.write(index, bytes("not an index, but long enough"));
+		try {
+			BencodeArchive.open(data, index);
+			fail();
+		} catch (IOException e) {
+			// Expected.
+		}
+	}
+
+	/**
+	 * Tests index entries pointing outside the data file, the inflated block or the blocks are rejected as corrupt,
+	 * rather than trusted.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testCorruptIndex() throws Exception {
+		List<BData> documents = documents();
+		try (BencodeArchiveWriter writer = new BencodeArchiveWriter(data, index, 1024, Deflater.DEFAULT_COMPRESSION)) {
+			for (BData document : documents) {
+				writer.write(document);
+			}
+		}
+		byte[] original = Files.readAllBytes(index);
+		int blockCount = ByteBuffer.wrap(original).getInt(8);
+		long block = 20;
+		long document = block + blockCount * 16L;
+		long hash = document + DOCUMENTS * 12L;
+
+		// The first block's offset, compressed length and length.
+		assertCorrupt(original, block, Files.size(data), true);
+		assertCorrupt(original, block, -1L, true);
+		assertCorrupt(original, block + 8, -1, true);
+		assertCorrupt(original, block + 8, (int) Files.size(data) + 1, true);
+		assertCorrupt(original, block + 12, -1, true);
+		assertCorrupt(original, block + 12, Integer.MAX_VALUE, true);
+		// The first document's block, offset and length.
+		assertCorrupt(original, document, blockCount, false);
+		assertCorrupt(original, document, -1, false);
+		assertCorrupt(original, document + 4, 1024 * 1024, true);
+		assertCorrupt(original, document + 4, -1, true);
+		assertCorrupt(original, document + 8, 1024 * 1024, true);
+		assertCorrupt(original, document + 8, -1, true);
+
+		// A hash entry's ordinal.
+		ByteBuffer corrupt = ByteBuffer.wrap(original.clone());
+		corrupt.putInt((int) hash + BencodeArchive.HASH_LENGTH, DOCUMENTS);
+		Files.write(index, corrupt.array());
+		byte[] infoHash = new byte[BencodeArchive.HASH_LENGTH];
+		corrupt.position((int) hash);
+		corrupt.get(infoHash);
+		try {
+			BencodeArchive.open(data, index).get(infoHash);
+			fail();
+		} catch (IOException e) {
+			// Expected.
+		}
+
+		Files.write(index, original);
+		assertEquals(documents.get(0), BencodeArchive.open(data, index).get(0));
+	}
+
+	/**
+	 * Writes the index with the int or long value argument at the position argument, and asserts the first document
+	 * is rejected as corrupt, and the stream too if the argument is true.
+	 */
+	private void assertCorrupt(final byte[] original, final long position, final Number value, final boolean stream) throws Exception {
+		ByteBuffer corrupt = ByteBuffer.wrap(original.clone());
+		if (value instanceof Long) {
+			corrupt.putLong((int) position, value.longValue());
+		} else {
+			corrupt.putInt((int) position, value.intValue());
+		}
+		Files.write(index, corrupt.array());
+		BencodeArchive archive = BencodeArchive.open(data, index);
+		try {
+			archive.getRecord(0);
+			fail("Expected IOException for " + value + " at " + position);
+		} catch (IOException e) {
+			// Expected.
+		}
+		if (stream) {
+			try {
+				archive.stream().count();
+				fail("Expected UncheckedIOException for " + value + " at " + position);
+			} catch (UncheckedIOException e) {
+				// Expected.
+			}
+		}
+	}
+
+	/**
+	 * Returns torrent metainfo documents, each with a unique info dictionary.
+	 */
+	private static List<BData> documents() throws InvalidFormatException {
+		List<BData> documents = new ArrayList<BData>();
+		for (int i = 0; i < DOCUMENTS; i++) {
+			BDictionary info = new BDictionary(4);
+			info.put("length", 1000L * i);
+			info.put("name", "file" + i + ".txt");
+			info.put("piece length", 16384);
+			info.put("pieces", "0123456789abcdefghij");
+			BDictionary torrent = new BDictionary(2);
+			torrent.put("announce", "http://tracker/" + i % 10);
+			torrent.put("info", new BData(info));
+			documents.add(new BData(torrent));
+		}
+		return documents;
+	}
+
+}
@@ -0,0 +1,212 @@
+package com.aelchemy.bencode;
+
+import static com.aelchemy.bencode.TestBytes.bytes;
+import static com.aelchemy.bencode.TestBytes.latin1;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.data.BDictionary;
+import com.aelchemy.bencode.data.BList;
+
+/**
+ * Contains tests for {@link BencodeBuilder}.
+ *
+ * @author Aelexe
+ *
+ */
+public class BencodeBuilderTest {
+
+	/**
+	 * Tests {@link BencodeBuilder} builds the same data as encoding the equivalent {@link BDictionary}.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testBuild() throws Exception {
+		BList peers = new BList(2);
+		peers.add("\u00FF\u0000\u0001\u0002\u001A\u00E1");
+		peers.add(new BigInteger("340282366920938463463374607431768211455"));
+		BDictionary expected = new BDictionary(4);
+		expected.put("complete", 10);
+		expected.put("incomplete", -3);
+		expected.put("interval", 1800);
+		expected.put("peers", peers);
+
+		BencodeBuilder builder = new BencodeBuilder(4)
+				.startDictionary()
+				.key("complete").value(10)
+				.key(bytes("incomplete")).value(-3)
+				.key("interval").value(expected.get("interval"))
+				.key("peers").startList()
+				.value(new byte[] { (byte) 0xFF, 0, 1, 2, 0x1A, (byte) 0xE1 })
+				.value(new BigInteger("340282366920938463463374607431768211455"))
+				.end()
+				.end();
+		assertTrue(builder.isComplete());
+		assertEquals(expected.encode(), latin1(builder.toByteArray()));
+		assertEquals(expected.encode().length(), builder.getLength());
+
+		ByteBuffer buffer = ByteBuffer.allocate(builder.getLength());
+		builder.writeTo(buffer);
+		assertEquals(expected.encode(), latin1(buffer.array()));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		builder.writeTo(out);
+		assertEquals(expected.encode(), latin1(out.toByteArray()));
+
+		assertEquals("i-7e", latin1(builder.reset().value(-7).toByteArray()));
+		assertEquals("le", latin1(builder.reset().startList().end().toByteArray()));
+		assertEquals("de", latin1(builder.reset().startDictionary().end().toByteArray()));
+		assertEquals("4:spam", latin1(builder.reset().value("spam").toByteArray()));
+	}
+
+	/**
+	 * Tests {@link BencodeBuilder} rejects keys that aren't greater than the previous key of their dictionary,
+	 * comparing unsigned bytes, and leaves the data as it was.
+	 */
+	@Test
+	public void testSortedKeys() {
+		BencodeBuilder builder = new BencodeBuilder().startDictionary().key("b").value(1);
+		assertInvalidKey(builder, "b");
+		assertInvalidKey(builder, "a");
+		assertInvalidKey(builder, "");
+
+		// Keys of nested dictionaries are compared separately.
+		builder.key("c").startDictionary().key("a").value(2).end();
+		builder.key("ca").value(3).key("\u00FF").value(4).end();
+		assertEquals("d1:bi1e1:cd1:ai2ee2:cai3e1:\u00FFi4ee", latin1(builder.toByteArray()));
+	}
+
+	/**
+	 * Tests {@link BencodeBuilder} rejects values and keys out of place, and incomplete data.
+	 */
+	@Test
+	public void testInvalidState() {
+		assertInvalidState(new BencodeBuilder(), "toByteArray");
+		assertInvalidState(new BencodeBuilder(), "end");
+		assertInvalidState(new BencodeBuilder(), "key");
+		assertInvalidState(new BencodeBuilder().value(1), "value");
+		assertInvalidState(new BencodeBuilder().startList(), "key");
+		assertInvalidState(new BencodeBuilder().startList(), "toByteArray");
+		assertInvalidState(new BencodeBuilder().startDictionary(), "value");
+		assertInvalidState(new BencodeBuilder().startDictionary().key("a"), "key");
+		assertInvalidState(new BencodeBuilder().startDictionary().key("a"), "end");
+
+		BencodeBuilder builder = new BencodeBuilder();
+		for (int i = 0; i < Validate.MAX_DEPTH; i++) {
+			builder.startList();
+		}
+		try {
+			builder.startList();
+			fail();
+		} catch (IllegalStateException e) {
+			// Expected.
+		}
+		for (int i = 0; i < Validate.MAX_DEPTH; i++) {
+			builder.end();
+		}
+		assertEquals(Validate.MAX_DEPTH * 2, Validate.validate(ByteBuffer.wrap(builder.toByteArray()), true));
+	}
+
+	/**
+	 * Tests keys and strings with characters that can't be encoded in one byte are rejected, leaving the builder as it
+	 * was.
+	 */
+	@Test
+	public void testUnencodable() {
+		BencodeBuilder builder = new BencodeBuilder().startDictionary();
+		try {
+			builder.key("\u0100");
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		}
+		builder.key("a");
+		try {
+			builder.value("ab\u20AC");
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		}
+		BList list = new BList();
+		list.add("\u00FF");
+		list.add("\uFFFF");
+		try {
+			builder.value(new BData(list));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		}
+		builder.value("\u00FF").end();
+		assertArrayEquals(bytes("d1:a1:\u00FFe"), builder.toByteArray());
+	}
+
+	/**
+	 * Tests building a dictionary of 1,000 entries into a reused builder allocates nothing.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testBuild_Allocation() throws Exception {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+		Assume.assumeTrue(allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled());
+
+		byte[][] keys = new byte[1000][];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = bytes("key" + (1000 + i));
+		}
+		BencodeBuilder builder = new BencodeBuilder();
+		long allocated = 0;
+		for (int pass = 0; pass < 5; pass++) {
+			long before = allocation.getThreadAllocatedBytes(Thread.currentThread().getId());
+			builder.reset().startDictionary();
+			for (int i = 0; i < keys.length; i++) {
+				builder.key(keys[i]).startList().value(i).value(keys[i]).end();
+			}
+			builder.end();
+			allocated = allocation.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+		}
+		assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+		assertEquals(builder.getLength(), Validate.validate(ByteBuffer.wrap(builder.toByteArray()), true));
+	}
+
+	private static void assertInvalidKey(final BencodeBuilder builder, final String key) {
+		int length = builder.getLength();
+		try {
+			builder.key(key);
+			fail("Expected IllegalArgumentException for key: \"" + key + "\"");
+		} catch (IllegalArgumentException e) {
+			assertEquals(length, builder.getLength());
+		}
+	}
+
+	private static void assertInvalidState(final BencodeBuilder builder, final String method) {
+		try {
+			if (method.equals("toByteArray")) {
+				builder.toByteArray();
+			} else if (method.equals("end")) {
+				builder.end();
+			} else if (method.equals("key")) {
+				builder.key("z");
+			} else {
+				builder.value(1);
+			}
+			fail("Expected IllegalStateException from " + method);
+		} catch (IllegalStateException e) {
+			// Expected.
+		}
+	}
+
+}
@@ -0,0 +1,174 @@
+package com.aelchemy.bencode;
+
+import static com.aelchemy.bencode.TestBytes.bytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.data.BList;
+import com.aelchemy.bencode.data.BNumber;
+
+/**
+ * Contains tests for {@link BencodeEditor}.
+ *
+ * @author Aelexe
+ *
+ */
+public class BencodeEditorTest {
+
+	private static final String INFO = "d6:lengthi1024e4:name8:file.txt6:pieces4:\u0000\u00FF\"ae";
+	private static final String TORRENT = "d8:announce15:http://tracker/7:comment2:hi4:info" + INFO + "e";
+
+	/**
+	 * Tests {@link BencodeEditor#put} replaces values with values of different lengths, leaving the rest of the data
+	 * byte for byte identical.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testPut_Replace() throws Exception {
+		BencodeEditor editor = new BencodeEditor(bytes(TORRENT));
+		editor.put("udp://tracker.example:6969/announce", "announce").put(7, "comment");
+		String expected = "d8:announce35:udp://tracker.example:6969/announce7:commenti7e4:info" + INFO + "e";
+		assertEquals(expected, edit(editor));
+		assertTrue(edit(editor).contains("4:info" + INFO));
+
+		editor = new BencodeEditor(bytes(TORRENT));
+		editor.put(new BData(new BList()), "info", "length");
+		assertEquals(TORRENT.replace("i1024e", "le"), edit(editor));
+	}
+
+	/**
+	 * Tests {@link BencodeEditor#put} inserts new keys in sorted order, including into nested dictionaries and at the
+	 * end of a dictionary.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testPut_Insert() throws Exception {
+		BencodeEditor editor = new BencodeEditor(bytes(TORRENT));
+		editor.put("a", "zz").put(1, "created").put(2, "creation date").put("x", "info", "md5sum");
+		String expected = "d8:announce15:http://tracker/7:comment2:hi7:createdi1e13:creation datei2e4:info"
+				+ INFO.replace("4:name", "6:md5sum1:x4:name") + "2:zz1:ae";
+		assertEquals(expected, edit(editor));
+		assertEquals(expected, Bencode.decodeDictionary(expected).encode());
+
+		assertEquals("d1:ai1ee", edit(new BencodeEditor(bytes("de")).put(1, "a")));
+	}
+
+	/**
+	 * Tests {@link BencodeEditor#remove} removes keys, ignores keys that aren't present and undoes insertions.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testRemove() throws Exception {
+		BencodeEditor editor = new BencodeEditor(bytes(TORRENT));
+		editor.remove("comment").remove("missing").put(1, "added").remove("added").put(1, "b").remove("announce");
+		assertEquals("d1:bi1e4:info" + INFO + "e", edit(editor));
+
+		editor = new BencodeEditor(bytes(TORRENT));
+		editor.remove("announce").put(1, "announce");
+		assertEquals(TORRENT.replace("15:http://tracker/", "i1e"), edit(editor));
+	}
+
+	/**
+	 * Tests {@link BencodeEditor} writes the same data to an array, a buffer and a stream, and edits a value at the
+	 * position of a direct buffer.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testWriteTo() throws Exception {
+		ByteBuffer bData = ByteBuffer.allocateDirect(TORRENT.length() + 4);
+		bData.put(bytes("xx")).put(bytes(TORRENT)).put(bytes("yy")).position(2);
+		BencodeEditor editor = new BencodeEditor(bData).put(new BData(new BNumber(-12)), "info", "length");
+		byte[] expected = bytes(TORRENT.replace("i1024e", "i-12e"));
+
+		assertArrayEquals(expected, editor.toByteArray());
+		assertEquals(expected.length, editor.getLength());
+
+		ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+		editor.writeTo(buffer);
+		assertArrayEquals(expected, buffer.array());
+		assertEquals(2, bData.position());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		editor.writeTo(out);
+		assertArrayEquals(expected, out.toByteArray());
+
+		// A buffer one byte short is left untouched.
+		buffer = ByteBuffer.allocate(expected.length - 1);
+		try {
+			editor.writeTo(buffer);
+			fail("Expected BufferOverflowException");
+		} catch (BufferOverflowException e) {
+			assertEquals(0, buffer.position());
+			assertArrayEquals(new byte[expected.length - 1], buffer.array());
+		}
+	}
+
+	/**
+	 * Tests {@link BencodeEditor} rejects paths that don't lead to a dictionary, and edits inside values replaced or
+	 * removed by other edits.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testInvalid() throws Exception {
+		BencodeEditor editor = new BencodeEditor(bytes(TORRENT));
+		try {
+			editor.put(1);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			editor.put(1, "announce", "x");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			editor.put(1, "missing", "x");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new BencodeEditor(bytes("li1ee")).put(1, "x");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		// Keys and strings that can't be encoded in one byte are rejected when they are put.
+		try {
+			editor.put(1, "\u0100");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			editor.put("\u20AC", "comment");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(TORRENT, edit(editor));
+
+		editor.put(1, "info").put(2, "info", "length");
+		try {
+			editor.toByteArray();
+			fail();
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	private static String edit(final BencodeEditor editor) {
+		return new String(editor.toByteArray(), StandardCharsets.ISO_8859_1);
+	}
+
+}
@@ -0,0 +1,143 @@
+package com.aelchemy.bencode;
+
+import static com.aelchemy.bencode.TestBytes.bytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.data.BList;
+import com.aelchemy.bencode.data.ValueType;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * Contains tests for {@link BencodeMetrics} registered as the {@link Bencode} listener.
+ *
+ * @author Aelexe
+ *
+ */
+public class BencodeMetricsTest {
+
+	@After
+	public void removeListener() {
+		Bencode.setListener(null);
+	}
+
+	/**
+	 * Tests {@link BencodeMetrics} counts the decoded values and their lengths and depth.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testDecode() throws InvalidFormatException {
+		BencodeMetrics metrics = new BencodeMetrics();
+		Bencode.setListener(metrics);
+		assertSame(metrics, Bencode.getListener());
+
+		Bencode.decodeDictionary("d4:listl1:ai1eli2eee4:name4:teste");
+		Bencode.decodeNumber("i3e");
+		Bencode.decodeString("3:abc");
+
+		assertEquals(41, metrics.getDecodedLength());
+		assertEquals(4, metrics.getMaxDepth());
+		assertEquals(1, metrics.getValueCount(ValueType.DICTIONARY));
+		assertEquals(2, metrics.getValueCount(ValueType.LIST));
+		assertEquals(3, metrics.getValueCount(ValueType.NUMBER));
+		assertEquals(5, metrics.getValueCount(ValueType.STRING));
+		assertEquals(3, metrics.getDecodeLatency().getCount());
+		assertTrue(metrics.getDecodeLatency().getPercentile(100) >= metrics.getDecodeLatency().getPercentile(50));
+	}
+
+	/**
+	 * Tests {@link BencodeMetrics} counts failed decodes by reason.
+	 */
+	@Test
+	public void testDecode_Invalid() {
+		BencodeMetrics metrics = new BencodeMetrics();
+		Bencode.setListener(metrics);
+
+		String[] invalidData = new String[] { "i01e", "i-0e", "ie", "d3:keye" };
+		for (String bData : invalidData) {
+			try {
+				if (bData.startsWith("d")) {
+					Bencode.decodeDictionary(bData);
+				} else {
+					Bencode.decodeNumber(bData);
+				}
+				fail("Expected InvalidFormatException for test data: \"" + bData + "\" but received nothing.");
+			} catch (InvalidFormatException e) {
+			}
+		}
+
+		assertEquals(2, metrics.getFailureCount(Reason.LEADING_ZERO));
+		assertEquals(1, metrics.getFailureCount(Reason.EMPTY));
+		assertEquals(1, metrics.getFailureCount(Reason.MISSING_VALUE));
+		assertEquals(4, metrics.getDecodeLatency().getCount());
+	}
+
+	/**
+	 * Tests decodes from buffers and streams, and encodes to them, are counted too.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testBuffersAndStreams() throws Exception {
+		BencodeMetrics metrics = new BencodeMetrics();
+		Bencode.setListener(metrics);
+
+		ByteBuffer bData = ByteBuffer.wrap(bytes("li1e3:abcei2e"));
+		BData list = Bencode.decode(bData);
+		Bencode.decode(new ByteArrayInputStream(bytes("d1:ai1ee")));
+		try {
+			Bencode.decode(ByteBuffer.wrap(bytes("li1e")));
+			fail();
+		} catch (InvalidFormatException e) {
+		}
+		assertEquals(10 + 8 + 4, metrics.getDecodedLength());
+		assertEquals(1, metrics.getValueCount(ValueType.DICTIONARY));
+		assertEquals(1, metrics.getValueCount(ValueType.LIST));
+		assertEquals(2, metrics.getValueCount(ValueType.NUMBER));
+		assertEquals(2, metrics.getValueCount(ValueType.STRING));
+		assertEquals(1, metrics.getFailureCount(Reason.MALFORMED));
+		assertEquals(3, metrics.getDecodeLatency().getCount());
+
+		Bencode.encode(list, new ByteArrayOutputStream());
+		Bencode.encode(list, ByteBuffer.allocate(10));
+		assertEquals(20, metrics.getEncodedLength());
+		assertEquals(2, metrics.getEncodeLatency().getCount());
+	}
+
+	/**
+	 * Tests {@link BencodeMetrics} counts encoded lengths, and nothing is counted once the listener is removed.
+	 */
+	@Test
+	public void testEncode() {
+		BencodeMetrics metrics = new BencodeMetrics();
+		Bencode.setListener(metrics);
+
+		BList list = new BList();
+		list.add(1);
+		Bencode.encodeList(list);
+		Bencode.encodeNumber(42);
+		Bencode.encodeString("four");
+
+		assertEquals(15, metrics.getEncodedLength());
+		assertEquals(3, metrics.getEncodeLatency().getCount());
+
+		Bencode.setListener(null);
+		assertNull(Bencode.getListener());
+		Bencode.encodeString("four");
+		assertEquals(15, metrics.getEncodedLength());
+	}
+
+}
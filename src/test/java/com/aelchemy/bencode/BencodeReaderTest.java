@@ -0,0 +1,182 @@
+package com.aelchemy.bencode;
+
+import static com.aelchemy.bencode.TestBytes.bytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * Contains tests for {@link BencodeReader}.
+ *
+ * @author Aelexe
+ *
+ */
+public class BencodeReaderTest {
+
+	private static final String[] MESSAGES = { "d1:ad2:id20:abcdefghij0123456789e1:q4:pinge", "i42e", "4:spam",
+			"li1eli2eed1:x0:ee", "d1:rd2:id20:mnopqrstuvwxyz123456e1:t2:aa1:y1:re" };
+
+	/**
+	 * Tests {@link BencodeReader} reads back to back values through a buffer smaller than some of them, returning the
+	 * offset of each.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testNext() throws Exception {
+		try (BencodeReader reader = reader(String.join("", MESSAGES), 8)) {
+			long offset = 0;
+			for (String message : MESSAGES) {
+				assertEquals(offset, reader.getOffset());
+				BData data = reader.next();
+				assertEquals(message, data.encode());
+				offset += message.length();
+			}
+			assertEquals(offset, reader.getOffset());
+			assertNull(reader.next());
+			assertNull(reader.next());
+		}
+	}
+
+	/**
+	 * Tests {@link BencodeReader#nextRecord} returns each value's bytes without decoding them.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testNextRecord() throws Exception {
+		try (BencodeReader reader = reader(String.join("", MESSAGES), 16)) {
+			for (String message : MESSAGES) {
+				ByteBuffer record = reader.nextRecord();
+				assertTrue(record.isReadOnly());
+				byte[] bytes = new byte[record.remaining()];
+				record.get(bytes);
+				assertEquals(message, new String(bytes, StandardCharsets.ISO_8859_1));
+			}
+			assertNull(reader.nextRecord());
+		}
+	}
+
+	/**
+	 * Tests {@link BencodeReader} reads values from an {@link java.io.InputStream}, and
+	 * {@link Bencode#decode(java.io.InputStream)} decodes the first value of a stream.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testInputStream() throws Exception {
+		try (BencodeReader reader = new BencodeReader(new ByteArrayInputStream(bytes(String.join("", MESSAGES))), 8, 1024)) {
+			for (String message : MESSAGES) {
+				assertEquals(message, reader.next().encode());
+			}
+			assertNull(reader.next());
+		}
+
+		assertEquals(MESSAGES[0], Bencode.decode(new ByteArrayInputStream(bytes(String.join("", MESSAGES)))).encode());
+		try {
+			Bencode.decode(new ByteArrayInputStream(new byte[0]));
+			fail();
+		} catch (InvalidFormatException e) {
+			assertEquals(Reason.EMPTY, e.getReason());
+		}
+	}
+
+	/**
+	 * Tests {@link BencodeReader#stream} returns every value in order, sequentially and in parallel.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testStream() throws Exception {
+		StringBuilder bData = new StringBuilder();
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 5000; i++) {
+			String message = MESSAGES[i % MESSAGES.length].replace("i42e", "i" + i + "e");
+			bData.append(message);
+			expected.add(message);
+		}
+
+		try (BencodeReader reader = reader(bData.toString(), 256)) {
+			assertEquals(expected, reader.stream().map(BData::encode).collect(Collectors.toList()));
+		}
+		try (BencodeReader reader = reader(bData.toString(), 256)) {
+			assertEquals(expected, reader.stream().parallel().map(BData::encode).collect(Collectors.toList()));
+		}
+	}
+
+	/**
+	 * Tests {@link BencodeReader} rejects invalid and truncated values with their offset in the channel, and values
+	 * longer than the maximum length.
+	 *
+	 * @throws IOException If thrown the test fails.
+	 */
+	@Test
+	public void testInvalid() throws IOException {
+		assertInvalid(Reason.MALFORMED, 10, "i1e4:spami01e");
+		assertInvalid(Reason.MALFORMED, 12, "i1e4:spam10:abc");
+		assertInvalid(Reason.MALFORMED, 7, "i1eli1e");
+		assertInvalid(Reason.INVALID_LENGTH, 3, "i1e40:abcdefghijabcdefghijabcdefghijabcdefghij");
+	}
+
+	/**
+	 * Tests {@link BencodeReader} rejects a channel in non-blocking mode, which it would spin reading.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testNonBlocking() throws Exception {
+		Pipe pipe = Pipe.open();
+		try {
+			pipe.source().configureBlocking(false);
+			try {
+				new BencodeReader(pipe.source());
+				fail();
+			} catch (IllegalArgumentException e) {
+			}
+
+			pipe.source().configureBlocking(true);
+			pipe.sink().write(ByteBuffer.wrap(bytes("i1e")));
+			pipe.sink().close();
+			try (BencodeReader reader = new BencodeReader(pipe.source())) {
+				assertEquals("i1e", reader.next().encode());
+				assertNull(reader.next());
+			}
+		} finally {
+			pipe.sink().close();
+			pipe.source().close();
+		}
+	}
+
+	private static void assertInvalid(final Reason reason, final int offset, final String bData) throws IOException {
+		try (BencodeReader reader = new BencodeReader(Channels.newChannel(new ByteArrayInputStream(bytes(bData))), 4, 32)) {
+			while (reader.next() != null) {
+			}
+			fail();
+		} catch (InvalidFormatException e) {
+			assertEquals(reason, e.getReason());
+			assertEquals(offset, e.getOffset());
+		}
+	}
+
+	private static BencodeReader reader(final String bData, final int bufferSize) {
+		return new BencodeReader(Channels.newChannel(new ByteArrayInputStream(bytes(bData))), bufferSize, 1024);
+	}
+
+}
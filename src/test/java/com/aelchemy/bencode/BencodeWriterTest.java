@@ -0,0 +1,149 @@
+package com.aelchemy.bencode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.data.BDictionary;
+import com.aelchemy.bencode.data.BString;
+
+/**
+ * Contains tests for {@link BencodeWriter}.
+ *
+ * @author Aelexe
+ *
+ */
+public class BencodeWriterTest {
+
+	/**
+	 * Tests {@link BencodeWriter} buffers values until flushed, and writes values longer than its buffer on their own.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testWrite() throws Exception {
+		CountingStream out = new CountingStream();
+		BencodeWriter writer = new BencodeWriter(out, 16);
+		writer.write(new BData(new BString("spam")));
+		writer.write(new BData(new BString("eggs")));
+		assertEquals(0, out.size());
+
+		String text = "abcdefghijklmnopqrstuvwxyz";
+		writer.write(new BData(new BString(text)));
+		assertEquals("4:spam4:eggs26:" + text, out.toString("ISO-8859-1"));
+		assertEquals(2, out.writes);
+
+		writer.write(new BData(new BString("x")));
+		writer.flush();
+		assertEquals("4:spam4:eggs26:" + text + "1:x", out.toString("ISO-8859-1"));
+
+		writer.write(new BData(new BString("y")));
+		writer.close();
+		assertTrue(out.closed);
+		assertEquals("4:spam4:eggs26:" + text + "1:x1:y", out.toString("ISO-8859-1"));
+	}
+
+	/**
+	 * Tests {@link BencodeWriter} writes each value whole when written by many threads, and the values can be read back
+	 * with a {@link BencodeReader}.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testWrite_Concurrent() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BencodeWriter writer = new BencodeWriter(out, 64);
+		List<Thread> threads = new ArrayList<Thread>();
+		List<Throwable> failures = new ArrayList<Throwable>();
+		for (int t = 0; t < 8; t++) {
+			final int thread = t;
+			threads.add(new Thread(() -> {
+				try {
+					for (int i = 0; i < 500; i++) {
+						BDictionary dictionary = new BDictionary();
+						dictionary.put("thread", thread);
+						dictionary.put("i", i);
+						writer.write(new BData(dictionary));
+					}
+				} catch (IOException e) {
+					synchronized (failures) {
+						failures.add(e);
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		writer.flush();
+		assertTrue(failures.isEmpty());
+
+		Set<String> values = new HashSet<String>();
+		try (BencodeReader reader = new BencodeReader(new ByteArrayInputStream(out.toByteArray()), 32, 1024)) {
+			BData data;
+			while ((data = reader.next()) != null) {
+				values.add(data.encode());
+			}
+		}
+		assertEquals(8 * 500, values.size());
+	}
+
+	/**
+	 * Tests {@link Bencode#encode(BData, java.io.OutputStream)} and {@link Bencode#decode(java.io.InputStream)} round
+	 * trip a value through streams.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testEncode_OutputStream() throws Exception {
+		BDictionary dictionary = new BDictionary();
+		dictionary.put("name", "file\u00FF");
+		dictionary.put("length", 1024);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Bencode.encode(new BData(dictionary), out);
+		assertEquals("d4:name5:file\u00FF6:lengthi1024ee", new String(out.toByteArray(), StandardCharsets.ISO_8859_1));
+
+		assertEquals(dictionary.encode(), Bencode.decode(new ByteArrayInputStream(out.toByteArray())).encode());
+	}
+
+	/**
+	 * An output stream counting its writes.
+	 */
+	private static final class CountingStream extends ByteArrayOutputStream {
+
+		private int writes;
+		private boolean closed;
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+			writes++;
+			super.write(b, off, len);
+		}
+
+		@Override
+		public void write(final byte[] b) {
+			write(b, 0, b.length);
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+
+	}
+
+}
@@ -0,0 +1,169 @@
+package com.aelchemy.bencode;
+
+import static com.aelchemy.bencode.TestBytes.bytes;
+import static com.aelchemy.bencode.TestBytes.latin1;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * Contains tests for {@link ChunkDecoder}.
+ *
+ * @author Aelexe
+ *
+ */
+public class ChunkDecoderTest {
+
+	private static final String[] MESSAGES = { "d1:ad2:id20:abcdefghij0123456789e1:q4:pinge", "i42e", "4:spam",
+			"li1eli2eed1:x0:ee", "d1:rd2:id20:mnopqrstuvwxyz123456e1:t2:aa1:y1:re" };
+
+	/**
+	 * Tests {@link ChunkDecoder} decodes values split across chunks of every size, only buffering more data when no
+	 * complete value is buffered.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testNext() throws InvalidFormatException {
+		byte[] bData = bytes(String.join("", MESSAGES));
+		for (int chunkSize = 1; chunkSize <= bData.length; chunkSize++) {
+			ChunkDecoder decoder = new ChunkDecoder(64);
+			List<String> values = new ArrayList<String>();
+			for (int i = 0; i < bData.length; i += chunkSize) {
+				decoder.offer(ByteBuffer.wrap(bData, i, Math.min(chunkSize, bData.length - i)));
+				BData data;
+				while ((data = decoder.next()) != null) {
+					assertEquals(i + Math.min(chunkSize, bData.length - i) - decoder.getBufferedLength(), decoder.getOffset());
+					values.add(data.encode());
+				}
+				assertTrue(decoder.getBufferedLength() < 64);
+			}
+			decoder.end();
+			assertEquals(String.join(",", MESSAGES), String.join(",", values));
+			assertEquals(bData.length, decoder.getOffset());
+		}
+	}
+
+	/**
+	 * Tests large values offered in small chunks are only scanned about once, rather than again from their start for
+	 * every chunk, which would take minutes.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testNext_LargeValues() throws InvalidFormatException {
+		int length = 16 * 1024 * 1024;
+		StringBuilder list = new StringBuilder("l");
+		for (int i = 0; i < 200000; i++) {
+			list.append("li").append(i).append("e1:xe");
+		}
+		byte[] string = bytes("d4:data" + length + ":");
+		byte[] bData = Arrays.copyOf(string, string.length + length + 1);
+		bData[bData.length - 1] = 'e';
+		byte[] numbers = bytes(list.append('e').toString());
+
+		long start = System.nanoTime();
+		ChunkDecoder decoder = new ChunkDecoder();
+		for (int i = 0; i < bData.length; i += 1024) {
+			decoder.offer(ByteBuffer.wrap(bData, i, Math.min(1024, bData.length - i)));
+			if (i + 1024 < bData.length) {
+				assertNull(decoder.nextRecord());
+			}
+		}
+		assertEquals(bData.length, decoder.nextRecord().remaining());
+		for (int i = 0; i < numbers.length; i += 16) {
+			decoder.offer(ByteBuffer.wrap(numbers, i, Math.min(16, numbers.length - i)));
+			if (i + 16 < numbers.length) {
+				assertNull(decoder.nextRecord());
+			}
+		}
+		assertEquals(200000, decoder.next().asList().size());
+		decoder.end();
+		long elapsed = System.nanoTime() - start;
+		assertTrue("Took " + elapsed / 1000000 + " ms", elapsed < 5000000000L);
+	}
+
+	/**
+	 * Tests {@link ChunkDecoder#nextRecord} returns each value's bytes without decoding them, and leaves offered chunks
+	 * fully read.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testNextRecord() throws InvalidFormatException {
+		ChunkDecoder decoder = new ChunkDecoder();
+		ByteBuffer chunk = ByteBuffer.wrap(bytes("i1e4:spa"));
+		decoder.offer(chunk);
+		assertTrue(!chunk.hasRemaining());
+		assertEquals("i1e", latin1(decoder.nextRecord()));
+		assertNull(decoder.nextRecord());
+		decoder.offer(ByteBuffer.wrap(bytes("mle")));
+		ByteBuffer record = decoder.nextRecord();
+		assertTrue(record.isReadOnly());
+		assertEquals("4:spam", latin1(record));
+		assertEquals("le", latin1(decoder.nextRecord()));
+		assertNull(decoder.nextRecord());
+	}
+
+	/**
+	 * Tests {@link ChunkDecoder} rejects invalid values and values longer than the maximum length with their offset in
+	 * the data, and data ending inside a value.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testInvalid() throws InvalidFormatException {
+		assertInvalid(Reason.MALFORMED, 10, "i1e4:spami01e");
+		assertInvalid(Reason.MALFORMED, 7, "i1eli1exe");
+		assertInvalid(Reason.MALFORMED, 10, "i1ed1:ai1ei2ee");
+		assertInvalid(Reason.MALFORMED, 6, "i1eli-0ee");
+		assertInvalid(Reason.MALFORMED, 10, "i1el4:spa0mi1e");
+		assertInvalid(Reason.INVALID_LENGTH, 3, "i1e40:abcdefghijabcdefghijabcdefghijabcdefghij");
+		assertInvalid(Reason.INVALID_LENGTH, 3, "i1eli1ei2ei3ei4ei5ei6ei7ei8ei9ei10ei11ee");
+
+		ChunkDecoder decoder = new ChunkDecoder();
+		decoder.offer(ByteBuffer.wrap(bytes("i1e10:abc")));
+		try {
+			decoder.end();
+			fail();
+		} catch (IllegalStateException e) {
+		}
+		decoder.next();
+		assertNull(decoder.next());
+		try {
+			decoder.end();
+			fail();
+		} catch (InvalidFormatException e) {
+			assertEquals(Reason.MALFORMED, e.getReason());
+			assertEquals(6, e.getOffset());
+		}
+	}
+
+	private static void assertInvalid(final Reason reason, final int offset, final String bData) {
+		ChunkDecoder decoder = new ChunkDecoder(32);
+		try {
+			for (byte b : bytes(bData)) {
+				decoder.offer(ByteBuffer.wrap(new byte[] { b }));
+				while (decoder.next() != null) {
+				}
+			}
+			fail();
+		} catch (InvalidFormatException e) {
+			assertEquals(reason, e.getReason());
+			assertEquals(offset, e.getOffset());
+		}
+	}
+
+}
@@ -0,0 +1,157 @@
+package com.aelchemy.bencode;
+
+import static com.aelchemy.bencode.TestBytes.bytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.aelchemy.bencode.exception.InvalidFormatException;
+
+/**
+ * Contains tests for {@link Compare}.
+ *
+ * @author Aelexe
+ *
+ */
+public class CompareTest {
+
+	private static final String TORRENT = "d8:announce15:http://tracker/4:infod6:lengthi1024e4:name8:file.txt6:pieces4:\u0000\u00FF\"ae4:listli-1eli2ei3eeee";
+	private static final String REORDERED = "d4:listli-1eli2ei3eee4:infod4:name8:file.txt6:pieces4:\u0000\u00FF\"a6:lengthi1024ee8:announce15:http://tracker/e";
+
+	/**
+	 * Tests {@link Bencode#equal} compares values structurally, ignoring the order of dictionary keys.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testEqual() throws InvalidFormatException {
+		assertTrue(Bencode.equal(bytes(TORRENT), bytes(TORRENT)));
+		assertTrue(Bencode.equal(bytes(TORRENT), bytes(REORDERED)));
+		assertTrue(Bencode.equal(bytes("de"), bytes("de")));
+
+		assertFalse(Bencode.equal(bytes(TORRENT), bytes(TORRENT.replace("i1024e", "i1025e"))));
+		assertFalse(Bencode.equal(bytes(TORRENT), bytes(TORRENT.replace("i3e", "3:abc"))));
+		assertFalse(Bencode.equal(bytes(TORRENT), bytes(TORRENT.replace("4:name", "4:nama"))));
+		assertFalse(Bencode.equal(bytes("li1ei2ee"), bytes("li2ei1ee")));
+		assertFalse(Bencode.equal(bytes("li1ee"), bytes("li1ei1ee")));
+		assertFalse(Bencode.equal(bytes("d1:ai1ee"), bytes("d1:ai1e1:bi1ee")));
+		assertFalse(Bencode.equal(bytes("le"), bytes("de")));
+		assertFalse(Bencode.equal(bytes("i1e"), bytes("1:1")));
+	}
+
+	/**
+	 * Tests {@link Bencode#equal} compares values at the positions of buffers, ignoring any data after them.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testEqual_ByteBuffer() throws InvalidFormatException {
+		ByteBuffer a = ByteBuffer.allocateDirect(TORRENT.length() + 2);
+		a.put(bytes("x" + TORRENT + "y")).position(1);
+		assertTrue(Bencode.equal(a, ByteBuffer.wrap(bytes(REORDERED))));
+		assertEquals(1, a.position());
+		assertEquals(Bencode.hash(bytes(TORRENT)), Bencode.hash(a));
+	}
+
+	/**
+	 * Tests {@link Bencode#hash} is equal for structurally equal values, differs for different values, and is stable.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testHash() throws InvalidFormatException {
+		assertEquals(Bencode.hash(bytes(TORRENT)), Bencode.hash(bytes(REORDERED)));
+		assertNotEquals(Bencode.hash(bytes(TORRENT)), Bencode.hash(bytes(TORRENT.replace("i1024e", "i1025e"))));
+		assertNotEquals(Bencode.hash(bytes("li1ei2ee")), Bencode.hash(bytes("li2ei1ee")));
+		assertNotEquals(Bencode.hash(bytes("d1:ai1ee")), Bencode.hash(bytes("d1:bi1ee")));
+		assertNotEquals(Bencode.hash(bytes("d1:ai1e1:bi2ee")), Bencode.hash(bytes("d1:ai2e1:bi1ee")));
+		assertNotEquals(Bencode.hash(bytes("le")), Bencode.hash(bytes("de")));
+		assertNotEquals(Bencode.hash(bytes("lee")), Bencode.hash(bytes("llee")));
+
+		// The 64 bit FNV-1a hash of the bytes "4:spam".
+		assertEquals(fnv1a("4:spam"), Bencode.hash(bytes("4:spam")));
+	}
+
+	/**
+	 * Tests {@link Bencode#diff} returns the paths of changed, added and removed values.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testDiff() throws InvalidFormatException {
+		assertEquals(Collections.emptyList(), Bencode.diff(bytes(TORRENT), bytes(REORDERED)));
+
+		String changed = "d8:announce15:http://tracker/4:infod6:lengthle4:name8:file.bin6:pieces4:\u0000\u00FF\"ae4:listli-1eli2ei4eee7:comment2:hie";
+		assertEquals(Arrays.asList(path("info", "length"), path("info", "name"), path("list", "1", "1"), path("list", "2"), path("comment")),
+				Bencode.diff(bytes(TORRENT), bytes(changed.replace("i4eee", "i4eei5ee"))));
+		assertEquals(Arrays.asList(path("info", "length"), path("info", "name"), path("list", "1", "1"), path("list", "2"), path("comment")),
+				Bencode.diff(bytes(changed.replace("i4eee", "i4eei5ee")), bytes(TORRENT)));
+		assertEquals(Arrays.asList(path()), Bencode.diff(bytes("i1e"), bytes("i2e")));
+		assertEquals(Arrays.asList(path()), Bencode.diff(bytes("le"), bytes("de")));
+	}
+
+	/**
+	 * Tests dictionaries with many keys in different orders are compared and diffed in O(n log n), rather than matching
+	 * each key by scanning the other dictionary.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testReorderedKeys() throws InvalidFormatException {
+		int keys = 50000;
+		StringBuilder sorted = new StringBuilder("d");
+		StringBuilder reversed = new StringBuilder("d");
+		for (int i = 0; i < keys; i++) {
+			sorted.append("7:k").append(100000 + i).append('i').append(i).append('e');
+			reversed.append("7:k").append(100000 + keys - 1 - i).append('i').append(keys - 1 - i).append('e');
+		}
+		byte[] a = bytes(sorted.append('e').toString());
+		byte[] b = bytes(reversed.append('e').toString());
+
+		long start = System.nanoTime();
+		assertTrue(Bencode.equal(a, b));
+		assertTrue(Bencode.equal(b, a));
+		assertEquals(Collections.emptyList(), Bencode.diff(a, b));
+		assertEquals(Arrays.asList(path("k100000")), Bencode.diff(a, bytes(reversed.toString().replace("k100000i0e", "k100000i1e"))));
+		long elapsed = System.nanoTime() - start;
+		assertTrue("Took " + elapsed / 1000000 + " ms", elapsed < 5000000000L);
+
+		assertEquals(Arrays.asList(path("b")), Bencode.diff(bytes("d1:ai1ee"), bytes("d1:ai1e1:bi1ee")));
+		assertEquals(Arrays.asList(path("a"), path("c")), Bencode.diff(bytes("d1:bi1e1:ai1ee"), bytes("d1:bi1e1:ci1ee")));
+		assertTrue(Bencode.equal(bytes("d1:bi1e1:ai2ee"), bytes("d1:ai2e1:bi1ee")));
+	}
+
+	/**
+	 * Tests {@link Bencode#equal} rejects invalid data.
+	 */
+	@Test
+	public void testInvalid() {
+		try {
+			Bencode.equal(bytes(TORRENT), bytes("li1e"));
+			fail();
+		} catch (InvalidFormatException e) {
+		}
+	}
+
+	private static List<String> path(final String... keys) {
+		return Arrays.asList(keys);
+	}
+
+	private static long fnv1a(final String bData) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : bytes(bData)) {
+			hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+		}
+		return hash;
+	}
+
+}
@@ -0,0 +1,198 @@
+package com.aelchemy.bencode;
+
+import static com.aelchemy.bencode.TestBytes.bytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.aelchemy.bencode.data.BDictionary;
+import com.aelchemy.bencode.data.BList;
+import com.aelchemy.bencode.data.ValueType;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * Contains tests for {@link Cursor}.
+ *
+ * @author Aelexe
+ *
+ */
+public class CursorTest {
+
+	private static final String TORRENT = "d8:announce15:http://tracker/4:infod6:lengthi1024e4:name8:file.txt12:piece lengthi512e6:pieces6:abcdefe4:listli1eli2ei3ee3:abce5:title5:Titlee";
+
+	/**
+	 * Tests {@link Cursor#seekKey} moves to the values of the keys and skips the values of other keys.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testSeekKey() throws InvalidFormatException {
+		Cursor cursor = new Cursor(bytes(TORRENT));
+		cursor.enterDictionary();
+		assertTrue(cursor.seekKey("info"));
+		cursor.enterDictionary();
+		assertTrue(cursor.seekKey("name".getBytes(StandardCharsets.ISO_8859_1)));
+		assertEquals("file.txt", cursor.readString());
+		assertTrue(cursor.seekKey("pieces"));
+		ByteBuffer pieces = cursor.readStringSlice();
+		assertEquals(6, pieces.remaining());
+		assertEquals('a', pieces.get(0));
+		assertFalse(cursor.seekKey("missing"));
+		cursor.exit();
+
+		assertTrue(cursor.seekKey("title"));
+		assertEquals("Title", cursor.readString());
+		assertFalse(cursor.hasNext());
+		cursor.exit();
+		assertEquals(0, cursor.getDepth());
+		assertEquals(TORRENT.length(), cursor.getPosition());
+		assertFalse(cursor.hasNext());
+	}
+
+	/**
+	 * Tests {@link Cursor#skipValue} skips values of every type, and the third element of a list can be read without
+	 * decoding the first two.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testSkipValue() throws InvalidFormatException {
+		Cursor cursor = new Cursor(bytes("l5:Hellodi1eli2eee11:hello worldi-42ee"));
+		cursor.enterList();
+		assertEquals(ValueType.STRING, cursor.peekType());
+		cursor.skipValue();
+		assertEquals(ValueType.DICTIONARY, cursor.peekType());
+		cursor.skipValue();
+		assertEquals("hello world", cursor.readString());
+		assertEquals(ValueType.NUMBER, cursor.peekType());
+		assertEquals(-42, cursor.readNumber());
+		assertFalse(cursor.hasNext());
+		cursor.exit();
+
+		cursor.setPosition(1);
+		cursor.skipValue().skipValue().skipValue().skipValue();
+		assertEquals(37, cursor.getPosition());
+	}
+
+	/**
+	 * Tests {@link Cursor#readValue} decodes the same values as {@link Bencode#decodeDictionary}.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testReadValue() throws InvalidFormatException {
+		BDictionary dictionary = new Cursor(bytes(TORRENT)).readDictionary();
+		assertEquals(Bencode.decodeDictionary(TORRENT), dictionary);
+		assertEquals(TORRENT, dictionary.encode());
+
+		Cursor cursor = new Cursor(bytes("i9223372036854775807ei-9223372036854775808ei0e"));
+		assertEquals(Long.MAX_VALUE, cursor.readNumber());
+		assertEquals(Long.MIN_VALUE, cursor.readValue().asNumber().getValue());
+		assertEquals(0, cursor.readNumber());
+	}
+
+	/**
+	 * Tests numbers that don't fit in a long are read as {@link BigInteger}s, and only {@link Cursor#readNumber}
+	 * rejects them.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testReadBigNumber() throws InvalidFormatException {
+		String id = "170141183460469231731687303715884105727";
+		Cursor cursor = new Cursor(bytes("li" + id + "ei9223372036854775808ei-9223372036854775809ei-9223372036854775808ee"));
+		BList list = cursor.readList();
+		assertEquals(new BigInteger(id), list.get(0).asNumber().getBigValue());
+		assertFalse(list.get(0).asNumber().isLong());
+		assertEquals(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE), list.get(1).asNumber().getBigValue());
+		assertEquals(BigInteger.valueOf(Long.MIN_VALUE).subtract(BigInteger.ONE), list.get(2).asNumber().getBigValue());
+		assertTrue(list.get(3).asNumber().isLong());
+		assertEquals(Long.MIN_VALUE, list.get(3).asNumber().getValue());
+
+		cursor = new Cursor(bytes("i" + id + "ei12e"));
+		try {
+			cursor.readNumber();
+			fail("Expected InvalidFormatException for a number that doesn't fit in a long");
+		} catch (InvalidFormatException e) {
+			assertEquals(Reason.INVALID_NUMBER, e.getReason());
+			assertEquals(0, e.getOffset());
+		}
+		assertEquals(new BigInteger(id), cursor.readBigNumber());
+		assertEquals(BigInteger.valueOf(12), cursor.readBigNumber());
+	}
+
+	/**
+	 * Tests {@link Cursor} throws {@link InvalidFormatException} with the expected reasons and offsets for invalid
+	 * Bencoded data.
+	 */
+	@Test
+	public void testCursor_Invalid() {
+		assertInvalid(Reason.LEADING_ZERO, 1, "i01e");
+		assertInvalid(Reason.LEADING_ZERO, 2, "i-0e");
+		assertInvalid(Reason.INVALID_NUMBER, 1, "ie");
+		assertInvalid(Reason.INVALID_LENGTH, 3, "10:short");
+		assertInvalid(Reason.INVALID_NUMBER, 5, "li1ei");
+		assertInvalid(Reason.MISSING_VALUE, 6, "d3:keye");
+		assertInvalid(Reason.MALFORMED, 1, "lxe");
+		assertInvalid(Reason.MALFORMED, 4, "li1e");
+	}
+
+	/**
+	 * Tests {@link Cursor#readValue} reads lists and dictionaries nested 512 deep, and rejects deeper nesting the same
+	 * as {@link Validate} instead of overflowing the stack.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testReadValue_Depth() throws InvalidFormatException {
+		assertEquals(Validate.MAX_DEPTH * 2, new Cursor(bytes(nested("l", Validate.MAX_DEPTH))).readValue().encode().length());
+		assertInvalid(Reason.MALFORMED, Validate.MAX_DEPTH, nested("l", Validate.MAX_DEPTH + 1));
+		assertInvalid(Reason.MALFORMED, Validate.MAX_DEPTH * 2, nested("d0:l", Validate.MAX_DEPTH / 2 + 1));
+
+		byte[] deep = new byte[200000];
+		Arrays.fill(deep, (byte) 'l');
+		for (ByteBuffer bData : new ByteBuffer[] { ByteBuffer.wrap(deep), ByteBuffer.allocateDirect(deep.length).put(deep) }) {
+			bData.rewind();
+			assertEquals(~Validate.MAX_DEPTH, Validate.validate(bData, false));
+			try {
+				Bencode.decode(bData);
+				fail();
+			} catch (InvalidFormatException e) {
+				assertEquals(Reason.MALFORMED, e.getReason());
+				assertEquals(Validate.MAX_DEPTH, e.getOffset());
+			}
+		}
+	}
+
+	private static String nested(final String open, final int depth) {
+		StringBuilder bData = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			bData.append(open);
+		}
+		for (int i = 0; i < depth; i++) {
+			bData.append('e');
+		}
+		return bData.toString();
+	}
+
+	private void assertInvalid(final Reason reason, final int offset, final String bData) {
+		try {
+			new Cursor(bytes(bData)).readValue();
+		} catch (InvalidFormatException e) {
+			assertEquals("Reason for test data: \"" + bData + "\"", reason, e.getReason());
+			assertEquals("Offset for test data: \"" + bData + "\"", offset, e.getOffset());
+			return;
+		}
+		fail("Expected InvalidFormatException for test data: \"" + bData + "\" but received nothing.");
+	}
+
+}
@@ -0,0 +1,152 @@
+package com.aelchemy.bencode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.aelchemy.bencode.data.BDictionary;
+import com.aelchemy.bencode.data.BList;
+import com.aelchemy.bencode.data.ValueType;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+
+/**
+ * Contains tests for {@link DecodeCache}.
+ *
+ * @author Aelexe
+ *
+ */
+public class DecodeCacheTest {
+
+	/**
+	 * Tests {@link DecodeCache#decodeDictionary} returns the same frozen dictionary for repeated decodes of the same
+	 * data, including nested dictionaries.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testDecodeDictionary() throws InvalidFormatException {
+		DecodeCache cache = new DecodeCache(1024);
+		String bData = "d8:announce3:url4:infod6:lengthi12e4:name4:fileee";
+
+		BDictionary dictionary = cache.decodeDictionary(bData);
+		assertTrue(dictionary.isFrozen());
+		assertEquals("file", dictionary.get("info").asDictionary().get("name").asString().getValue());
+		assertSame(dictionary, cache.decodeDictionary(new String(bData)));
+		assertNotSame(dictionary, cache.decodeDictionary(bData + "").copy());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.size());
+		assertEquals(bData.length(), cache.getWeight());
+
+		BList list = cache.decodeList("l1:a1:be");
+		assertSame(list, cache.decodeList("l1:a1:be"));
+		assertEquals(2, cache.size());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+	}
+
+	/**
+	 * Tests {@link DecodeCache} evicts the least recently used entries once it exceeds its maximum weight.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testEviction() throws InvalidFormatException {
+		DecodeCache cache = new DecodeCache(30, 1);
+		BList first = cache.decodeList("li1ei2ei3ee");
+		BList second = cache.decodeList("li4ei5ei6ee");
+		assertSame(first, cache.decodeList("li1ei2ei3ee"));
+
+		// Evicts the second list, the least recently used.
+		cache.decodeList("li7ei8ei9ee");
+		assertEquals(1, cache.getEvictionCount());
+		assertSame(first, cache.decodeList("li1ei2ei3ee"));
+		assertNotSame(second, cache.decodeList("li4ei5ei6ee"));
+		assertTrue(cache.getWeight() <= 30);
+
+		// Data heavier than the cache is never cached.
+		cache.decodeList("l31:abcdefghijklmnopqrstuvwxyz12345e");
+		assertTrue(cache.getWeight() <= 30);
+	}
+
+	/**
+	 * Tests {@link DecodeCache} keeps finding and evicting entries correctly as its table grows and entries are removed
+	 * from between others.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testManyEntries() throws InvalidFormatException {
+		DecodeCache cache = new DecodeCache(8 * 1000, 1);
+		BList[] lists = new BList[5000];
+		for (int i = 0; i < lists.length; i++) {
+			lists[i] = cache.decodeList("li" + (1000 + i) + "ee");
+		}
+		// Each list is 8 bytes long, so only the last 1000 are cached.
+		assertEquals(1000, cache.size());
+		assertEquals(4000, cache.getEvictionCount());
+		for (int i = lists.length - 1; i >= 4000; i--) {
+			assertSame(lists[i], cache.decodeList("li" + (1000 + i) + "ee"));
+		}
+		assertEquals(1000, cache.getHitCount());
+		assertNotSame(lists[3999], cache.decodeList("li4999ee"));
+		assertSame(lists[4000], cache.decodeList("li5000ee"));
+		assertEquals(1000, cache.size());
+	}
+
+	/**
+	 * Tests {@link DecodeCache} decodes misses through {@link Bencode}, so the registered listener is notified of them,
+	 * but not of hits.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testListener() throws InvalidFormatException {
+		BencodeMetrics metrics = new BencodeMetrics();
+		Bencode.setListener(metrics);
+		try {
+			DecodeCache cache = new DecodeCache(1024);
+			cache.decodeDictionary("d1:ali1eee");
+			cache.decodeDictionary("d1:ali1eee");
+			try {
+				cache.decodeList("li1e");
+				fail();
+			} catch (InvalidFormatException e) {
+				assertEquals(1, metrics.getFailureCount(e.getReason()));
+			}
+			assertEquals(1, metrics.getValueCount(ValueType.DICTIONARY));
+			assertEquals(1, metrics.getValueCount(ValueType.LIST));
+		} finally {
+			Bencode.setListener(null);
+		}
+	}
+
+	/**
+	 * Tests {@link DecodeCache} doesn't cache invalid data.
+	 */
+	@Test
+	public void testDecode_Invalid() {
+		DecodeCache cache = new DecodeCache(1024);
+		for (int i = 0; i < 2; i++) {
+			try {
+				cache.decodeDictionary("l1:ae");
+				fail("Expected InvalidFormatException for list.");
+			} catch (InvalidFormatException e) {
+			}
+		}
+		try {
+			cache.decodeList(null);
+			fail("Expected InvalidFormatException for null.");
+		} catch (InvalidFormatException e) {
+		}
+		assertEquals(0, cache.size());
+		assertEquals(3, cache.getMissCount());
+	}
+
+}
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.math.BigInteger;
 import java.util.Set;
 
 import org.junit.Test;
@@ -12,6 +13,7 @@ import com.aelchemy.bencode.data.BData;
 import com.aelchemy.bencode.data.BDictionary;
 import com.aelchemy.bencode.data.BList;
 import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
 
 /**
  * Contains tests for {@link Bencode} methods that expose {@link Decode} functionality.
@@ -107,6 +109,35 @@ public class DecodeTest {
 		}
 	}
 
+	/**
+	 * Tests {@link Bencode#decodeBigNumber} and decoded lists return numbers that don't fit in a long, such as 128 bit
+	 * IDs, as {@link BigInteger}s.
+	 * 
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testDecodeBigNumber() throws InvalidFormatException {
+		String id = "340282366920938463463374607431768211455";
+		assertEquals(new BigInteger(id), Bencode.decodeBigNumber("i" + id + "e"));
+		assertEquals(new BigInteger("-" + id), Bencode.decodeBigNumber("i-" + id + "e"));
+		assertEquals(BigInteger.valueOf(-7), Bencode.decodeBigNumber("i-7e"));
+
+		BList list = Bencode.decodeList("li" + id + "ei9223372036854775807ee");
+		assertEquals(new BigInteger(id), list.get(0).asNumber().getBigValue());
+		assertEquals(Long.MAX_VALUE, list.get(1).asNumber().getValue());
+		assertEquals("li" + id + "ei9223372036854775807ee", list.encode());
+
+		String[] invalidNumbers = new String[] { "i-0e", "i0" + id + "e", "i" + id + ".5e", "i+" + id + "e" };
+		for (String bData : invalidNumbers) {
+			try {
+				Bencode.decodeBigNumber(bData);
+				fail("Expected InvalidFormatException for test data: \"" + bData + "\" but received nothing.");
+			} catch (InvalidFormatException e) {
+				continue;
+			}
+		}
+	}
+
 	/**
 	 * Tests {@link Bencode#decodeList} returns the expected {@link BList}s for the provided valid Bencoded lists.
 	 * 
@@ -287,6 +318,36 @@ public class DecodeTest {
 		}
 	}
 
+	/**
+	 * Tests the {@link InvalidFormatException}s thrown for invalid Bencoded data have the expected reason and offset.
+	 */
+	@Test
+	public void testDecode_InvalidOffset() {
+		assertInvalid(Reason.LEADING_ZERO, 1, "i01e");
+		assertInvalid(Reason.MALFORMED, 4, "li1e");
+		assertInvalid(Reason.LEADING_ZERO, 5, "li1ei-0ee");
+		assertInvalid(Reason.LEADING_ZERO, 9, "d1:ali1ei02eee");
+		assertInvalid(Reason.MISSING_VALUE, 6, "d3:keye");
+		assertInvalid(Reason.MALFORMED, 7, "d1:ai1e1e");
+	}
+
+	private void assertInvalid(final Reason reason, final int offset, final String bData) {
+		try {
+			if (bData.startsWith("d")) {
+				Bencode.decodeDictionary(bData);
+			} else if (bData.startsWith("l")) {
+				Bencode.decodeList(bData);
+			} else {
+				Bencode.decodeNumber(bData);
+			}
+		} catch (InvalidFormatException e) {
+			assertEquals("Reason for test data: \"" + bData + "\"", reason, e.getReason());
+			assertEquals("Offset for test data: \"" + bData + "\"", offset, e.getOffset());
+			return;
+		}
+		fail("Expected InvalidFormatException for test data: \"" + bData + "\" but received nothing.");
+	}
+
 	private void assertBString(final String expectedValue, final BData bString) {
 		assertTrue(bString.isString());
 		assertEquals(expectedValue, bString.asString().getValue());
@@ -1,11 +1,21 @@
 package com.aelchemy.bencode;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import org.junit.Test;
 
+import com.aelchemy.bencode.data.BData;
 import com.aelchemy.bencode.data.BDictionary;
 import com.aelchemy.bencode.data.BList;
+import com.aelchemy.bencode.exception.InvalidFormatException;
 
 /**
  * Contains tests for {@link Bencode} methods that expose {@link Encode} functionality.
@@ -46,6 +56,25 @@ public class EncodeTest {
 		assertEquals("i0e", Bencode.encodeNumber(-0));
 	}
 
+	/**
+	 * Tests numbers that don't fit in a long are encoded the same to a string and into a buffer.
+	 */
+	@Test
+	public void testEncodeBigNumber() {
+		BigInteger id = BigInteger.ONE.shiftLeft(127).negate();
+		assertEquals("i-170141183460469231731687303715884105728e", Bencode.encodeNumber(id));
+
+		BList list = new BList();
+		list.add(id);
+		list.add(BigInteger.valueOf(Long.MIN_VALUE));
+		assertEquals("li-170141183460469231731687303715884105728ei-9223372036854775808ee", list.encode());
+		BData data = new BData(list);
+		ByteBuffer buffer = ByteBuffer.allocate(Bencode.getEncodedLength(data));
+		Bencode.encode(data, buffer);
+		assertEquals(list.encode(), new String(buffer.array(), StandardCharsets.ISO_8859_1));
+		assertEquals(Long.MIN_VALUE, list.get(1).asNumber().getValue());
+	}
+
 	/**
 	 * Tests {@link Bencode#encodeList} returns the expected Bencoded lists for the provided lists.
 	 */
@@ -161,4 +190,87 @@ public class EncodeTest {
 	public void testEncodeDictionary_NestedDictionaries() {
 
 	}
+
+	/**
+	 * Tests {@link Bencode#encode(BData, ByteBuffer)} writes the same Bencoded data as encoding to a string into heap
+	 * and direct buffers, and {@link Bencode#decode(ByteBuffer)} reads it back.
+	 * 
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testEncode_ByteBuffer() throws InvalidFormatException {
+		BList numbers = new BList();
+		numbers.add(0);
+		numbers.add(-7);
+		numbers.add(Long.MAX_VALUE);
+		numbers.add(Long.MIN_VALUE);
+		BDictionary info = new BDictionary();
+		info.put("name", "file\u00FF.txt");
+		info.put("numbers", numbers);
+		BDictionary dictionary = new BDictionary();
+		dictionary.put("info", new BData(info));
+		dictionary.put("empty", "");
+		dictionary.put("list", new BList());
+		BData data = new BData(dictionary);
+		String expected = Bencode.encodeDictionary(dictionary);
+
+		assertEquals(expected.length(), Bencode.getEncodedLength(data));
+		for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(expected.length() + 2), ByteBuffer.allocateDirect(expected.length() + 2) }) {
+			buffer.put((byte) 'x');
+			Bencode.encode(data, buffer);
+			assertEquals(expected.length() + 1, buffer.position());
+
+			byte[] bytes = new byte[expected.length()];
+			buffer.flip();
+			buffer.position(1);
+			buffer.get(bytes);
+			assertEquals(expected, new String(bytes, StandardCharsets.ISO_8859_1));
+
+			buffer.position(1);
+			assertEquals(data, Bencode.decode(buffer));
+			assertEquals(1, buffer.position());
+		}
+
+		ByteBuffer small = ByteBuffer.allocate(expected.length() - 1);
+		try {
+			Bencode.encode(data, small);
+			fail();
+		} catch (BufferOverflowException e) {
+			assertEquals(0, small.position());
+		}
+	}
+
+	/**
+	 * Tests strings and keys with characters that can't be encoded in one byte are rejected, rather than truncated, and
+	 * nothing is left written.
+	 * 
+	 * @throws IOException If thrown the test fails.
+	 */
+	@Test
+	public void testEncode_Unencodable() throws IOException {
+		BDictionary dictionary = new BDictionary();
+		dictionary.put("a", "\u00FF");
+		dictionary.put("b", "x\u0100");
+		BDictionary key = new BDictionary();
+		key.put("\u20AC", 1);
+		for (BData data : new BData[] { new BData(dictionary), new BData(key) }) {
+			ByteBuffer buffer = ByteBuffer.allocate(64);
+			buffer.put((byte) 'x');
+			try {
+				Bencode.encode(data, buffer);
+				fail();
+			} catch (IllegalArgumentException e) {
+				assertEquals(1, buffer.position());
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try {
+				Bencode.encode(data, out);
+				fail();
+			} catch (IllegalArgumentException e) {
+				assertEquals(0, out.size());
+			}
+		}
+	}
+
 }
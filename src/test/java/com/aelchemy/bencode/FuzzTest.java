@@ -0,0 +1,393 @@
+package com.aelchemy.bencode;
+
+import static com.aelchemy.bencode.TestBytes.bytes;
+import static com.aelchemy.bencode.TestBytes.latin1;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.aelchemy.bencode.JsonTranscoder.StringFormat;
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.data.BDictionary;
+import com.aelchemy.bencode.data.BList;
+import com.aelchemy.bencode.data.BNumber;
+import com.aelchemy.bencode.data.BString;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+
+/**
+ * Contains property based tests of every decoder and encoder, against random valid and malformed documents.
+ * <p>
+ * Each decoder is compared against the small, strict {@link Reference} decoder in this class. The documents are
+ * generated from a fixed seed, so failures are repeatable; the system property {@code bencode.fuzz.seed} runs them with
+ * another seed.
+ *
+ * @author Aelexe
+ *
+ */
+public class FuzzTest {
+
+	private static final long SEED = Long.getLong("bencode.fuzz.seed", 0x5EEDL);
+	private static final int DOCUMENTS = 2000;
+	private static final int MUTATIONS = 10;
+	private static final String STRUCTURAL = "0123456789ilde:-";
+
+	/**
+	 * Tests every decoder decodes random valid documents back to the value they were encoded from, and every encoder
+	 * encodes it to the same bytes.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testRoundTrip() throws Exception {
+		Random random = new Random(SEED);
+		for (int i = 0; i < DOCUMENTS; i++) {
+			BData value = value(random, 0);
+			String bData = value.encode();
+			String message = "Seed " + SEED + ", document " + i + ": " + escape(bData);
+			byte[] bytes = bytes(bData);
+
+			assertEquals(message, value, Reference.decode(bData));
+			assertEquals(message, value, legacy(bData));
+			assertEquals(message, value, Bencode.decode(ByteBuffer.wrap(bytes)));
+			assertEquals(message, bytes.length, Validate.validate(ByteBuffer.wrap(bytes), false));
+			assertEquals(message, bytes.length, Bencode.index(bytes).getEnd(0));
+			assertTrue(message, Bencode.equal(bytes, bytes(Reference.decode(bData).encode())));
+
+			// Encoding into a buffer writes the same bytes as encoding to a string.
+			ByteBuffer buffer = ByteBuffer.allocate(Bencode.getEncodedLength(value));
+			Bencode.encode(value, buffer);
+			assertEquals(message, bData, latin1(buffer.array()));
+
+			// Chunked and streamed decoding see the same value, however the data is split.
+			ChunkDecoder decoder = new ChunkDecoder();
+			BData chunked = null;
+			for (int offset = 0; offset < bytes.length;) {
+				int length = Math.min(bytes.length - offset, 1 + random.nextInt(16));
+				decoder.offer(ByteBuffer.wrap(bytes, offset, length));
+				offset += length;
+				BData next = decoder.next();
+				if (next != null) {
+					assertEquals(message, null, chunked);
+					chunked = next;
+				}
+			}
+			decoder.end();
+			assertEquals(message, value, chunked);
+			try (BencodeReader reader = new BencodeReader(new ByteArrayInputStream(bytes), 1 + random.nextInt(32), bytes.length)) {
+				assertEquals(message, value, reader.next());
+				assertEquals(message, null, reader.next());
+			}
+
+			// Transcoding to JSON and back gives the same value with sorted keys, if the keys are text the transcoder
+			// doesn't change, and the same bytes if the keys were sorted.
+			if (!isAscii(value)) {
+				continue;
+			}
+			ByteArrayOutputStream json = new ByteArrayOutputStream();
+			new JsonTranscoder(StringFormat.HEX).toJson(new ByteArrayInputStream(bytes), json);
+			ByteArrayOutputStream transcoded = new ByteArrayOutputStream();
+			new JsonTranscoder(StringFormat.HEX).toBencode(new ByteArrayInputStream(json.toByteArray()), transcoded);
+			byte[] sorted = transcoded.toByteArray();
+			assertEquals(message, sorted.length, Validate.validate(ByteBuffer.wrap(sorted), true));
+			assertTrue(message, Bencode.equal(bytes, sorted));
+			if (Validate.validate(ByteBuffer.wrap(bytes), true) == bytes.length) {
+				assertEquals(message, bData, latin1(sorted));
+			}
+		}
+	}
+
+	/**
+	 * Tests every decoder agrees with the reference decoder on whether randomly mutated documents are valid, and on
+	 * their values when they are.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testMalformed() throws Exception {
+		Random random = new Random(SEED);
+		for (int i = 0; i < DOCUMENTS; i++) {
+			String original = value(random, 0).encode();
+			for (int m = 0; m < MUTATIONS; m++) {
+				String bData = mutate(random, original);
+				String message = "Seed " + SEED + ", document " + i + ", mutation " + m + ": " + escape(bData);
+				byte[] bytes = bytes(bData);
+
+				BData expected;
+				try {
+					expected = Reference.decode(bData);
+				} catch (InvalidFormatException e) {
+					expected = null;
+				}
+
+				assertEquals(message, expected, legacyOrNull(bData));
+				assertEquals(message, expected, cursorOrNull(bytes));
+				assertEquals(message, expected != null, Validate.validate(ByteBuffer.wrap(bytes), false) == bytes.length);
+			}
+		}
+	}
+
+	/**
+	 * Generates a random value, nested no deeper than 6 levels.
+	 */
+	private static BData value(final Random random, final int depth) {
+		int type = random.nextInt(depth < 6 ? 4 : 2);
+		if (type == 0) {
+			return new BData(new BString(string(random)));
+		} else if (type == 1) {
+			return new BData(number(random));
+		} else if (type == 2) {
+			BList list = new BList();
+			for (int i = random.nextInt(5); i > 0; i--) {
+				list.add(value(random, depth + 1));
+			}
+			return new BData(list);
+		}
+		BDictionary dictionary = new BDictionary();
+		for (int i = random.nextInt(5); i > 0; i--) {
+			dictionary.put(string(random), value(random, depth + 1));
+		}
+		return new BData(dictionary);
+	}
+
+	/**
+	 * Generates a random string of bytes, favouring short strings and the bytes of the Bencode grammar.
+	 */
+	private static String string(final Random random) {
+		int length = random.nextInt(8) == 0 ? random.nextInt(300) : random.nextInt(6);
+		StringBuilder string = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			string.append(random.nextBoolean() ? STRUCTURAL.charAt(random.nextInt(STRUCTURAL.length())) : (char) random.nextInt(256));
+		}
+		return string.toString();
+	}
+
+	/**
+	 * Generates a random number, favouring small numbers, the limits of a long and numbers just beyond them.
+	 */
+	private static BNumber number(final Random random) {
+		switch (random.nextInt(7)) {
+		case 0:
+			return new BNumber(0);
+		case 1:
+			return new BNumber(random.nextBoolean() ? Long.MAX_VALUE : Long.MIN_VALUE);
+		case 2:
+			return new BNumber(random.nextLong());
+		case 3:
+			BigInteger limit = BigInteger.valueOf(random.nextBoolean() ? Long.MAX_VALUE : Long.MIN_VALUE);
+			return new BNumber(limit.add(BigInteger.valueOf(limit.signum())).multiply(BigInteger.valueOf(random.nextInt(3) + 1)));
+		case 4:
+			return new BNumber(new BigInteger(128, random).negate().add(BigInteger.ONE.shiftLeft(random.nextInt(128))));
+		default:
+			return new BNumber(random.nextInt(2001) - 1000);
+		}
+	}
+
+	/**
+	 * Mutates the Bencoded data argument: replacing, inserting, deleting or swapping a byte, truncating it, giving a
+	 * number or length a leading zero or sign, or overflowing a number.
+	 */
+	private static String mutate(final Random random, final String bData) {
+		StringBuilder mutated = new StringBuilder(bData);
+		int index = random.nextInt(bData.length());
+		char c = random.nextInt(4) == 0 ? (char) random.nextInt(256) : STRUCTURAL.charAt(random.nextInt(STRUCTURAL.length()));
+		switch (random.nextInt(8)) {
+		case 0:
+			mutated.setCharAt(index, c);
+			break;
+		case 1:
+			mutated.insert(index, c);
+			break;
+		case 2:
+			mutated.deleteCharAt(index);
+			break;
+		case 3:
+			if (index + 1 < bData.length()) {
+				mutated.setCharAt(index, bData.charAt(index + 1));
+				mutated.setCharAt(index + 1, bData.charAt(index));
+			}
+			break;
+		case 4:
+			mutated.setLength(index);
+			break;
+		case 5:
+			mutated.insert(index, random.nextBoolean() ? '0' : random.nextBoolean() ? '+' : '-');
+			break;
+		case 6:
+			mutated.insert(index, "i9223372036854775808e");
+			break;
+		default:
+			mutated.append(bData, 0, index);
+			break;
+		}
+		return mutated.toString();
+	}
+
+	/**
+	 * Decodes the Bencoded data argument with the original string decoder.
+	 */
+	private static BData legacy(final String bData) throws InvalidFormatException {
+		switch (bData.isEmpty() ? ' ' : bData.charAt(0)) {
+		case 'i':
+			return new BData(new BNumber(Bencode.decodeBigNumber(bData)));
+		case 'l':
+			return new BData(Bencode.decodeList(bData));
+		case 'd':
+			return new BData(Bencode.decodeDictionary(bData));
+		default:
+			return new BData(new BString(Bencode.decodeString(bData)));
+		}
+	}
+
+	private static BData legacyOrNull(final String bData) {
+		try {
+			return legacy(bData);
+		} catch (InvalidFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Decodes the Bencoded data argument with a {@link Cursor}, requiring it to be a single value.
+	 */
+	private static BData cursorOrNull(final byte[] bData) {
+		try {
+			Cursor cursor = new Cursor(bData);
+			BData value = cursor.readValue();
+			return cursor.getPosition() == bData.length ? value : null;
+		} catch (InvalidFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns whether the keys of the dictionaries in the value argument are ASCII.
+	 */
+	private static boolean isAscii(final BData value) {
+		if (value.isList()) {
+			for (BData element : value.asList()) {
+				if (!isAscii(element)) {
+					return false;
+				}
+			}
+		} else if (value.isDictionary()) {
+			for (String key : value.asDictionary().keySet()) {
+				if (!key.chars().allMatch(c -> c < 0x80) || !isAscii(value.asDictionary().get(key))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static String escape(final String bData) {
+		StringBuilder escaped = new StringBuilder();
+		for (char c : bData.toCharArray()) {
+			escaped.append(c >= ' ' && c < 0x7F ? String.valueOf(c) : String.format("\\u%04X", (int) c));
+		}
+		return escaped.toString();
+	}
+
+	/**
+	 * A strict decoder written straight from the Bencode specification, favouring clarity over speed.
+	 */
+	private static final class Reference {
+
+		private final String bData;
+		private int index;
+
+		private Reference(final String bData) {
+			this.bData = bData;
+		}
+
+		/**
+		 * Decodes the Bencoded data argument, which must be exactly one value.
+		 *
+		 * @throws InvalidFormatException Thrown if the data doesn't follow the grammar.
+		 */
+		private static BData decode(final String bData) throws InvalidFormatException {
+			Reference reference = new Reference(bData);
+			BData value = reference.value(0);
+			if (reference.index != bData.length()) {
+				throw new InvalidFormatException("Data after the value");
+			}
+			return value;
+		}
+
+		private BData value(final int depth) throws InvalidFormatException {
+			char c = peek();
+			if (c >= '0' && c <= '9') {
+				return new BData(new BString(string()));
+			} else if (c == 'i') {
+				index++;
+				String digits = digits(true, 'e');
+				index++;
+				return new BData(new BNumber(new BigInteger(digits)));
+			} else if ((c == 'l' || c == 'd') && depth < Validate.MAX_DEPTH) {
+				index++;
+				BList list = new BList();
+				BDictionary dictionary = new BDictionary();
+				while (peek() != 'e') {
+					if (c == 'l') {
+						list.add(value(depth + 1));
+					} else if (peek() >= '0' && peek() <= '9') {
+						String key = string();
+						dictionary.put(key, value(depth + 1));
+					} else {
+						throw new InvalidFormatException("Key isn't a string");
+					}
+				}
+				index++;
+				return c == 'l' ? new BData(list) : new BData(dictionary);
+			}
+			throw new InvalidFormatException("Not a value");
+		}
+
+		private String string() throws InvalidFormatException {
+			String digits = digits(false, ':');
+			index++;
+			if (digits.length() > 10 || Long.parseLong(digits) > bData.length() - index) {
+				throw new InvalidFormatException("String is longer than the data");
+			}
+			int end = index + Integer.parseInt(digits);
+			String string = bData.substring(index, end);
+			index = end;
+			return string;
+		}
+
+		/**
+		 * Reads the digits of a number or length up to the terminator argument, which must be at least one digit with
+		 * no leading zero, and for numbers an optional minus sign but not negative zero.
+		 */
+		private String digits(final boolean signed, final char terminator) throws InvalidFormatException {
+			int start = index;
+			if (signed && peek() == '-') {
+				index++;
+			}
+			int digits = index;
+			while (peek() >= '0' && peek() <= '9') {
+				index++;
+			}
+			if (index == digits || peek() != terminator || (bData.charAt(digits) == '0' && (index - digits > 1 || digits > start))) {
+				throw new InvalidFormatException("Invalid digits");
+			}
+			return bData.substring(start, index);
+		}
+
+		private char peek() throws InvalidFormatException {
+			if (index >= bData.length()) {
+				throw new InvalidFormatException("Data ends inside a value");
+			}
+			return bData.charAt(index);
+		}
+
+	}
+
+}
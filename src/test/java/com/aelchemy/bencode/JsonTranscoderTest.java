@@ -0,0 +1,268 @@
+package com.aelchemy.bencode;
+
+import static com.aelchemy.bencode.TestBytes.latin1;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.Test;
+
+import com.aelchemy.bencode.JsonTranscoder.StringFormat;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * Contains tests for {@link JsonTranscoder}.
+ *
+ * @author Aelexe
+ *
+ */
+public class JsonTranscoderTest {
+
+	private static final String TORRENT = "d8:announce15:http://tracker/5:empty0:4:infod6:lengthi1024e4:name8:file.txt6:pieces4:\u0000\u00FF\"ae4:listli-1eli2ei3eeleee";
+
+	/**
+	 * Tests {@link JsonTranscoder#toJson} writes each string format, and {@link JsonTranscoder#toBencode} transcodes
+	 * the JSON back to the same Bencoded data.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testRoundTrip() throws Exception {
+		assertRoundTrip(StringFormat.HEX,
+				"{\"announce\":\"687474703a2f2f747261636b65722f\",\"empty\":\"\",\"info\":{\"length\":1024,\"name\":\"66696c652e747874\",\"pieces\":\"00ff2261\"},\"list\":[-1,[2,3],[]]}");
+		assertRoundTrip(StringFormat.BASE64,
+				"{\"announce\":\"aHR0cDovL3RyYWNrZXIv\",\"empty\":\"\",\"info\":{\"length\":1024,\"name\":\"ZmlsZS50eHQ=\",\"pieces\":\"AP8iYQ==\"},\"list\":[-1,[2,3],[]]}");
+		assertEquals(
+				"{\"announce\":\"http://tracker/\",\"empty\":\"\",\"info\":{\"length\":1024,\"name\":\"file.txt\",\"pieces\":\"00ff2261\"},\"list\":[-1,[2,3],[]]}",
+				toJson(StringFormat.UTF8_OR_HEX, TORRENT));
+		assertEquals(
+				"{\"announce\":\"http://tracker/\",\"empty\":\"\",\"info\":{\"length\":1024,\"name\":\"file.txt\",\"pieces\":\"AP8iYQ==\"},\"list\":[-1,[2,3],[]]}",
+				toJson(StringFormat.UTF8_OR_BASE64, TORRENT));
+	}
+
+	/**
+	 * Tests {@link JsonTranscoder} escapes and unescapes JSON strings, including UTF-8 text, control characters and
+	 * keys that aren't valid UTF-8.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testText() throws Exception {
+		String text = "caf\u00E9 \u20AC \uD83D\uDE00";
+		String bText = latin1(text.getBytes(StandardCharsets.UTF_8));
+		String bData = "d" + bText.length() + ":" + bText + "5:a\"\\\n\u00011:\u00FF1:xe";
+		assertEquals("{\"" + text + "\":\"a\\\"\\\\\\u000a\\u0001\",\"\u00FF\":\"x\"}", toJson(StringFormat.UTF8_OR_HEX, bData));
+
+		assertEquals("l" + bText.length() + ":" + bText + "2:/\ti1ei0ee",
+				toBencode(StringFormat.UTF8_OR_HEX, " [ \"caf\\u00e9 \\u20AC \\ud83d\\ude00\" , \"\\/\\t\" , true , false ] "));
+	}
+
+	/**
+	 * Tests {@link JsonTranscoder} copies numbers of any length, and writes JSON negative zero as zero.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testNumbers() throws Exception {
+		String big = "123456789012345678901234567890";
+		assertEquals("[" + big + ",-" + big + ",0]", toJson(StringFormat.HEX, "li" + big + "ei-" + big + "ei0ee"));
+		assertEquals("li" + big + "ei-" + big + "ei0ei0ee", toBencode(StringFormat.HEX, "[" + big + ",-" + big + ",0,-0]"));
+		assertEquals("i42e", toBencode(StringFormat.HEX, "42"));
+	}
+
+	/**
+	 * Tests {@link JsonTranscoder} streams strings longer than its buffers.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testLongString() throws Exception {
+		byte[] bytes = new byte[100000];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (i * 31);
+		}
+		String bData = "l" + bytes.length + ":" + latin1(bytes) + "e";
+		String base64 = "[\"" + Base64.getEncoder().encodeToString(bytes) + "\"]";
+		assertEquals(base64, toJson(StringFormat.BASE64, bData));
+		assertEquals(base64, toJson(StringFormat.UTF8_OR_BASE64, bData));
+		assertEquals(bData, toBencode(StringFormat.BASE64, base64));
+	}
+
+	/**
+	 * Tests {@link JsonTranscoder#toJson} rejects invalid Bencoded data with the reason and offset of the error.
+	 *
+	 * @throws IOException If thrown the test fails.
+	 */
+	@Test
+	public void testToJson_Invalid() throws IOException {
+		assertInvalidBencode(Reason.EMPTY, 0, "");
+		assertInvalidBencode(Reason.MALFORMED, 3, "li1e");
+		assertInvalidBencode(Reason.MALFORMED, 1, "dli1ee");
+		assertInvalidBencode(Reason.MISSING_VALUE, 4, "d1:ae");
+		assertInvalidBencode(Reason.LEADING_ZERO, 2, "i01e");
+		assertInvalidBencode(Reason.LEADING_ZERO, 2, "i-0e");
+		assertInvalidBencode(Reason.LEADING_ZERO, 2, "l01:ae");
+		assertInvalidBencode(Reason.INVALID_LENGTH, 4, "5:abc");
+		assertInvalidBencode(Reason.INVALID_LENGTH, 9, "9999999999:a");
+		assertInvalidBencode(Reason.MALFORMED, 0, "x");
+	}
+
+	/**
+	 * Tests {@link JsonTranscoder} rejects strings longer than the data or the maximum string length without allocating
+	 * their declared length, in every format.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testStringLength() throws Exception {
+		for (StringFormat format : StringFormat.values()) {
+			for (String bData : new String[] { "d2000000000:a", "l2000000000:a", "2000000000:a" }) {
+				try {
+					toJson(new JsonTranscoder(format, Integer.MAX_VALUE), bData);
+					fail("Expected InvalidFormatException for test data: \"" + bData + "\"");
+				} catch (InvalidFormatException e) {
+					assertEquals(Reason.INVALID_LENGTH, e.getReason());
+				}
+			}
+		}
+
+		JsonTranscoder transcoder = new JsonTranscoder(StringFormat.UTF8_OR_HEX, 3);
+		assertEquals(3, transcoder.getMaxStringLength());
+		assertEquals("{\"abc\":\"abc\"}", toJson(transcoder, "d3:abc3:abce"));
+		for (String bData : new String[] { "d4:abcd0:e", "l4:abcde" }) {
+			try {
+				toJson(transcoder, bData);
+				fail("Expected InvalidFormatException for test data: \"" + bData + "\"");
+			} catch (InvalidFormatException e) {
+				assertEquals(Reason.INVALID_LENGTH, e.getReason());
+			}
+		}
+		try {
+			transcoder.toBencode(new ByteArrayInputStream("[\"abcd\"]".getBytes(StandardCharsets.UTF_8)), new ByteArrayOutputStream());
+			fail();
+		} catch (InvalidFormatException e) {
+			assertEquals(Reason.INVALID_LENGTH, e.getReason());
+		}
+
+		// Hexadecimal and Base64 string values are streamed, so aren't limited.
+		assertEquals("\"61626364\"", toJson(new JsonTranscoder(StringFormat.HEX, 3), "4:abcd"));
+	}
+
+	/**
+	 * Tests {@link JsonTranscoder#toBencode} writes the keys of objects at every depth sorted by their UTF-8 bytes, so
+	 * transcoding the same object with its keys in any order gives the same Bencoded data.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testToBencode_SortedKeys() throws Exception {
+		assertEquals("d1:ai2e1:bi1ee", toBencode(StringFormat.HEX, "{\"b\":1,\"a\":2}"));
+		assertEquals("d1:ad1:xi1e1:yi2ee1:bld1:ci3e1:di4eeee",
+				toBencode(StringFormat.UTF8_OR_HEX, "{\"b\":[{\"d\":4,\"c\":3}],\"a\":{\"y\":2,\"x\":1}}"));
+		assertEquals("d1:z0:2:" + latin1("\u00E9".getBytes(StandardCharsets.UTF_8)) + "0:e", toBencode(StringFormat.UTF8_OR_HEX, "{\"\u00e9\":\"\",\"z\":\"\"}"));
+
+		StringBuilder sorted = new StringBuilder("d");
+		StringBuilder reversed = new StringBuilder("{");
+		for (int i = 0; i < 1000; i++) {
+			sorted.append("5:k").append(1000 + i).append('i').append(i).append('e');
+			reversed.append(i > 0 ? "," : "").append("\"k").append(1999 - i).append("\":").append(999 - i);
+		}
+		assertEquals(sorted.append('e').toString(), toBencode(StringFormat.HEX, reversed.append('}').toString()));
+	}
+
+	/**
+	 * Tests {@link JsonTranscoder#toBencode} rejects invalid JSON and JSON that can't be Bencoded.
+	 *
+	 * @throws IOException If thrown the test fails.
+	 */
+	@Test
+	public void testToBencode_Invalid() throws IOException {
+		assertInvalidJson(StringFormat.HEX, Reason.EMPTY, "  ");
+		assertInvalidJson(StringFormat.HEX, Reason.MALFORMED, "null");
+		assertInvalidJson(StringFormat.HEX, Reason.INVALID_NUMBER, "1.5");
+		assertInvalidJson(StringFormat.HEX, Reason.INVALID_NUMBER, "01");
+		assertInvalidJson(StringFormat.HEX, Reason.MALFORMED, "[1 2]");
+		assertInvalidJson(StringFormat.HEX, Reason.MALFORMED, "{1:2}");
+		assertInvalidJson(StringFormat.HEX, Reason.MALFORMED, "{\"a\" 2}");
+		assertInvalidJson(StringFormat.HEX, Reason.MALFORMED, "{\"a\":1,\"b\":2,\"a\":3}");
+		assertInvalidJson(StringFormat.HEX, Reason.MALFORMED, "[{\"a\":{\"a\":1},\"a\":2}]");
+		assertInvalidJson(StringFormat.HEX, Reason.MALFORMED, "[\"abc");
+		assertInvalidJson(StringFormat.HEX, Reason.MALFORMED, "\"\\ud800\"");
+		assertInvalidJson(StringFormat.HEX, Reason.MALFORMED, "\"zz\"");
+		assertInvalidJson(StringFormat.HEX, Reason.INVALID_LENGTH, "\"abc\"");
+		assertInvalidJson(StringFormat.BASE64, Reason.INVALID_LENGTH, "\"abc\"");
+		assertInvalidJson(StringFormat.BASE64, Reason.MALFORMED, "\"ab=c\"");
+	}
+
+	/**
+	 * Tests {@link JsonTranscoder#isUtf8} accepts valid UTF-8 and rejects overlong forms, surrogates and truncated
+	 * sequences.
+	 */
+	@Test
+	public void testIsUtf8() {
+		assertTrue(isUtf8(0x61, 0xC3, 0xA9, 0xE2, 0x82, 0xAC, 0xF0, 0x9F, 0x98, 0x80));
+		assertFalse(isUtf8(0xC0, 0xAF));
+		assertFalse(isUtf8(0xE0, 0x80, 0xAF));
+		assertFalse(isUtf8(0xED, 0xA0, 0x80));
+		assertFalse(isUtf8(0xF4, 0x90, 0x80, 0x80));
+		assertFalse(isUtf8(0xE2, 0x82));
+		assertFalse(isUtf8(0xFF));
+	}
+
+	private static void assertRoundTrip(final StringFormat format, final String json) throws Exception {
+		assertEquals(json, toJson(format, TORRENT));
+		assertEquals(TORRENT, toBencode(format, json));
+	}
+
+	private static void assertInvalidBencode(final Reason reason, final int offset, final String bData) throws IOException {
+		try {
+			toJson(StringFormat.HEX, bData);
+			fail();
+		} catch (InvalidFormatException e) {
+			assertEquals(reason, e.getReason());
+			assertEquals(offset, e.getOffset());
+		}
+	}
+
+	private static void assertInvalidJson(final StringFormat format, final Reason reason, final String json) throws IOException {
+		try {
+			toBencode(format, json);
+			fail();
+		} catch (InvalidFormatException e) {
+			assertEquals(reason, e.getReason());
+		}
+	}
+
+	private static String toJson(final StringFormat format, final String bData) throws InvalidFormatException, IOException {
+		return toJson(new JsonTranscoder(format), bData);
+	}
+
+	private static String toJson(final JsonTranscoder transcoder, final String bData) throws InvalidFormatException, IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		transcoder.toJson(new ByteArrayInputStream(bData.getBytes(StandardCharsets.ISO_8859_1)), out);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static String toBencode(final StringFormat format, final String json) throws InvalidFormatException, IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new JsonTranscoder(format).toBencode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), out);
+		return latin1(out.toByteArray());
+	}
+
+	private static boolean isUtf8(final int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = (byte) values[i];
+		}
+		return JsonTranscoder.isUtf8(bytes, bytes.length);
+	}
+
+}
@@ -0,0 +1,244 @@
+package com.aelchemy.bencode;
+
+import static com.aelchemy.bencode.TestBytes.bytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+
+/**
+ * Contains regression tests of the allocation and throughput of the hot paths.
+ * <p>
+ * Allocation is measured with the thread allocation counters of {@link com.sun.management.ThreadMXBean}, after
+ * warming up, and the tests are skipped on platforms without them. Throughput is only compared between decoders on
+ * the same data, taking the best of several runs, so the tests don't depend on the speed of the machine.
+ *
+ * @author Aelexe
+ *
+ */
+public class PerformanceTest {
+
+	private static final int ELEMENTS = 20000;
+	private static final int PASSES = 5;
+	private static final long ALLOCATION_LIMIT = 1024;
+
+	/**
+	 * Tests validating a large list allocates nothing.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testValidate_Allocation() throws Exception {
+		final ByteBuffer bData = ByteBuffer.wrap(bytes(list()));
+		long allocated = allocated(new Runnable() {
+
+			@Override
+			public void run() {
+				assertEquals(bData.remaining(), Validate.validate(bData, false));
+			}
+
+		});
+		assertTrue("Allocated " + allocated + " bytes", allocated < ALLOCATION_LIMIT);
+	}
+
+	/**
+	 * Tests skipping the elements of a large list and reading its numbers with a {@link Cursor} allocates nothing.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testCursor_Allocation() throws Exception {
+		final Cursor cursor = new Cursor(bytes(list()));
+		long allocated = allocated(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					cursor.setPosition(0);
+					cursor.enterList();
+					long total = 0;
+					while (cursor.hasNext()) {
+						total += cursor.readNumber();
+						cursor.skipValue();
+					}
+					cursor.exit();
+					assertEquals((long) ELEMENTS * (ELEMENTS - 1) / 2, total);
+				} catch (Exception e) {
+					throw new AssertionError(e);
+				}
+			}
+
+		});
+		assertTrue("Allocated " + allocated + " bytes", allocated < ALLOCATION_LIMIT);
+	}
+
+	/**
+	 * Tests querying a {@link StructuralIndex} of a large list allocates nothing once it is built.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testStructuralIndex_Allocation() throws Exception {
+		final StructuralIndex index = Bencode.index(bytes(list()));
+		long allocated = allocated(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					long total = 0;
+					for (int element = 1; element < index.getNext(0); element = index.getNext(element)) {
+						total += index.getNumber(element);
+						element = index.getNext(element);
+					}
+					assertEquals((long) ELEMENTS * (ELEMENTS - 1) / 2, total);
+				} catch (Exception e) {
+					throw new AssertionError(e);
+				}
+			}
+
+		});
+		assertTrue("Allocated " + allocated + " bytes", allocated < ALLOCATION_LIMIT);
+	}
+
+	/**
+	 * Tests encoding into a buffer allocates nothing beyond the lengths of the values.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testEncode_Allocation() throws Exception {
+		final BData data = Bencode.decode(ByteBuffer.wrap(bytes(list())));
+		final ByteBuffer buffer = ByteBuffer.allocate(Bencode.getEncodedLength(data));
+		long allocated = allocated(new Runnable() {
+
+			@Override
+			public void run() {
+				buffer.clear();
+				Bencode.encode(data, buffer);
+				assertEquals(buffer.capacity(), buffer.position());
+			}
+
+		});
+		assertTrue("Allocated " + allocated + " bytes", allocated < ALLOCATION_LIMIT);
+	}
+
+	/**
+	 * Tests decoding data already in a {@link DecodeCache} allocates nothing.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testDecodeCache_Allocation() throws Exception {
+		final DecodeCache cache = new DecodeCache(1024 * 1024);
+		final String[] bData = new String[100];
+		for (int i = 0; i < bData.length; i++) {
+			bData[i] = "d1:ai" + i + "ee";
+			cache.decodeDictionary(bData[i]);
+		}
+		long allocated = allocated(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < ELEMENTS; i++) {
+						cache.decodeDictionary(bData[i % bData.length]);
+					}
+				} catch (InvalidFormatException e) {
+					throw new AssertionError(e);
+				}
+			}
+
+		});
+		assertTrue("Allocated " + allocated + " bytes", allocated < ALLOCATION_LIMIT);
+		assertEquals(0, cache.getEvictionCount());
+	}
+
+	/**
+	 * Tests decoding a large list from bytes is faster than the original decoder decoding it from a string.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testDecode_Throughput() throws Exception {
+		final String bData = list();
+		final byte[] bytes = bytes(bData);
+		assertEquals(Bencode.decodeList(bData), Bencode.decode(ByteBuffer.wrap(bytes)).asList());
+
+		long legacy = fastest(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					Bencode.decodeList(bData);
+				} catch (Exception e) {
+					throw new AssertionError(e);
+				}
+			}
+
+		});
+		long decode = fastest(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					Bencode.decode(ByteBuffer.wrap(bytes));
+				} catch (Exception e) {
+					throw new AssertionError(e);
+				}
+			}
+
+		});
+		assertTrue("Decoded in " + decode + " ns, original decoder in " + legacy + " ns", decode < legacy);
+	}
+
+	/**
+	 * Returns the bytes the task argument allocates on its last pass, after it is warmed up.
+	 */
+	private static long allocated(final Runnable task) {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+		Assume.assumeTrue(allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled());
+
+		long thread = Thread.currentThread().getId();
+		long allocated = 0;
+		for (int pass = 0; pass < PASSES; pass++) {
+			long before = allocation.getThreadAllocatedBytes(thread);
+			task.run();
+			allocated = allocation.getThreadAllocatedBytes(thread) - before;
+		}
+		return allocated;
+	}
+
+	/**
+	 * Returns the fastest time, in nanoseconds, the task argument runs in.
+	 */
+	private static long fastest(final Runnable task) {
+		long fastest = Long.MAX_VALUE;
+		for (int pass = 0; pass < PASSES; pass++) {
+			long start = System.nanoTime();
+			task.run();
+			fastest = Math.min(fastest, System.nanoTime() - start);
+		}
+		return fastest;
+	}
+
+	/**
+	 * Returns a list of numbers, each followed by a string.
+	 */
+	private static String list() {
+		StringBuilder bData = new StringBuilder("l");
+		for (int i = 0; i < ELEMENTS; i++) {
+			bData.append('i').append(i).append("e13:element ").append(10000 + i % 10000);
+		}
+		return bData.append('e').toString();
+	}
+
+}
@@ -0,0 +1,187 @@
+package com.aelchemy.bencode;
+
+import static com.aelchemy.bencode.TestBytes.bytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.aelchemy.bencode.data.ValueType;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * Contains tests for {@link StructuralIndex}.
+ *
+ * @author Aelexe
+ *
+ */
+public class StructuralIndexTest {
+
+	private static final String TORRENT = "d8:announce15:http://tracker/4:infod6:lengthi1024e4:name8:file.txt12:piece lengthi512e6:pieces6:abcdefe4:listli1eli2ei3ee3:abce5:title5:Titlee";
+
+	/**
+	 * Tests {@link StructuralIndex#get} finds the values of keys and the elements of lists, including values nested
+	 * in dictionaries and lists.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testGet() throws InvalidFormatException {
+		StructuralIndex index = Bencode.index(bytes(TORRENT));
+		assertEquals(ValueType.DICTIONARY, index.getType(0));
+		assertEquals(0, index.getStart(0));
+		assertEquals(TORRENT.length(), index.getEnd(0));
+		assertEquals(index.size(), index.getNext(0));
+		assertEquals(8, index.getChildCount(0));
+
+		assertEquals("http://tracker/", index.getString(index.get(0, "announce")));
+		int info = index.get(0, "info");
+		assertEquals(ValueType.DICTIONARY, index.getType(info));
+		assertEquals("file.txt", index.getString(index.get(info, "name")));
+		assertEquals(1024, index.getNumber(index.get(info, "length")));
+		assertEquals(512, index.getNumber(index.get(info, "piece length")));
+		assertEquals(-1, index.get(info, "missing"));
+
+		ByteBuffer pieces = index.getStringSlice(index.get(info, "pieces"));
+		assertEquals(6, pieces.remaining());
+		assertEquals('a', pieces.get(0));
+
+		int list = index.get(0, "list");
+		assertEquals(3, index.getChildCount(list));
+		assertEquals(1, index.getNumber(index.get(list, 0)));
+		int nested = index.get(list, 1);
+		assertEquals(ValueType.LIST, index.getType(nested));
+		assertEquals(3, index.getNumber(index.get(nested, 1)));
+		assertEquals("abc", index.getString(index.get(list, 2)));
+		assertEquals(-1, index.get(list, 3));
+		assertEquals(-1, index.get(list, -1));
+
+		assertEquals("Title", index.getString(index.get(0, "title")));
+	}
+
+	/**
+	 * Tests the offsets of {@link StructuralIndex} values match the Bencoded data, and are relative to the buffer's
+	 * position.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testOffsets() throws InvalidFormatException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes("xxli-42e4:spamdee"));
+		buffer.position(2);
+		StructuralIndex index = Bencode.index(buffer);
+		assertEquals(2, buffer.position());
+		assertEquals(4, index.size());
+
+		assertEquals(ValueType.NUMBER, index.getType(1));
+		assertEquals(1, index.getStart(1));
+		assertEquals(6, index.getEnd(1));
+		assertEquals(-42, index.getNumber(1));
+
+		assertEquals(ValueType.STRING, index.getType(2));
+		assertEquals(8, index.getStringStart(2));
+		assertEquals(4, index.getStringLength(2));
+		assertEquals("spam", index.getString(2));
+
+		assertEquals(ValueType.DICTIONARY, index.getType(3));
+		assertEquals(0, index.getChildCount(3));
+		assertEquals(14, index.getEnd(3));
+		assertEquals(4, index.getNext(3));
+		assertEquals(15, index.getEnd(0));
+	}
+
+	/**
+	 * Tests {@link StructuralIndex} reads direct buffers and numbers at the limits of a long.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testDirectBuffer() throws InvalidFormatException {
+		byte[] bData = bytes("li9223372036854775807ei-9223372036854775808ei9223372036854775808e3:\u00FF\u0000ae");
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bData.length);
+		buffer.put(bData).flip();
+		StructuralIndex index = Bencode.index(buffer);
+
+		assertEquals(Long.MAX_VALUE, index.getNumber(1));
+		assertEquals(Long.MIN_VALUE, index.getNumber(2));
+		try {
+			index.getNumber(3);
+			fail();
+		} catch (InvalidFormatException e) {
+			assertEquals(Reason.INVALID_NUMBER, e.getReason());
+			assertEquals(44, e.getOffset());
+		}
+		assertEquals(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE), index.getBigNumber(3));
+		assertEquals(BigInteger.valueOf(Long.MIN_VALUE), index.getBigNumber(2));
+		assertEquals("\u00FF\u0000a", index.getString(4));
+	}
+
+	/**
+	 * Tests {@link StructuralIndex} handles lists nested deeper and containing more values than its initial capacity.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testGrowth() throws InvalidFormatException {
+		StringBuilder bData = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			bData.append('l');
+		}
+		for (int i = 0; i < 100; i++) {
+			bData.append("i").append(i).append('e');
+		}
+		for (int i = 0; i < 100; i++) {
+			bData.append('e');
+		}
+
+		StructuralIndex index = Bencode.index(bytes(bData.toString()));
+		assertEquals(200, index.size());
+		assertEquals(100, index.getChildCount(99));
+		assertEquals(57, index.getNumber(index.get(99, 57)));
+		assertEquals(1, index.getChildCount(0));
+		assertEquals(bData.length(), index.getEnd(0));
+	}
+
+	/**
+	 * Tests {@link StructuralIndex} rejects invalid data with the offset of the first invalid byte, and values of the
+	 * wrong type.
+	 */
+	@Test
+	public void testInvalid() {
+		assertInvalid(Reason.EMPTY, 0, "");
+		assertInvalid(Reason.MALFORMED, 5, "li1ei02ee");
+		assertInvalid(Reason.MALFORMED, 4, "d1:ae");
+
+		try {
+			Bencode.index(bytes("li1ee")).getString(1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		} catch (InvalidFormatException e) {
+			fail();
+		}
+		try {
+			Bencode.index(bytes("li1ee")).getType(2);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// Expected.
+		} catch (InvalidFormatException e) {
+			fail();
+		}
+	}
+
+	private static void assertInvalid(final Reason reason, final int offset, final String bData) {
+		try {
+			Bencode.index(bytes(bData));
+			fail();
+		} catch (InvalidFormatException e) {
+			assertEquals(reason, e.getReason());
+			assertEquals(offset, e.getOffset());
+		}
+	}
+
+}
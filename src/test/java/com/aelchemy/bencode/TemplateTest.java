@@ -0,0 +1,120 @@
+package com.aelchemy.bencode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.aelchemy.bencode.data.BDictionary;
+import com.aelchemy.bencode.data.BList;
+
+/**
+ * Contains tests for {@link Template}.
+ *
+ * @author Aelexe
+ *
+ */
+public class TemplateTest {
+
+	/**
+	 * Tests {@link Template#encode} returns the same Bencoded dictionary as {@link Bencode#encodeDictionary} for the
+	 * provided slot values.
+	 */
+	@Test
+	public void testEncode() {
+		BDictionary announce = new BDictionary();
+		announce.put("complete", 0);
+		announce.put("incomplete", 0);
+		announce.put("interval", 1800);
+		announce.put("min interval", 900);
+		announce.put("peers", "");
+
+		Template template = Bencode.compileTemplate(announce, "peers", "complete", "incomplete");
+		assertEquals(3, template.getSlotCount());
+
+		announce.put("complete", 12);
+		announce.put("incomplete", 3);
+		announce.put("peers", "abcdef");
+		assertEquals(Bencode.encodeDictionary(announce), template.encode("abcdef", 12, 3L));
+		assertEquals("d8:completei1e10:incompletei2e8:intervali1800e12:min intervali900e5:peers0:e", template.encode(null, 1, 2));
+
+		BList peers = new BList();
+		peers.add("one");
+		peers.add("two");
+		assertEquals("d8:completei-1e10:incompletei0e8:intervali1800e12:min intervali900e5:peersl3:one3:twoee",
+				template.encode(peers, -1, 0));
+		assertEquals("d8:completei18446744073709551616e10:incompletei5e8:intervali1800e12:min intervali900e5:peers0:e",
+				template.encode("", BigInteger.ONE.shiftLeft(64), new AtomicLong(5)));
+		assertEquals("d8:completei-7e10:incompletei0e8:intervali1800e12:min intervali900e5:peers0:e",
+				template.encode("", new AtomicInteger(-7), BigInteger.ZERO));
+	}
+
+	/**
+	 * Tests {@link Template#encode} for templates with no slots, and slots at the start and end of the dictionary.
+	 */
+	@Test
+	public void testEncode_SlotPositions() {
+		BDictionary dictionary = new BDictionary();
+		dictionary.put("a", 1);
+		dictionary.put("b", "Two");
+		dictionary.put("c", 3);
+
+		assertEquals("d1:ai1e1:b3:Two1:ci3ee", Bencode.compileTemplate(dictionary).encode());
+		assertEquals("d1:ai7e1:b3:Two1:c5:Sevene", Bencode.compileTemplate(dictionary, "c", "a").encode("Seven", 7));
+		assertEquals("de", Bencode.compileTemplate(new BDictionary()).encode());
+	}
+
+	/**
+	 * Tests {@link Bencode#compileTemplate} and {@link Template#encode} throw {@link IllegalArgumentException} for
+	 * invalid slots and values.
+	 */
+	@Test
+	public void testTemplate_Invalid() {
+		BDictionary dictionary = new BDictionary();
+		dictionary.put("a", 1);
+
+		try {
+			Bencode.compileTemplate(dictionary, "b");
+			fail("Expected IllegalArgumentException for missing slot key.");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			Bencode.compileTemplate(dictionary, "a", "a");
+			fail("Expected IllegalArgumentException for repeated slot key.");
+		} catch (IllegalArgumentException e) {
+		}
+
+		Template template = Bencode.compileTemplate(dictionary, "a");
+		try {
+			template.encode();
+			fail("Expected IllegalArgumentException for missing value.");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			template.encode(1.5);
+			fail("Expected IllegalArgumentException for decimal value.");
+		} catch (IllegalArgumentException e) {
+		}
+
+		// A failed append leaves the builder as it was.
+		StringBuilder builder = new StringBuilder("prefix");
+		try {
+			Bencode.compileTemplate(dictionary, "a").appendTo(builder, 1.5f);
+			fail("Expected IllegalArgumentException for decimal value.");
+		} catch (IllegalArgumentException e) {
+			assertEquals("prefix", builder.toString());
+		}
+		dictionary.put("b", 2);
+		try {
+			Bencode.compileTemplate(dictionary, "a", "b").appendTo(builder, 1, new Object());
+			fail("Expected IllegalArgumentException for unsupported value.");
+		} catch (IllegalArgumentException e) {
+			assertEquals("prefix", builder.toString());
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.aelchemy.bencode;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Contains methods shared by the tests for converting between strings and bytes, one byte per character, as the
+ * Bencoded data in tests is written as strings.
+ *
+ * @author Aelexe
+ *
+ */
+public final class TestBytes {
+
+	private TestBytes() {
+	}
+
+	/**
+	 * Returns the string argument's characters as bytes.
+	 *
+	 * @param string The string.
+	 * @return The bytes.
+	 */
+	public static byte[] bytes(final String string) {
+		return string.getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Returns the bytes argument as a string.
+	 *
+	 * @param bytes The bytes.
+	 * @return The string.
+	 */
+	public static String latin1(final byte[] bytes) {
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Returns the bytes from the buffer's position to its limit as a string, without moving its position.
+	 *
+	 * @param buffer The buffer.
+	 * @return The string.
+	 */
+	public static String latin1(final ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return latin1(bytes);
+	}
+
+}
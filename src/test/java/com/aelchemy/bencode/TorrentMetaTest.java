@@ -0,0 +1,167 @@
+package com.aelchemy.bencode;
+
+import static com.aelchemy.bencode.TestBytes.bytes;
+import static com.aelchemy.bencode.TestBytes.latin1;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * Contains tests for {@link TorrentMeta}.
+ *
+ * @author Aelexe
+ *
+ */
+public class TorrentMetaTest {
+
+	private static final String PIECES = "abcdefghij0123456789ABCDEFGHIJ9876543210";
+	private static final String SINGLE_INFO = "d6:lengthi1048576e4:name8:file.txt12:piece lengthi524288e6:pieces40:" + PIECES + "e";
+	private static final String SINGLE = "d8:announce15:http://tracker/13:announce-listll15:http://tracker/el16:udp://backup:80/i1eee4:info"
+			+ SINGLE_INFO + "e";
+	private static final String MULTI_INFO = "d5:filesld6:lengthi10e4:pathl1:a5:b.bineed6:lengthi20e4:pathl5:c.txteee4:name3:dir12:piece lengthi16384e6:pieces20:"
+			+ PIECES.substring(0, 20) + "e";
+
+	/**
+	 * Tests {@link TorrentMeta} reads single file metainfo.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testSingleFile() throws Exception {
+		TorrentMeta meta = TorrentMeta.of(bytes(SINGLE));
+		assertEquals("http://tracker/", meta.getAnnounce());
+		assertEquals(Arrays.asList(Arrays.asList("http://tracker/"), Arrays.asList("udp://backup:80/")), meta.getAnnounceList());
+		assertEquals("file.txt", meta.getName());
+		assertEquals(524288, meta.getPieceLength());
+		assertEquals(2, meta.getPieceCount());
+		assertEquals("ABCDEFGHIJ9876543210", latin1(meta.getPieceHash(1)));
+		assertTrue(meta.getPieceHash(0).isReadOnly());
+		assertFalse(meta.isMultiFile());
+		assertEquals(1, meta.getFileCount());
+		assertEquals(1048576, meta.getFileLength(0));
+		assertEquals(Collections.singletonList("file.txt"), meta.getFilePath(0));
+		assertEquals(1048576, meta.getTotalLength());
+		assertEquals(SINGLE_INFO, latin1(meta.getInfo()));
+		assertArrayEquals(sha1(SINGLE_INFO), meta.getInfoHash());
+
+		try {
+			meta.getPieceHash(2);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			meta.getFileLength(1);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	/**
+	 * Tests {@link TorrentMeta} reads multiple file metainfo, and hashes the info dictionary's raw bytes even if its
+	 * keys aren't sorted.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testMultiFile() throws Exception {
+		String unsorted = MULTI_INFO.replace("d5:files", "d4:name3:dir5:files").replace("e4:name3:dir12:", "e12:");
+		for (String info : new String[] { MULTI_INFO, unsorted }) {
+			ByteBuffer bData = ByteBuffer.allocateDirect(info.length() + 9);
+			bData.put(bytes("xd4:info" + info + "e")).flip().position(1);
+			TorrentMeta meta = TorrentMeta.of(bData);
+			assertNull(meta.getAnnounce());
+			assertEquals(Collections.emptyList(), meta.getAnnounceList());
+			assertEquals("dir", meta.getName());
+			assertTrue(meta.isMultiFile());
+			assertEquals(2, meta.getFileCount());
+			assertEquals(10, meta.getFileLength(0));
+			assertEquals(Arrays.asList("a", "b.bin"), meta.getFilePath(0));
+			assertEquals(20, meta.getFileLength(1));
+			assertEquals(Arrays.asList("c.txt"), meta.getFilePath(1));
+			assertEquals(30, meta.getTotalLength());
+			assertArrayEquals(sha1(info), meta.getInfoHash());
+			assertEquals(1, bData.position());
+		}
+	}
+
+	/**
+	 * Tests {@link TorrentMeta} rejects metainfo missing required keys or with keys of the wrong type.
+	 */
+	@Test
+	public void testInvalid() {
+		assertInvalid(Reason.MALFORMED, "le");
+		assertInvalid(Reason.MALFORMED, "d8:announce1:ae");
+		assertInvalid(Reason.MALFORMED, "d4:infoi1ee");
+		assertInvalid(Reason.MALFORMED, "d4:info" + SINGLE_INFO.replace("4:name8:file.txt", "") + "e");
+		assertInvalid(Reason.MALFORMED, "d4:info" + SINGLE_INFO.replace("6:pieces40:", "6:pieces39:").replace("3210e", "321e") + "e");
+		assertInvalid(Reason.MALFORMED, "d4:info" + SINGLE_INFO.replace("6:lengthi1048576e", "") + "e");
+		assertInvalid(Reason.MALFORMED, "d4:info" + MULTI_INFO.replace("l1:a5:b.bine", "l1:ai5ee") + "e");
+		assertInvalid(Reason.MALFORMED, "d4:info" + MULTI_INFO.replace("d6:lengthi20e4:pathl5:c.txtee", "i1e") + "e");
+		assertInvalid(Reason.INVALID_NUMBER, "d4:info" + SINGLE_INFO.replace("i1048576e", "i99999999999999999999e") + "e");
+	}
+
+	/**
+	 * Tests querying the files of a torrent with 50,000 files allocates nothing once they have been numbered.
+	 *
+	 * @throws Exception If thrown the test fails.
+	 */
+	@Test
+	public void testManyFiles_Allocation() throws Exception {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+		Assume.assumeTrue(allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled());
+
+		StringBuilder bData = new StringBuilder("d4:infod5:filesl");
+		for (int i = 0; i < 50000; i++) {
+			bData.append("d6:lengthi").append(i).append("e4:pathl9:file").append(10000 + i).append("ee");
+		}
+		bData.append("e4:name3:dir12:piece lengthi16384e6:pieces20:").append(PIECES, 0, 20).append("ee");
+		TorrentMeta meta = TorrentMeta.of(bytes(bData.toString()));
+		assertEquals(50000, meta.getFileCount());
+
+		long total = 0;
+		for (int pass = 0; pass < 3; pass++) {
+			long before = allocation.getThreadAllocatedBytes(Thread.currentThread().getId());
+			total = 0;
+			for (int i = 0; i < meta.getFileCount(); i++) {
+				total += meta.getFileLength(i);
+			}
+			total += meta.getTotalLength();
+			long allocated = allocation.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+			if (pass == 2) {
+				assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+			}
+		}
+		assertEquals(2L * 49999 * 50000 / 2, total);
+	}
+
+	private static void assertInvalid(final Reason reason, final String bData) {
+		try {
+			TorrentMeta.of(bytes(bData));
+			fail(bData);
+		} catch (InvalidFormatException e) {
+			assertEquals(reason, e.getReason());
+		}
+	}
+
+	private static byte[] sha1(final String bData) throws Exception {
+		return MessageDigest.getInstance("SHA-1").digest(bytes(bData));
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.aelchemy.bencode;
+
+import static com.aelchemy.bencode.TestBytes.bytes;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Contains tests for {@link Bencode} methods that expose {@link Validate} functionality.
+ *
+ * @author Aelexe
+ *
+ */
+public class ValidateTest {
+
+	/**
+	 * Tests {@link Bencode#validate} returns the end offset for the provided valid Bencoded values.
+	 */
+	@Test
+	public void testValidate() {
+		String[] validData = new String[] { "0:", "12:Hello world!", "i0e", "i-7e", "i123456789012345678901234567890e", "le", "de",
+				"l3:Onei2e5:Threei4e4:Fivee", "l25:The next value is a list.li1ei3ei5ee57:End of list, next value is the sum of this lists numbers.i9elli1eeli1ei2eeee",
+				"d6:Animall3:Cat3:Dog4:Goat8:Elephante4:Foodl7:Noodles3:Ham8:Sandwich6:Cookie6:Cheesee5:Drinkl5:Water4:Coke3:Tea6:Coffeeee",
+				"d4:infod6:lengthi1e4:name1:ae5:peers6:abcdefe" };
+
+		for (String bData : validData) {
+			assertEquals(bData, bData.length(), Bencode.validate(bytes(bData)));
+		}
+	}
+
+	/**
+	 * Tests {@link Bencode#validate} returns the offset of the first invalid byte for the provided invalid Bencoded
+	 * values.
+	 */
+	@Test
+	public void testValidate_Invalid() {
+		assertInvalid(0, "");
+		assertInvalid(0, "x");
+		assertInvalid(1, "0");
+		assertInvalid(1, "01:a");
+		assertInvalid(2, "5:Four");
+		assertInvalid(1, "1a:b");
+		assertInvalid(2, "99999999999999999999:a");
+		assertInvalid(1, "ie");
+		assertInvalid(1, "i01e");
+		assertInvalid(2, "i-0e");
+		assertInvalid(2, "i-e");
+		assertInvalid(1, "i0.1e");
+		assertInvalid(3, "i12");
+		assertInvalid(10, "li1ei2ei3e");
+		assertInvalid(2, "liee");
+		assertInvalid(1, "di3e5:Threee");
+		assertInvalid(8, "d5:Threee");
+		assertInvalid(11, "d5:Threei3ex");
+	}
+
+	/**
+	 * Tests {@link Bencode#validate} only accepts unique, ascending dictionary keys when sorted keys are required.
+	 */
+	@Test
+	public void testValidate_SortedKeys() {
+		ByteBuffer sorted = ByteBuffer.wrap(bytes("d1:ai1e2:aai2e1:bd1:xi1e1:yi2eee"));
+		assertEquals(sorted.remaining(), Bencode.validate(sorted, true));
+
+		assertEquals(~7, Bencode.validate(ByteBuffer.wrap(bytes("d1:bi1e1:ai2ee")), true));
+		assertEquals(14, Bencode.validate(ByteBuffer.wrap(bytes("d1:bi1e1:ai2ee")), false));
+		assertEquals(~7, Bencode.validate(ByteBuffer.wrap(bytes("d1:ai1e1:ai2ee")), true));
+		assertEquals(~14, Bencode.validate(ByteBuffer.wrap(bytes("ld1:ai1e1:\u00FFi2e1:zi3eee")), true));
+	}
+
+	/**
+	 * Tests {@link Bencode#validate} validates from the buffer's position, ignores trailing data and doesn't move the
+	 * buffer's position.
+	 */
+	@Test
+	public void testValidate_Buffer() {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes("xxli1eei2e"));
+		buffer.position(2);
+		assertEquals(5, Bencode.validate(buffer));
+		assertEquals(2, buffer.position());
+
+		buffer.limit(6);
+		assertEquals(~4, Bencode.validate(buffer));
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(5);
+		direct.put(bytes("l0:e")).flip();
+		assertEquals(4, Bencode.validate(direct));
+
+		StringBuilder deep = new StringBuilder();
+		for (int i = 0; i < Validate.MAX_DEPTH + 1; i++) {
+			deep.append('l');
+		}
+		assertEquals(~Validate.MAX_DEPTH, Bencode.validate(bytes(deep.toString())));
+	}
+
+	private void assertInvalid(final int offset, final String bData) {
+		assertEquals(bData, -offset - 1, Bencode.validate(bytes(bData)));
+	}
+
+}
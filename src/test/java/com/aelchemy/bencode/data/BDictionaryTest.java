@@ -0,0 +1,242 @@
+package com.aelchemy.bencode.data;
+
+import static com.aelchemy.bencode.TestBytes.bytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.aelchemy.bencode.Bencode;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+
+/**
+ * Contains tests for {@link BDictionary}.
+ *
+ * @author Aelexe
+ *
+ */
+public class BDictionaryTest {
+
+	private static final String[] KEYS = { "", "a", "ab", "b", "ba", "z", "\u0080", "\u00FF", "\u00FF\u00FF" };
+
+	/**
+	 * Tests keys are found by their bytes, in an array and in heap and direct buffers, while they are put in order.
+	 */
+	@Test
+	public void testGetBytes() {
+		BDictionary dictionary = new BDictionary();
+		for (int i = 0; i < KEYS.length; i++) {
+			dictionary.put(KEYS[i], i);
+		}
+		assertGetBytes(dictionary);
+		for (String key : new String[] { "aa", "abc", "c", "\u00FE", "\u00FF\u0000" }) {
+			assertNull(dictionary.get(bytes(key)));
+			assertNull(dictionary.get(ByteBuffer.wrap(bytes(key))));
+			assertNull(dictionary.get(key));
+			assertFalse(dictionary.contains(key));
+		}
+
+		// The key is read from the position to the limit, and the position isn't moved.
+		ByteBuffer buffer = ByteBuffer.wrap(bytes("xxbaxx"));
+		// Cast to Buffer so the Java 8 signatures of limit and position are linked.
+		((Buffer) buffer).position(2).limit(4);
+		assertEquals(4, dictionary.get(buffer).asNumber().getValue());
+		assertEquals(2, buffer.position());
+	}
+
+	/**
+	 * Tests putting a key out of order keeps the entries in the order they were put, and keys are still found.
+	 */
+	@Test
+	public void testPutUnsorted() {
+		BDictionary dictionary = new BDictionary(2);
+		dictionary.put("b", 1);
+		dictionary.put("c", 2);
+		dictionary.put("b", 3);
+		assertEquals("d1:bi3e1:ci2ee", dictionary.encode());
+
+		dictionary.put("a", 4);
+		dictionary.put("c", 5);
+		assertEquals(3, dictionary.size());
+		assertEquals("d1:bi3e1:ci5e1:ai4ee", dictionary.encode());
+		assertEquals(4, dictionary.get(bytes("a")).asNumber().getValue());
+		assertEquals(5, dictionary.get(ByteBuffer.wrap(bytes("c"))).asNumber().getValue());
+		assertNull(dictionary.get(bytes("d")));
+
+		BDictionary unsorted = new BDictionary();
+		for (int i = KEYS.length - 1; i >= 0; i--) {
+			unsorted.put(KEYS[i], i);
+		}
+		assertGetBytes(unsorted);
+	}
+
+	/**
+	 * Tests dictionaries with the same entries are equal and hash alike, whichever order their keys were put in.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testEquals() throws InvalidFormatException {
+		BDictionary sorted = Bencode.decodeDictionary("d1:ai1e1:bli2ee1:c0:e");
+		BDictionary unsorted = new BDictionary();
+		unsorted.put("c", "");
+		unsorted.put("a", 1);
+		BList list = new BList();
+		list.add(2);
+		unsorted.put("b", list);
+
+		assertEquals(sorted, unsorted);
+		assertEquals(unsorted, sorted);
+		assertEquals(sorted.hashCode(), unsorted.hashCode());
+		assertEquals(sorted, sorted.copy());
+		assertEquals(unsorted, unsorted.copy());
+		assertEquals(unsorted.encode(), unsorted.copy().encode());
+
+		unsorted.put("d", 1);
+		assertFalse(sorted.equals(unsorted));
+	}
+
+	/**
+	 * Tests removing keys through the key set removes their entries.
+	 */
+	@Test
+	public void testKeySet() {
+		BDictionary dictionary = new BDictionary();
+		for (int i = 0; i < KEYS.length; i++) {
+			dictionary.put(KEYS[i], i);
+		}
+		assertEquals(Arrays.asList(KEYS), new ArrayList<String>(dictionary.keySet()));
+		assertTrue(dictionary.keySet().contains("ab"));
+
+		assertTrue(dictionary.keySet().remove("ab"));
+		assertFalse(dictionary.keySet().remove("ab"));
+		Iterator<String> keys = dictionary.keySet().iterator();
+		assertEquals("", keys.next());
+		keys.remove();
+		assertEquals("a", keys.next());
+		assertEquals(KEYS.length - 2, dictionary.size());
+		assertNull(dictionary.get("ab"));
+		assertNull(dictionary.get(bytes("")));
+		assertEquals(3, dictionary.get(bytes("b")).asNumber().getValue());
+
+		dictionary.put("c", 1);
+		assertEquals(KEYS.length - 1, dictionary.keySet().size());
+		dictionary.keySet().clear();
+		assertTrue(dictionary.isEmpty());
+		dictionary.put("a", 1);
+		assertEquals("d1:ai1ee", dictionary.encode());
+	}
+
+	/**
+	 * Tests the key set's iterators throw {@link ConcurrentModificationException} once keys are added or removed other
+	 * than by the iterator, but not when a value is replaced.
+	 */
+	@Test
+	public void testKeySet_ConcurrentModification() {
+		BDictionary dictionary = new BDictionary();
+		dictionary.put("a", 1);
+		dictionary.put("b", 2);
+
+		Iterator<String> keys = dictionary.keySet().iterator();
+		assertEquals("a", keys.next());
+		dictionary.put("b", 3);
+		assertEquals("b", keys.next());
+		dictionary.put("c", 4);
+		try {
+			keys.hasNext();
+			fail("Expected ConcurrentModificationException after a key was added.");
+		} catch (ConcurrentModificationException e) {
+		}
+
+		keys = dictionary.keySet().iterator();
+		Iterator<String> other = dictionary.keySet().iterator();
+		assertEquals("a", keys.next());
+		keys.remove();
+		assertEquals("b", keys.next());
+		try {
+			other.next();
+			fail("Expected ConcurrentModificationException after another iterator removed a key.");
+		} catch (ConcurrentModificationException e) {
+		}
+
+		keys = dictionary.keySet().iterator();
+		dictionary.keySet().remove("c");
+		try {
+			keys.next();
+			fail("Expected ConcurrentModificationException after a key was removed.");
+		} catch (ConcurrentModificationException e) {
+		}
+
+		// Putting a key out of order moves the entries out of the arrays.
+		keys = dictionary.keySet().iterator();
+		assertEquals("b", keys.next());
+		dictionary.put("a", 1);
+		try {
+			keys.remove();
+			fail("Expected ConcurrentModificationException after the entries were moved.");
+		} catch (ConcurrentModificationException e) {
+		}
+	}
+
+	/**
+	 * Tests looking up keys of a decoded dictionary by their bytes allocates nothing.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testGetBytes_Allocation() throws InvalidFormatException {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+		Assume.assumeTrue(allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled());
+
+		StringBuilder bData = new StringBuilder("d");
+		byte[][] keys = new byte[1000][];
+		ByteBuffer[] buffers = new ByteBuffer[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			String key = "key" + (1000 + i);
+			bData.append(key.length()).append(':').append(key).append('i').append(i).append('e');
+			keys[i] = bytes(key);
+			buffers[i] = ByteBuffer.allocateDirect(key.length()).put(keys[i]);
+			((Buffer) buffers[i]).flip();
+		}
+		BDictionary dictionary = Bencode.decodeDictionary(bData.append('e').toString());
+
+		long allocated = 0;
+		long sum = 0;
+		for (int pass = 0; pass < 5; pass++) {
+			long before = allocation.getThreadAllocatedBytes(Thread.currentThread().getId());
+			for (int i = 0; i < keys.length; i++) {
+				sum += dictionary.get(keys[i]).asNumber().getValue();
+				sum += dictionary.get(buffers[i]).asNumber().getValue();
+			}
+			allocated = allocation.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+		}
+		assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+		assertEquals(5 * 999 * 1000, sum);
+	}
+
+	private static void assertGetBytes(final BDictionary dictionary) {
+		for (int i = 0; i < KEYS.length; i++) {
+			assertEquals(i, dictionary.get(bytes(KEYS[i])).asNumber().getValue());
+			assertEquals(i, dictionary.get(ByteBuffer.wrap(bytes(KEYS[i]))).asNumber().getValue());
+			ByteBuffer direct = ByteBuffer.allocateDirect(KEYS[i].length()).put(bytes(KEYS[i]));
+			((Buffer) direct).flip();
+			assertEquals(i, dictionary.get(direct).asNumber().getValue());
+			assertEquals(i, dictionary.get(KEYS[i]).asNumber().getValue());
+		}
+	}
+
+}
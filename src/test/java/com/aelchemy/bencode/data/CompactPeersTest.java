@@ -0,0 +1,170 @@
+package com.aelchemy.bencode.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.aelchemy.bencode.Bencode;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+
+/**
+ * Contains tests for {@link CompactPeers}.
+ *
+ * @author Aelexe
+ *
+ */
+public class CompactPeersTest {
+
+	/**
+	 * Tests {@link CompactPeers#packIPv4} and {@link CompactPeers#encodeIPv4} return the expected compact peer strings,
+	 * and {@link CompactPeers#ipv4Peers} iterates over them.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testIPv4Peers() throws InvalidFormatException {
+		int[] addresses = new int[] { 0x7F000001, 0xC0A80A14 };
+		int[] ports = new int[] { 6881, 65535 };
+
+		String peers = CompactPeers.packIPv4(addresses, ports);
+		assertEquals("\u007F\u0000\u0000\u0001\u001A\u00E1\u00C0\u00A8\n\u0014\u00FF\u00FF", peers);
+		assertEquals(Bencode.encodeString(peers), CompactPeers.encodeIPv4(addresses, ports));
+
+		CompactPeers.Cursor cursor = CompactPeers.ipv4Peers(peers);
+		assertEquals(2, cursor.size());
+		for (int i = 0; i < addresses.length; i++) {
+			assertTrue(cursor.next());
+			assertEquals(addresses[i], cursor.getAddress());
+			assertEquals(ports[i], cursor.getPort());
+		}
+		assertFalse(cursor.next());
+
+		assertFalse(cursor.reset("").next());
+	}
+
+	/**
+	 * Tests {@link CompactPeers#packIPv6} and {@link CompactPeers#ipv6Peers} round trip IPv6 peers.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testIPv6Peers() throws InvalidFormatException {
+		long[] addresses = new long[] { 0x20010DB800000000L, 0x0000000000000001L, 0xFE80000000000000L, 0x0202B3FFFE1E8329L };
+		int[] ports = new int[] { 51413, 1 };
+
+		String peers = CompactPeers.packIPv6(addresses, ports);
+		assertEquals(36, peers.length());
+		assertEquals(Bencode.encodeString(peers), CompactPeers.encodeIPv6(addresses, ports));
+
+		CompactPeers.Cursor cursor = CompactPeers.ipv6Peers(peers);
+		for (int i = 0; i < ports.length; i++) {
+			assertTrue(cursor.next());
+			assertEquals(addresses[i * 2], cursor.getAddressHigh());
+			assertEquals(addresses[i * 2 + 1], cursor.getAddressLow());
+			assertEquals(ports[i], cursor.getPort());
+		}
+		assertFalse(cursor.next());
+	}
+
+	/**
+	 * Tests {@link CompactPeers#ipv4Nodes} returns the node IDs, addresses and ports of a compact node string.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testIPv4Nodes() throws InvalidFormatException {
+		byte[] id = new byte[CompactPeers.NODE_ID_LENGTH];
+		StringBuilder nodes = new StringBuilder();
+		for (int i = 0; i < id.length; i++) {
+			id[i] = (byte) (0xF0 + i);
+			nodes.append((char) (id[i] & 0xFF));
+		}
+		CompactPeers.appendIPv4(nodes, new int[] { 0x01020304 }, new int[] { 80 }, 0, 1);
+
+		CompactPeers.Cursor cursor = CompactPeers.ipv4Nodes(nodes.toString());
+		assertTrue(cursor.next());
+		byte[] actualId = new byte[id.length];
+		cursor.getNodeId(actualId, 0);
+		assertArrayEquals(id, actualId);
+		assertEquals(0x01020304, cursor.getAddress());
+		assertEquals(80, cursor.getPort());
+		assertFalse(cursor.next());
+	}
+
+	/**
+	 * Tests {@link CompactPeers} throws exceptions for compact strings of the wrong length and mismatched arguments.
+	 */
+	@Test
+	public void testCompactPeers_Invalid() {
+		try {
+			CompactPeers.ipv4Peers("12345");
+			fail("Expected InvalidFormatException for truncated peer.");
+		} catch (InvalidFormatException e) {
+		}
+		try {
+			CompactPeers.ipv4Nodes(null);
+			fail("Expected InvalidFormatException for null nodes.");
+		} catch (InvalidFormatException e) {
+		}
+		try {
+			CompactPeers.packIPv4(new int[2], new int[1]);
+			fail("Expected IllegalArgumentException for mismatched ports.");
+		} catch (IllegalArgumentException e) {
+		}
+		for (int port : new int[] { -1, 65536 }) {
+			try {
+				CompactPeers.encodeIPv6(new long[2], new int[] { port });
+				fail("Expected IllegalArgumentException for port " + port + ".");
+			} catch (IllegalArgumentException e) {
+			}
+			StringBuilder builder = new StringBuilder("prefix");
+			try {
+				CompactPeers.appendIPv4(builder, new int[2], new int[] { 6881, port }, 0, 2);
+				fail("Expected IllegalArgumentException for port " + port + ".");
+			} catch (IllegalArgumentException e) {
+				assertEquals("prefix", builder.toString());
+			}
+		}
+		assertEquals(6, CompactPeers.packIPv4(new int[1], new int[] { 65535 }).length());
+	}
+
+	/**
+	 * Tests the getters of a {@link CompactPeers.Cursor} throw {@link IllegalStateException} before the first entry.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testCursor_NoEntry() throws InvalidFormatException {
+		CompactPeers.Cursor cursor = CompactPeers.ipv4Peers(CompactPeers.packIPv4(new int[] { 1 }, new int[] { 80 }));
+		try {
+			cursor.getAddress();
+			fail("Expected IllegalStateException before the first entry.");
+		} catch (IllegalStateException e) {
+		}
+		try {
+			cursor.getPort();
+			fail("Expected IllegalStateException before the first entry.");
+		} catch (IllegalStateException e) {
+		}
+		assertTrue(cursor.next());
+		assertEquals(80, cursor.getPort());
+
+		cursor = CompactPeers.ipv6Nodes("");
+		assertFalse(cursor.next());
+		try {
+			cursor.getAddressHigh();
+			fail("Expected IllegalStateException without an entry.");
+		} catch (IllegalStateException e) {
+		}
+		try {
+			cursor.getNodeId(new byte[CompactPeers.NODE_ID_LENGTH], 0);
+			fail("Expected IllegalStateException without an entry.");
+		} catch (IllegalStateException e) {
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.aelchemy.bencode.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.aelchemy.bencode.Bencode;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+
+/**
+ * Contains tests for freezing {@link BType}s.
+ *
+ * @author Aelexe
+ *
+ */
+public class FreezeTest {
+
+	/**
+	 * Tests freezing a {@link BDictionary} freezes every value in it, and modification then throws
+	 * {@link UnsupportedOperationException}.
+	 *
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testFreeze() throws InvalidFormatException {
+		BDictionary dictionary = Bencode.decodeDictionary("d8:announce3:url4:listl1:a1:be5:counti3ee");
+		String encoded = dictionary.encode();
+		assertFalse(dictionary.isFrozen());
+
+		assertSame(dictionary, dictionary.freeze());
+		assertTrue(dictionary.isFrozen());
+		assertTrue(dictionary.get("announce").isFrozen());
+		assertTrue(dictionary.get("list").isFrozen());
+		assertTrue(dictionary.get("list").asList().get(0).isFrozen());
+		assertEquals(encoded, dictionary.encode());
+		assertSame(dictionary.encode(), dictionary.encode());
+		assertEquals(encoded.length(), dictionary.getEncodedLength());
+
+		assertUnsupported(() -> dictionary.put("key", 1));
+		assertUnsupported(() -> dictionary.keySet().clear());
+		assertUnsupported(() -> dictionary.get("announce").asString().setValue("other"));
+		assertUnsupported(() -> dictionary.get("count").asNumber().setValue(4));
+		assertUnsupported(() -> dictionary.get("list").asList().add(1));
+		assertUnsupported(() -> dictionary.get("list").asList().getData().clear());
+	}
+
+	/**
+	 * Tests copies of a frozen container are unfrozen and share the frozen values.
+	 */
+	@Test
+	public void testCopy() {
+		BList list = new BList();
+		list.add("shared");
+		BDictionary dictionary = new BDictionary();
+		dictionary.put("list", list);
+		dictionary.freeze();
+
+		BDictionary copy = dictionary.copy();
+		assertFalse(copy.isFrozen());
+		assertSame(dictionary.get("list"), copy.get("list"));
+		assertEquals(dictionary, copy);
+		assertEquals(dictionary.hashCode(), copy.hashCode());
+
+		copy.put("number", 1);
+		assertNotEquals(dictionary, copy);
+		assertEquals("d4:listl6:sharedee", dictionary.encode());
+		assertEquals("d4:listl6:sharede6:numberi1ee", copy.encode());
+	}
+
+	/**
+	 * Tests structural equality and hash codes of equal {@link BType}s.
+	 */
+	@Test
+	public void testEquals() {
+		BList first = new BList();
+		first.add("a");
+		first.add(1);
+		BList second = new BList();
+		second.add("a");
+		second.add(1);
+
+		assertEquals(first, second);
+		assertEquals(first.hashCode(), second.freeze().hashCode());
+		assertEquals(new BData(new BString(null)), new BData(new BString(null)));
+		assertNotEquals(new BData(new BString("1")), new BData(new BNumber(1)));
+	}
+
+	private void assertUnsupported(final Runnable modification) {
+		try {
+			modification.run();
+		} catch (UnsupportedOperationException e) {
+			return;
+		}
+		fail("Expected UnsupportedOperationException but received nothing.");
+	}
+
+}
@@ -0,0 +1,112 @@
+package com.aelchemy.bencode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Contains tests for the Java 17 version of {@link Bytes}, run against the packaged multi-release jar.
+ *
+ * @author Aelexe
+ *
+ */
+public class BytesIT {
+
+	/**
+	 * Tests the Java 17 version of {@link Bytes} is loaded from the jar.
+	 *
+	 * @throws IOException If thrown the test fails.
+	 */
+	@Test
+	public void testVersion() throws IOException {
+		assertTrue(Bytes.class.getProtectionDomain().getCodeSource().getLocation().getPath().endsWith(".jar"));
+		try (DataInputStream in = new DataInputStream(Bytes.class.getResourceAsStream("Bytes.class"))) {
+			assertEquals(0xCAFEBABE, in.readInt());
+			in.readUnsignedShort();
+			assertEquals(61, in.readUnsignedShort());
+		}
+	}
+
+	/**
+	 * Tests ranges of heap, direct and little endian buffers compare the same as byte by byte, with a difference at
+	 * every index.
+	 */
+	@Test
+	public void testCompare() {
+		Random random = new Random(35);
+		byte[] bytes = new byte[40];
+		random.nextBytes(bytes);
+		for (int length = 0; length <= 24; length++) {
+			for (int index = 0; index <= length; index++) {
+				byte[] other = bytes.clone();
+				if (index < length) {
+					other[3 + index] = (byte) (other[3 + index] ^ (1 << random.nextInt(8)));
+				}
+				for (ByteBuffer a : buffers(bytes)) {
+					for (ByteBuffer b : buffers(other)) {
+						for (int bLength : new int[] { length - 1, length, length + 1 }) {
+							if (bLength >= 0) {
+								assertEquals(Integer.signum(expected(bytes, 3, length, other, 3, bLength)),
+										Integer.signum(Bytes.compare(a, 3, length, b, 3, bLength)));
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests comparing ranges of direct buffers allocates nothing.
+	 */
+	@Test
+	public void testCompare_Allocation() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+		Assume.assumeTrue(allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled());
+
+		ByteBuffer a = ByteBuffer.allocateDirect(1024);
+		ByteBuffer b = ByteBuffer.allocateDirect(1024);
+		long allocated = 0;
+		long sum = 0;
+		for (int pass = 0; pass < 5; pass++) {
+			long before = allocation.getThreadAllocatedBytes(Thread.currentThread().getId());
+			for (int i = 0; i < 10000; i++) {
+				sum += Bytes.compare(a, i % 16, 1000, b, 0, 1000);
+			}
+			allocated = allocation.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+		}
+		assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+		assertEquals(0, sum);
+	}
+
+	/**
+	 * Returns the bytes argument in a heap buffer, a direct buffer and a little endian direct buffer.
+	 */
+	private static ByteBuffer[] buffers(final byte[] bytes) {
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(0, bytes);
+		ByteBuffer littleEndian = ByteBuffer.allocateDirect(bytes.length).put(0, bytes).order(ByteOrder.LITTLE_ENDIAN);
+		return new ByteBuffer[] { ByteBuffer.wrap(bytes), direct, littleEndian };
+	}
+
+	private static int expected(final byte[] a, final int aIndex, final int aLength, final byte[] b, final int bIndex, final int bLength) {
+		for (int i = 0; i < Math.min(aLength, bLength); i++) {
+			int difference = (a[aIndex + i] & 0xFF) - (b[bIndex + i] & 0xFF);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return aLength - bLength;
+	}
+
+}
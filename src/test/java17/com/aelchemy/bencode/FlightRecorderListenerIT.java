@@ -0,0 +1,83 @@
+package com.aelchemy.bencode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.aelchemy.bencode.exception.InvalidFormatException;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Contains tests for the Java 17 version of {@link FlightRecorderListener}, run against the packaged multi-release jar.
+ *
+ * @author Aelexe
+ *
+ */
+public class FlightRecorderListenerIT {
+
+	@After
+	public void removeListener() {
+		Bencode.setListener(null);
+	}
+
+	/**
+	 * Tests {@link FlightRecorderListener} records events for decodes over the length threshold and failed decodes,
+	 * but not for decodes under the thresholds, timed from the start to the end of the decode.
+	 *
+	 * @throws IOException If thrown the test fails.
+	 * @throws InvalidFormatException If thrown the test fails.
+	 */
+	@Test
+	public void testEvents() throws IOException, InvalidFormatException {
+		Bencode.setListener(new FlightRecorderListener(1, TimeUnit.HOURS, 20));
+
+		Path file = Files.createTempFile("bencode", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("com.aelchemy.bencode.Bencode");
+			recording.start();
+
+			Bencode.decodeList("li1ei2ee");
+			Bencode.decodeDictionary("d4:listl1:ai1eli2eee4:name4:teste");
+			try {
+				Bencode.decodeList("li1ei-0ee");
+				fail("Expected InvalidFormatException for negative zero.");
+			} catch (InvalidFormatException e) {
+			}
+
+			recording.stop();
+			recording.dump(file);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		Files.delete(file);
+		assertEquals(2, events.size());
+
+		RecordedEvent large = events.get(0);
+		assertEquals("decode", large.getString("operation"));
+		assertFalse(large.getDuration().isNegative());
+		assertFalse(large.getStartTime().isAfter(large.getEndTime()));
+		assertEquals("DICTIONARY", large.getString("valueType"));
+		assertEquals(33, large.getLong("length"));
+		assertEquals(4, large.getInt("depth"));
+		assertEquals(7, large.getInt("elementCount"));
+		assertEquals(-1, large.getInt("failureOffset"));
+
+		RecordedEvent failed = events.get(1);
+		assertEquals("LIST", failed.getString("valueType"));
+		assertEquals("LEADING_ZERO", failed.getString("failureReason"));
+		assertEquals(5, failed.getInt("failureOffset"));
+	}
+
+}
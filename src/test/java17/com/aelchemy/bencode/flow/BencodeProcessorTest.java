@@ -0,0 +1,289 @@
+package com.aelchemy.bencode.flow;
+
+import static com.aelchemy.bencode.TestBytes.bytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.aelchemy.bencode.data.BData;
+import com.aelchemy.bencode.exception.InvalidFormatException;
+import com.aelchemy.bencode.exception.InvalidFormatException.Reason;
+
+/**
+ * Contains tests for {@link BencodeProcessor}.
+ *
+ * @author Aelexe
+ *
+ */
+public class BencodeProcessorTest {
+
+	/**
+	 * Tests values are only emitted up to the subscriber's demand, and chunks are only requested one at a time once
+	 * the buffered values are emitted.
+	 */
+	@Test
+	public void testRequest() {
+		BencodeProcessor processor = new BencodeProcessor();
+		Upstream upstream = new Upstream();
+		Collector collector = new Collector();
+		processor.subscribe(collector);
+		processor.onSubscribe(upstream);
+		assertEquals(0, upstream.requested);
+
+		collector.subscription.request(2);
+		assertEquals(1, upstream.requested);
+		processor.onNext(chunk("i1ei2ei3e4:sp"));
+		assertEquals("[i1e, i2e]", collector.values.toString());
+		assertEquals(1, upstream.requested);
+
+		collector.subscription.request(2);
+		assertEquals("[i1e, i2e, i3e]", collector.values.toString());
+		assertEquals(2, upstream.requested);
+		processor.onNext(chunk("am"));
+		assertEquals("[i1e, i2e, i3e, 4:spam]", collector.values.toString());
+		assertEquals(2, upstream.requested);
+
+		collector.subscription.request(Long.MAX_VALUE);
+		collector.subscription.request(Long.MAX_VALUE);
+		assertEquals(3, upstream.requested);
+		processor.onNext(chunk("le"));
+		processor.onComplete();
+		assertEquals("[i1e, i2e, i3e, 4:spam, le]", collector.values.toString());
+		assertTrue(collector.complete);
+		assertNull(collector.error);
+	}
+
+	/**
+	 * Tests non-positive requests, invalid data and a second subscriber are signalled as errors, and errors cancel the
+	 * upstream.
+	 */
+	@Test
+	public void testRequest_Invalid() {
+		BencodeProcessor processor = new BencodeProcessor();
+		Upstream upstream = new Upstream();
+		Collector collector = new Collector();
+		processor.subscribe(collector);
+		processor.onSubscribe(upstream);
+		collector.subscription.request(0);
+		assertTrue(collector.error instanceof IllegalArgumentException);
+		assertTrue(upstream.cancelled);
+
+		processor = new BencodeProcessor(8);
+		upstream = new Upstream();
+		collector = new Collector();
+		processor.subscribe(collector);
+		processor.onSubscribe(upstream);
+		collector.subscription.request(10);
+		processor.onNext(chunk("i1ei01e"));
+		assertEquals("[i1e]", collector.values.toString());
+		assertEquals(Reason.MALFORMED, ((InvalidFormatException) collector.error).getReason());
+		assertTrue(upstream.cancelled);
+		processor.onNext(chunk("i2e"));
+		processor.onComplete();
+		assertEquals("[i1e]", collector.values.toString());
+		assertFalse(collector.complete);
+
+		Collector second = new Collector();
+		processor.subscribe(second);
+		assertTrue(second.error instanceof IllegalStateException);
+	}
+
+	/**
+	 * Tests cancelling the subscription cancels the upstream and stops any further signals.
+	 */
+	@Test
+	public void testCancel() {
+		BencodeProcessor processor = new BencodeProcessor();
+		Upstream upstream = new Upstream();
+		Collector collector = new Collector();
+		processor.subscribe(collector);
+		processor.onSubscribe(upstream);
+		collector.subscription.request(1);
+		processor.onNext(chunk("i1ei2e"));
+		collector.subscription.cancel();
+		assertTrue(upstream.cancelled);
+
+		collector.subscription.request(1);
+		processor.onNext(chunk("i3e"));
+		processor.onComplete();
+		assertEquals("[i1e]", collector.values.toString());
+		assertFalse(collector.complete);
+		assertNull(collector.error);
+		assertEquals(1, upstream.requested);
+
+		// An upstream subscribing after the cancel is cancelled straight away.
+		Upstream late = new Upstream();
+		processor.onSubscribe(late);
+		assertTrue(late.cancelled);
+	}
+
+	/**
+	 * Tests a subscriber requesting one value at a time, slower than the publisher publishes, on another thread,
+	 * receives every value in order, and holds back the publisher.
+	 *
+	 * @throws InterruptedException If thrown the test fails.
+	 */
+	@Test
+	public void testSlowSubscriber() throws InterruptedException {
+		BencodeProcessor processor = new BencodeProcessor(16);
+		List<String> expected = new ArrayList<String>();
+		CountDownLatch done = new CountDownLatch(1);
+		Collector collector = new Collector() {
+
+			@Override
+			public void onSubscribe(final Flow.Subscription subscription) {
+				super.onSubscribe(subscription);
+				subscription.request(1);
+			}
+
+			@Override
+			public void onNext(final BData item) {
+				super.onNext(item);
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				subscription.request(1);
+			}
+
+			@Override
+			public void onComplete() {
+				super.onComplete();
+				done.countDown();
+			}
+
+			@Override
+			public void onError(final Throwable throwable) {
+				super.onError(throwable);
+				done.countDown();
+			}
+
+		};
+		processor.subscribe(collector);
+
+		AtomicLong outstanding = new AtomicLong();
+		AtomicLong maxOutstanding = new AtomicLong();
+		try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<ByteBuffer>()) {
+			// Count the chunks requested of the publisher but not yet received.
+			publisher.subscribe(new Flow.Subscriber<ByteBuffer>() {
+
+				@Override
+				public void onSubscribe(final Flow.Subscription subscription) {
+					processor.onSubscribe(new Flow.Subscription() {
+
+						@Override
+						public void request(final long n) {
+							maxOutstanding.accumulateAndGet(outstanding.addAndGet(n), Math::max);
+							subscription.request(n);
+						}
+
+						@Override
+						public void cancel() {
+							subscription.cancel();
+						}
+
+					});
+				}
+
+				@Override
+				public void onNext(final ByteBuffer item) {
+					outstanding.decrementAndGet();
+					processor.onNext(item);
+				}
+
+				@Override
+				public void onError(final Throwable throwable) {
+					processor.onError(throwable);
+				}
+
+				@Override
+				public void onComplete() {
+					processor.onComplete();
+				}
+
+			});
+			for (int i = 0; i < 200; i++) {
+				String value = "i" + i + "e";
+				expected.add(value);
+				// Split every value across two chunks.
+				publisher.submit(chunk(value.substring(0, 2)));
+				publisher.submit(chunk(value.substring(2)));
+			}
+		}
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		assertNull(collector.error);
+		assertTrue(collector.complete);
+		assertEquals(expected, collector.values);
+		assertEquals(1, maxOutstanding.get());
+	}
+
+	private static ByteBuffer chunk(final String bData) {
+		return ByteBuffer.wrap(bytes(bData));
+	}
+
+	/**
+	 * An upstream subscription recording the chunks requested of it.
+	 */
+	private static final class Upstream implements Flow.Subscription {
+
+		private long requested;
+		private boolean cancelled;
+
+		@Override
+		public void request(final long n) {
+			requested += n;
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+		}
+
+	}
+
+	/**
+	 * A subscriber collecting the encoded values and terminal signal it receives, requesting nothing itself.
+	 */
+	private static class Collector implements Flow.Subscriber<BData> {
+
+		protected volatile Flow.Subscription subscription;
+		private final List<String> values = new ArrayList<String>();
+		private volatile boolean complete;
+		private volatile Throwable error;
+
+		@Override
+		public void onSubscribe(final Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(final BData item) {
+			values.add(item.encode());
+		}
+
+		@Override
+		public void onError(final Throwable throwable) {
+			error = throwable;
+		}
+
+		@Override
+		public void onComplete() {
+			complete = true;
+		}
+
+	}
+
+}